@@ -1,19 +1,26 @@
 package com.networknt.genai.antigravity;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.networknt.config.Config;
 import com.networknt.genai.ChatMessage;
+import com.networknt.genai.ChatResponse;
 import com.networknt.genai.GenAiClient;
+import com.networknt.genai.GenAiException;
+import com.networknt.genai.JsonArrayStreamDecoder;
 import com.networknt.genai.RequestOptions;
 import com.networknt.genai.StreamCallback;
 import com.networknt.status.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class AntigravityClient implements GenAiClient {
     private static final Logger logger = LoggerFactory.getLogger(AntigravityClient.class);
@@ -35,103 +42,93 @@ public class AntigravityClient implements GenAiClient {
     private static final java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
 
     public String chat(String model, List<ChatMessage> messages) {
+        try {
+            return chatAsync(model, messages).join().getContent();
+        } catch (java.util.concurrent.CompletionException e) {
+            if (e.getCause() instanceof GenAiException && ((GenAiException) e.getCause()).getStatusCode() > 0) {
+                return e.getCause().getMessage();
+            }
+            logger.error("Exception in Antigravity chat", e);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+        return chatAsync(options.getModel() != null ? options.getModel() : config.getModel(), messages);
+    }
+
+    public CompletableFuture<ChatResponse> chatAsync(String model, List<ChatMessage> messages) {
         String token = getAccessToken();
         if(token == null) {
             logger.error("Failed to get access token");
-            return null;
+            return CompletableFuture.failedFuture(new GenAiException("Failed to get access token"));
         }
 
-        try {
-            // 1. Fetch Project ID (needed for billing/quota)
-            String projectId = fetchProjectId(token);
-            
-            // 2. Construct Chat Request
-            String url = config.getUrl();
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            if (projectId != null) {
-                requestBody.put("project", projectId);
-            }
-            // Add metadata to body as seen in loadCodeAssist, possibly needed for chat too? 
-            // openclaw sends it in loadCodeAssist body. 
-            // For chat, we stick to Gemini structure but adding 'project' field might be key.
-            
-            List<Map<String, Object>> contents = new ArrayList<>();
-            for (ChatMessage msg : messages) {
-                Map<String, Object> contentMap = new HashMap<>();
-                String role = msg.getRole();
-                if ("assistant".equals(role)) role = "model";
-                contentMap.put("role", role);
-
-                List<Map<String, String>> parts = new ArrayList<>();
-                Map<String, String> part = new HashMap<>();
-                part.put("text", msg.getContent());
-                parts.add(part);
-                contentMap.put("parts", parts);
-
-                contents.add(contentMap);
-            }
-            requestBody.put("contents", contents);
-            
-            String json = Config.getInstance().getMapper().writeValueAsString(requestBody);
-            logger.info("json = {}", json);
-            System.out.println(json);
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .header("Content-Type", "application/json")
-                    .header("Accept", "text/event-stream")
-                    .header("Authorization", "Bearer " + token)
-                    .header("User-Agent", USER_AGENT)
-                    .header("X-Goog-Api-Client", X_GOOG_API_CLIENT)
-                    .header("Client-Metadata", CLIENT_METADATA)
-                    .POST(java.net.http.HttpRequest.BodyPublishers.ofString(json))
-                    .build();
-            
-            java.net.http.HttpResponse<java.util.stream.Stream<String>> response = 
-                client.send(request, java.net.http.HttpResponse.BodyHandlers.ofLines());
-            
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                 StringBuilder fullText = new StringBuilder();
-                 response.body().forEach(line -> {
-                     String chunk = line.trim();
-                     if (chunk.startsWith("[")) chunk = chunk.substring(1);
-                     if (chunk.endsWith("]")) chunk = chunk.substring(0, chunk.length() - 1);
-                     if (chunk.endsWith(",")) chunk = chunk.substring(0, chunk.length() - 1);
-                     chunk = chunk.trim();
-                     
-                     if (!chunk.isEmpty()) {
-                         try {
-                             Map<String, Object> map = Config.getInstance().getMapper().readValue(chunk, Map.class);
-                             List<Map<String, Object>> candidates = (List<Map<String, Object>>) map.get("candidates");
-                             if (candidates != null && !candidates.isEmpty()) {
-                                 Map<String, Object> content = (Map<String, Object>) candidates.get(0).get("content");
-                                 if (content != null) {
-                                     List<Map<String, Object>> parts = (List<Map<String, Object>>) content.get("parts");
-                                     if (parts != null && !parts.isEmpty()) {
-                                         String text = (String) parts.get(0).get("text");
-                                         if (text != null) fullText.append(text);
-                                     }
-                                 }
-                             }
-                         } catch (Exception e) { }
-                     }
-                 });
-                 return fullText.toString();
-            } else {
-                 String errorBody = response.body().collect(java.util.stream.Collectors.joining("\n"));
-                 logger.error("Antigravity API Error: " + response.statusCode() + " " + errorBody);
-                 return "Error: " + response.statusCode() + " " + errorBody;
+        // 1. Fetch Project ID (needed for billing/quota)
+        return fetchProjectId(token).thenCompose(projectId -> {
+            try {
+                // 2. Construct Chat Request
+                String url = config.getUrl();
+
+                // Add metadata to body as seen in loadCodeAssist, possibly needed for chat too?
+                // openclaw sends it in loadCodeAssist body.
+                // For chat, we stick to Gemini structure but adding 'project' field might be key.
+                byte[] json = AntigravityRequestEncoder.encode(Config.getInstance().getMapper().getFactory(), model,
+                        projectId, messages);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("json = {}", new String(json, StandardCharsets.UTF_8));
+                }
+                java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
+                        .uri(URI.create(url))
+                        .header("Content-Type", "application/json")
+                        .header("Accept", "text/event-stream")
+                        .header("Authorization", "Bearer " + token)
+                        .header("User-Agent", USER_AGENT)
+                        .header("X-Goog-Api-Client", X_GOOG_API_CLIENT)
+                        .header("Client-Metadata", CLIENT_METADATA)
+                        .POST(java.net.http.HttpRequest.BodyPublishers.ofByteArray(json))
+                        .build();
+
+                ChatResponse completion = new ChatResponse();
+                completion.setModel(model);
+                return client.sendAsync(request, java.net.http.HttpResponse.BodyHandlers.ofByteArray())
+                        .thenApply(response -> readContent(response, completion));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
             }
+        });
+    }
 
-        } catch (Exception e) {
-            logger.error("Exception in Antigravity chat", e);
-            e.printStackTrace();
+    private static ChatResponse readContent(java.net.http.HttpResponse<byte[]> response, ChatResponse completion) {
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            String body = new String(response.body(), StandardCharsets.UTF_8);
+            logger.error("Antigravity API Error: " + response.statusCode() + " " + body);
+            throw new GenAiException(response.statusCode(), "Error: " + response.statusCode() + " " + body);
         }
-        return null;
+        // The response is a JSON array of Gemini style responses, the text of which is concatenated.
+        ObjectMapper mapper = Config.getInstance().getMapper();
+        StringBuilder fullText = new StringBuilder();
+        JsonArrayStreamDecoder.Handler handler = element -> {
+            AntigravityResponse chunk = mapper.readValue(element, AntigravityResponse.class);
+            chunk.copyMetadata(completion);
+            String text = chunk.firstText();
+            if (text != null) fullText.append(text);
+        };
+        try {
+            JsonArrayStreamDecoder decoder = new JsonArrayStreamDecoder(mapper.getFactory());
+            decoder.decode(ByteBuffer.wrap(response.body()), handler);
+            decoder.finish(handler);
+        } catch (IOException e) {
+            throw new GenAiException("Invalid Antigravity API response", e);
+        }
+        // the body is received as a whole, so the first token and the end arrive together
+        completion.setContent(fullText.toString());
+        completion.markComplete();
+        return completion;
     }
 
-    private String fetchProjectId(String token) {
+    private CompletableFuture<String> fetchProjectId(String token) {
         try {
             String loadUrl = "https://cloudcode-pa.googleapis.com/v1internal:loadCodeAssist";
             Map<String, Object> metadata = new HashMap<>();
@@ -154,21 +151,31 @@ public class AntigravityClient implements GenAiClient {
                     .POST(java.net.http.HttpRequest.BodyPublishers.ofString(json))
                     .build();
 
-            java.net.http.HttpResponse<String> response = client.send(request, java.net.http.HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 200) {
-                Map<String, Object> respMap = Config.getInstance().getMapper().readValue(response.body(), Map.class);
-                Object projObj = respMap.get("cloudaicompanionProject");
-                if (projObj instanceof Map) {
-                    return (String) ((Map) projObj).get("id");
-                } else if (projObj instanceof String) {
-                    return (String) projObj;
-                }
-            }
+            return client.sendAsync(request, java.net.http.HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> {
+                        if (response.statusCode() == 200) {
+                            try {
+                                Map<String, Object> respMap = Config.getInstance().getMapper().readValue(response.body(), Map.class);
+                                Object projObj = respMap.get("cloudaicompanionProject");
+                                if (projObj instanceof Map) {
+                                    return (String) ((Map) projObj).get("id");
+                                } else if (projObj instanceof String) {
+                                    return (String) projObj;
+                                }
+                            } catch (Exception e) {
+                                logger.warn("Failed to parse project ID", e);
+                            }
+                        }
+                        return (String) null;
+                    })
+                    .exceptionally(e -> {
+                        logger.warn("Failed to fetch project ID", e);
+                        return null;
+                    });
         } catch (Exception e) {
             logger.warn("Failed to fetch project ID", e);
+            return CompletableFuture.completedFuture(null);
         }
-        return null;
     }
 
     @Override
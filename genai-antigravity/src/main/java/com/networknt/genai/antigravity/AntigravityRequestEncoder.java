@@ -0,0 +1,69 @@
+package com.networknt.genai.antigravity;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.networknt.genai.ChatMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes Cloud Code chat requests, a Gemini contents list with the model and the project, with a
+ * JsonGenerator. The request is sent with the JDK HttpClient, so it is written into a byte array.
+ */
+final class AntigravityRequestEncoder {
+
+    private AntigravityRequestEncoder() {
+    }
+
+    static byte[] encode(JsonFactory factory, String model, String projectId, List<ChatMessage> messages)
+            throws IOException {
+        try (ByteArrayBuilder out = new ByteArrayBuilder();
+                JsonGenerator g = factory.createGenerator(out)) {
+            g.writeStartObject();
+            g.writeStringField("model", model);
+            if (projectId != null) {
+                g.writeStringField("project", projectId);
+            }
+            // Gemini takes the system messages, e.g. a history summary, as the system instruction
+            boolean system = false;
+            for (ChatMessage msg : messages) {
+                if ("system".equals(msg.getRole())) {
+                    if (!system) {
+                        system = true;
+                        g.writeObjectFieldStart("systemInstruction");
+                        g.writeArrayFieldStart("parts");
+                    }
+                    g.writeStartObject();
+                    g.writeStringField("text", msg.getContent());
+                    g.writeEndObject();
+                }
+            }
+            if (system) {
+                g.writeEndArray();
+                g.writeEndObject();
+            }
+            g.writeArrayFieldStart("contents");
+            for (ChatMessage msg : messages) {
+                if ("system".equals(msg.getRole())) {
+                    continue;
+                }
+                String role = msg.getRole();
+                if ("assistant".equals(role)) role = "model";
+                g.writeStartObject();
+                g.writeStringField("role", role);
+                g.writeArrayFieldStart("parts");
+                g.writeStartObject();
+                g.writeStringField("text", msg.getContent());
+                g.writeEndObject();
+                g.writeEndArray();
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+            g.flush();
+            return out.toByteArray();
+        }
+    }
+}
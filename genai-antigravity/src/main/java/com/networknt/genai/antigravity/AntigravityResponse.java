@@ -0,0 +1,142 @@
+package com.networknt.genai.antigravity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.networknt.genai.ChatResponse;
+
+import java.util.List;
+
+/**
+ * One element of the response array, which has the shape of a Gemini GenerateContentResponse. Only
+ * the candidate text, the finish reason and the usage are mapped; everything else is skipped.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+class AntigravityResponse {
+    private List<Candidate> candidates;
+    private UsageMetadata usageMetadata;
+    private String modelVersion;
+
+    public List<Candidate> getCandidates() {
+        return candidates;
+    }
+
+    public void setCandidates(List<Candidate> candidates) {
+        this.candidates = candidates;
+    }
+
+    public UsageMetadata getUsageMetadata() {
+        return usageMetadata;
+    }
+
+    public void setUsageMetadata(UsageMetadata usageMetadata) {
+        this.usageMetadata = usageMetadata;
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public void setModelVersion(String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
+
+    /**
+     * Copies the model, the finish reason and the usage carried by this element. The usage of each
+     * element covers the stream so far, so the last one wins.
+     */
+    void copyMetadata(ChatResponse response) {
+        if (modelVersion != null) {
+            response.setModel(modelVersion);
+        }
+        if (candidates != null && !candidates.isEmpty() && candidates.get(0).getFinishReason() != null) {
+            response.setFinishReason(candidates.get(0).getFinishReason());
+        }
+        if (usageMetadata != null) {
+            response.setPromptTokens(usageMetadata.getPromptTokenCount());
+            response.setCompletionTokens(usageMetadata.getCandidatesTokenCount());
+        }
+    }
+
+    /**
+     * @return The text of the first part of the first candidate.
+     */
+    String firstText() {
+        if (candidates == null || candidates.isEmpty()) {
+            return null;
+        }
+        Content content = candidates.get(0).getContent();
+        if (content == null || content.getParts() == null || content.getParts().isEmpty()) {
+            return null;
+        }
+        return content.getParts().get(0).getText();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Candidate {
+        private Content content;
+        private String finishReason;
+
+        public String getFinishReason() {
+            return finishReason;
+        }
+
+        public void setFinishReason(String finishReason) {
+            this.finishReason = finishReason;
+        }
+
+        public Content getContent() {
+            return content;
+        }
+
+        public void setContent(Content content) {
+            this.content = content;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Content {
+        private List<Part> parts;
+
+        public List<Part> getParts() {
+            return parts;
+        }
+
+        public void setParts(List<Part> parts) {
+            this.parts = parts;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Part {
+        private String text;
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class UsageMetadata {
+        private int promptTokenCount;
+        private int candidatesTokenCount;
+
+        public int getPromptTokenCount() {
+            return promptTokenCount;
+        }
+
+        public void setPromptTokenCount(int promptTokenCount) {
+            this.promptTokenCount = promptTokenCount;
+        }
+
+        public int getCandidatesTokenCount() {
+            return candidatesTokenCount;
+        }
+
+        public void setCandidatesTokenCount(int candidatesTokenCount) {
+            this.candidatesTokenCount = candidatesTokenCount;
+        }
+    }
+}
@@ -8,20 +8,28 @@ import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import com.networknt.genai.ChatResponse;
 import com.networknt.genai.GenAiClient;
+import com.networknt.genai.GenAiException;
 import com.networknt.genai.RequestOptions;
+import com.networknt.genai.StreamMetrics;
 
 public class BedrockClient implements GenAiClient {
     private static final Logger logger = LoggerFactory.getLogger(BedrockClient.class);
     private static final BedrockConfig config = BedrockConfig.load();
+    private static final String INVOCATION_LATENCY = "X-Amzn-Bedrock-Invocation-Latency";
     private final BedrockRuntimeAsyncClient client;
 
     public BedrockClient() {
-        this.client = BedrockRuntimeAsyncClient.builder()
+        software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClientBuilder builder = BedrockRuntimeAsyncClient.builder()
                 .region(Region.of(config.getRegion()))
-                .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
+                .credentialsProvider(DefaultCredentialsProvider.create());
+        if (config.getEndpoint() != null && !config.getEndpoint().isEmpty()) {
+            builder.endpointOverride(java.net.URI.create(config.getEndpoint()));
+        }
+        this.client = builder.build();
     }
 
     @Override
@@ -31,22 +39,74 @@ public class BedrockClient implements GenAiClient {
 
     @Override
     public String chat(java.util.List<com.networknt.genai.ChatMessage> messages, RequestOptions options) {
+        try {
+            return chatAsync(messages, options).join().getContent();
+        } catch (Exception e) {
+            logger.error("Exception invoking Bedrock API", e);
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(java.util.List<com.networknt.genai.ChatMessage> messages,
+            RequestOptions options) {
         // Defaulting to Claude 3 format since it's the most common Chat model on
         // Bedrock
         // Format: { "anthropic_version": "bedrock-2023-05-31", "messages": [...] }
         // For other models, we might need a Strategy/Factory pattern based on modelId
         try {
-            java.util.Map<String, Object> bodyMap = new java.util.HashMap<>();
-            bodyMap.put("anthropic_version", "bedrock-2023-05-31");
-            bodyMap.put("max_tokens", 1000);
-            bodyMap.put("messages", messages);
-
-            String jsonBody = com.networknt.config.Config.getInstance().getMapper().writeValueAsString(bodyMap);
-            String modelId = options.getModel() != null ? options.getModel() : config.getModelId();
-            return invokeModel(modelId, jsonBody);
-        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            byte[] jsonBody = BedrockRequestEncoder.encode(com.networknt.config.Config.getInstance().getMapper().getFactory(),
+                    options.getSystemPrompt(), messages, config.isPromptCaching());
+            InvokeModelRequest request = InvokeModelRequest.builder()
+                    .modelId(options.getModel() != null ? options.getModel() : config.getModelId())
+                    .body(SdkBytes.fromByteArrayUnsafe(jsonBody))
+                    .contentType("application/json")
+                    .build();
+            ChatResponse completion = new ChatResponse();
+            return client.invokeModel(request).handle((response, error) -> {
+                if (error != null) {
+                    throw translate(error);
+                }
+                return readContent(response, completion);
+            });
+        } catch (java.io.IOException e) {
             logger.error("Error creating Bedrock request body", e);
-            return null;
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Translates a service error such as a ThrottlingException into a {@link GenAiException} with its
+     * status code, so that callers can tell throttling apart like for the HTTP clients.
+     */
+    private static RuntimeException translate(Throwable error) {
+        Throwable t = error instanceof java.util.concurrent.CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        if (t instanceof software.amazon.awssdk.awscore.exception.AwsServiceException) {
+            software.amazon.awssdk.awscore.exception.AwsServiceException e = (software.amazon.awssdk.awscore.exception.AwsServiceException) t;
+            return new GenAiException(e.statusCode(), "Bedrock API error: " + e.statusCode() + " " + e.getMessage());
+        }
+        return t instanceof RuntimeException ? (RuntimeException) t : new java.util.concurrent.CompletionException(t);
+    }
+
+    private static ChatResponse readContent(InvokeModelResponse response, ChatResponse completion) {
+        try {
+            BedrockResponse body = com.networknt.config.Config.getInstance().getMapper()
+                    .readValue(response.body().asByteArrayUnsafe(), BedrockResponse.class);
+            body.copyMetadata(completion);
+            response.sdkHttpResponse().firstMatchingHeader(INVOCATION_LATENCY).ifPresent(ms -> {
+                try {
+                    completion.setServerLatencyNanos(
+                            java.util.concurrent.TimeUnit.MILLISECONDS.toNanos(Long.parseLong(ms)));
+                } catch (NumberFormatException e) {
+                    logger.debug("Invalid {} header {}", INVOCATION_LATENCY, ms);
+                }
+            });
+            completion.setContent(body.text());
+            completion.markComplete();
+            return completion;
+        } catch (java.io.IOException e) {
+            throw new GenAiException("Invalid Bedrock API response", e);
         }
     }
 
@@ -59,53 +119,41 @@ public class BedrockClient implements GenAiClient {
     @Override
     public void chatStream(java.util.List<com.networknt.genai.ChatMessage> messages,
             RequestOptions options,
-            com.networknt.genai.StreamCallback callback) {
+            com.networknt.genai.StreamCallback streamCallback) {
+        String modelId = options.getModel() != null ? options.getModel() : config.getModelId();
+        // the SDK pools the connections and writes the request, so only the response is timed
+        StreamMetrics metrics = StreamMetrics.start("bedrock", modelId, options.getAgent());
+        com.networknt.genai.StreamCallback callback = metrics.wrap(streamCallback);
         try {
-            java.util.Map<String, Object> bodyMap = new java.util.HashMap<>();
-            bodyMap.put("anthropic_version", "bedrock-2023-05-31");
-            bodyMap.put("max_tokens", 1000);
-            bodyMap.put("messages", messages);
+            byte[] jsonBody = BedrockRequestEncoder.encode(com.networknt.config.Config.getInstance().getMapper().getFactory(),
+                    options.getSystemPrompt(), messages, config.isPromptCaching());
 
-            String jsonBody = com.networknt.config.Config.getInstance().getMapper().writeValueAsString(bodyMap);
-
-            SdkBytes payload = SdkBytes.fromString(jsonBody, StandardCharsets.UTF_8);
+            SdkBytes payload = SdkBytes.fromByteArrayUnsafe(jsonBody);
             software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest request = software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest
                     .builder()
-                    .modelId(options.getModel() != null ? options.getModel() : config.getModelId())
+                    .modelId(modelId)
                     .body(payload)
                     .contentType("application/json")
                     .build();
 
-            client.invokeModelWithResponseStream(request,
+            ChatResponse completion = new ChatResponse();
+            completion.setModel(modelId);
+            BedrockStreamSubscriber subscriber = new BedrockStreamSubscriber(callback, completion);
+            callback.onOpen(subscriber);
+            CompletableFuture<Void> future = client.invokeModelWithResponseStream(request,
                     software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler
                             .builder()
-                            .onEventStream(publisher -> publisher.subscribe(event -> {
-                                if (event instanceof software.amazon.awssdk.services.bedrockruntime.model.PayloadPart) {
-                                    software.amazon.awssdk.services.bedrockruntime.model.PayloadPart part = (software.amazon.awssdk.services.bedrockruntime.model.PayloadPart) event;
-                                    String chunk = part.bytes().asUtf8String();
-                                    // Parse Bedrock partial JSON
-                                    try {
-                                        com.fasterxml.jackson.databind.JsonNode node = com.networknt.config.Config
-                                                .getInstance().getMapper().readTree(chunk);
-                                        if (node.has("delta") && node.get("delta").has("text")) {
-                                            String text = node.get("delta").get("text").asText();
-                                            if (text != null && !text.isEmpty()) {
-                                                callback.onEvent(text);
-                                            }
-                                        }
-                                    } catch (Exception e) {
-                                        // log or ignore
-                                    }
-                                }
-                            }))
-                            .onComplete(() -> callback.onComplete())
-                            .onError(e -> callback.onError(e))
-                            .build())
-                    .whenComplete((response, error) -> {
-                        if (error != null) {
-                            callback.onError(error);
-                        }
-                    });
+                            .onResponse(response -> metrics.responded())
+                            .onEventStream(publisher -> publisher.subscribe(subscriber))
+                            .onComplete(subscriber::onComplete)
+                            .onError(error -> subscriber.onError(translate(error)))
+                            .build());
+            future.whenComplete((response, error) -> {
+                if (error != null) {
+                    subscriber.onError(translate(error));
+                }
+            });
+            subscriber.setFuture(future);
 
         } catch (Exception e) {
             callback.onError(e);
@@ -1,6 +1,7 @@
 package com.networknt.genai.bedrock;
 
 import com.networknt.config.Config;
+import com.networknt.config.schema.BooleanField;
 import com.networknt.config.schema.ConfigSchema;
 import com.networknt.config.schema.OutputFormat;
 import com.networknt.config.schema.StringField;
@@ -14,6 +15,8 @@ public class BedrockConfig {
     public static final String CONFIG_NAME = "bedrock";
     private static final String REGION = "region";
     private static final String MODEL_ID = "modelId";
+    private static final String PROMPT_CACHING = "promptCaching";
+    private static final String ENDPOINT = "endpoint";
 
     @StringField(configFieldName = REGION, externalizedKeyName = REGION, description = "AWS Region")
     private String region;
@@ -21,6 +24,12 @@ public class BedrockConfig {
     @StringField(configFieldName = MODEL_ID, externalizedKeyName = MODEL_ID, description = "Model ID")
     private String modelId;
 
+    @BooleanField(configFieldName = PROMPT_CACHING, externalizedKeyName = PROMPT_CACHING, defaultValue = "true", description = "Set Anthropic cache_control breakpoints after the system prompt and on the last message, so that the prefix of the next turn is read from the prompt cache")
+    private boolean promptCaching = true;
+
+    @StringField(configFieldName = ENDPOINT, externalizedKeyName = ENDPOINT, description = "URL of a Bedrock runtime compatible endpoint that replaces the regional one, e.g. a mock server for load tests")
+    private String endpoint;
+
     private static volatile BedrockConfig instance;
     private final Map<String, Object> mappedConfig;
 
@@ -67,6 +76,14 @@ public class BedrockConfig {
             if (object != null) {
                 modelId = (String) object;
             }
+            object = mappedConfig.get(PROMPT_CACHING);
+            if (object != null) {
+                promptCaching = Boolean.parseBoolean(object.toString());
+            }
+            object = mappedConfig.get(ENDPOINT);
+            if (object != null) {
+                endpoint = (String) object;
+            }
         }
     }
 
@@ -85,4 +102,20 @@ public class BedrockConfig {
     public void setModelId(String modelId) {
         this.modelId = modelId;
     }
+
+    public boolean isPromptCaching() {
+        return promptCaching;
+    }
+
+    public void setPromptCaching(boolean promptCaching) {
+        this.promptCaching = promptCaching;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
 }
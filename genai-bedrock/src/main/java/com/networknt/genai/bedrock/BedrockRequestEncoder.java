@@ -0,0 +1,92 @@
+package com.networknt.genai.bedrock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.networknt.genai.ChatMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes Anthropic Claude messages requests with a JsonGenerator. The SDK takes the body as SdkBytes,
+ * so it is written into a ByteArrayBuilder, whose segments are copied once into the array returned,
+ * and that array is wrapped by SdkBytes without another copy.
+ *
+ * With caching, two cache_control breakpoints are set: one after the system blocks, the system prompt
+ * and any system message of the history such as a summary, which are the same on every turn, and one
+ * on the last message, so that the next turn reads the whole conversation so far from the cache.
+ * Prefixes shorter than the minimum of the model, 1024 tokens for most, are not cached.
+ */
+final class BedrockRequestEncoder {
+    private static final String ANTHROPIC_VERSION = "bedrock-2023-05-31";
+    private static final int MAX_TOKENS = 1000;
+
+    private BedrockRequestEncoder() {
+    }
+
+    static byte[] encode(JsonFactory factory, String systemPrompt, List<ChatMessage> messages, boolean cache)
+            throws IOException {
+        try (ByteArrayBuilder out = new ByteArrayBuilder();
+                JsonGenerator g = factory.createGenerator(out)) {
+            g.writeStartObject();
+            g.writeStringField("anthropic_version", ANTHROPIC_VERSION);
+            g.writeNumberField("max_tokens", MAX_TOKENS);
+            // Anthropic takes the system messages, e.g. a history summary, as a top-level field
+            int systemBlocks = systemPrompt != null ? 1 : 0;
+            int last = -1;
+            for (int i = 0; i < messages.size(); i++) {
+                if ("system".equals(messages.get(i).getRole())) {
+                    systemBlocks++;
+                } else {
+                    last = i;
+                }
+            }
+            if (systemBlocks > 0) {
+                g.writeArrayFieldStart("system");
+                if (systemPrompt != null) {
+                    writeText(g, systemPrompt, cache && --systemBlocks == 0);
+                }
+                for (ChatMessage msg : messages) {
+                    if ("system".equals(msg.getRole())) {
+                        writeText(g, msg.getContent(), cache && --systemBlocks == 0);
+                    }
+                }
+                g.writeEndArray();
+            }
+            g.writeArrayFieldStart("messages");
+            for (int i = 0; i < messages.size(); i++) {
+                ChatMessage msg = messages.get(i);
+                if ("system".equals(msg.getRole())) {
+                    continue;
+                }
+                g.writeStartObject();
+                g.writeStringField("role", msg.getRole());
+                if (cache && i == last) {
+                    g.writeArrayFieldStart("content");
+                    writeText(g, msg.getContent(), true);
+                    g.writeEndArray();
+                } else {
+                    g.writeStringField("content", msg.getContent());
+                }
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+            g.flush();
+            return out.toByteArray();
+        }
+    }
+
+    private static void writeText(JsonGenerator g, String text, boolean breakpoint) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("type", "text");
+        g.writeStringField("text", text);
+        if (breakpoint) {
+            g.writeObjectFieldStart("cache_control");
+            g.writeStringField("type", "ephemeral");
+            g.writeEndObject();
+        }
+        g.writeEndObject();
+    }
+}
@@ -0,0 +1,263 @@
+package com.networknt.genai.bedrock;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.networknt.genai.ChatResponse;
+
+import java.util.List;
+
+/**
+ * An Anthropic Claude messages response, or one chunk of a streamed response. Only the text, the
+ * stop reason, the usage and the invocation metrics Bedrock adds to the last chunk of a stream are
+ * mapped; everything else is skipped by the parser.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+class BedrockResponse {
+    private String model;
+    private List<Text> content;
+    private Text delta;
+    @JsonProperty("stop_reason")
+    private String stopReason;
+    private Usage usage;
+    private BedrockResponse message;
+    @JsonProperty("amazon-bedrock-invocationMetrics")
+    private InvocationMetrics invocationMetrics;
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public List<Text> getContent() {
+        return content;
+    }
+
+    public void setContent(List<Text> content) {
+        this.content = content;
+    }
+
+    public Text getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Text delta) {
+        this.delta = delta;
+    }
+
+    public String getStopReason() {
+        return stopReason;
+    }
+
+    public void setStopReason(String stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    public Usage getUsage() {
+        return usage;
+    }
+
+    public void setUsage(Usage usage) {
+        this.usage = usage;
+    }
+
+    /**
+     * @return The message of a message_start chunk.
+     */
+    public BedrockResponse getMessage() {
+        return message;
+    }
+
+    public void setMessage(BedrockResponse message) {
+        this.message = message;
+    }
+
+    public InvocationMetrics getInvocationMetrics() {
+        return invocationMetrics;
+    }
+
+    public void setInvocationMetrics(InvocationMetrics invocationMetrics) {
+        this.invocationMetrics = invocationMetrics;
+    }
+
+    /**
+     * @return The text of all content blocks concatenated.
+     */
+    String text() {
+        if (content == null) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder();
+        for (Text block : content) {
+            if (block.getText() != null) {
+                text.append(block.getText());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return The text of the delta of a streamed chunk.
+     */
+    String deltaText() {
+        return delta != null ? delta.getText() : null;
+    }
+
+    /**
+     * Copies the model, stop reason, usage and metrics carried by this response or chunk. In a stream
+     * they are spread over the message_start, message_delta and message_stop chunks.
+     */
+    void copyMetadata(ChatResponse response) {
+        if (message != null) {
+            message.copyMetadata(response);
+        }
+        if (model != null) {
+            response.setModel(model);
+        }
+        if (stopReason != null) {
+            response.setFinishReason(stopReason);
+        } else if (delta != null && delta.getStopReason() != null) {
+            response.setFinishReason(delta.getStopReason());
+        }
+        if (usage != null) {
+            // input_tokens only counts the tokens after the last cache breakpoint
+            int promptTokens = usage.getInputTokens() + usage.getCacheReadInputTokens()
+                    + usage.getCacheCreationInputTokens();
+            if (promptTokens > 0) {
+                response.setPromptTokens(promptTokens);
+                response.setCachedTokens(usage.getCacheReadInputTokens());
+            }
+            if (usage.getOutputTokens() > 0) {
+                response.setCompletionTokens(usage.getOutputTokens());
+            }
+        }
+        if (invocationMetrics != null) {
+            response.setPromptTokens(invocationMetrics.getInputTokenCount()
+                    + invocationMetrics.getCacheReadInputTokenCount() + invocationMetrics.getCacheWriteInputTokenCount());
+            response.setCachedTokens(invocationMetrics.getCacheReadInputTokenCount());
+            response.setCompletionTokens(invocationMetrics.getOutputTokenCount());
+            response.setServerLatencyNanos(invocationMetrics.getInvocationLatency() * 1_000_000L);
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Text {
+        private String text;
+        @JsonProperty("stop_reason")
+        private String stopReason;
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public String getStopReason() {
+            return stopReason;
+        }
+
+        public void setStopReason(String stopReason) {
+            this.stopReason = stopReason;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Usage {
+        @JsonProperty("input_tokens")
+        private int inputTokens;
+        @JsonProperty("output_tokens")
+        private int outputTokens;
+        @JsonProperty("cache_read_input_tokens")
+        private int cacheReadInputTokens;
+        @JsonProperty("cache_creation_input_tokens")
+        private int cacheCreationInputTokens;
+
+        public int getInputTokens() {
+            return inputTokens;
+        }
+
+        public void setInputTokens(int inputTokens) {
+            this.inputTokens = inputTokens;
+        }
+
+        public int getOutputTokens() {
+            return outputTokens;
+        }
+
+        public void setOutputTokens(int outputTokens) {
+            this.outputTokens = outputTokens;
+        }
+
+        public int getCacheReadInputTokens() {
+            return cacheReadInputTokens;
+        }
+
+        public void setCacheReadInputTokens(int cacheReadInputTokens) {
+            this.cacheReadInputTokens = cacheReadInputTokens;
+        }
+
+        public int getCacheCreationInputTokens() {
+            return cacheCreationInputTokens;
+        }
+
+        public void setCacheCreationInputTokens(int cacheCreationInputTokens) {
+            this.cacheCreationInputTokens = cacheCreationInputTokens;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class InvocationMetrics {
+        private int inputTokenCount;
+        private int outputTokenCount;
+        private int cacheReadInputTokenCount;
+        private int cacheWriteInputTokenCount;
+        private long invocationLatency;
+
+        public int getInputTokenCount() {
+            return inputTokenCount;
+        }
+
+        public void setInputTokenCount(int inputTokenCount) {
+            this.inputTokenCount = inputTokenCount;
+        }
+
+        public int getOutputTokenCount() {
+            return outputTokenCount;
+        }
+
+        public void setOutputTokenCount(int outputTokenCount) {
+            this.outputTokenCount = outputTokenCount;
+        }
+
+        public int getCacheReadInputTokenCount() {
+            return cacheReadInputTokenCount;
+        }
+
+        public void setCacheReadInputTokenCount(int cacheReadInputTokenCount) {
+            this.cacheReadInputTokenCount = cacheReadInputTokenCount;
+        }
+
+        public int getCacheWriteInputTokenCount() {
+            return cacheWriteInputTokenCount;
+        }
+
+        public void setCacheWriteInputTokenCount(int cacheWriteInputTokenCount) {
+            this.cacheWriteInputTokenCount = cacheWriteInputTokenCount;
+        }
+
+        /**
+         * @return The latency of the invocation in milliseconds.
+         */
+        public long getInvocationLatency() {
+            return invocationLatency;
+        }
+
+        public void setInvocationLatency(long invocationLatency) {
+            this.invocationLatency = invocationLatency;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.networknt.genai.bedrock;
+
+import com.networknt.config.Config;
+import com.networknt.genai.ChatResponse;
+import com.networknt.genai.StreamCallback;
+import com.networknt.genai.StreamControl;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.bedrockruntime.model.PayloadPart;
+import software.amazon.awssdk.services.bedrockruntime.model.ResponseStream;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Subscribes to the Bedrock response event stream one event at a time. The next event is requested
+ * only after the previous one has been handed to the callback and only while the stream is not paused,
+ * so the demand of the consumer is propagated to the SDK event stream.
+ */
+class BedrockStreamSubscriber implements Subscriber<ResponseStream>, StreamControl {
+    private static final Logger logger = LoggerFactory.getLogger(BedrockStreamSubscriber.class);
+
+    private final StreamCallback callback;
+    private final ChatResponse completion;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile Subscription subscription;
+    private volatile CompletableFuture<Void> future;
+    private volatile boolean paused;
+    private volatile boolean cancelled;
+
+    BedrockStreamSubscriber(StreamCallback callback, ChatResponse completion) {
+        this.callback = callback;
+        this.completion = completion;
+    }
+
+    void setFuture(CompletableFuture<Void> future) {
+        this.future = future;
+        if (cancelled) {
+            future.cancel(true);
+        }
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        subscription = s;
+        if (cancelled) {
+            s.cancel();
+            return;
+        }
+        pending.set(true);
+        requestNext();
+    }
+
+    @Override
+    public void onNext(ResponseStream event) {
+        if (event instanceof PayloadPart) {
+            PayloadPart part = (PayloadPart) event;
+            // Parse Bedrock partial JSON
+            try {
+                BedrockResponse chunk = Config.getInstance().getMapper()
+                        .readValue(part.bytes().asByteArrayUnsafe(), BedrockResponse.class);
+                chunk.copyMetadata(completion);
+                String text = chunk.deltaText();
+                if (text != null && !text.isEmpty() && !done.get()) {
+                    completion.markFirstToken();
+                    callback.onEvent(text);
+                }
+            } catch (Exception e) {
+                logger.debug("Ignoring unparsable Bedrock chunk", e);
+            }
+        }
+        pending.set(true);
+        requestNext();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (done.compareAndSet(false, true)) {
+            callback.onError(t);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (done.compareAndSet(false, true)) {
+            completion.markComplete();
+            callback.onComplete(completion);
+        }
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+        requestNext();
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        Subscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        }
+        CompletableFuture<Void> f = future;
+        if (f != null) {
+            f.cancel(true);
+        }
+        onError(new CancellationException("Stream cancelled"));
+    }
+
+    private void requestNext() {
+        Subscription s = subscription;
+        if (s != null && !paused && !cancelled && pending.compareAndSet(true, false)) {
+            s.request(1);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.networknt.genai.antigravity;
+
+import com.networknt.genai.benchmark.EncodeBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.io.IOException;
+
+/**
+ * The Antigravity body is sent with the JDK HttpClient as a byte array, so it is not pooled.
+ */
+public class AntigravityEncodeBenchmark extends EncodeBenchmark {
+    @Benchmark
+    public int encode() throws IOException {
+        return AntigravityRequestEncoder.encode(factory, "gemini-1.5-pro", "project-1", history).length;
+    }
+}
@@ -0,0 +1,16 @@
+package com.networknt.genai.bedrock;
+
+import com.networknt.genai.benchmark.EncodeBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.io.IOException;
+
+/**
+ * The Bedrock body is handed to the AWS SDK as a byte array, so it is not pooled.
+ */
+public class BedrockEncodeBenchmark extends EncodeBenchmark {
+    @Benchmark
+    public int encode() throws IOException {
+        return BedrockRequestEncoder.encode(factory, systemPrompt, history, true).length;
+    }
+}
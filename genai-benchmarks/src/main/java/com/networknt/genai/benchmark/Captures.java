@@ -0,0 +1,106 @@
+package com.networknt.genai.benchmark;
+
+import com.networknt.genai.ChatMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic provider responses shaped like the captures of real streams.
+ */
+final class Captures {
+    private static final String[] WORDS = {"The", " quick", " brown", " fox", " jumps", " over", " the",
+            " lazy", " dog", ".", " Ünïcödé", " 👋", "\\n"};
+
+    private Captures() {
+    }
+
+    /**
+     * @param chunks The number of content chunks.
+     * @return An OpenAI chat completion SSE stream terminated by [DONE].
+     */
+    static byte[] openAiStream(int chunks) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < chunks; i++) {
+            sb.append("data: {\"id\":\"chatcmpl-123\",\"object\":\"chat.completion.chunk\",\"created\":1694268190,")
+                    .append("\"model\":\"gpt-4o-mini\",\"system_fingerprint\":\"fp_44709d6fcb\",\"choices\":[{\"index\":0,")
+                    .append("\"delta\":{\"content\":\"").append(WORDS[i % WORDS.length])
+                    .append("\"},\"logprobs\":null,\"finish_reason\":null}]}\n\n");
+        }
+        sb.append("data: [DONE]\n\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param chunks The number of content chunks.
+     * @return An Ollama chat stream, newline delimited JSON ending with the done object and its metrics.
+     */
+    static byte[] ollamaStream(int chunks) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < chunks; i++) {
+            sb.append("{\"model\":\"llama3.1\",\"created_at\":\"2024-07-23T15:02:11.123456Z\",")
+                    .append("\"message\":{\"role\":\"assistant\",\"content\":\"").append(WORDS[i % WORDS.length])
+                    .append("\"},\"done\":false}\n");
+        }
+        sb.append("{\"model\":\"llama3.1\",\"created_at\":\"2024-07-23T15:02:16.123456Z\",")
+                .append("\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done_reason\":\"stop\",\"done\":true,")
+                .append("\"total_duration\":4883583458,\"load_duration\":1334875,\"prompt_eval_count\":26,")
+                .append("\"prompt_eval_duration\":342546000,\"eval_count\":").append(chunks)
+                .append(",\"eval_duration\":4535599000}\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param chunks The number of content chunks.
+     * @return A Gemini streamGenerateContent response, a JSON array with the usage on the last element.
+     */
+    static byte[] geminiStream(int chunks) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < chunks; i++) {
+            if (i > 0) {
+                sb.append(",\r\n");
+            }
+            sb.append("{\"candidates\": [{\"content\": {\"parts\": [{\"text\": \"").append(WORDS[i % WORDS.length])
+                    .append("\"}],\"role\": \"model\"},\"index\": 0}]");
+            if (i == chunks - 1) {
+                sb.append(",\"usageMetadata\": {\"promptTokenCount\": 26,\"candidatesTokenCount\": ").append(chunks)
+                        .append(",\"totalTokenCount\": ").append(26 + chunks).append("}");
+            }
+            sb.append(",\"modelVersion\": \"gemini-1.5-flash\"}");
+        }
+        sb.append("]");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param messages The number of messages.
+     * @return A history of questions and longer answers, with quotes and non-ASCII text to escape.
+     */
+    static List<ChatMessage> history(int messages) {
+        String answer = prose(600);
+        List<ChatMessage> history = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            history.add(i % 2 == 0
+                    ? new ChatMessage("user", "Question " + i + ": what does \"" + answer.substring(0, 80) + "\" mean?")
+                    : new ChatMessage("assistant", answer));
+        }
+        return history;
+    }
+
+    /**
+     * @param chars The approximate length of the text.
+     * @return A prompt-like text mixing prose, numbers, code and a little non-ASCII text.
+     */
+    static String prose(int chars) {
+        String paragraph = "The quarterly report shows revenue of $4,218,903 up 12.5% year over year, while "
+                + "operating costs fell to 1,024 units. Please summarize the findings for the board and "
+                + "list the three biggest risks.\n\nfor (int i = 0; i < items.size(); i++) { total += items.get(i); }\n"
+                + "Customers in Zürich and Montréal asked about délais de livraison 👋 — see ticket #8812.\n";
+        StringBuilder sb = new StringBuilder(chars + paragraph.length());
+        while (sb.length() < chars) {
+            sb.append(paragraph);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package com.networknt.genai.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.genai.ChatMessage;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.server.DefaultByteBufferPool;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The encoding of the request body of a history of {@link #messages} messages. The encoders of the
+ * providers are package private, so each provider has a subclass in its own package, e.g.
+ * OpenAiEncodeBenchmark. The pooled encoders write into direct buffers of the pool that are returned
+ * when the body is closed, as after the request has been written.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public abstract class EncodeBenchmark {
+    @Param({"10", "100", "1000"})
+    public int messages;
+
+    protected JsonFactory factory;
+    protected ByteBufferPool pool;
+    protected String systemPrompt;
+    protected List<ChatMessage> history;
+
+    @Setup
+    public void setup() {
+        factory = new ObjectMapper().getFactory();
+        pool = new DefaultByteBufferPool(true, 16 * 1024);
+        systemPrompt = "You are a helpful assistant. " + Captures.prose(2000);
+        history = Captures.history(messages);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+}
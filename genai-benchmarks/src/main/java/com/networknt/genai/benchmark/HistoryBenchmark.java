@@ -0,0 +1,86 @@
+package com.networknt.genai.benchmark;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.handler.InMemoryChatHistoryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The copy of a session history by {@link InMemoryChatHistoryRepository#getHistory(String)}, alone and
+ * with three readers contending for the session with a writer that appends to it, as when several
+ * requests of a session are handled at once. The writer lets the history grow to twice its size before
+ * resetting it, so the readers copy between one and two times {@link #messages} messages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class HistoryBenchmark {
+    private static final String SESSION = "session";
+
+    @Param({"10", "100", "1000"})
+    public int messages;
+
+    private InMemoryChatHistoryRepository repository;
+    private List<ChatMessage> seed;
+    private ChatMessage reply;
+    private int appended;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        seed = Captures.history(messages);
+        reply = new ChatMessage("assistant", "Noted.");
+        repository = new InMemoryChatHistoryRepository();
+        reset();
+    }
+
+    private void reset() {
+        repository.clearHistory(SESSION);
+        for (ChatMessage message : seed) {
+            repository.addMessage(SESSION, message);
+        }
+        appended = 0;
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public List<ChatMessage> getHistory() {
+        return repository.getHistory(SESSION);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public List<ChatMessage> read() {
+        return repository.getHistory(SESSION);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void append() {
+        // only the writer thread touches the counter
+        if (++appended > messages) {
+            reset();
+        } else {
+            repository.addMessage(SESSION, reply);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.networknt.genai.benchmark;
+
+import com.networknt.genai.ServerSentEventDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-read String splitting that the OpenAI client used to do with the pooled buffer
+ * {@link ServerSentEventDecoder}. Run with {@code -prof gc} to compare the allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SseDecodeBenchmark {
+    @Param({"1024", "16384"})
+    public int readSize;
+
+    private byte[] stream;
+    private ByteBuffer pooled;
+    private ServerSentEventDecoder decoder;
+
+    @Setup
+    public void setup() {
+        stream = Captures.openAiStream(500);
+        pooled = ByteBuffer.allocateDirect(readSize);
+        decoder = new ServerSentEventDecoder();
+    }
+
+    @Benchmark
+    public void stringSplit(Blackhole bh) {
+        for (int offset = 0; offset < stream.length; offset += readSize) {
+            int read = Math.min(readSize, stream.length - offset);
+            ByteBuffer buffer = ByteBuffer.allocate(1024 > read ? 1024 : read);
+            buffer.put(stream, offset, read);
+            buffer.flip();
+            String chunk = new String(buffer.array(), 0, read, StandardCharsets.UTF_8);
+            for (String line : chunk.split("\n")) {
+                line = line.trim();
+                if (line.startsWith("data: ")) {
+                    bh.consume(line.substring(6).trim());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void sseDecoder(Blackhole bh) throws IOException {
+        decoder.reset();
+        ServerSentEventDecoder.Handler handler = (data, off, length) -> bh.consume(length);
+        for (int offset = 0; offset < stream.length; offset += readSize) {
+            int read = Math.min(readSize, stream.length - offset);
+            pooled.clear();
+            pooled.put(stream, offset, read);
+            pooled.flip();
+            decoder.decode(pooled, handler);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.networknt.genai.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.genai.JsonArrayStreamDecoder;
+import com.networknt.genai.ServerSentEventDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a whole 500 chunk stream in each of the formats of the providers: the OpenAI server-sent
+ * events, the Ollama newline delimited JSON and the Gemini JSON array. The capture is fed in reads of
+ * {@link #readSize} bytes through a reused buffer as the IO thread does, and every chunk is parsed to
+ * its JSON tokens, so the formats can be compared with each other.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamDecodeBenchmark {
+    @Param({"sse", "ndjson", "json-array"})
+    public String format;
+
+    @Param({"1024", "16384"})
+    public int readSize;
+
+    private byte[] stream;
+    private ByteBuffer pooled;
+    private JsonFactory factory;
+    private int tokens;
+    private final ServerSentEventDecoder.Handler eventHandler = this::onEvent;
+    private final JsonArrayStreamDecoder.Handler elementHandler = this::onElement;
+
+    @Setup
+    public void setup() {
+        switch (format) {
+            case "sse":
+                stream = Captures.openAiStream(500);
+                break;
+            case "ndjson":
+                stream = Captures.ollamaStream(500);
+                break;
+            default:
+                stream = Captures.geminiStream(500);
+        }
+        pooled = ByteBuffer.allocateDirect(readSize);
+        factory = new ObjectMapper().getFactory();
+    }
+
+    @Benchmark
+    public int decode() throws IOException {
+        tokens = 0;
+        if ("sse".equals(format)) {
+            ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+            for (int offset = 0; offset < stream.length; offset += readSize) {
+                decoder.decode(read(offset), eventHandler);
+            }
+        } else {
+            JsonArrayStreamDecoder decoder = new JsonArrayStreamDecoder(factory);
+            for (int offset = 0; offset < stream.length; offset += readSize) {
+                decoder.decode(read(offset), elementHandler);
+            }
+            decoder.finish(elementHandler);
+        }
+        return tokens;
+    }
+
+    private ByteBuffer read(int offset) {
+        pooled.clear();
+        pooled.put(stream, offset, Math.min(readSize, stream.length - offset));
+        pooled.flip();
+        return pooled;
+    }
+
+    private void onEvent(byte[] data, int offset, int length) throws IOException {
+        if (data[offset] != '{') {
+            // [DONE]
+            return;
+        }
+        try (JsonParser parser = factory.createParser(data, offset, length)) {
+            onElement(parser);
+        }
+    }
+
+    private void onElement(JsonParser element) throws IOException {
+        while (element.nextToken() != null) {
+            tokens++;
+        }
+    }
+}
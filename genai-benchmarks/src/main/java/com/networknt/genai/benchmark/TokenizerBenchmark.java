@@ -0,0 +1,118 @@
+package com.networknt.genai.benchmark;
+
+import com.networknt.genai.tokenizer.BpeTokenizer;
+import com.networknt.genai.tokenizer.Encoding;
+import com.networknt.genai.tokenizer.EstimatingTokenCounter;
+import com.networknt.genai.tokenizer.TokenBuffer;
+import com.networknt.genai.tokenizer.Vocabulary;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+/**
+ * Token counting throughput of the {@link BpeTokenizer}, reported per operation and, through the
+ * bytes counter, as bytes of UTF-8 text per second. Pass a real vocabulary with
+ * {@code -p vocabulary=/path/to/cl100k_base.tiktoken}; without one a vocabulary is derived from the
+ * text, every prefix of every piece being a token, which makes most pieces whole tokens like a real
+ * vocabulary does for English. Run with {@code -prof gc} to check that counting does not allocate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizerBenchmark {
+    @Param({""})
+    public String vocabulary;
+
+    @Param({"1024", "65536"})
+    public int length;
+
+    private String text;
+    private int bytes;
+    private BpeTokenizer tokenizer;
+    private EstimatingTokenCounter estimate;
+    private TokenBuffer tokens;
+
+    /**
+     * The UTF-8 bytes processed, which JMH reports as a rate next to the operations.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        text = Captures.prose(length);
+        bytes = text.getBytes(StandardCharsets.UTF_8).length;
+        Vocabulary v = vocabulary.isEmpty() ? derive(text) : Vocabulary.load(Paths.get(vocabulary));
+        tokenizer = new BpeTokenizer(Encoding.CL100K_BASE, v);
+        estimate = new EstimatingTokenCounter(4);
+        tokens = new TokenBuffer(length);
+    }
+
+    private static Vocabulary derive(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        Matcher matcher = Encoding.CL100K_BASE.getPattern().matcher(text);
+        while (matcher.find()) {
+            byte[] piece = matcher.group().getBytes(StandardCharsets.UTF_8);
+            for (int end = 2; end <= piece.length; end++) {
+                tokens.add(new String(piece, 0, end, StandardCharsets.ISO_8859_1));
+            }
+        }
+        byte[][] vocabulary = new byte[256 + tokens.size()][];
+        for (int b = 0; b < 256; b++) {
+            vocabulary[b] = new byte[] {(byte) b};
+        }
+        int i = 256;
+        for (String token : tokens) {
+            vocabulary[i++] = token.getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return Vocabulary.of(vocabulary);
+    }
+
+    @Benchmark
+    public int count(Bytes counter) {
+        counter.bytes += bytes;
+        return tokenizer.count(text);
+    }
+
+    @Benchmark
+    public int encode(Bytes counter) {
+        counter.bytes += bytes;
+        tokens.clear();
+        return tokenizer.encode(text, tokens);
+    }
+
+    @Benchmark
+    public int estimate(Bytes counter) {
+        counter.bytes += bytes;
+        return estimate.count(text);
+    }
+}
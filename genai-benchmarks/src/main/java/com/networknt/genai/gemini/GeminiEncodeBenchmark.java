@@ -0,0 +1,16 @@
+package com.networknt.genai.gemini;
+
+import com.networknt.genai.RequestBody;
+import com.networknt.genai.benchmark.EncodeBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.io.IOException;
+
+public class GeminiEncodeBenchmark extends EncodeBenchmark {
+    @Benchmark
+    public long encode() throws IOException {
+        try (RequestBody body = GeminiRequestEncoder.encode(factory, pool, systemPrompt, null, history)) {
+            return body.remaining();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.networknt.genai.handler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The buffering of the chunks of a 500 chunk completion into the WebSocket text frames, a frame being
+ * flushed every {@link #lineChunks} chunks. Compares the copy of the whole buffer on every chunk that
+ * the handler used to make with the {@link ChunkBuffer} and its default flush policy, which also flushes
+ * at sentence ends and every 256 bytes. Sending the frames is not included.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChunkBufferBenchmark {
+    private static final String[] WORDS = {"The", " quick", " brown", " fox", " jumps", " over", " the",
+            " lazy", " dog", ".", " Ünïcödé", " 👋"};
+
+    @Param({"10", "100"})
+    public int lineChunks;
+
+    private String[] chunks;
+
+    @Setup
+    public void setup() {
+        chunks = new String[500];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = (i + 1) % lineChunks == 0 ? ".\n" : WORDS[i % WORDS.length];
+        }
+    }
+
+    @Benchmark
+    public void copyPerChunk(Blackhole bh) {
+        StringBuilder buffer = new StringBuilder();
+        for (String content : chunks) {
+            buffer.append(content);
+            if (buffer.toString().contains("\n")) {
+                bh.consume(buffer.toString());
+                buffer.setLength(0);
+            }
+        }
+        if (buffer.length() > 0) {
+            bh.consume(buffer.toString());
+        }
+    }
+
+    @Benchmark
+    public void chunkBuffer(Blackhole bh) {
+        ChunkBuffer buffer = new ChunkBuffer(256, true);
+        for (String content : chunks) {
+            String text = buffer.append(content);
+            if (text != null) {
+                bh.consume(text);
+            }
+        }
+        bh.consume(buffer.drain());
+    }
+}
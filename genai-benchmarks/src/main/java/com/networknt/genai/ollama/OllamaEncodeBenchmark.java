@@ -0,0 +1,16 @@
+package com.networknt.genai.ollama;
+
+import com.networknt.genai.RequestBody;
+import com.networknt.genai.benchmark.EncodeBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.io.IOException;
+
+public class OllamaEncodeBenchmark extends EncodeBenchmark {
+    @Benchmark
+    public long encode() throws IOException {
+        try (RequestBody body = OllamaRequestEncoder.encode(factory, pool, "llama3.1", history, true)) {
+            return body.remaining();
+        }
+    }
+}
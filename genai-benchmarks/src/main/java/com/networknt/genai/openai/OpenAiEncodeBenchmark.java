@@ -0,0 +1,16 @@
+package com.networknt.genai.openai;
+
+import com.networknt.genai.RequestBody;
+import com.networknt.genai.benchmark.EncodeBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.io.IOException;
+
+public class OpenAiEncodeBenchmark extends EncodeBenchmark {
+    @Benchmark
+    public long encode() throws IOException {
+        try (RequestBody body = OpenAiRequestEncoder.encode(factory, pool, "gpt-4o-mini", systemPrompt, history, true)) {
+            return body.remaining();
+        }
+    }
+}
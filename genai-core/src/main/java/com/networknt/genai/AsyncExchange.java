@@ -0,0 +1,308 @@
+package com.networknt.genai;
+
+import io.undertow.client.ClientCallback;
+import io.undertow.client.ClientConnection;
+import io.undertow.client.ClientExchange;
+import io.undertow.client.ClientRequest;
+import io.undertow.client.ClientResponse;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.util.AttachmentKey;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.XnioIoThread;
+import org.xnio.channels.StreamSinkChannel;
+import org.xnio.channels.StreamSourceChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking request/response exchange on top of an Undertow {@link ClientConnection}. The request
+ * body is written and the response body is read on the connection's XNIO IO thread, so the caller
+ * never parks a worker thread while the provider is generating.
+ *
+ * The exchange is also the {@link StreamControl} of a stream: pausing suspends reads on the response
+ * channel and cancelling closes it, so a slow consumer never forces the body to be buffered.
+ */
+public class AsyncExchange implements StreamControl {
+    public static final AttachmentKey<byte[]> RESPONSE_BODY = AttachmentKey.create(byte[].class);
+
+    private final ClientConnection connection;
+    private final ClientRequest request;
+    private final RequestBody body;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile ResponseListener listener;
+    private volatile StreamSourceChannel channel;
+    private volatile boolean paused;
+    private volatile boolean cancelled;
+
+    public AsyncExchange(ClientConnection connection, ClientRequest request, ByteBuffer body) {
+        this(connection, request, RequestBody.wrap(body));
+    }
+
+    /**
+     * @param connection The borrowed connection.
+     * @param request The request with path and headers set.
+     * @param body The request body, which is closed once it has been written or the exchange fails.
+     */
+    public AsyncExchange(ClientConnection connection, ClientRequest request, RequestBody body) {
+        this.connection = connection;
+        this.request = request;
+        this.body = body;
+    }
+
+    /**
+     * Sends the request and buffers the whole response body.
+     *
+     * @param connection The borrowed connection.
+     * @param request The request with path and headers set.
+     * @param body The request body.
+     * @return A future completed with the response, with the body bytes in {@link #RESPONSE_BODY}.
+     */
+    public static CompletableFuture<ClientResponse> send(ClientConnection connection, ClientRequest request, ByteBuffer body) {
+        return send(connection, request, RequestBody.wrap(body));
+    }
+
+    /**
+     * Sends the request and buffers the whole response body.
+     *
+     * @param connection The borrowed connection.
+     * @param request The request with path and headers set.
+     * @param body The request body, which is closed once it has been written or the exchange fails.
+     * @return A future completed with the response, with the body bytes in {@link #RESPONSE_BODY}.
+     */
+    public static CompletableFuture<ClientResponse> send(ClientConnection connection, ClientRequest request, RequestBody body) {
+        CompletableFuture<ClientResponse> future = new CompletableFuture<>();
+        new AsyncExchange(connection, request, body).start(new ResponseListener() {
+            private ClientResponse response;
+            private byte[] bytes = new byte[1024];
+            private int length;
+
+            @Override
+            public void onResponse(ClientResponse response) {
+                this.response = response;
+            }
+
+            @Override
+            public void onData(ByteBuffer data) {
+                int n = data.remaining();
+                if (length + n > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, length + n));
+                }
+                data.get(bytes, length, n);
+                length += n;
+            }
+
+            @Override
+            public void onComplete() {
+                response.putAttachment(RESPONSE_BODY, Arrays.copyOf(bytes, length));
+                future.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sends the request and passes the response to the listener as it is read. Exactly one of
+     * {@link ResponseListener#onComplete()} or {@link ResponseListener#onError(Throwable)} is called,
+     * a {@link CancellationException} being reported if the exchange is cancelled.
+     *
+     * @param listener The listener to receive the response.
+     */
+    public void start(ResponseListener listener) {
+        this.listener = listener;
+        if (cancelled) {
+            fail(new CancellationException("Exchange cancelled"));
+            return;
+        }
+        connection.sendRequest(request, new ClientCallback<ClientExchange>() {
+            @Override
+            public void completed(ClientExchange exchange) {
+                exchange.setResponseListener(new ClientCallback<ClientExchange>() {
+                    @Override
+                    public void completed(ClientExchange result) {
+                        StreamSourceChannel ch = result.getResponseChannel();
+                        try {
+                            if (!done.get()) listener.onResponse(result.getResponse());
+                        } catch (Throwable t) {
+                            IoUtils.safeClose(ch);
+                            fail(t);
+                            return;
+                        }
+                        ch.getReadSetter().set(c -> readAvailable());
+                        channel = ch;
+                        if (cancelled) {
+                            abort();
+                        } else {
+                            readAvailable();
+                        }
+                    }
+
+                    @Override
+                    public void failed(IOException e) {
+                        fail(e);
+                    }
+                });
+                write(exchange.getRequestChannel());
+            }
+
+            @Override
+            public void failed(IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+        StreamSourceChannel ch = channel;
+        if (ch != null) {
+            runOnIoThread(ch.getIoThread(), ch::suspendReads);
+        }
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+        StreamSourceChannel ch = channel;
+        if (ch != null) {
+            runOnIoThread(ch.getIoThread(), this::readAvailable);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        // Before the response arrives a multiplexed connection has no stream channel to reset yet, so
+        // the cancellation is applied when the response callback sees the flag.
+        if (listener != null && (channel != null || !connection.isMultiplexingSupported())) {
+            runOnIoThread(connection.getIoThread(), this::abort);
+        }
+    }
+
+    private void abort() {
+        if (done.get()) {
+            // the response has been read and the connection may already be back in the pool
+            return;
+        }
+        // An HTTP/1.1 response cannot be abandoned half way without draining it, so the connection
+        // is closed. On a multiplexed connection closing the stream channel resets only this stream.
+        if (connection.isMultiplexingSupported()) {
+            IoUtils.safeClose(channel);
+        } else {
+            IoUtils.safeClose(connection);
+        }
+        fail(new CancellationException("Exchange cancelled"));
+    }
+
+    private void write(StreamSinkChannel requestChannel) {
+        ChannelListener<StreamSinkChannel> writer = new ChannelListener<StreamSinkChannel>() {
+            private boolean written;
+            private boolean flushed;
+
+            @Override
+            public void handleEvent(StreamSinkChannel ch) {
+                if (done.get()) {
+                    // the body has been returned to the pool
+                    ch.suspendWrites();
+                    return;
+                }
+                try {
+                    if (!written) {
+                        ByteBuffer[] buffers = body.getBuffers();
+                        while (body.remaining() > 0) {
+                            if (ch.write(buffers) == 0) {
+                                ch.resumeWrites();
+                                return;
+                            }
+                        }
+                        written = true;
+                        body.close();
+                        ch.shutdownWrites();
+                    }
+                    if (!ch.flush()) {
+                        ch.resumeWrites();
+                        return;
+                    }
+                    ch.suspendWrites();
+                    if (!flushed) {
+                        flushed = true;
+                        listener.onRequestWritten();
+                    }
+                } catch (IOException e) {
+                    IoUtils.safeClose(ch);
+                    fail(e);
+                }
+            }
+        };
+        requestChannel.getWriteSetter().set(writer);
+        writer.handleEvent(requestChannel);
+    }
+
+    /**
+     * Reads everything currently available from the response channel. Always runs on the IO thread.
+     */
+    private void readAvailable() {
+        StreamSourceChannel ch = channel;
+        if (ch == null || done.get()) {
+            return;
+        }
+        try (PooledByteBuffer pooled = connection.getBufferPool().allocate()) {
+            ByteBuffer buffer = pooled.getBuffer();
+            while (!paused) {
+                buffer.clear();
+                int read = ch.read(buffer);
+                if (read == 0) {
+                    ch.resumeReads();
+                    return;
+                }
+                if (read == -1) {
+                    IoUtils.safeClose(ch);
+                    if (done.compareAndSet(false, true)) {
+                        body.close();
+                        listener.onComplete();
+                    }
+                    return;
+                }
+                buffer.flip();
+                listener.onData(buffer);
+                if (done.get()) {
+                    return;
+                }
+            }
+            ch.suspendReads();
+        } catch (Throwable t) {
+            IoUtils.safeClose(ch);
+            fail(t);
+        }
+    }
+
+    /**
+     * Reports the first failure of the exchange, as a write error and a response error can both be
+     * raised for the same request.
+     */
+    private void fail(Throwable t) {
+        body.close();
+        if (done.compareAndSet(false, true)) {
+            listener.onError(t);
+        }
+    }
+
+    private static void runOnIoThread(XnioIoThread ioThread, Runnable task) {
+        if (Thread.currentThread() == ioThread) {
+            task.run();
+        } else {
+            ioThread.execute(task);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.networknt.genai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link GenAiClient} decorator that answers repeated requests from memory. A request is keyed on
+ * a 128-bit hash of its model, system prompt, temperature and messages, so two requests share an
+ * entry only when the provider would see exactly the same input.
+ *
+ * The cache is bounded by the number of entries and evicts the least recently used one. Entries
+ * expire after a time to live that a request can override with
+ * {@link RequestOptions#setCacheTtlSeconds(Integer)}, 0 disabling the cache for that request.
+ * Streamed answers are recorded chunk by chunk and, when replayChunks is enabled, replayed through
+ * the {@link StreamCallback} with the original chunking, honouring {@link StreamControl#pause()}.
+ *
+ * The decorator can be registered in service.yml, in which case the delegate is given by its class, or
+ * by a chain of classes as described in {@link DelegatingGenAiClient}:
+ *
+ * <pre>
+ * - com.networknt.genai.GenAiClient:
+ *   - com.networknt.genai.CachingGenAiClient:
+ *       delegateClass: com.networknt.genai.openai.OpenAiClient
+ *       maximumSize: 10000
+ *       ttlSeconds: 3600
+ *       replayChunks: true
+ * </pre>
+ */
+public class CachingGenAiClient extends DelegatingGenAiClient {
+    private static final Logger logger = LoggerFactory.getLogger(CachingGenAiClient.class);
+    /**
+     * The number of responses kept by default.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+    /**
+     * How long a response is kept by default, in seconds.
+     */
+    public static final long DEFAULT_TTL_SECONDS = 3600;
+
+    private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private long ttlSeconds = DEFAULT_TTL_SECONDS;
+    private boolean replayChunks = true;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LinkedHashMap<RequestKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<RequestKey, Entry> eldest) {
+            return size() > maximumSize;
+        }
+    };
+
+    /**
+     * Used by SingletonServiceFactory, which then sets the delegate with {@link #setDelegateClass(String)}.
+     */
+    public CachingGenAiClient() {
+    }
+
+    /**
+     * @param delegate The decorated client.
+     */
+    public CachingGenAiClient(GenAiClient delegate) {
+        super(delegate);
+    }
+
+    /**
+     * @param delegate The decorated client.
+     * @param maximumSize The number of responses kept, the least recently used is evicted first.
+     * @param ttlSeconds How long a response is kept, 0 to disable caching.
+     */
+    public CachingGenAiClient(GenAiClient delegate, int maximumSize, long ttlSeconds) {
+        super(delegate);
+        this.maximumSize = maximumSize;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * @return The number of responses kept.
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @param maximumSize The number of responses kept, the least recently used is evicted first.
+     */
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @return How long a response is kept, in seconds.
+     */
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    /**
+     * @param ttlSeconds How long a response is kept, 0 to disable caching.
+     */
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * @return Whether a cached stream is replayed with its original chunks.
+     */
+    public boolean isReplayChunks() {
+        return replayChunks;
+    }
+
+    /**
+     * @param replayChunks Whether a cached stream is replayed with its original chunks rather than as
+     *        a single chunk.
+     */
+    public void setReplayChunks(boolean replayChunks) {
+        this.replayChunks = replayChunks;
+    }
+
+    /**
+     * @return The number of requests answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of requests sent to the delegate.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of responses kept.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Discards all the responses kept.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages) {
+        return chat(messages, null);
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, RequestOptions options) {
+        long ttl = ttlNanos(options);
+        RequestKey key = ttl > 0 ? RequestKey.of(messages, options) : null;
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return entry.content;
+        }
+        String content = options != null ? delegate().chat(messages, options) : delegate().chat(messages);
+        if (key != null && content != null) {
+            store(key, new Entry(content, null, null, ttl));
+        }
+        return content;
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+        long ttl = ttlNanos(options);
+        RequestKey key = ttl > 0 ? RequestKey.of(messages, options) : null;
+        Entry entry = lookup(key);
+        if (entry != null) {
+            ChatResponse response = entry.response();
+            response.setContent(entry.content);
+            response.markComplete();
+            return CompletableFuture.completedFuture(response);
+        }
+        CompletableFuture<ChatResponse> future = delegate().chatAsync(messages, options);
+        if (key == null) {
+            return future;
+        }
+        return future.whenComplete((response, error) -> {
+            if (error == null && response != null && response.getContent() != null) {
+                store(key, new Entry(response.getContent(), null, response, ttl));
+            }
+        });
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+        chatStream(messages, null, callback);
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+        long ttl = ttlNanos(options);
+        RequestKey key = ttl > 0 ? RequestKey.of(messages, options) : null;
+        Entry entry = lookup(key);
+        if (entry != null) {
+            String[] chunks = replayChunks && entry.chunks != null ? entry.chunks : new String[] { entry.content };
+            Replay replay = new Replay(chunks, entry.response(), callback);
+            callback.onOpen(replay);
+            replay.run();
+            return;
+        }
+        StreamCallback target = key != null ? new RecordingCallback(key, ttl, callback) : callback;
+        if (options != null) {
+            delegate().chatStream(messages, options, target);
+        } else {
+            delegate().chatStream(messages, target);
+        }
+    }
+
+    private long ttlNanos(RequestOptions options) {
+        Integer override = options != null ? options.getCacheTtlSeconds() : null;
+        return TimeUnit.SECONDS.toNanos(override != null ? override : ttlSeconds);
+    }
+
+    private Entry lookup(RequestKey key) {
+        if (key == null) {
+            return null;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            hits.increment();
+            logger.debug("Cache hit {}", key);
+        } else {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    private void store(RequestKey key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private static final class Entry {
+        private final String content;
+        private final String[] chunks;
+        private final String model;
+        private final String finishReason;
+        private final int promptTokens;
+        private final int completionTokens;
+        private final long expiresAt;
+
+        Entry(String content, String[] chunks, ChatResponse response, long ttlNanos) {
+            this.content = content;
+            this.chunks = chunks;
+            this.model = response != null ? response.getModel() : null;
+            this.finishReason = response != null ? response.getFinishReason() : null;
+            this.promptTokens = response != null ? response.getPromptTokens() : 0;
+            this.completionTokens = response != null ? response.getCompletionTokens() : 0;
+            this.expiresAt = System.nanoTime() + ttlNanos;
+        }
+
+        /**
+         * @return A new response with the metadata of the cached one and timings that start now.
+         */
+        ChatResponse response() {
+            ChatResponse response = new ChatResponse();
+            response.setModel(model);
+            response.setFinishReason(finishReason);
+            response.setPromptTokens(promptTokens);
+            response.setCompletionTokens(completionTokens);
+            return response;
+        }
+    }
+
+    /**
+     * Records the chunks of a stream while passing them on, and caches them once the stream completes.
+     * A stream that fails or is cancelled is not cached.
+     */
+    private final class RecordingCallback implements StreamCallback {
+        private final RequestKey key;
+        private final long ttlNanos;
+        private final StreamCallback callback;
+        private final List<String> chunks = new ArrayList<>();
+
+        RecordingCallback(RequestKey key, long ttlNanos, StreamCallback callback) {
+            this.key = key;
+            this.ttlNanos = ttlNanos;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onOpen(StreamControl control) {
+            callback.onOpen(control);
+        }
+
+        @Override
+        public void onEvent(String content) {
+            chunks.add(content);
+            callback.onEvent(content);
+        }
+
+        @Override
+        public void onComplete() {
+            onComplete(null);
+        }
+
+        @Override
+        public void onComplete(ChatResponse response) {
+            store(key, new Entry(String.join("", chunks), chunks.toArray(new String[0]), response, ttlNanos));
+            if (response != null) {
+                callback.onComplete(response);
+            } else {
+                callback.onComplete();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            callback.onError(t);
+        }
+    }
+
+    /**
+     * Replays cached chunks on the calling thread. Delivery stops while the stream is paused and
+     * continues on the thread that resumes it; the counter keeps a resume from within onEvent from
+     * delivering reentrantly.
+     */
+    private static final class Replay implements StreamControl {
+        private final String[] chunks;
+        private final ChatResponse response;
+        private final StreamCallback callback;
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean paused;
+        private volatile boolean cancelled;
+        private int next;
+
+        Replay(String[] chunks, ChatResponse response, StreamCallback callback) {
+            this.chunks = chunks;
+            this.response = response;
+            this.callback = callback;
+        }
+
+        void run() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                while (!paused && !cancelled && next < chunks.length) {
+                    response.markFirstToken();
+                    callback.onEvent(chunks[next++]);
+                }
+                if (!paused && !cancelled && next == chunks.length) {
+                    next++;
+                    response.markComplete();
+                    callback.onComplete(response);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void pause() {
+            paused = true;
+        }
+
+        @Override
+        public void resume() {
+            paused = false;
+            run();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.networknt.genai;
 public class ChatMessage {
     private String role;
     private String content;
+    private transient volatile TokenCount tokens;
 
     public ChatMessage() {
     }
@@ -26,5 +27,32 @@ public class ChatMessage {
 
     public void setContent(String content) {
         this.content = content;
+        this.tokens = null;
+    }
+
+    /**
+     * Counts the tokens of the content, caching the count for the encoding of the counter so that a
+     * message kept in a conversation history is only tokenized once.
+     *
+     * @param counter The token counter.
+     * @return The number of tokens of the content.
+     */
+    public int countTokens(TokenCounter counter) {
+        TokenCount cached = tokens;
+        if (cached == null || !cached.encoding.equals(counter.getName())) {
+            cached = new TokenCount(counter.getName(), content != null ? counter.count(content) : 0);
+            tokens = cached;
+        }
+        return cached.count;
+    }
+
+    private static final class TokenCount {
+        private final String encoding;
+        private final int count;
+
+        TokenCount(String encoding, int count) {
+            this.encoding = encoding;
+            this.count = count;
+        }
     }
 }
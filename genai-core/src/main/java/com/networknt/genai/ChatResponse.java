@@ -0,0 +1,221 @@
+package com.networknt.genai;
+
+/**
+ * The result of a chat completion: the generated text with the metadata reported by the provider,
+ * i.e. token usage, finish reason and server side latency, and the latencies measured by the client.
+ * A count or a latency that the provider does not report is left at 0.
+ *
+ * For a stream the content is not accumulated, as it has already been delivered chunk by chunk, and
+ * the response is passed to {@link StreamCallback#onComplete(ChatResponse)}.
+ */
+public class ChatResponse {
+    private String model;
+    private String content;
+    private String finishReason;
+    private int promptTokens;
+    private int completionTokens;
+    private int cachedTokens;
+    private long serverLatencyNanos;
+    private long timeToFirstTokenNanos;
+    private long latencyNanos;
+    private final long startNanos;
+
+    /**
+     * Creates a response and starts the client side clock, so it should be created when the request
+     * is sent.
+     */
+    public ChatResponse() {
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates a response with its content and starts the client side clock.
+     *
+     * @param content The generated text.
+     */
+    public ChatResponse(String content) {
+        this();
+        this.content = content;
+    }
+
+    private ChatResponse(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * @return A copy with the same content, metadata and clock, for handing one completion to several
+     *         callers that may each modify it.
+     */
+    public ChatResponse copy() {
+        ChatResponse copy = new ChatResponse(startNanos);
+        copy.model = model;
+        copy.content = content;
+        copy.finishReason = finishReason;
+        copy.promptTokens = promptTokens;
+        copy.completionTokens = completionTokens;
+        copy.cachedTokens = cachedTokens;
+        copy.serverLatencyNanos = serverLatencyNanos;
+        copy.timeToFirstTokenNanos = timeToFirstTokenNanos;
+        copy.latencyNanos = latencyNanos;
+        return copy;
+    }
+
+    /**
+     * Records the time to the first token. Only the first call has an effect. For a non-streaming
+     * call it is the time to the first byte of the response.
+     */
+    public void markFirstToken() {
+        if (timeToFirstTokenNanos == 0) {
+            timeToFirstTokenNanos = Math.max(System.nanoTime() - startNanos, 1);
+        }
+    }
+
+    /**
+     * Records the total latency, called when the response is complete.
+     */
+    public void markComplete() {
+        markFirstToken();
+        latencyNanos = Math.max(System.nanoTime() - startNanos, 1);
+    }
+
+    /**
+     * @return The model that generated the response, as reported by the provider.
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @param model The model that generated the response.
+     */
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    /**
+     * @return The generated text, null for a stream.
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * @param content The generated text.
+     */
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    /**
+     * @return Why the generation stopped as reported by the provider, e.g. stop or length.
+     */
+    public String getFinishReason() {
+        return finishReason;
+    }
+
+    /**
+     * @param finishReason Why the generation stopped.
+     */
+    public void setFinishReason(String finishReason) {
+        this.finishReason = finishReason;
+    }
+
+    /**
+     * @return The tokens of the prompt.
+     */
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    /**
+     * @param promptTokens The tokens of the prompt.
+     */
+    public void setPromptTokens(int promptTokens) {
+        this.promptTokens = promptTokens;
+    }
+
+    /**
+     * @return The generated tokens.
+     */
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    /**
+     * @param completionTokens The generated tokens.
+     */
+    public void setCompletionTokens(int completionTokens) {
+        this.completionTokens = completionTokens;
+    }
+
+    /**
+     * @return The prompt tokens read from the prompt cache of the provider, which are included in the
+     *         prompt tokens. Divided by the prompt tokens it is the cache hit rate of the request.
+     */
+    public int getCachedTokens() {
+        return cachedTokens;
+    }
+
+    /**
+     * @param cachedTokens The prompt tokens read from the prompt cache of the provider.
+     */
+    public void setCachedTokens(int cachedTokens) {
+        this.cachedTokens = cachedTokens;
+    }
+
+    /**
+     * @return The prompt and the generated tokens.
+     */
+    public int getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+
+    /**
+     * @return The processing time reported by the provider, in nanoseconds.
+     */
+    public long getServerLatencyNanos() {
+        return serverLatencyNanos;
+    }
+
+    /**
+     * @param serverLatencyNanos The processing time reported by the provider, in nanoseconds.
+     */
+    public void setServerLatencyNanos(long serverLatencyNanos) {
+        this.serverLatencyNanos = serverLatencyNanos;
+    }
+
+    /**
+     * @return The time from sending the request to the first token, in nanoseconds.
+     */
+    public long getTimeToFirstTokenNanos() {
+        return timeToFirstTokenNanos;
+    }
+
+    /**
+     * @param timeToFirstTokenNanos The time from sending the request to the first token, in nanoseconds.
+     */
+    public void setTimeToFirstTokenNanos(long timeToFirstTokenNanos) {
+        this.timeToFirstTokenNanos = timeToFirstTokenNanos;
+    }
+
+    /**
+     * @return The time from sending the request to the end of the response, in nanoseconds.
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @param latencyNanos The time from sending the request to the end of the response, in nanoseconds.
+     */
+    public void setLatencyNanos(long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatResponse{model=" + model + ", finishReason=" + finishReason + ", promptTokens=" + promptTokens
+                + ", completionTokens=" + completionTokens + ", cachedTokens=" + cachedTokens + ", serverLatencyNanos=" + serverLatencyNanos
+                + ", timeToFirstTokenNanos=" + timeToFirstTokenNanos + ", latencyNanos=" + latencyNanos + "}";
+    }
+}
@@ -0,0 +1,267 @@
+package com.networknt.genai;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Flow.Publisher} of the text chunks of a streamed completion. Chunks that arrive without
+ * demand are held in a small bounded buffer; once it fills up the upstream is paused through its
+ * {@link StreamControl} and resumed when the subscriber has drained half of it, so the memory used
+ * by a stream stays bounded no matter how slow the subscriber is.
+ *
+ * The stream is started when the first subscriber subscribes. Only one subscriber is supported. The
+ * publisher is also the handle of the stream: {@link #cancel()} aborts it from any thread, e.g. when
+ * the client the chunks are forwarded to goes away.
+ */
+public class ChatStreamPublisher implements Flow.Publisher<String> {
+    public static final int DEFAULT_BUFFER_SIZE = 32;
+
+    private final Consumer<StreamCallback> source;
+    private final int bufferSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private final CompletableFuture<ChatResponse> response = new CompletableFuture<>();
+    private volatile ChunkSubscription subscription;
+    private volatile boolean cancelled;
+
+    /**
+     * @param source Starts the upstream stream and delivers it to the given callback.
+     */
+    public ChatStreamPublisher(Consumer<StreamCallback> source) {
+        this(source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param source Starts the upstream stream and delivers it to the given callback.
+     * @param bufferSize The number of chunks buffered before the upstream is paused.
+     */
+    public ChatStreamPublisher(Consumer<StreamCallback> source, int bufferSize) {
+        if (bufferSize < 2) {
+            throw new IllegalArgumentException("bufferSize must be at least 2");
+        }
+        this.source = source;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return A future completed with the usage and timings of the completion when the stream
+     *         completes, or exceptionally if it fails or is cancelled.
+     */
+    public CompletableFuture<ChatResponse> getResponse() {
+        return response;
+    }
+
+    /**
+     * Aborts the stream, closing the upstream response and releasing its connection. A stream that is
+     * cancelled before it is subscribed to is never started. The subscriber receives no further signal
+     * and the response future is cancelled. Once the upstream has completed, only the delivery of the
+     * chunks still buffered is stopped.
+     */
+    public void cancel() {
+        cancelled = true;
+        ChunkSubscription s = subscription;
+        if (s != null) {
+            s.cancel();
+        } else {
+            response.cancel(false);
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("ChatStreamPublisher supports a single subscriber"));
+            return;
+        }
+        ChunkSubscription subscription = new ChunkSubscription(subscriber, bufferSize, response);
+        this.subscription = subscription;
+        subscriber.onSubscribe(subscription);
+        if (cancelled) {
+            subscription.cancel();
+        }
+        if (!subscription.cancelled) {
+            try {
+                source.accept(subscription);
+            } catch (Throwable t) {
+                subscription.onError(t);
+            }
+        }
+    }
+
+    /**
+     * Bridges the push based {@link StreamCallback} of a provider to the demand of a subscriber.
+     * Delivery to the subscriber is serialized through a work-in-progress counter, so it never runs
+     * concurrently even though chunks arrive on the IO thread and demand on the subscriber's thread.
+     */
+    static final class ChunkSubscription implements Flow.Subscription, StreamCallback {
+        private final Flow.Subscriber<? super String> subscriber;
+        private final int bufferSize;
+        private final CompletableFuture<ChatResponse> response;
+        private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicBoolean paused = new AtomicBoolean();
+        private volatile StreamControl control;
+        private volatile boolean done;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+
+        ChunkSubscription(Flow.Subscriber<? super String> subscriber, int bufferSize,
+                CompletableFuture<ChatResponse> response) {
+            this.subscriber = subscriber;
+            this.bufferSize = bufferSize;
+            this.response = response;
+        }
+
+        @Override
+        public void onOpen(StreamControl control) {
+            this.control = control;
+            if (cancelled) {
+                control.cancel();
+            }
+        }
+
+        @Override
+        public void onEvent(String content) {
+            if (done || cancelled) {
+                return;
+            }
+            queue.offer(content);
+            StreamControl c = control;
+            if (queued.incrementAndGet() >= bufferSize && c != null && paused.compareAndSet(false, true)) {
+                c.pause();
+            }
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            onComplete(null);
+        }
+
+        @Override
+        public void onComplete(ChatResponse r) {
+            response.complete(r);
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            response.completeExceptionally(t);
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelUpstream();
+                queue.clear();
+                onError(new IllegalArgumentException("Subscription request must be positive but was " + n));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            response.cancel(false);
+            if (!done) {
+                // a terminated upstream has already released its connection
+                cancelUpstream();
+            }
+            drain();
+        }
+
+        private void cancelUpstream() {
+            StreamControl c = control;
+            if (c != null) {
+                c.cancel();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                long r = requested.get();
+                long e = 0;
+                while (e != r) {
+                    if (cancelled) {
+                        queue.clear();
+                        return;
+                    }
+                    boolean d = done;
+                    String chunk = queue.poll();
+                    if (chunk == null) {
+                        if (d) {
+                            terminate();
+                            return;
+                        }
+                        break;
+                    }
+                    queued.decrementAndGet();
+                    subscriber.onNext(chunk);
+                    e++;
+                }
+                if (cancelled) {
+                    queue.clear();
+                    return;
+                }
+                if (done && queue.isEmpty()) {
+                    terminate();
+                    return;
+                }
+                if (e != 0 && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-e);
+                }
+                StreamControl c = control;
+                if (c != null && queued.get() <= bufferSize / 2 && paused.compareAndSet(true, false)) {
+                    c.resume();
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void terminate() {
+            cancelled = true;
+            Throwable t = error;
+            if (t != null) {
+                subscriber.onError(t);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+}
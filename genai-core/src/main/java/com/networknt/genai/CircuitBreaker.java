@@ -0,0 +1,148 @@
+package com.networknt.genai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A circuit breaker for one model of one provider. It opens after failureThreshold consecutive
+ * failures and then rejects every call for openMillis. The first call after that is let through as a
+ * probe, the breaker being half-open: its success closes the breaker and its failure opens it again,
+ * while the other calls keep being rejected until the probe is done.
+ *
+ * Every {@link #tryAcquire()} that returns true must be followed by exactly one of
+ * {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+ */
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The state of a breaker.
+     */
+    public enum State {
+        /** Calls are let through. */
+        CLOSED,
+        /** Calls are rejected until the open delay has elapsed. */
+        OPEN,
+        /** A single probe call is let through. */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoTime;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * @param name The name of the breaker used in logs, e.g. the model.
+     * @param failureThreshold The number of consecutive failures that opens the breaker.
+     * @param openMillis How long the breaker stays open before a probe is let through.
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this(name, failureThreshold, openMillis, System::nanoTime);
+    }
+
+    /**
+     * @param name The name of the breaker used in logs, e.g. the model.
+     * @param failureThreshold The number of consecutive failures that opens the breaker.
+     * @param openMillis How long the breaker stays open before a probe is let through.
+     * @param nanoTime The clock timing the open delay, e.g. a test clock advanced by hand.
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier nanoTime) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @return The state, an open breaker whose delay has elapsed being reported as half-open.
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * @return Whether a call would be let through now, without acquiring anything.
+     */
+    public synchronized boolean isCallPermitted() {
+        State current = getState();
+        return current == State.CLOSED || (current == State.HALF_OPEN && !probing);
+    }
+
+    /**
+     * @return Whether the call may proceed, in which case its outcome must be reported.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (nanoTime.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (probing) {
+            return false;
+        }
+        probing = true;
+        return true;
+    }
+
+    /**
+     * Reports a call that succeeded, which closes a half-open breaker.
+     */
+    public synchronized void onSuccess() {
+        failures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probing = false;
+            logger.info("Circuit breaker {} closed", name);
+        }
+    }
+
+    /**
+     * Reports a call that failed, which opens a half-open breaker or a closed one that reached the
+     * failure threshold.
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED && ++failures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Reports a call whose outcome says nothing about the upstream, e.g. a cancelled one.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoTime.getAsLong();
+        failures = 0;
+        probing = false;
+        logger.warn("Circuit breaker {} opened for {} ms", name, TimeUnit.NANOSECONDS.toMillis(openNanos));
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + getState();
+    }
+}
@@ -0,0 +1,360 @@
+package com.networknt.genai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link GenAiClient} decorator that lets concurrent identical requests share one upstream call.
+ * Requests are identical when they have the same {@link RequestKey}. The first request of a key is
+ * sent to the delegate; requests of the same key that arrive before it completes wait for its result
+ * instead of being sent, so a burst of the same question costs one completion.
+ *
+ * Streams are shared the same way: a caller that joins a running stream is first replayed the chunks
+ * it missed and then receives the live chunks together with the other callers. The chunks are delivered
+ * to all callers at the pace of the slowest one: the shared upstream is paused while any caller is
+ * paused and resumed once none is, so a slow consumer keeps the bounded buffering of its stream and the
+ * others wait for it. Cancelling detaches the caller, which also releases its pause, and the upstream
+ * is cancelled when the last caller has left.
+ *
+ * Only requests that are in flight at the same time are coalesced. Placed in front of a
+ * {@link CachingGenAiClient}, it covers the window before the cache is populated.
+ */
+public class CoalescingGenAiClient extends DelegatingGenAiClient {
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingGenAiClient.class);
+
+    private final ConcurrentHashMap<RequestKey, CompletableFuture<String>> chats = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<RequestKey, CompletableFuture<ChatResponse>> completions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<RequestKey, Flight> streams = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Used by SingletonServiceFactory, which then sets the delegate with {@link #setDelegateClass(String)}.
+     */
+    public CoalescingGenAiClient() {
+    }
+
+    public CoalescingGenAiClient(GenAiClient delegate) {
+        super(delegate);
+    }
+
+    /**
+     * @return The number of requests that were served by another request's upstream call.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages) {
+        return chat(messages, null);
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, RequestOptions options) {
+        RequestKey key = RequestKey.of(messages, options);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> running = chats.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            logger.debug("Joined chat {}", key);
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            String content = options != null ? delegate().chat(messages, options) : delegate().chat(messages);
+            future.complete(content);
+            return content;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            chats.remove(key, future);
+        }
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+        RequestKey key = RequestKey.of(messages, options);
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        CompletableFuture<ChatResponse> running = completions.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            logger.debug("Joined chatAsync {}", key);
+            return running.thenApply(CoalescingGenAiClient::copy);
+        }
+        try {
+            delegate().chatAsync(messages, options).whenComplete((response, error) -> {
+                completions.remove(key, future);
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(response);
+                }
+            });
+        } catch (RuntimeException e) {
+            completions.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        // every caller gets its own copy, as a ChatResponse is mutable
+        return future.thenApply(CoalescingGenAiClient::copy);
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+        chatStream(messages, null, callback);
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+        RequestKey key = RequestKey.of(messages, options);
+        for (;;) {
+            Flight flight = streams.get(key);
+            if (flight == null) {
+                Flight created = new Flight(key);
+                flight = streams.putIfAbsent(key, created);
+                if (flight == null) {
+                    created.attach(callback);
+                    try {
+                        if (options != null) {
+                            delegate().chatStream(messages, options, created);
+                        } else {
+                            delegate().chatStream(messages, created);
+                        }
+                    } catch (RuntimeException e) {
+                        created.onError(e);
+                    }
+                    return;
+                }
+            }
+            if (flight.attach(callback)) {
+                coalesced.increment();
+                logger.debug("Joined chatStream {}", key);
+                return;
+            }
+            // the flight was abandoned by all of its callers in the meantime, start a new one
+        }
+    }
+
+    private static ChatResponse copy(ChatResponse response) {
+        return response != null ? response.copy() : null;
+    }
+
+    /**
+     * A running upstream stream and the callers attached to it. The chunks are recorded for callers that
+     * join late, and all delivery happens under the lock of the flight so that a joining caller sees
+     * every chunk exactly once and in order.
+     */
+    private final class Flight implements StreamCallback {
+        private final RequestKey key;
+        private final List<String> chunks = new ArrayList<>();
+        private final List<Member> members = new CopyOnWriteArrayList<>();
+        private StreamControl upstream;
+        // the members that are paused, the upstream is paused while there is any
+        private int paused;
+        private boolean done;
+        private boolean abandoned;
+        private ChatResponse response;
+        private Throwable error;
+
+        Flight(RequestKey key) {
+            this.key = key;
+        }
+
+        /**
+         * @return false if the flight has been abandoned and cannot be joined.
+         */
+        synchronized boolean attach(StreamCallback callback) {
+            if (abandoned) {
+                return false;
+            }
+            Member member = new Member(this, callback);
+            callback.onOpen(member);
+            for (int i = 0; i < chunks.size() && !member.cancelled; i++) {
+                callback.onEvent(chunks.get(i));
+            }
+            if (member.cancelled) {
+                return true;
+            }
+            if (done) {
+                terminate(member);
+            } else {
+                members.add(member);
+            }
+            return true;
+        }
+
+        void detach(Member member) {
+            boolean abandon = false;
+            StreamControl control;
+            synchronized (this) {
+                member.cancelled = true;
+                members.remove(member);
+                if (member.paused) {
+                    member.paused = false;
+                    if (--paused == 0 && !done && !members.isEmpty() && upstream != null) {
+                        upstream.resume();
+                    }
+                }
+                if (!done && !abandoned && members.isEmpty()) {
+                    abandoned = abandon = true;
+                }
+                control = upstream;
+            }
+            if (abandon) {
+                streams.remove(key, this);
+                if (control != null) {
+                    control.cancel();
+                }
+            }
+        }
+
+        /**
+         * Pauses the upstream when the first member pauses.
+         */
+        synchronized void pause(Member member) {
+            if (member.cancelled || member.paused) {
+                return;
+            }
+            member.paused = true;
+            if (paused++ == 0 && !done && upstream != null) {
+                upstream.pause();
+            }
+        }
+
+        /**
+         * Resumes the upstream when the last paused member resumes.
+         */
+        synchronized void resume(Member member) {
+            if (!member.paused) {
+                return;
+            }
+            member.paused = false;
+            if (--paused == 0 && !done && upstream != null) {
+                upstream.resume();
+            }
+        }
+
+        @Override
+        public void onOpen(StreamControl control) {
+            boolean cancel;
+            synchronized (this) {
+                upstream = control;
+                cancel = abandoned;
+                if (!cancel && paused > 0) {
+                    control.pause();
+                }
+            }
+            if (cancel) {
+                control.cancel();
+            }
+        }
+
+        @Override
+        public synchronized void onEvent(String content) {
+            if (done || abandoned) {
+                return;
+            }
+            chunks.add(content);
+            for (Member member : members) {
+                if (!member.cancelled) {
+                    member.callback.onEvent(content);
+                }
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            onComplete(null);
+        }
+
+        @Override
+        public void onComplete(ChatResponse r) {
+            streams.remove(key, this);
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                response = r;
+                for (Member member : members) {
+                    terminate(member);
+                }
+                members.clear();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            streams.remove(key, this);
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                error = t;
+                for (Member member : members) {
+                    terminate(member);
+                }
+                members.clear();
+            }
+        }
+
+        private void terminate(Member member) {
+            if (member.cancelled) {
+                return;
+            }
+            if (error != null) {
+                member.callback.onError(error);
+            } else if (response != null) {
+                member.callback.onComplete(response.copy());
+            } else {
+                member.callback.onComplete();
+            }
+        }
+    }
+
+    /**
+     * The handle of one caller of a shared stream. Pausing it pauses the shared upstream until every
+     * caller that paused has resumed or left.
+     */
+    private static final class Member implements StreamControl {
+        private final Flight flight;
+        private final StreamCallback callback;
+        private volatile boolean cancelled;
+        // guarded by the flight
+        private boolean paused;
+
+        Member(Flight flight, StreamCallback callback) {
+            this.flight = flight;
+            this.callback = callback;
+        }
+
+        @Override
+        public void pause() {
+            flight.pause(this);
+        }
+
+        @Override
+        public void resume() {
+            flight.resume(this);
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                flight.detach(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.networknt.genai;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An adaptive limit on the number of calls in flight to one provider, adjusted from the observed
+ * latency in the manner of the gradient2 algorithm. A short and a long moving average of the latency
+ * are kept: while the short one stays close to the long one the limit grows by about its square root
+ * per sample, and when the upstream slows down and queues requests, the short average rising above
+ * the long one, the limit shrinks in proportion, by half at most. A timeout or an overload error
+ * shrinks it by 10%. The limit does not grow while less than half of it is in use, so that a quiet
+ * period does not leave it inflated.
+ *
+ * Calls above the limit wait in a bounded queue for a permit, or are rejected when the queue is full.
+ * The latency of a stream is its time to first token, which unlike the total latency does not depend
+ * on the length of the answer.
+ */
+public class ConcurrencyLimiter {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final ArrayDeque<CompletableFuture<Void>> queue = new ArrayDeque<>();
+    private double limit;
+    private double shortRtt;
+    private double longRtt;
+    private int inFlight;
+
+    /**
+     * @param initialLimit The limit before any latency has been observed.
+     * @param minLimit The lowest limit.
+     * @param maxLimit The highest limit.
+     * @param maxQueueSize The number of calls that may wait for a permit, 0 to reject them at once.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueueSize) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueueSize = Math.max(0, maxQueueSize);
+        this.limit = Math.max(this.minLimit, Math.min(initialLimit, this.maxLimit));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return Whether a call would get a permit or a place in the queue now.
+     */
+    public synchronized boolean hasCapacity() {
+        return inFlight < (int) limit || queue.size() < maxQueueSize;
+    }
+
+    /**
+     * Takes a permit, which must be given back with {@link #release(long, boolean)}.
+     *
+     * @param timeoutMillis How long a queued call waits for its permit.
+     * @return A future completed once the permit is granted, already completed if one was free, or
+     *         null if the call is rejected. A future that times out completes with a TimeoutException
+     *         and holds no permit.
+     */
+    public CompletableFuture<Void> acquire(long timeoutMillis) {
+        CompletableFuture<Void> permit;
+        synchronized (this) {
+            if (inFlight < (int) limit && queue.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (queue.size() >= maxQueueSize) {
+                return null;
+            }
+            permit = new CompletableFuture<>();
+            queue.add(permit);
+        }
+        permit.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((v, error) -> {
+            if (error != null) {
+                synchronized (this) {
+                    queue.remove(permit);
+                }
+            }
+        });
+        return permit;
+    }
+
+    /**
+     * Gives a permit back and adjusts the limit.
+     *
+     * @param rttNanos The latency of the call, or 0 if it says nothing about the upstream, e.g. when
+     *        the call was cancelled or rejected by the provider as invalid.
+     * @param dropped Whether the call timed out or was refused because the upstream is overloaded.
+     */
+    public void release(long rttNanos, boolean dropped) {
+        synchronized (this) {
+            if (dropped) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+            } else if (rttNanos > 0) {
+                update(rttNanos);
+            }
+            inFlight--;
+        }
+        grant();
+    }
+
+    private void update(long rtt) {
+        shortRtt = shortRtt == 0 ? rtt : shortRtt + (rtt - shortRtt) / SHORT_WINDOW;
+        longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / LONG_WINDOW;
+        if (longRtt / shortRtt > 2) {
+            // the upstream has recovered, let the long average catch up
+            longRtt *= 0.95;
+        }
+        if (inFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    /**
+     * Hands the free permits to the queued calls, outside the lock as completing a permit runs the
+     * call.
+     */
+    private void grant() {
+        for (;;) {
+            CompletableFuture<Void> permit;
+            synchronized (this) {
+                if (inFlight >= (int) limit || queue.isEmpty()) {
+                    return;
+                }
+                permit = queue.poll();
+                inFlight++;
+            }
+            if (!permit.complete(null)) {
+                // timed out meanwhile
+                synchronized (this) {
+                    inFlight--;
+                }
+            }
+        }
+    }
+}
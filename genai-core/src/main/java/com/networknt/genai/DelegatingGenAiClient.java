@@ -0,0 +1,94 @@
+package com.networknt.genai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The base of the {@link GenAiClient} decorators, which hold the client they decorate. A decorator is
+ * either given its delegate in code, or registered in service.yml and given its delegate by class:
+ *
+ * <pre>
+ * - com.networknt.genai.GenAiClient:
+ *   - com.networknt.genai.RetryingGenAiClient:
+ *       delegateClass: com.networknt.genai.GuardedGenAiClient, com.networknt.genai.openai.OpenAiClient
+ * </pre>
+ *
+ * The classes of delegateClass form a chain, the outermost first: each one is created with its default
+ * constructor and, if it is a decorator too, decorates the next one, so the chain must end with a
+ * provider client. The decorators of the chain keep their default settings; a stack whose inner
+ * decorators need other settings is built in code.
+ */
+public abstract class DelegatingGenAiClient implements GenAiClient {
+    private volatile GenAiClient delegate;
+
+    /**
+     * Used by SingletonServiceFactory, which then sets the delegate with {@link #setDelegateClass(String)}.
+     */
+    protected DelegatingGenAiClient() {
+    }
+
+    /**
+     * @param delegate The decorated client.
+     */
+    protected DelegatingGenAiClient(GenAiClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return The decorated client.
+     */
+    public GenAiClient getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @param delegate The decorated client.
+     */
+    public void setDelegate(GenAiClient delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Creates the delegate, and the delegates of the decorators it is made of, with their default
+     * constructors.
+     *
+     * @param delegateClass The class name of the decorated client, or the comma separated class names of
+     *        a chain of decorators ending with a provider client, the outermost first.
+     */
+    public void setDelegateClass(String delegateClass) {
+        List<GenAiClient> chain = new ArrayList<>();
+        for (String name : delegateClass.split(",")) {
+            String className = name.trim();
+            try {
+                chain.add((GenAiClient) Class.forName(className).getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot create GenAiClient " + className, e);
+            }
+        }
+        for (int i = 0; i < chain.size(); i++) {
+            if (chain.get(i) instanceof DelegatingGenAiClient) {
+                if (i + 1 == chain.size()) {
+                    throw new IllegalArgumentException("The delegate chain " + delegateClass
+                            + " does not end with a provider client");
+                }
+                ((DelegatingGenAiClient) chain.get(i)).setDelegate(chain.get(i + 1));
+            } else if (i + 1 < chain.size()) {
+                throw new IllegalArgumentException(chain.get(i).getClass().getName() + " of the delegate chain "
+                        + delegateClass + " is not a decorator");
+            }
+        }
+        this.delegate = chain.get(0);
+    }
+
+    /**
+     * @return The decorated client.
+     * @throws IllegalStateException if no delegate has been set.
+     */
+    protected GenAiClient delegate() {
+        GenAiClient d = delegate;
+        if (d == null) {
+            throw new IllegalStateException(getClass().getSimpleName() + " has no delegate");
+        }
+        return d;
+    }
+}
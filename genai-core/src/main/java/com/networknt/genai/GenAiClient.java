@@ -1,8 +1,7 @@
 package com.networknt.genai;
 
 import java.util.List;
-
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface GenAiClient {
     /**
@@ -15,6 +14,18 @@ public interface GenAiClient {
 
     String chat(List<ChatMessage> messages, RequestOptions options);
 
+    /**
+     * Generates a text completion without blocking the calling thread. The future is completed
+     * on the provider's IO thread, so dependent stages that block should use the async variants
+     * of {@link CompletableFuture}.
+     *
+     * @param messages The list of chat messages (history).
+     * @param options The request options.
+     * @return A future completed with the generated text and its usage and timings, or exceptionally
+     *         if the call fails.
+     */
+    CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options);
+
     /**
      * Generates a text completion stream for the given list of chat messages.
      * 
@@ -24,4 +35,18 @@ public interface GenAiClient {
     void chatStream(List<ChatMessage> messages, StreamCallback callback);
 
     void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback);
+
+    /**
+     * Generates a text completion stream as a {@link java.util.concurrent.Flow.Publisher}. Subscriber
+     * demand is propagated to the provider connection, so a slow subscriber slows down reading from
+     * the provider instead of buffering its output. The request is sent when the subscriber subscribes.
+     *
+     * @param messages The list of chat messages (history).
+     * @param options The request options.
+     * @return A publisher of the generated text chunks, which is also the handle to cancel the stream,
+     *         e.g. when the client that receives the chunks disconnects.
+     */
+    default ChatStreamPublisher chatStream(List<ChatMessage> messages, RequestOptions options) {
+        return new ChatStreamPublisher(callback -> chatStream(messages, options, callback));
+    }
 }
@@ -0,0 +1,52 @@
+package com.networknt.genai;
+
+/**
+ * Runtime exception raised when a GenAI provider call fails. When the failure comes from an HTTP
+ * response, the status code is kept so that callers can tell throttling or server errors apart, along
+ * with the delay the provider asked for before a retry, if any.
+ */
+public class GenAiException extends RuntimeException {
+    private final int statusCode;
+    private final long retryAfterNanos;
+
+    public GenAiException(String message) {
+        super(message);
+        this.statusCode = 0;
+        this.retryAfterNanos = 0;
+    }
+
+    public GenAiException(String message, Throwable cause) {
+        super(message, cause);
+        this.statusCode = 0;
+        this.retryAfterNanos = 0;
+    }
+
+    public GenAiException(int statusCode, String message) {
+        this(statusCode, message, 0);
+    }
+
+    /**
+     * @param statusCode The HTTP status code.
+     * @param message The message.
+     * @param retryAfterNanos The delay before a retry given by the Retry-After header, or 0.
+     */
+    public GenAiException(int statusCode, String message, long retryAfterNanos) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /**
+     * @return The HTTP status code returned by the provider, or 0 if the failure was not an HTTP error.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return The delay in nanoseconds the provider asked for before a retry, or 0 if it did not say.
+     */
+    public long getRetryAfterNanos() {
+        return retryAfterNanos;
+    }
+}
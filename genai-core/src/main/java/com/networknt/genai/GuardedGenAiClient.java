@@ -0,0 +1,478 @@
+package com.networknt.genai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link GenAiClient} decorator that keeps the calls to an unhealthy provider from piling up. Each
+ * model has a {@link CircuitBreaker} that rejects its calls once the provider keeps failing for it, and
+ * the provider has a {@link ConcurrencyLimiter} that caps the calls in flight at a limit adapted to
+ * the observed latency. A rejected call fails at once with a {@link GenAiException} with status 503,
+ * or returns null for {@link #chat(List, RequestOptions)}, instead of borrowing a connection and
+ * waiting out the timeout of the client.
+ *
+ * Server errors, timeouts, throttling and connection failures count as failures. Other client errors
+ * are the fault of the request and count as successes, and a cancelled stream counts as neither.
+ *
+ * The decorator can be registered in service.yml, in which case the delegate is given by its class, or
+ * by a chain of classes as described in {@link DelegatingGenAiClient}:
+ *
+ * <pre>
+ * - com.networknt.genai.GenAiClient:
+ *   - com.networknt.genai.GuardedGenAiClient:
+ *       delegateClass: com.networknt.genai.openai.OpenAiClient
+ *       failureThreshold: 5
+ *       openMillis: 30000
+ *       maxConcurrency: 200
+ *       maxQueueSize: 50
+ *       timeoutMillis: 30000
+ * </pre>
+ */
+public class GuardedGenAiClient extends DelegatingGenAiClient {
+    private static final Logger logger = LoggerFactory.getLogger(GuardedGenAiClient.class);
+    /**
+     * The consecutive failures of a model that open its breaker by default.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    /**
+     * How long an open breaker rejects calls by default.
+     */
+    public static final long DEFAULT_OPEN_MILLIS = 30000;
+    /**
+     * The concurrency limit before any latency has been observed by default.
+     */
+    public static final int DEFAULT_INITIAL_CONCURRENCY = 20;
+    /**
+     * The highest concurrency limit by default.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 200;
+    /**
+     * How long a call waits for a permit by default.
+     */
+    public static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 1000;
+    /**
+     * How long a blocking chat waits for the answer by default.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long openMillis = DEFAULT_OPEN_MILLIS;
+    private int initialConcurrency = DEFAULT_INITIAL_CONCURRENCY;
+    private int minConcurrency = 1;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private int maxQueueSize;
+    private long queueTimeoutMillis = DEFAULT_QUEUE_TIMEOUT_MILLIS;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private LongSupplier nanoTime = System::nanoTime;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private volatile ConcurrencyLimiter limiter;
+
+    /**
+     * Used by SingletonServiceFactory, which then sets the delegate with {@link #setDelegateClass(String)}.
+     */
+    public GuardedGenAiClient() {
+    }
+
+    /**
+     * @param delegate The decorated client.
+     */
+    public GuardedGenAiClient(GenAiClient delegate) {
+        super(delegate);
+    }
+
+    /**
+     * @return The number of consecutive failures of a model that opens its breaker.
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * @param failureThreshold The number of consecutive failures of a model that opens its breaker.
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @return How long an open breaker rejects calls before it lets a probe through.
+     */
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    /**
+     * @param openMillis How long an open breaker rejects calls before it lets a probe through.
+     */
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return The concurrency limit before any latency has been observed.
+     */
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    /**
+     * @param initialConcurrency The concurrency limit before any latency has been observed.
+     */
+    public void setInitialConcurrency(int initialConcurrency) {
+        this.initialConcurrency = initialConcurrency;
+    }
+
+    /**
+     * @return The lowest concurrency limit.
+     */
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    /**
+     * @param minConcurrency The lowest concurrency limit.
+     */
+    public void setMinConcurrency(int minConcurrency) {
+        this.minConcurrency = minConcurrency;
+    }
+
+    /**
+     * @return The highest concurrency limit.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @param maxConcurrency The highest concurrency limit.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return The number of calls that may wait for a permit when the limit is reached.
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * @param maxQueueSize The number of calls that may wait for a permit when the limit is reached, 0
+     *        to reject them at once.
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * @return How long a call waits for a permit before it is rejected.
+     */
+    public long getQueueTimeoutMillis() {
+        return queueTimeoutMillis;
+    }
+
+    /**
+     * @param queueTimeoutMillis How long a call waits for a permit before it is rejected.
+     */
+    public void setQueueTimeoutMillis(long queueTimeoutMillis) {
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    /**
+     * @return How long a blocking chat waits for the answer, the wait for a permit included.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @param timeoutMillis How long a blocking chat waits for the answer, the wait for a permit included.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @param nanoTime The clock of the circuit breakers created from now on, e.g. a test clock.
+     */
+    void setNanoTime(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @return The concurrency limiter, created with the settings on first use.
+     */
+    public ConcurrencyLimiter getLimiter() {
+        ConcurrencyLimiter l = limiter;
+        if (l == null) {
+            synchronized (this) {
+                l = limiter;
+                if (l == null) {
+                    l = new ConcurrencyLimiter(initialConcurrency, minConcurrency, maxConcurrency, maxQueueSize);
+                    limiter = l;
+                }
+            }
+        }
+        return l;
+    }
+
+    /**
+     * @param model The model, or null for the default model of the delegate.
+     * @return The circuit breaker of the model.
+     */
+    public CircuitBreaker getBreaker(String model) {
+        return breakers.computeIfAbsent(model != null ? model : "", k -> new CircuitBreaker(k, failureThreshold,
+                openMillis, nanoTime));
+    }
+
+    /**
+     * @param options The options of the call, or null for the default model of the delegate.
+     * @return Whether a call with the given options would be let through now, so that a router can
+     *         pass over this provider without trying it.
+     */
+    public boolean isAvailable(RequestOptions options) {
+        return getBreaker(options != null ? options.getModel() : null).isCallPermitted()
+                && getLimiter().hasCapacity();
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages) {
+        return chat(messages, null);
+    }
+
+    /**
+     * Waits for {@link #chatAsync(List, RequestOptions)} for at most timeoutMillis, so that the three
+     * kinds of calls classify their errors the same way.
+     */
+    @Override
+    public String chat(List<ChatMessage> messages, RequestOptions options) {
+        try {
+            ChatResponse response = chatAsync(messages, options != null ? options : new RequestOptions())
+                    .get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return response != null ? response.getContent() : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted invoking GenAI API", e);
+        } catch (Exception e) {
+            logger.error("Exception invoking GenAI API", e);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+        CircuitBreaker breaker = getBreaker(options != null ? options.getModel() : null);
+        CompletableFuture<Void> permit = admit(breaker);
+        if (permit == null) {
+            return CompletableFuture.failedFuture(rejection(breaker));
+        }
+        return permit.handle((v, error) -> {
+            if (error != null) {
+                breaker.onIgnored();
+                return CompletableFuture.<ChatResponse> failedFuture(rejection(breaker));
+            }
+            long start = System.nanoTime();
+            CompletableFuture<ChatResponse> response;
+            try {
+                response = delegate().chatAsync(messages, options);
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            return response.whenComplete((r, t) -> {
+                if (t == null) {
+                    long rtt = r != null && r.getTimeToFirstTokenNanos() > 0 ? r.getTimeToFirstTokenNanos()
+                            : System.nanoTime() - start;
+                    done(breaker, rtt, null);
+                } else {
+                    done(breaker, 0, t);
+                }
+            });
+        }).thenCompose(f -> f);
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+        chatStream(messages, null, callback);
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+        CircuitBreaker breaker = getBreaker(options != null ? options.getModel() : null);
+        CompletableFuture<Void> permit = admit(breaker);
+        if (permit == null) {
+            callback.onError(rejection(breaker));
+            return;
+        }
+        permit.whenComplete((v, error) -> {
+            if (error != null) {
+                breaker.onIgnored();
+                callback.onError(rejection(breaker));
+                return;
+            }
+            GuardedStream stream = new GuardedStream(breaker, callback);
+            try {
+                if (options != null) {
+                    delegate().chatStream(messages, options, stream);
+                } else {
+                    delegate().chatStream(messages, stream);
+                }
+            } catch (RuntimeException e) {
+                stream.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Takes the breaker and then a concurrency permit.
+     *
+     * @return The permit, or null if the call is rejected.
+     */
+    private CompletableFuture<Void> admit(CircuitBreaker breaker) {
+        if (!breaker.tryAcquire()) {
+            return null;
+        }
+        CompletableFuture<Void> permit = getLimiter().acquire(queueTimeoutMillis);
+        if (permit == null) {
+            breaker.onIgnored();
+        }
+        return permit;
+    }
+
+    private GenAiException rejection(CircuitBreaker breaker) {
+        if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+            return new GenAiException(503, "Circuit breaker " + breaker + ", request rejected");
+        }
+        return new GenAiException(503, "Concurrency limit " + getLimiter().getLimit() + " reached, request rejected");
+    }
+
+    /**
+     * Reports the outcome of an admitted call to its breaker and the limiter.
+     *
+     * @param rttNanos The latency of a successful call.
+     * @param error The error of a failed call, or null.
+     */
+    private void done(CircuitBreaker breaker, long rttNanos, Throwable error) {
+        if (error == null) {
+            breaker.onSuccess();
+            getLimiter().release(rttNanos, false);
+        } else if (isFailure(error)) {
+            breaker.onFailure();
+            getLimiter().release(0, true);
+        } else {
+            breaker.onSuccess();
+            getLimiter().release(0, false);
+        }
+    }
+
+    /**
+     * Classifies an error: a 4xx other than 408 and 429, e.g. a prompt too long for the context or an
+     * invalid key, is the fault of the request and would fail on any provider.
+     *
+     * @param error The error of a call, possibly wrapped in a CompletionException.
+     * @return Whether the error is the fault of the provider rather than of the request.
+     */
+    public static boolean isFailure(Throwable error) {
+        Throwable t = error;
+        while (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof GenAiException) {
+            int status = ((GenAiException) t).getStatusCode();
+            return status == 0 || status == 408 || status == 429 || status >= 500;
+        }
+        return true;
+    }
+
+    /**
+     * Reports the outcome of a stream, its latency being the time to the first token. A stream
+     * cancelled by the caller is reported as neither a success nor a failure.
+     */
+    private final class GuardedStream implements StreamCallback, StreamControl {
+        private final CircuitBreaker breaker;
+        private final StreamCallback callback;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile StreamControl control;
+        private volatile boolean cancelled;
+        private long timeToFirstToken;
+
+        GuardedStream(CircuitBreaker breaker, StreamCallback callback) {
+            this.breaker = breaker;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onOpen(StreamControl control) {
+            this.control = control;
+            callback.onOpen(this);
+        }
+
+        @Override
+        public void onEvent(String content) {
+            if (timeToFirstToken == 0) {
+                timeToFirstToken = System.nanoTime() - start;
+            }
+            callback.onEvent(content);
+        }
+
+        @Override
+        public void onComplete() {
+            onComplete(null);
+        }
+
+        @Override
+        public void onComplete(ChatResponse response) {
+            if (finished.compareAndSet(false, true)) {
+                done(breaker, timeToFirstToken > 0 ? timeToFirstToken : System.nanoTime() - start, null);
+            }
+            if (response != null) {
+                callback.onComplete(response);
+            } else {
+                callback.onComplete();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (finished.compareAndSet(false, true)) {
+                if (cancelled) {
+                    breaker.onIgnored();
+                    getLimiter().release(0, false);
+                } else {
+                    done(breaker, 0, t);
+                }
+            }
+            callback.onError(t);
+        }
+
+        @Override
+        public void pause() {
+            control.pause();
+        }
+
+        @Override
+        public void resume() {
+            control.resume();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (finished.compareAndSet(false, true)) {
+                breaker.onIgnored();
+                getLimiter().release(0, false);
+            }
+            control.cancel();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.networknt.genai;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the distributions of {@link StreamMetrics} in memory, in HDR histograms with two significant
+ * digits. Recording is wait-free, and taking a {@link HdrDistribution#snapshot()} resets the distribution
+ * for the next interval, so a reporter reads each value once.
+ */
+public class HdrMetricsProvider implements MetricsProvider {
+    private final Map<List<Object>, HdrDistribution> distributions = new ConcurrentHashMap<>();
+
+    @Override
+    public HdrDistribution timer(String name, Map<String, String> tags) {
+        return distributions.computeIfAbsent(List.of(name, Map.copyOf(tags)), k -> new HdrDistribution());
+    }
+
+    @Override
+    public HdrDistribution histogram(String name, Map<String, String> tags) {
+        return timer(name, tags);
+    }
+
+    /**
+     * @param name The metric name.
+     * @param tags The tags.
+     * @return The distribution, or null if nothing was recorded with these tags.
+     */
+    public HdrDistribution get(String name, Map<String, String> tags) {
+        return distributions.get(List.of(name, Map.copyOf(tags)));
+    }
+
+    public static final class HdrDistribution implements Distribution {
+        private final Recorder recorder = new Recorder(2);
+
+        @Override
+        public void record(long value) {
+            recorder.recordValue(Math.max(0, value));
+        }
+
+        /**
+         * @return The values recorded since the previous snapshot.
+         */
+        public Histogram snapshot() {
+            return recorder.getIntervalHistogram();
+        }
+    }
+}
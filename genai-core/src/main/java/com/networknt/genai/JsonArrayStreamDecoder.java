@@ -0,0 +1,112 @@
+package com.networknt.genai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental decoder for a response body that is a JSON array of objects, such as the Gemini
+ * streamGenerateContent response. It is built on Jackson's non-blocking parser, which is fed each
+ * read as it arrives and keeps the state of a partial token itself, so objects and strings that span
+ * reads are handled and no byte is scanned twice.
+ *
+ * The tokens of each element are recorded while it is parsed and the element is handed to the
+ * {@link Handler} as soon as its closing brace is read. Objects at the root level, such as a body that
+ * is a single object or newline delimited JSON, are handed out the same way. A decoder instance belongs
+ * to a single stream and is not thread safe.
+ */
+public class JsonArrayStreamDecoder {
+
+    /**
+     * Receives each complete element of the array.
+     */
+    public interface Handler {
+        /**
+         * Called with an element of the array, typically read with ObjectMapper.readValue(parser, type).
+         *
+         * @param element A parser over the tokens of the element.
+         * @throws IOException to abort decoding.
+         */
+        void onElement(JsonParser element) throws IOException;
+    }
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private TokenBuffer element;
+    private int depth;
+    private int elementDepth;
+
+    /**
+     * @param factory The factory of the mapper that reads the elements, usually mapper.getFactory().
+     * @throws IOException if the parser cannot be created.
+     */
+    public JsonArrayStreamDecoder(JsonFactory factory) throws IOException {
+        this.parser = factory.createNonBlockingByteBufferParser();
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Decodes all remaining bytes of the buffer, dispatching every element completed by them. The
+     * parser reads the buffer in place and copies only the pending part of a split token, so the
+     * buffer may be reused as soon as this method returns.
+     *
+     * @param buffer The bytes just read. Its position is advanced to the limit.
+     * @param handler The handler to receive the elements.
+     * @throws IOException if the body is not valid JSON or the handler fails.
+     */
+    public void decode(ByteBuffer buffer, Handler handler) throws IOException {
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        feeder.feedInput(buffer);
+        buffer.position(buffer.limit());
+        parseAvailable(handler);
+    }
+
+    /**
+     * Signals the end of the body, dispatching an element that was waiting for it.
+     *
+     * @param handler The handler to receive the elements.
+     * @throws IOException if the body ends in the middle of a value.
+     */
+    public void finish(Handler handler) throws IOException {
+        feeder.endOfInput();
+        parseAvailable(handler);
+        parser.close();
+        if (depth != 0) {
+            throw new IOException("Truncated JSON array stream");
+        }
+    }
+
+    private void parseAvailable(Handler handler) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (token.isStructStart()) {
+                if (element == null && (depth == 1 || (depth == 0 && token == JsonToken.START_OBJECT))) {
+                    element = new TokenBuffer(parser);
+                    elementDepth = depth;
+                }
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (element == null) {
+                // the brackets of the array and any scalar elements
+                continue;
+            }
+            element.copyCurrentEvent(parser);
+            if (token.isStructEnd() && depth == elementDepth) {
+                TokenBuffer complete = element;
+                element = null;
+                try (JsonParser p = complete.asParser()) {
+                    handler.onElement(p);
+                }
+            }
+        }
+    }
+}
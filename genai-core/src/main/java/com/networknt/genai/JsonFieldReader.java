@@ -0,0 +1,145 @@
+package com.networknt.genai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Extracts a few scalar fields from a JSON document while its bytes arrive. The reader is built on
+ * Jackson's non-blocking parser and is given the fields as JSON pointers such as
+ * /choices/0/message/content. Every scalar value is matched against them by walking the parsing
+ * context, and only the values that match are handed to the {@link Handler}, so the document is never
+ * held in memory and the fields that are not needed are never turned into objects. A null value is
+ * treated as an absent field and is not handed to the handler, e.g. the content of a tool call reply.
+ *
+ * A reader instance belongs to a single response and is not thread safe.
+ */
+public class JsonFieldReader {
+
+    /**
+     * Receives the value of each matching field.
+     */
+    public interface Handler {
+        /**
+         * Called when a scalar value other than null matches one of the pointers of the reader.
+         *
+         * @param field The index of the matching pointer.
+         * @param parser The parser positioned on the value, to be read with getText(), getIntValue()...
+         * @throws IOException to abort decoding.
+         */
+        void onField(int field, JsonParser parser) throws IOException;
+    }
+
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final String[][] names;
+    private final int[][] indexes;
+
+    /**
+     * @param factory The factory of the mapper, usually mapper.getFactory().
+     * @param pointers The JSON pointers of the fields to extract.
+     * @throws IOException if the parser cannot be created.
+     */
+    public JsonFieldReader(JsonFactory factory, String... pointers) throws IOException {
+        this.parser = factory.createNonBlockingByteBufferParser();
+        this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        this.names = new String[pointers.length][];
+        this.indexes = new int[pointers.length][];
+        for (int i = 0; i < pointers.length; i++) {
+            compile(i, pointers[i]);
+        }
+    }
+
+    /**
+     * Decodes all remaining bytes of the buffer. The buffer may be reused as soon as this method returns.
+     *
+     * @param buffer The bytes just read. Its position is advanced to the limit.
+     * @param handler The handler to receive the matching fields.
+     * @throws IOException if the body is not valid JSON or the handler fails.
+     */
+    public void decode(ByteBuffer buffer, Handler handler) throws IOException {
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        feeder.feedInput(buffer);
+        buffer.position(buffer.limit());
+        parseAvailable(handler);
+    }
+
+    /**
+     * Signals the end of the body.
+     *
+     * @param handler The handler to receive the matching fields.
+     * @throws IOException if the body ends in the middle of the document.
+     */
+    public void finish(Handler handler) throws IOException {
+        feeder.endOfInput();
+        parseAvailable(handler);
+        boolean complete = parser.getParsingContext().inRoot();
+        parser.close();
+        if (!complete) {
+            throw new IOException("Truncated JSON document");
+        }
+    }
+
+    private void parseAvailable(Handler handler) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                JsonStreamContext context = parser.getParsingContext();
+                for (int i = 0; i < names.length; i++) {
+                    if (matches(i, context)) {
+                        handler.onField(i, parser);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Matches the context of a value against a pointer from its last segment up, the last segment
+     * being the one that differs most between fields.
+     */
+    private boolean matches(int field, JsonStreamContext context) {
+        String[] segmentNames = names[field];
+        int[] segmentIndexes = indexes[field];
+        if (context.getNestingDepth() != segmentNames.length) {
+            return false;
+        }
+        for (int i = segmentNames.length - 1; i >= 0; i--) {
+            String name = segmentNames[i];
+            if (name != null) {
+                if (!context.inObject() || !name.equals(context.getCurrentName())) {
+                    return false;
+                }
+            } else if (!context.inArray() || context.getCurrentIndex() != segmentIndexes[i]) {
+                return false;
+            }
+            context = context.getParent();
+        }
+        return true;
+    }
+
+    private void compile(int field, String pointer) {
+        if (!pointer.startsWith("/")) {
+            throw new IllegalArgumentException("Invalid JSON pointer " + pointer);
+        }
+        String[] segments = pointer.substring(1).split("/");
+        names[field] = new String[segments.length];
+        indexes[field] = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (!segment.isEmpty() && segment.chars().allMatch(Character::isDigit)) {
+                indexes[field][i] = Integer.parseInt(segment);
+            } else {
+                names[field][i] = segment.replace("~1", "/").replace("~0", "~");
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.networknt.genai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import io.undertow.client.ClientResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Listener of a non-streaming response that extracts the fields it needs with a {@link JsonFieldReader}
+ * as the body arrives, instead of buffering the body and mapping it afterwards. Subclasses keep the
+ * fields passed to {@link #onField} and build the result once the body is complete.
+ *
+ * An error response is collected as is and reported as a {@link GenAiException} carrying the status
+ * and the Retry-After delay.
+ *
+ * @param <T> The type of the result.
+ */
+public abstract class JsonResponseListener<T> implements ResponseListener, JsonFieldReader.Handler {
+    private final String api;
+    private final JsonFieldReader reader;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private ByteArrayOutputStream errorBody;
+    private int statusCode;
+    private long retryAfterNanos;
+
+    /**
+     * @param api The name of the API used in error messages, e.g. OpenAI.
+     * @param factory The factory of the mapper, usually mapper.getFactory().
+     * @param pointers The JSON pointers of the fields to extract.
+     * @throws IOException if the parser cannot be created.
+     */
+    protected JsonResponseListener(String api, JsonFactory factory, String... pointers) throws IOException {
+        this.api = api;
+        this.reader = new JsonFieldReader(factory, pointers);
+    }
+
+    /**
+     * @return The future completed with the result, or with the failure of the exchange.
+     */
+    public CompletableFuture<T> getFuture() {
+        return future;
+    }
+
+    /**
+     * Builds the result once the whole body has been read.
+     *
+     * @return The result.
+     */
+    protected abstract T result();
+
+    @Override
+    public void onResponse(ClientResponse response) {
+        statusCode = response.getResponseCode();
+        if (statusCode != 200) {
+            errorBody = new ByteArrayOutputStream();
+            retryAfterNanos = RateLimiter.retryAfterNanos(response.getResponseHeaders());
+        }
+    }
+
+    @Override
+    public void onData(ByteBuffer data) {
+        if (errorBody != null) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            errorBody.write(bytes, 0, bytes.length);
+            return;
+        }
+        try {
+            reader.decode(data, this);
+        } catch (IOException e) {
+            throw new GenAiException("Invalid " + api + " API response", e);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (errorBody != null) {
+            future.completeExceptionally(new GenAiException(statusCode,
+                    api + " API error: " + statusCode + " " + errorBody.toString(StandardCharsets.UTF_8),
+                    retryAfterNanos));
+            return;
+        }
+        try {
+            reader.finish(this);
+            future.complete(result());
+        } catch (IOException e) {
+            future.completeExceptionally(new GenAiException("Invalid " + api + " API response", e));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        future.completeExceptionally(t);
+    }
+}
@@ -0,0 +1,32 @@
+package com.networknt.genai;
+
+import java.util.Map;
+
+/**
+ * Where {@link StreamMetrics} records its distributions. The first implementation found with the
+ * {@link java.util.ServiceLoader} is used, e.g. the one of genai-metrics that registers them with the
+ * light-4j metrics handler, and {@link HdrMetricsProvider} otherwise. The distributions are looked up
+ * once per tag combination, so a lookup may be slow but recording should not block.
+ */
+public interface MetricsProvider {
+    /**
+     * A distribution of recorded values, safe to record into from any thread.
+     */
+    interface Distribution {
+        void record(long value);
+    }
+
+    /**
+     * @param name The metric name, e.g. {@link StreamMetrics#TIME_TO_FIRST_TOKEN}.
+     * @param tags The tags, e.g. the provider and the model.
+     * @return The distribution of durations in nanoseconds.
+     */
+    Distribution timer(String name, Map<String, String> tags);
+
+    /**
+     * @param name The metric name, e.g. {@link StreamMetrics#OUTPUT_TOKENS_PER_SECOND}.
+     * @param tags The tags, e.g. the provider and the model.
+     * @return The distribution of plain values.
+     */
+    Distribution histogram(String name, Map<String, String> tags);
+}
@@ -0,0 +1,230 @@
+package com.networknt.genai;
+
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HttpString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client side limiter that keeps the requests of one API key within its quota, with a requests per
+ * minute and a tokens per minute token bucket for each model. Every request reserves a request and an
+ * estimate of its prompt tokens before it is sent, and waits for the buckets to refill if they are
+ * short, so that bursts are spread over the minute instead of being answered with 429.
+ *
+ * The buckets are kept in step with the provider from the x-ratelimit-limit-*, x-ratelimit-remaining-*
+ * headers of its responses, which also give the quota when none is configured, and a 429 with a
+ * Retry-After header blocks the model until the given time. A model without configured or reported
+ * quota is not limited.
+ */
+public class RateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final HttpString RETRY_AFTER = new HttpString("Retry-After");
+    private static final HttpString RETRY_AFTER_MS = new HttpString("retry-after-ms");
+    private static final HttpString LIMIT_REQUESTS = new HttpString("x-ratelimit-limit-requests");
+    private static final HttpString LIMIT_TOKENS = new HttpString("x-ratelimit-limit-tokens");
+    private static final HttpString REMAINING_REQUESTS = new HttpString("x-ratelimit-remaining-requests");
+    private static final HttpString REMAINING_TOKENS = new HttpString("x-ratelimit-remaining-tokens");
+
+    private final long requestsPerMinute;
+    private final long tokensPerMinute;
+    private final Map<String, Limits> limits = new ConcurrentHashMap<>();
+
+    /**
+     * @param requestsPerMinute The requests per minute of a model, or 0 to learn it from the responses.
+     * @param tokensPerMinute The tokens per minute of a model, or 0 to learn it from the responses.
+     */
+    public RateLimiter(long requestsPerMinute, long tokensPerMinute) {
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+    }
+
+    /**
+     * Estimates the prompt tokens of a request at 4 characters per token.
+     */
+    public static int estimateTokens(List<ChatMessage> messages) {
+        long chars = 0;
+        for (ChatMessage message : messages) {
+            chars += message.getContent() != null ? message.getContent().length() : 0;
+            // role and separators
+            chars += 16;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (chars + 3) / 4);
+    }
+
+    /**
+     * Reserves a request and its tokens if they are available within the given time.
+     *
+     * @param model The model.
+     * @param tokens The estimated tokens of the request.
+     * @param maxWaitNanos The longest the caller is willing to wait.
+     * @return The time in nanoseconds the caller must wait before sending the request, 0 to send it
+     *         now. If it is greater than maxWaitNanos nothing has been reserved and the request should
+     *         be rejected.
+     */
+    public long reserve(String model, int tokens, long maxWaitNanos) {
+        return limits(model).reserve(tokens, maxWaitNanos);
+    }
+
+    /**
+     * Charges the tokens of a request that were not known when it was reserved, e.g. its completion.
+     */
+    public void charge(String model, int tokens) {
+        if (tokens > 0) {
+            limits(model).tokens.take(tokens, System.nanoTime());
+        }
+    }
+
+    /**
+     * Updates the buckets of a model from the rate limit headers of a response.
+     *
+     * @param model The model.
+     * @param headers The response headers.
+     * @param statusCode The status code, a 429 blocking the model for its Retry-After delay.
+     */
+    public void update(String model, HeaderMap headers, int statusCode) {
+        Limits l = limits(model);
+        long now = System.nanoTime();
+        l.requests.sync(number(headers, LIMIT_REQUESTS), number(headers, REMAINING_REQUESTS), now);
+        l.tokens.sync(number(headers, LIMIT_TOKENS), number(headers, REMAINING_TOKENS), now);
+        if (statusCode == 429) {
+            long retryAfter = retryAfterNanos(headers);
+            // without a hint, wait for a second of quota
+            l.block(now + (retryAfter > 0 ? retryAfter : TimeUnit.SECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * @return The delay given by the retry-after-ms or Retry-After header, in seconds or as an HTTP
+     *         date, or 0 if there is none.
+     */
+    public static long retryAfterNanos(HeaderMap headers) {
+        String ms = headers.getFirst(RETRY_AFTER_MS);
+        if (ms != null) {
+            try {
+                return TimeUnit.MICROSECONDS.toNanos((long) (Double.parseDouble(ms.trim()) * 1000));
+            } catch (NumberFormatException e) {
+                logger.debug("Invalid retry-after-ms header {}", ms);
+            }
+        }
+        String value = headers.getFirst(RETRY_AFTER);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.MILLISECONDS.toNanos((long) (Double.parseDouble(value.trim()) * 1000));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+            } catch (DateTimeParseException ex) {
+                logger.debug("Invalid Retry-After header {}", value);
+                return 0;
+            }
+        }
+    }
+
+    private static long number(HeaderMap headers, HttpString name) {
+        String value = headers.getFirst(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                logger.debug("Invalid {} header {}", name, value);
+            }
+        }
+        return -1;
+    }
+
+    private Limits limits(String model) {
+        return limits.computeIfAbsent(model != null ? model : "", k -> new Limits());
+    }
+
+    private final class Limits {
+        private final Bucket requests = new Bucket(requestsPerMinute);
+        private final Bucket tokens = new Bucket(tokensPerMinute);
+        private long blockedUntil;
+
+        synchronized long reserve(int count, long maxWaitNanos) {
+            long now = System.nanoTime();
+            long wait = Math.max(Math.max(blockedUntil - now, 0),
+                    Math.max(requests.waitNanos(1, now), tokens.waitNanos(count, now)));
+            if (wait <= maxWaitNanos) {
+                requests.take(1, now);
+                tokens.take(count, now);
+            }
+            return wait;
+        }
+
+        synchronized void block(long until) {
+            if (until - blockedUntil > 0) {
+                blockedUntil = until;
+            }
+        }
+    }
+
+    /**
+     * A bucket of capacity per minute refilled continuously. Its level may go negative when requests
+     * are reserved ahead of time, the debt making later requests wait longer.
+     */
+    private static final class Bucket {
+        private double capacity;
+        private double level;
+        private long refilled = System.nanoTime();
+
+        Bucket(long capacity) {
+            this.capacity = capacity;
+            this.level = capacity;
+        }
+
+        private void refill(long now) {
+            if (capacity > 0) {
+                level = Math.min(capacity, level + capacity * (now - refilled) / MINUTE_NANOS);
+            }
+            refilled = now;
+        }
+
+        synchronized long waitNanos(int count, long now) {
+            refill(now);
+            if (capacity <= 0) {
+                return 0;
+            }
+            // a request larger than the whole quota only waits for a full bucket
+            double missing = Math.min(count, capacity) - level;
+            return missing <= 0 ? 0 : (long) (missing * MINUTE_NANOS / capacity);
+        }
+
+        synchronized void take(int count, long now) {
+            refill(now);
+            if (capacity > 0) {
+                level -= Math.min(count, capacity);
+            }
+        }
+
+        /**
+         * Takes the quota and the remaining count reported by the provider, the lower of the local and
+         * reported levels being kept as requests still in flight are not counted in either.
+         */
+        synchronized void sync(long limit, long remaining, long now) {
+            refill(now);
+            if (limit > 0 && limit != capacity) {
+                if (capacity <= 0) {
+                    level = limit;
+                }
+                capacity = limit;
+            }
+            if (remaining >= 0 && capacity > 0) {
+                level = Math.min(level, remaining);
+            }
+        }
+    }
+}
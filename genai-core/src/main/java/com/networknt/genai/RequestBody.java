@@ -0,0 +1,149 @@
+package com.networknt.genai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A request body held in a chain of buffers. A body encoded with {@link #encode} is written by a
+ * {@link JsonGenerator} straight into buffers borrowed from the connection's pool, so a conversation
+ * is serialized once, without building an intermediate object graph or copying the result into a
+ * String or a byte array. The buffers are returned to the pool when the body is closed, which
+ * {@link AsyncExchange} does once the body has been written or the exchange has failed.
+ */
+public final class RequestBody implements Closeable {
+
+    /**
+     * Writes a JSON document to a generator.
+     */
+    public interface Writer {
+        void writeTo(JsonGenerator generator) throws IOException;
+    }
+
+    private final ByteBuffer[] buffers;
+    private final List<PooledByteBuffer> pooled;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private RequestBody(ByteBuffer[] buffers, List<PooledByteBuffer> pooled) {
+        this.buffers = buffers;
+        this.pooled = pooled;
+    }
+
+    /**
+     * @param buffer The body.
+     * @return A body over the buffer, which is not pooled.
+     */
+    public static RequestBody wrap(ByteBuffer buffer) {
+        return new RequestBody(new ByteBuffer[] { buffer != null ? buffer : ByteBuffer.allocate(0) }, List.of());
+    }
+
+    /**
+     * Encodes a JSON document into pooled buffers.
+     *
+     * @param factory The factory of the mapper, usually mapper.getFactory().
+     * @param pool The pool to borrow the buffers from, usually the connection's buffer pool.
+     * @param writer Writes the document.
+     * @return The encoded body, to be closed once written.
+     * @throws IOException if the writer fails, in which case the buffers are returned to the pool.
+     */
+    public static RequestBody encode(JsonFactory factory, ByteBufferPool pool, Writer writer) throws IOException {
+        PooledOutputStream out = new PooledOutputStream(pool);
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            writer.writeTo(generator);
+        } catch (IOException | RuntimeException e) {
+            out.free();
+            throw e;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[out.pooled.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = out.pooled.get(i).getBuffer().flip();
+        }
+        return new RequestBody(buffers, out.pooled);
+    }
+
+    /**
+     * @return The buffers of the body, positioned for reading.
+     */
+    public ByteBuffer[] getBuffers() {
+        return buffers;
+    }
+
+    /**
+     * @return The number of bytes that remain to be written.
+     */
+    public long remaining() {
+        long n = 0;
+        for (ByteBuffer buffer : buffers) {
+            n += buffer.remaining();
+        }
+        return n;
+    }
+
+    /**
+     * Returns the buffers to the pool. Calling it more than once has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            for (PooledByteBuffer buffer : pooled) {
+                buffer.close();
+            }
+        }
+    }
+
+    /**
+     * Output stream that fills pooled buffers one after the other. The generator already buffers its
+     * output, so writes arrive in blocks of several kilobytes.
+     */
+    private static final class PooledOutputStream extends OutputStream {
+        private final ByteBufferPool pool;
+        private final List<PooledByteBuffer> pooled = new ArrayList<>();
+        private ByteBuffer current;
+
+        PooledOutputStream(ByteBufferPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void write(int b) {
+            next().put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                ByteBuffer buffer = next();
+                int n = Math.min(len, buffer.remaining());
+                buffer.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private ByteBuffer next() {
+            if (current == null || !current.hasRemaining()) {
+                PooledByteBuffer buffer = pool.allocate();
+                pooled.add(buffer);
+                current = buffer.getBuffer();
+                current.clear();
+            }
+            return current;
+        }
+
+        void free() {
+            for (PooledByteBuffer buffer : pooled) {
+                buffer.close();
+            }
+            pooled.clear();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.networknt.genai;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * A 128-bit identity of a chat request, shared by the decorators that recognize identical requests.
+ * It is the first half of the SHA-256 digest of the canonical form of the request: the model, the
+ * system prompt, the temperature and the messages, every field written with its length so that no two
+ * different requests produce the same byte sequence.
+ */
+final class RequestKey {
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final long high;
+    private final long low;
+
+    RequestKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    static RequestKey of(List<ChatMessage> messages, RequestOptions options) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        update(digest, options != null ? options.getModel() : null);
+        update(digest, options != null ? options.getSystemPrompt() : null);
+        Double temperature = options != null ? options.getTemperature() : null;
+        update(digest, temperature != null ? Double.toString(temperature) : null);
+        updateInt(digest, messages.size());
+        for (ChatMessage message : messages) {
+            update(digest, message.getRole());
+            update(digest, message.getContent());
+        }
+        byte[] hash = digest.digest();
+        return new RequestKey(toLong(hash, 0), toLong(hash, 8));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            updateInt(digest, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        updateInt(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void updateInt(MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RequestKey)) {
+            return false;
+        }
+        RequestKey key = (RequestKey) o;
+        return high == key.high && low == key.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -7,6 +7,8 @@ public class RequestOptions {
     private String model;
     private String systemPrompt;
     private Double temperature;
+    private Integer cacheTtlSeconds;
+    private String agent;
 
     public RequestOptions() {
     }
@@ -15,6 +17,18 @@ public class RequestOptions {
         this.model = model;
     }
 
+    /**
+     * @return A copy that can be adapted, e.g. to another provider, without changing these options.
+     */
+    public RequestOptions copy() {
+        RequestOptions copy = new RequestOptions(model);
+        copy.systemPrompt = systemPrompt;
+        copy.temperature = temperature;
+        copy.cacheTtlSeconds = cacheTtlSeconds;
+        copy.agent = agent;
+        return copy;
+    }
+
     public String getModel() {
         return model;
     }
@@ -38,4 +52,27 @@ public class RequestOptions {
     public void setTemperature(Double temperature) {
         this.temperature = temperature;
     }
+
+    /**
+     * @return How long the response may be served from a {@link CachingGenAiClient}, or null for the
+     *         cache default. 0 bypasses the cache.
+     */
+    public Integer getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    public void setCacheTtlSeconds(Integer cacheTtlSeconds) {
+        this.cacheTtlSeconds = cacheTtlSeconds;
+    }
+
+    /**
+     * @return The agent the request is sent for, which tags the {@link StreamMetrics} of the request, or null.
+     */
+    public String getAgent() {
+        return agent;
+    }
+
+    public void setAgent(String agent) {
+        this.agent = agent;
+    }
 }
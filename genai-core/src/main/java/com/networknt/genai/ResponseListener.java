@@ -0,0 +1,48 @@
+package com.networknt.genai;
+
+import io.undertow.client.ClientResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the response of an {@link AsyncExchange} as it arrives on the connection's IO thread.
+ * Exactly one of {@link #onComplete()} or {@link #onError(Throwable)} is called per exchange.
+ */
+public interface ResponseListener {
+    /**
+     * Called once the request body has been written and flushed to the connection. The response may
+     * already have started if the server answers before reading the whole request.
+     */
+    default void onRequestWritten() {
+    }
+
+    /**
+     * Called once the status line and headers are available, before any body data.
+     *
+     * @param response The response with status code and headers.
+     * @throws IOException to abort the exchange.
+     */
+    void onResponse(ClientResponse response) throws IOException;
+
+    /**
+     * Called for each block of body data read from the channel. The buffer is pooled and only
+     * valid for the duration of the call.
+     *
+     * @param data The buffer positioned at the data just read.
+     * @throws IOException to abort the exchange.
+     */
+    void onData(ByteBuffer data) throws IOException;
+
+    /**
+     * Called when the whole response body has been read.
+     */
+    void onComplete();
+
+    /**
+     * Called if the request could not be sent or the response could not be read.
+     *
+     * @param t The throwable error.
+     */
+    void onError(Throwable t);
+}
@@ -0,0 +1,77 @@
+package com.networknt.genai;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * When and after how long a failed request is retried. Throttling, server errors, timeouts and IO
+ * errors are retried with exponential backoff and full jitter, i.e. after a random delay between 0
+ * and baseDelay * 2^retry capped at maxDelay, so that clients throttled together do not come back
+ * together. A Retry-After given by the provider is honoured, with a little jitter on top, and a
+ * request it asks to hold for longer than maxDelay is not retried.
+ */
+public class RetryPolicy {
+    private final int maxRetries;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+
+    /**
+     * @param maxRetries The number of retries after the first attempt.
+     * @param baseDelayMillis The upper bound of the delay of the first retry.
+     * @param maxDelayMillis The longest delay before a retry.
+     */
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        this.maxRetries = maxRetries;
+        this.baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(baseDelayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param retry The number of retries already made, 0 after the first attempt.
+     * @param error The error of the last attempt.
+     * @return The delay in nanoseconds before the next retry, or -1 if the request is not retried.
+     */
+    public long delayNanos(int retry, Throwable error) {
+        if (retry >= maxRetries || !isRetriable(error)) {
+            return -1;
+        }
+        Throwable cause = unwrap(error);
+        long retryAfter = cause instanceof GenAiException ? ((GenAiException) cause).getRetryAfterNanos() : 0;
+        if (retryAfter > 0) {
+            if (retryAfter > maxDelayNanos) {
+                return -1;
+            }
+            return retryAfter + ThreadLocalRandom.current().nextLong(Math.max(1, baseDelayNanos));
+        }
+        long ceiling = Math.min(maxDelayNanos, baseDelayNanos << Math.min(retry, 30));
+        return ThreadLocalRandom.current().nextLong(Math.max(1, ceiling));
+    }
+
+    /**
+     * @return Whether the error is transient: throttling, a server error, a timeout or an IO error.
+     */
+    public static boolean isRetriable(Throwable error) {
+        Throwable t = unwrap(error);
+        if (t instanceof GenAiException) {
+            int status = ((GenAiException) t).getStatusCode();
+            return status == 408 || status == 429 || status >= 500;
+        }
+        return t instanceof IOException || t instanceof TimeoutException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable t = error;
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+}
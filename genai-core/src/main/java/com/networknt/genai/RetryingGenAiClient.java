@@ -0,0 +1,261 @@
+package com.networknt.genai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link GenAiClient} decorator that retries the requests failing with a transient error according
+ * to a {@link RetryPolicy}, i.e. with jittered exponential backoff that honours the Retry-After of the
+ * provider. A stream is only retried until its first chunk has been delivered, after which an error
+ * is passed on, as the caller cannot take back what it has already shown.
+ *
+ * The decorator can be registered in service.yml, in which case the delegate is given by its class, or
+ * by a chain of classes as described in {@link DelegatingGenAiClient}:
+ *
+ * <pre>
+ * - com.networknt.genai.GenAiClient:
+ *   - com.networknt.genai.RetryingGenAiClient:
+ *       delegateClass: com.networknt.genai.openai.OpenAiClient
+ *       maxRetries: 2
+ *       baseDelayMillis: 500
+ *       maxDelayMillis: 20000
+ *       timeoutMillis: 60000
+ * </pre>
+ */
+public class RetryingGenAiClient extends DelegatingGenAiClient {
+    private static final Logger logger = LoggerFactory.getLogger(RetryingGenAiClient.class);
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 20000;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long baseDelayMillis = DEFAULT_BASE_DELAY_MILLIS;
+    private long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile RetryPolicy policy;
+
+    /**
+     * Used by SingletonServiceFactory, which then sets the delegate with {@link #setDelegateClass(String)}.
+     */
+    public RetryingGenAiClient() {
+    }
+
+    public RetryingGenAiClient(GenAiClient delegate) {
+        super(delegate);
+    }
+
+    public RetryingGenAiClient(GenAiClient delegate, RetryPolicy policy) {
+        super(delegate);
+        this.policy = policy;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setBaseDelayMillis(long baseDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * @param timeoutMillis How long a blocking chat waits for the answer, retries included.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return The retry policy, created with the settings on first use.
+     */
+    public RetryPolicy getPolicy() {
+        RetryPolicy p = policy;
+        if (p == null) {
+            synchronized (this) {
+                p = policy;
+                if (p == null) {
+                    p = new RetryPolicy(maxRetries, baseDelayMillis, maxDelayMillis);
+                    policy = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages) {
+        return chat(messages, null);
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, RequestOptions options) {
+        try {
+            return chatAsync(messages, options).get(timeoutMillis, TimeUnit.MILLISECONDS).getContent();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted invoking GenAI API with retries", e);
+        } catch (Exception e) {
+            logger.error("Exception invoking GenAI API after retries", e);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        attempt(messages, options, 0, future);
+        return future;
+    }
+
+    private void attempt(List<ChatMessage> messages, RequestOptions options, int retry,
+            CompletableFuture<ChatResponse> future) {
+        CompletableFuture<ChatResponse> response;
+        try {
+            response = delegate().chatAsync(messages, options);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((r, error) -> {
+            if (error == null) {
+                future.complete(r);
+                return;
+            }
+            long delay = getPolicy().delayNanos(retry, error);
+            if (delay < 0) {
+                future.completeExceptionally(error);
+                return;
+            }
+            logger.debug("Retrying request in {} ms after {}", TimeUnit.NANOSECONDS.toMillis(delay), error.toString());
+            after(delay).execute(() -> attempt(messages, options, retry + 1, future));
+        });
+    }
+
+    private static Executor after(long delayNanos) {
+        return CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+        chatStream(messages, null, callback);
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+        RetryingStream stream = new RetryingStream(messages, options, callback);
+        callback.onOpen(stream);
+        stream.attempt();
+    }
+
+    /**
+     * A stream restarted on a transient error until its first chunk. The caller gets it as its
+     * {@link StreamControl}, which forwards to the current attempt.
+     */
+    private final class RetryingStream implements StreamControl {
+        private final List<ChatMessage> messages;
+        private final RequestOptions options;
+        private final StreamCallback callback;
+        private volatile StreamControl control;
+        private volatile boolean started;
+        private volatile boolean paused;
+        private volatile boolean cancelled;
+        private int retry;
+
+        RetryingStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            this.messages = messages;
+            this.options = options;
+            this.callback = callback;
+        }
+
+        void attempt() {
+            if (cancelled) {
+                return;
+            }
+            Attempt attempt = new Attempt();
+            try {
+                if (options != null) {
+                    delegate().chatStream(messages, options, attempt);
+                } else {
+                    delegate().chatStream(messages, attempt);
+                }
+            } catch (RuntimeException e) {
+                attempt.onError(e);
+            }
+        }
+
+        @Override
+        public void pause() {
+            paused = true;
+            StreamControl c = control;
+            if (c != null) {
+                c.pause();
+            }
+        }
+
+        @Override
+        public void resume() {
+            paused = false;
+            StreamControl c = control;
+            if (c != null) {
+                c.resume();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            StreamControl c = control;
+            if (c != null) {
+                c.cancel();
+            }
+        }
+
+        private final class Attempt implements StreamCallback {
+            @Override
+            public void onOpen(StreamControl c) {
+                control = c;
+                if (cancelled) {
+                    c.cancel();
+                } else if (paused) {
+                    c.pause();
+                }
+            }
+
+            @Override
+            public void onEvent(String content) {
+                started = true;
+                callback.onEvent(content);
+            }
+
+            @Override
+            public void onComplete() {
+                callback.onComplete();
+            }
+
+            @Override
+            public void onComplete(ChatResponse response) {
+                callback.onComplete(response);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                long delay = started || cancelled ? -1 : getPolicy().delayNanos(retry, t);
+                if (delay < 0) {
+                    callback.onError(t);
+                    return;
+                }
+                retry++;
+                logger.debug("Retrying stream in {} ms after {}", TimeUnit.NANOSECONDS.toMillis(delay), t.toString());
+                after(delay).execute(RetryingStream.this::attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.networknt.genai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Incremental decoder for a text/event-stream body. It is fed the raw bytes of each read, usually a
+ * pooled direct buffer, and carries partial lines over to the next read. Lines are split on bytes,
+ * which never occur inside a multi-byte UTF-8 sequence, so characters split across reads are kept
+ * intact without decoding anything.
+ *
+ * The data of each event is handed to the {@link Handler} as a slice of an internal array that is
+ * reused for the next event, so a stream is decoded without allocating per line or per event. A
+ * decoder instance belongs to a single stream and is not thread safe.
+ */
+public class ServerSentEventDecoder {
+    public static final int DEFAULT_MAX_EVENT_SIZE = 4 * 1024 * 1024;
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+    private static final byte COLON = ':';
+    private static final byte SPACE = ' ';
+    private static final byte[] DATA = {'d', 'a', 't', 'a'};
+
+    /**
+     * Receives the data of each complete event.
+     */
+    public interface Handler {
+        /**
+         * Called with the data of an event, multiple data lines being joined with a line feed. The
+         * array is owned by the decoder and only valid for the duration of the call.
+         *
+         * @param data The array holding the event data.
+         * @param offset The offset of the data in the array.
+         * @param length The length of the data.
+         * @throws IOException to abort decoding.
+         */
+        void onEvent(byte[] data, int offset, int length) throws IOException;
+    }
+
+    private final int maxEventSize;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private byte[] data = new byte[1024];
+    private int dataLength;
+    private boolean hasData;
+    private boolean skipLineFeed;
+
+    public ServerSentEventDecoder() {
+        this(DEFAULT_MAX_EVENT_SIZE);
+    }
+
+    /**
+     * @param maxEventSize The maximum size in bytes of a line or of the data of an event.
+     */
+    public ServerSentEventDecoder(int maxEventSize) {
+        this.maxEventSize = maxEventSize;
+    }
+
+    /**
+     * Decodes all remaining bytes of the buffer, dispatching every event completed by them.
+     *
+     * @param buffer The bytes just read. Its position is advanced to the limit.
+     * @param handler The handler to receive the events.
+     * @throws IOException if a line or an event exceeds the maximum size or the handler fails.
+     */
+    public void decode(ByteBuffer buffer, Handler handler) throws IOException {
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int limit = buffer.limit();
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer.get(start) == LF) {
+                    buffer.position(++start);
+                    continue;
+                }
+            }
+            int end = start;
+            byte b = 0;
+            while (end < limit) {
+                b = buffer.get(end);
+                if (b == LF || b == CR) {
+                    break;
+                }
+                end++;
+            }
+            append(buffer, end - start);
+            if (end == limit) {
+                return;
+            }
+            buffer.position(end + 1);
+            skipLineFeed = b == CR;
+            processLine(handler);
+        }
+    }
+
+    /**
+     * Resets the decoder so that it can be reused for another stream. Pending data is discarded,
+     * as an event that is not terminated by a blank line must not be dispatched.
+     */
+    public void reset() {
+        lineLength = 0;
+        dataLength = 0;
+        hasData = false;
+        skipLineFeed = false;
+    }
+
+    /**
+     * Compares an event slice with an expected value such as the OpenAI [DONE] sentinel.
+     *
+     * @param data The array holding the event data.
+     * @param offset The offset of the data in the array.
+     * @param length The length of the data.
+     * @param expected The expected bytes.
+     * @return true if the slice is equal to the expected bytes.
+     */
+    public static boolean matches(byte[] data, int offset, int length, byte[] expected) {
+        return Arrays.equals(data, offset, offset + length, expected, 0, expected.length);
+    }
+
+    private void append(ByteBuffer buffer, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        int required = lineLength + length;
+        if (required > maxEventSize) {
+            throw new IOException("Server-sent event line exceeds " + maxEventSize + " bytes");
+        }
+        if (required > line.length) {
+            line = Arrays.copyOf(line, Math.min(Math.max(line.length << 1, required), maxEventSize));
+        }
+        buffer.get(line, lineLength, length);
+        lineLength = required;
+    }
+
+    private void processLine(Handler handler) throws IOException {
+        int length = lineLength;
+        lineLength = 0;
+        if (length == 0) {
+            if (hasData) {
+                int n = dataLength;
+                dataLength = 0;
+                hasData = false;
+                handler.onEvent(data, 0, n);
+            }
+            return;
+        }
+        if (line[0] == COLON) {
+            // comment line, used by servers as a keep-alive
+            return;
+        }
+        int colon = 0;
+        while (colon < length && line[colon] != COLON) {
+            colon++;
+        }
+        if (colon != DATA.length || !matches(line, 0, colon, DATA)) {
+            // event, id and retry fields are not used by the providers
+            return;
+        }
+        int valueStart = colon + 1;
+        if (valueStart < length && line[valueStart] == SPACE) {
+            valueStart++;
+        }
+        int valueLength = Math.max(length - valueStart, 0);
+        int required = dataLength + valueLength + (hasData ? 1 : 0);
+        if (required > maxEventSize) {
+            throw new IOException("Server-sent event data exceeds " + maxEventSize + " bytes");
+        }
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.min(Math.max(data.length << 1, required), maxEventSize));
+        }
+        if (hasData) {
+            data[dataLength++] = LF;
+        }
+        System.arraycopy(line, valueStart, data, dataLength, valueLength);
+        dataLength += valueLength;
+        hasData = true;
+    }
+}
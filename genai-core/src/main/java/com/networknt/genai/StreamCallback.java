@@ -1,6 +1,14 @@
 package com.networknt.genai;
 
 public interface StreamCallback {
+    /**
+     * Called once before the first chunk with a handle to pause, resume or cancel the stream.
+     *
+     * @param control The flow control handle for the stream.
+     */
+    default void onOpen(StreamControl control) {
+    }
+
     /**
      * Called when a new chunk of content is received.
      * 
@@ -13,6 +21,16 @@ public interface StreamCallback {
      */
     void onComplete();
 
+    /**
+     * Called when the stream is complete with the usage, finish reason and timings of the completion.
+     * Providers call this method instead of {@link #onComplete()}, which it calls by default.
+     *
+     * @param response The metadata of the completion, without the content already streamed.
+     */
+    default void onComplete(ChatResponse response) {
+        onComplete();
+    }
+
     /**
      * Called if an error occurs during streaming.
      * 
@@ -0,0 +1,23 @@
+package com.networknt.genai;
+
+/**
+ * Flow control handle for a running stream, handed to {@link StreamCallback#onOpen(StreamControl)}.
+ * Pausing stops reading from the upstream connection, so unconsumed output stays in the provider's
+ * socket buffers instead of accumulating in memory.
+ */
+public interface StreamControl {
+    /**
+     * Stops reading from the upstream. A few chunks that are already decoded may still be delivered.
+     */
+    void pause();
+
+    /**
+     * Resumes reading from the upstream after {@link #pause()}.
+     */
+    void resume();
+
+    /**
+     * Aborts the stream and releases the upstream connection.
+     */
+    void cancel();
+}
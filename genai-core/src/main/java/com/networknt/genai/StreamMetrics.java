@@ -0,0 +1,261 @@
+package com.networknt.genai;
+
+import io.undertow.client.ClientResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the phases of one streamed completion: the time to borrow a connection, to write the request,
+ * to the first byte and the first token of the response, the gaps between chunks and the output tokens
+ * per second. The metrics are tagged with the provider, the model and the agent, and recorded with the
+ * {@link MetricsProvider} found on the class path, e.g. the one of genai-metrics that reports them with
+ * the other metrics of the service, or otherwise kept in the HDR histograms of {@link HdrMetricsProvider}.
+ *
+ * The metrics of a tag combination are looked up once, and recording into them should not block.
+ */
+public final class StreamMetrics {
+    public static final String BORROW = "genai.connection.borrow";
+    public static final String REQUEST_WRITE = "genai.request.write";
+    public static final String TIME_TO_FIRST_BYTE = "genai.time_to_first_byte";
+    public static final String TIME_TO_FIRST_TOKEN = "genai.time_to_first_token";
+    public static final String CHUNK_GAP = "genai.chunk_gap";
+    public static final String OUTPUT_TOKENS_PER_SECOND = "genai.output_tokens_per_second";
+    public static final String WEBSOCKET_SEND = "genai.websocket.send";
+
+    private static final MetricsProvider provider = lookupProvider();
+    private static final Map<Key, Metrics> metrics = new ConcurrentHashMap<>();
+
+    private final Metrics m;
+    private final long startNanos;
+    private long borrowedNanos;
+    private long firstChunkNanos;
+    private long lastChunkNanos;
+    private int chunks;
+
+    private StreamMetrics(Metrics m, long startNanos) {
+        this.m = m;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Starts recording a stream. The times to the first byte and the first token are measured from now.
+     *
+     * @param provider The provider, e.g. openai.
+     * @param model The model.
+     * @param agent The agent the stream is sent for, or null.
+     * @return The metrics of the stream.
+     */
+    public static StreamMetrics start(String provider, String model, String agent) {
+        Metrics m = metrics.computeIfAbsent(new Key(provider, model, agent), Metrics::new);
+        return new StreamMetrics(m, System.nanoTime());
+    }
+
+    /**
+     * @return The provider the metrics are recorded with.
+     */
+    public static MetricsProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * Looks up a timer recording durations in nanoseconds, e.g. the {@link #WEBSOCKET_SEND} latency.
+     *
+     * @param name The metric name.
+     * @param provider The provider tag, or null.
+     * @param model The model tag, or null.
+     * @param agent The agent tag, or null.
+     * @return The timer, registered on first use.
+     */
+    public static MetricsProvider.Distribution timer(String name, String provider, String model, String agent) {
+        return StreamMetrics.provider.timer(name, tags(provider, model, agent));
+    }
+
+    private static Map<String, String> tags(String provider, String model, String agent) {
+        Map<String, String> tags = new HashMap<>();
+        if (provider != null) tags.put("provider", provider);
+        if (model != null) tags.put("model", model);
+        if (agent != null) tags.put("agent", agent);
+        return tags;
+    }
+
+    private static MetricsProvider lookupProvider() {
+        for (MetricsProvider p : ServiceLoader.load(MetricsProvider.class)) {
+            return p;
+        }
+        return new HdrMetricsProvider();
+    }
+
+    /**
+     * Records the time taken to borrow a connection from the pool.
+     */
+    public void borrowed() {
+        borrowedNanos = System.nanoTime();
+        m.borrow.record(borrowedNanos - startNanos);
+    }
+
+    /**
+     * Records the time taken to write the request, from the connection being borrowed.
+     */
+    public void written() {
+        long now = System.nanoTime();
+        m.write.record(now - (borrowedNanos != 0 ? borrowedNanos : startNanos));
+    }
+
+    /**
+     * Records the time to the first byte of the response, its status line and headers.
+     */
+    public void responded() {
+        m.timeToFirstByte.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the time to the first token on the first chunk, and the gap since the previous chunk on
+     * the next ones.
+     */
+    public void chunk() {
+        long now = System.nanoTime();
+        if (chunks++ == 0) {
+            firstChunkNanos = now;
+            m.timeToFirstToken.record(now - startNanos);
+        } else {
+            m.chunkGap.record(now - lastChunkNanos);
+        }
+        lastChunkNanos = now;
+    }
+
+    /**
+     * Records the output tokens per second from the first chunk to the completion. A completion streamed
+     * in a single chunk has no rate.
+     *
+     * @param response The metadata of the completion.
+     */
+    public void complete(ChatResponse response) {
+        long nanos = System.nanoTime() - firstChunkNanos;
+        if (chunks > 1 && response != null && response.getCompletionTokens() > 0 && nanos > 0) {
+            m.outputTokensPerSecond.record(response.getCompletionTokens() * TimeUnit.SECONDS.toNanos(1) / nanos);
+        }
+    }
+
+    /**
+     * @param listener The listener of the exchange of the stream.
+     * @return A listener that records the request write time and the time to the first byte.
+     */
+    public ResponseListener wrap(ResponseListener listener) {
+        return new ResponseListener() {
+            @Override
+            public void onRequestWritten() {
+                written();
+                listener.onRequestWritten();
+            }
+
+            @Override
+            public void onResponse(ClientResponse response) throws IOException {
+                responded();
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onData(ByteBuffer data) throws IOException {
+                listener.onData(data);
+            }
+
+            @Override
+            public void onComplete() {
+                listener.onComplete();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                listener.onError(t);
+            }
+        };
+    }
+
+    /**
+     * @param callback The callback of the stream.
+     * @return A callback that records the time to the first token, the chunk gaps and the output rate.
+     */
+    public StreamCallback wrap(StreamCallback callback) {
+        return new StreamCallback() {
+            @Override
+            public void onOpen(StreamControl control) {
+                callback.onOpen(control);
+            }
+
+            @Override
+            public void onEvent(String content) {
+                chunk();
+                callback.onEvent(content);
+            }
+
+            @Override
+            public void onComplete() {
+                callback.onComplete();
+            }
+
+            @Override
+            public void onComplete(ChatResponse response) {
+                complete(response);
+                callback.onComplete(response);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                callback.onError(t);
+            }
+        };
+    }
+
+    private static final class Metrics {
+        private final MetricsProvider.Distribution borrow;
+        private final MetricsProvider.Distribution write;
+        private final MetricsProvider.Distribution timeToFirstByte;
+        private final MetricsProvider.Distribution timeToFirstToken;
+        private final MetricsProvider.Distribution chunkGap;
+        private final MetricsProvider.Distribution outputTokensPerSecond;
+
+        Metrics(Key key) {
+            borrow = timer(BORROW, key.provider, key.model, key.agent);
+            write = timer(REQUEST_WRITE, key.provider, key.model, key.agent);
+            timeToFirstByte = timer(TIME_TO_FIRST_BYTE, key.provider, key.model, key.agent);
+            timeToFirstToken = timer(TIME_TO_FIRST_TOKEN, key.provider, key.model, key.agent);
+            chunkGap = timer(CHUNK_GAP, key.provider, key.model, key.agent);
+            outputTokensPerSecond = provider.histogram(OUTPUT_TOKENS_PER_SECOND,
+                    tags(key.provider, key.model, key.agent));
+        }
+    }
+
+    private static final class Key {
+        private final String provider;
+        private final String model;
+        private final String agent;
+
+        Key(String provider, String model, String agent) {
+            this.provider = provider;
+            this.model = model;
+            this.agent = agent;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(provider, other.provider) && Objects.equals(model, other.model)
+                    && Objects.equals(agent, other.agent);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(provider, model, agent);
+        }
+    }
+}
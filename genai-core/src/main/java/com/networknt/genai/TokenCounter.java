@@ -0,0 +1,35 @@
+package com.networknt.genai;
+
+import java.util.List;
+
+/**
+ * Counts the tokens of a text for a given encoding, so that budgets can be enforced, models chosen and
+ * history trimmed before a request is sent.
+ */
+public interface TokenCounter {
+    /**
+     * @return The name of the encoding, e.g. cl100k_base, which identifies the counts it produces.
+     */
+    String getName();
+
+    /**
+     * @param text The text.
+     * @return The number of tokens of the text.
+     */
+    int count(CharSequence text);
+
+    /**
+     * Counts the prompt tokens of a conversation. Every message is framed by about 4 tokens of role
+     * and separators, and 3 more prime the reply. The count of each message is cached on it.
+     *
+     * @param messages The messages.
+     * @return The number of tokens of the conversation.
+     */
+    default int count(List<ChatMessage> messages) {
+        int total = 3;
+        for (ChatMessage message : messages) {
+            total += 4 + message.countTokens(this);
+        }
+        return total;
+    }
+}
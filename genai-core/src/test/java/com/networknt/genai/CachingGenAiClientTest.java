@@ -0,0 +1,131 @@
+package com.networknt.genai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class CachingGenAiClientTest {
+
+    @Test
+    public void testReplaysCachedStreamWithDemand() {
+        FakeClient upstream = new FakeClient();
+        CachingGenAiClient client = new CachingGenAiClient(upstream);
+        List<ChatMessage> messages = List.of(new ChatMessage("user", "What are your opening hours?"));
+        RequestOptions options = new RequestOptions("model");
+
+        List<String> first = new ArrayList<>();
+        client.chatStream(messages, options).subscribe(new CollectingSubscriber(first, Long.MAX_VALUE));
+        assertEquals(List.of("Nine ", "to ", "five."), first);
+
+        List<String> second = new ArrayList<>();
+        CollectingSubscriber subscriber = new CollectingSubscriber(second, 1);
+        ChatStreamPublisher publisher = client.chatStream(messages, options);
+        publisher.subscribe(subscriber);
+        assertEquals(List.of("Nine "), second);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(first, second);
+        assertEquals(7, publisher.getResponse().join().getCompletionTokens());
+
+        assertEquals(1, upstream.calls);
+        assertEquals(1, client.getHitCount());
+        assertEquals("Nine to five.", client.chatAsync(messages, options).join().getContent());
+        assertEquals(1, upstream.calls);
+    }
+
+    @Test
+    public void testKeyCoversOptionsAndTtlBypass() {
+        FakeClient upstream = new FakeClient();
+        CachingGenAiClient client = new CachingGenAiClient(upstream);
+        List<ChatMessage> messages = List.of(new ChatMessage("user", "hi"));
+        RequestOptions options = new RequestOptions("model");
+        RequestOptions prompted = new RequestOptions("model");
+        prompted.setSystemPrompt("Be brief.");
+        assertNotEquals(RequestKey.of(messages, options), RequestKey.of(messages, prompted));
+        assertNotEquals(RequestKey.of(List.of(new ChatMessage("user", "ab"), new ChatMessage("user", "c")), options),
+                RequestKey.of(List.of(new ChatMessage("user", "a"), new ChatMessage("user", "bc")), options));
+
+        client.chatAsync(messages, options).join();
+        client.chatAsync(messages, options).join();
+        client.chatAsync(messages, prompted).join();
+        assertEquals(2, upstream.calls);
+
+        RequestOptions uncached = new RequestOptions("model");
+        uncached.setCacheTtlSeconds(0);
+        client.chatAsync(messages, uncached).join();
+        assertEquals(3, upstream.calls);
+    }
+
+    private static class FakeClient implements GenAiClient {
+        int calls;
+
+        @Override
+        public String chat(List<ChatMessage> messages) {
+            return chat(messages, null);
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages, RequestOptions options) {
+            return chatAsync(messages, options).join().getContent();
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            calls++;
+            ChatResponse response = new ChatResponse("Nine to five.");
+            response.setCompletionTokens(7);
+            return CompletableFuture.completedFuture(response);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+            chatStream(messages, null, callback);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            calls++;
+            callback.onEvent("Nine ");
+            callback.onEvent("to ");
+            callback.onEvent("five.");
+            ChatResponse response = new ChatResponse();
+            response.setCompletionTokens(7);
+            callback.onComplete(response);
+        }
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<String> {
+        private final List<String> items;
+        private final long initialDemand;
+        Flow.Subscription subscription;
+
+        CollectingSubscriber(List<String> items, long initialDemand) {
+            this.items = items;
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(String item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
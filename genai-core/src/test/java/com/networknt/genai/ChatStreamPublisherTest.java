@@ -0,0 +1,146 @@
+package com.networknt.genai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChatStreamPublisherTest {
+
+    @Test
+    public void testPausesUpstreamWhenBufferIsFull() {
+        FakeControl control = new FakeControl();
+        AtomicReference<StreamCallback> upstream = new AtomicReference<>();
+        ChatStreamPublisher publisher = new ChatStreamPublisher(callback -> {
+            callback.onOpen(control);
+            upstream.set(callback);
+        }, 4);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        for (int i = 0; i < 4; i++) {
+            upstream.get().onEvent("c" + i);
+        }
+        assertTrue(control.paused);
+        assertTrue(subscriber.items.isEmpty());
+
+        subscriber.subscription.request(3);
+        assertEquals(List.of("c0", "c1", "c2"), subscriber.items);
+        assertFalse(control.paused);
+
+        upstream.get().onEvent("c4");
+        upstream.get().onComplete();
+        assertFalse(subscriber.completed);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(List.of("c0", "c1", "c2", "c3", "c4"), subscriber.items);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testCancelStopsUpstream() {
+        FakeControl control = new FakeControl();
+        AtomicReference<StreamCallback> upstream = new AtomicReference<>();
+        ChatStreamPublisher publisher = new ChatStreamPublisher(callback -> {
+            callback.onOpen(control);
+            upstream.set(callback);
+        });
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        upstream.get().onEvent("a");
+        subscriber.subscription.cancel();
+        upstream.get().onEvent("b");
+        upstream.get().onError(new RuntimeException("cancelled"));
+
+        assertTrue(control.cancelled);
+        assertEquals(List.of("a"), subscriber.items);
+        assertFalse(subscriber.completed);
+        assertEquals(null, subscriber.error);
+    }
+
+    @Test
+    public void testCancelHandle() {
+        FakeControl control = new FakeControl();
+        ChatStreamPublisher publisher = new ChatStreamPublisher(callback -> callback.onOpen(control));
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        publisher.cancel();
+        assertTrue(control.cancelled);
+        assertTrue(publisher.getResponse().isCancelled());
+
+        // a stream cancelled before it is subscribed to is never sent
+        AtomicReference<StreamCallback> upstream = new AtomicReference<>();
+        ChatStreamPublisher unsent = new ChatStreamPublisher(upstream::set);
+        unsent.cancel();
+        unsent.subscribe(new RecordingSubscriber());
+        assertEquals(null, upstream.get());
+        assertTrue(unsent.getResponse().isCancelled());
+    }
+
+    @Test
+    public void testCancelAfterCompletionKeepsUpstream() {
+        FakeControl control = new FakeControl();
+        ChatStreamPublisher publisher = new ChatStreamPublisher(callback -> {
+            callback.onOpen(control);
+            callback.onEvent("a");
+            callback.onComplete();
+        });
+        publisher.subscribe(new RecordingSubscriber());
+        publisher.cancel();
+        // the connection of a completed stream is back in the pool and must not be closed
+        assertFalse(control.cancelled);
+    }
+
+    private static class FakeControl implements StreamControl {
+        boolean paused;
+        boolean cancelled;
+
+        @Override
+        public void pause() {
+            paused = true;
+        }
+
+        @Override
+        public void resume() {
+            paused = false;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<String> {
+        final List<String> items = new ArrayList<>();
+        Flow.Subscription subscription;
+        boolean completed;
+        Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
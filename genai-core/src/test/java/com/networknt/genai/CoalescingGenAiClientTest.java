@@ -0,0 +1,189 @@
+package com.networknt.genai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingGenAiClientTest {
+
+    @Test
+    public void testLateJoinerIsReplayedMissedChunks() {
+        FakeClient upstream = new FakeClient();
+        CoalescingGenAiClient client = new CoalescingGenAiClient(upstream);
+        List<ChatMessage> messages = List.of(new ChatMessage("user", "What are your opening hours?"));
+        RequestOptions options = new RequestOptions("model");
+
+        RecordingCallback first = new RecordingCallback();
+        client.chatStream(messages, options, first);
+        upstream.stream.onEvent("Nine ");
+        RecordingCallback second = new RecordingCallback();
+        client.chatStream(messages, options, second);
+        assertEquals(List.of("Nine "), second.chunks);
+        upstream.stream.onEvent("to five.");
+        ChatResponse response = new ChatResponse();
+        response.setCompletionTokens(4);
+        upstream.stream.onComplete(response);
+
+        assertEquals(1, upstream.calls);
+        assertEquals(List.of("Nine ", "to five."), first.chunks);
+        assertEquals(first.chunks, second.chunks);
+        assertEquals(4, second.response.getCompletionTokens());
+        assertNotSame(first.response, second.response);
+
+        client.chatStream(messages, options, new RecordingCallback());
+        assertEquals(2, upstream.calls);
+    }
+
+    @Test
+    public void testUpstreamCancelledWhenAllCallersLeave() {
+        FakeClient upstream = new FakeClient();
+        CoalescingGenAiClient client = new CoalescingGenAiClient(upstream);
+        List<ChatMessage> messages = List.of(new ChatMessage("user", "hi"));
+
+        RecordingCallback first = new RecordingCallback();
+        RecordingCallback second = new RecordingCallback();
+        client.chatStream(messages, null, first);
+        client.chatStream(messages, null, second);
+        first.control.cancel();
+        upstream.stream.onEvent("a");
+        assertTrue(first.chunks.isEmpty());
+        assertEquals(List.of("a"), second.chunks);
+        second.control.cancel();
+        assertTrue(upstream.cancelled);
+    }
+
+    @Test
+    public void testSlowestCallerPausesUpstream() {
+        FakeClient upstream = new FakeClient();
+        CoalescingGenAiClient client = new CoalescingGenAiClient(upstream);
+        List<ChatMessage> messages = List.of(new ChatMessage("user", "hi"));
+
+        RecordingCallback fast = new RecordingCallback();
+        RecordingCallback slow = new RecordingCallback();
+        RecordingCallback slower = new RecordingCallback();
+        client.chatStream(messages, null, fast);
+        client.chatStream(messages, null, slow);
+        client.chatStream(messages, null, slower);
+        slow.control.pause();
+        slower.control.pause();
+        slower.control.pause();
+        assertTrue(upstream.paused);
+        slow.control.resume();
+        // another caller is still paused
+        assertTrue(upstream.paused);
+        slower.control.resume();
+        assertFalse(upstream.paused);
+
+        // a paused caller that leaves no longer holds the upstream
+        slow.control.pause();
+        assertTrue(upstream.paused);
+        slow.control.cancel();
+        assertFalse(upstream.paused);
+        assertFalse(upstream.cancelled);
+    }
+
+    @Test
+    public void testConcurrentChatAsyncShareOneCall() {
+        FakeClient upstream = new FakeClient();
+        CoalescingGenAiClient client = new CoalescingGenAiClient(upstream);
+        List<ChatMessage> messages = List.of(new ChatMessage("user", "hi"));
+
+        CompletableFuture<ChatResponse> first = client.chatAsync(messages, null);
+        CompletableFuture<ChatResponse> second = client.chatAsync(messages, null);
+        upstream.completion.complete(new ChatResponse("hello"));
+
+        assertEquals(1, upstream.calls);
+        assertEquals(1, client.getCoalescedCount());
+        assertEquals("hello", first.join().getContent());
+        assertEquals("hello", second.join().getContent());
+        assertNotSame(first.join(), second.join());
+    }
+
+    private static class FakeClient implements GenAiClient {
+        int calls;
+        StreamCallback stream;
+        CompletableFuture<ChatResponse> completion;
+        boolean paused;
+        boolean cancelled;
+
+        @Override
+        public String chat(List<ChatMessage> messages) {
+            return chat(messages, null);
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages, RequestOptions options) {
+            return chatAsync(messages, options).join().getContent();
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            calls++;
+            completion = new CompletableFuture<>();
+            return completion;
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+            chatStream(messages, null, callback);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            calls++;
+            stream = callback;
+            callback.onOpen(new StreamControl() {
+                @Override
+                public void pause() {
+                    paused = true;
+                }
+
+                @Override
+                public void resume() {
+                    paused = false;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static class RecordingCallback implements StreamCallback {
+        final List<String> chunks = new ArrayList<>();
+        StreamControl control;
+        ChatResponse response;
+
+        @Override
+        public void onOpen(StreamControl control) {
+            this.control = control;
+        }
+
+        @Override
+        public void onEvent(String content) {
+            chunks.add(content);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        @Override
+        public void onComplete(ChatResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+    }
+}
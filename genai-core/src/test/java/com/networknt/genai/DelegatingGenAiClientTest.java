@@ -0,0 +1,75 @@
+package com.networknt.genai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DelegatingGenAiClientTest {
+    private static final List<ChatMessage> MESSAGES = List.of(new ChatMessage("user", "hi"));
+
+    @Test
+    public void testDecoratorsStackedByClass() {
+        RetryingGenAiClient client = new RetryingGenAiClient();
+        client.setBaseDelayMillis(1);
+        client.setDelegateClass("com.networknt.genai.GuardedGenAiClient, "
+                + "com.networknt.genai.DelegatingGenAiClientTest$FlakyClient");
+        assertTrue(client.getDelegate() instanceof GuardedGenAiClient);
+        GuardedGenAiClient guarded = (GuardedGenAiClient) client.getDelegate();
+        FlakyClient provider = (FlakyClient) guarded.getDelegate();
+
+        // the first call fails through the breaker and is retried
+        assertEquals("ok", client.chatAsync(MESSAGES, new RequestOptions("model")).join().getContent());
+        assertEquals(2, provider.calls);
+        assertEquals(CircuitBreaker.State.CLOSED, guarded.getBreaker("model").getState());
+    }
+
+    @Test
+    public void testChainMustEndWithProvider() {
+        RetryingGenAiClient client = new RetryingGenAiClient();
+        assertThrows(IllegalArgumentException.class,
+                () -> client.setDelegateClass("com.networknt.genai.GuardedGenAiClient"));
+        assertThrows(IllegalArgumentException.class, () -> client.setDelegateClass(
+                "com.networknt.genai.DelegatingGenAiClientTest$FlakyClient, com.networknt.genai.GuardedGenAiClient"));
+        assertThrows(IllegalStateException.class, () -> new CoalescingGenAiClient().chat(MESSAGES));
+    }
+
+    /**
+     * Fails its first call with a 503 and answers the others.
+     */
+    public static class FlakyClient implements GenAiClient {
+        int calls;
+
+        @Override
+        public String chat(List<ChatMessage> messages) {
+            return chat(messages, null);
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages, RequestOptions options) {
+            return chatAsync(messages, options).join().getContent();
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            if (calls++ == 0) {
+                return CompletableFuture.failedFuture(new GenAiException(503, "unavailable"));
+            }
+            return CompletableFuture.completedFuture(new ChatResponse("ok"));
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+            chatStream(messages, null, callback);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.networknt.genai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GuardedGenAiClientTest {
+    private static final List<ChatMessage> MESSAGES = List.of(new ChatMessage("user", "hi"));
+
+    @Test
+    public void testBreakerOpensPerModelAndProbes() {
+        FakeClient upstream = new FakeClient();
+        upstream.status = 503;
+        AtomicLong now = new AtomicLong();
+        GuardedGenAiClient client = new GuardedGenAiClient(upstream);
+        client.setNanoTime(now::get);
+        client.setFailureThreshold(2);
+        client.setOpenMillis(500);
+        RequestOptions options = new RequestOptions("model");
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(CompletionException.class, () -> client.chatAsync(MESSAGES, options).join());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.getBreaker("model").getState());
+        CompletionException rejected = assertThrows(CompletionException.class,
+                () -> client.chatAsync(MESSAGES, options).join());
+        assertEquals(503, ((GenAiException) rejected.getCause()).getStatusCode());
+        assertEquals(2, upstream.calls);
+        assertFalse(client.isAvailable(options));
+        // other models of the provider are not affected
+        assertTrue(client.isAvailable(new RequestOptions("other")));
+
+        // still open just before the delay elapses
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(499));
+        assertFalse(client.isAvailable(options));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, client.getBreaker("model").getState());
+        upstream.status = 0;
+        List<Throwable> errors = new ArrayList<>();
+        client.chatStream(MESSAGES, options, new StreamCallback() {
+            @Override
+            public void onEvent(String content) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors.add(t);
+            }
+        });
+        assertTrue(errors.isEmpty());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getBreaker("model").getState());
+        assertEquals(0, client.getLimiter().getInFlight());
+
+        // a bad request is the fault of the caller and does not count
+        upstream.status = 400;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(CompletionException.class, () -> client.chatAsync(MESSAGES, options).join());
+            // neither for a blocking chat, which returns null
+            assertNull(client.chat(MESSAGES, options));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, client.getBreaker("model").getState());
+        assertEquals(0, client.getLimiter().getInFlight());
+        upstream.status = 0;
+        assertEquals("ok", client.chat(MESSAGES));
+    }
+
+    @Test
+    public void testLimiterRejectsOrQueues() {
+        HoldingClient upstream = new HoldingClient();
+        GuardedGenAiClient client = new GuardedGenAiClient(upstream);
+        client.setInitialConcurrency(1);
+        client.setMaxConcurrency(1);
+        client.setMaxQueueSize(1);
+        RequestOptions options = new RequestOptions("model");
+
+        CompletableFuture<ChatResponse> first = client.chatAsync(MESSAGES, options);
+        CompletableFuture<ChatResponse> queued = client.chatAsync(MESSAGES, options);
+        CompletionException rejected = assertThrows(CompletionException.class,
+                () -> client.chatAsync(MESSAGES, options).join());
+        assertEquals(503, ((GenAiException) rejected.getCause()).getStatusCode());
+        assertEquals(1, upstream.pending.size());
+        assertEquals(1, client.getLimiter().getQueueSize());
+
+        upstream.pending.get(0).complete(new ChatResponse("a"));
+        assertEquals("a", first.join().getContent());
+        // the permit of the first call went to the queued one
+        assertEquals(2, upstream.pending.size());
+        upstream.pending.get(1).complete(new ChatResponse("b"));
+        assertEquals("b", queued.join().getContent());
+        assertEquals(0, client.getLimiter().getInFlight());
+    }
+
+    @Test
+    public void testLimitFollowsLatency() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100, 0);
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < limiter.getLimit(); j++) {
+                limiter.acquire(0);
+            }
+            for (int j = limiter.getInFlight(); j > 0; j--) {
+                limiter.release(1_000_000L, false);
+            }
+        }
+        int grown = limiter.getLimit();
+        assertTrue(grown > 10);
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < limiter.getLimit(); j++) {
+                limiter.acquire(0);
+            }
+            for (int j = limiter.getInFlight(); j > 0; j--) {
+                limiter.release(10_000_000L, false);
+            }
+        }
+        assertTrue(limiter.getLimit() < grown);
+
+        ConcurrencyLimiter single = new ConcurrencyLimiter(1, 1, 1, 0);
+        assertTrue(single.acquire(0).isDone());
+        assertNull(single.acquire(0));
+    }
+
+    /**
+     * Answers with a chunk, or fails with the configured status when it is not 0.
+     */
+    private static class FakeClient implements GenAiClient {
+        volatile int status;
+        int calls;
+
+        @Override
+        public String chat(List<ChatMessage> messages) {
+            return chat(messages, null);
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages, RequestOptions options) {
+            return chatAsync(messages, options).join().getContent();
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            calls++;
+            if (status != 0) {
+                return CompletableFuture.failedFuture(new GenAiException(status, "status " + status));
+            }
+            return CompletableFuture.completedFuture(new ChatResponse("ok"));
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+            chatStream(messages, null, callback);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            calls++;
+            if (status != 0) {
+                callback.onError(new GenAiException(status, "status " + status));
+                return;
+            }
+            callback.onEvent("ok");
+            callback.onComplete(new ChatResponse());
+        }
+    }
+
+    /**
+     * Keeps its responses pending for the test to complete.
+     */
+    private static class HoldingClient extends FakeClient {
+        final List<CompletableFuture<ChatResponse>> pending = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.networknt.genai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonArrayStreamDecoderTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testElementsSplitAcrossReads() throws IOException {
+        String stream = "[{\"text\":\"a [b], c\"}\r\n,{\"text\":\"héllo 👋\",\"parts\":[{\"n\":1}]}\r\n]";
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+        // feed one byte at a time to split every token and every multi-byte character
+        JsonArrayStreamDecoder decoder = new JsonArrayStreamDecoder(mapper.getFactory());
+        List<Map<String, Object>> elements = new ArrayList<>();
+        JsonArrayStreamDecoder.Handler handler = element -> elements.add(mapper.readValue(element, Map.class));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1);
+        for (byte b : bytes) {
+            buffer.clear();
+            buffer.put(b).flip();
+            decoder.decode(buffer, handler);
+        }
+        decoder.finish(handler);
+        assertEquals(2, elements.size());
+        assertEquals("a [b], c", elements.get(0).get("text"));
+        assertEquals("héllo 👋", elements.get(1).get("text"));
+        assertEquals(List.of(Map.of("n", 1)), elements.get(1).get("parts"));
+    }
+
+    @Test
+    public void testSingleObjectAndTruncatedArray() throws IOException {
+        JsonArrayStreamDecoder decoder = new JsonArrayStreamDecoder(mapper.getFactory());
+        List<Map<String, Object>> elements = new ArrayList<>();
+        JsonArrayStreamDecoder.Handler handler = element -> elements.add(mapper.readValue(element, Map.class));
+        decoder.decode(ByteBuffer.wrap("{\"text\":\"one\"}".getBytes(StandardCharsets.UTF_8)), handler);
+        decoder.finish(handler);
+        assertEquals(List.of(Map.of("text", "one")), elements);
+
+        JsonArrayStreamDecoder truncated = new JsonArrayStreamDecoder(mapper.getFactory());
+        truncated.decode(ByteBuffer.wrap("[{\"text\":\"one\"},{\"te".getBytes(StandardCharsets.UTF_8)), handler);
+        assertEquals(2, elements.size());
+        assertThrows(IOException.class, () -> truncated.finish(handler));
+    }
+}
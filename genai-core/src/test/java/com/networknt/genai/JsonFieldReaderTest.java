@@ -0,0 +1,61 @@
+package com.networknt.genai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonFieldReaderTest {
+
+    @Test
+    public void testFieldsExtractedAcrossReads() throws IOException {
+        String body = "{\"id\":\"x\",\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"héllo [a], b\"},"
+                + "\"logprobs\":{\"content\":[{\"token\":\"h\",\"content\":\"no\"}]},\"finish_reason\":\"stop\"},"
+                + "{\"message\":{\"content\":\"second\"}}],\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":3}}";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        JsonFieldReader reader = new JsonFieldReader(new JsonFactory(), "/choices/0/message/content",
+                "/choices/0/finish_reason", "/usage/completion_tokens");
+        List<String> fields = new ArrayList<>();
+        JsonFieldReader.Handler handler = (field, parser) -> fields.add(field + "=" + parser.getText());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1);
+        for (byte b : bytes) {
+            buffer.clear();
+            buffer.put(b).flip();
+            reader.decode(buffer, handler);
+        }
+        reader.finish(handler);
+        assertEquals(List.of("0=héllo [a], b", "1=stop", "2=3"), fields);
+    }
+
+    @Test
+    public void testNullFieldsSkipped() throws IOException {
+        String body = "{\"choices\":[{\"message\":{\"content\":null,\"tool_calls\":[]},\"finish_reason\":\"tool_calls\"}],"
+                + "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":null}}";
+        JsonFieldReader reader = new JsonFieldReader(new JsonFactory(), "/choices/0/message/content",
+                "/choices/0/finish_reason", "/usage/prompt_tokens", "/usage/completion_tokens");
+        List<String> fields = new ArrayList<>();
+        // a null number would fail getIntValue()
+        JsonFieldReader.Handler handler = (field, parser) ->
+                fields.add(field + "=" + (field >= 2 ? parser.getIntValue() : parser.getText()));
+        reader.decode(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)), handler);
+        reader.finish(handler);
+        assertEquals(List.of("1=tool_calls", "2=12"), fields);
+    }
+
+    @Test
+    public void testTruncatedDocument() throws IOException {
+        JsonFieldReader reader = new JsonFieldReader(new JsonFactory(), "/message/content");
+        List<String> fields = new ArrayList<>();
+        JsonFieldReader.Handler handler = (field, parser) -> fields.add(parser.getText());
+        reader.decode(ByteBuffer.wrap("{\"message\":{\"content\":\"hi\"".getBytes(StandardCharsets.UTF_8)), handler);
+        assertEquals(List.of("hi"), fields);
+        assertThrows(IOException.class, () -> reader.finish(handler));
+    }
+}
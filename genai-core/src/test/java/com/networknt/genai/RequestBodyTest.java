@@ -0,0 +1,45 @@
+package com.networknt.genai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.server.DefaultByteBufferPool;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestBodyTest {
+
+    @Test
+    public void testEncodeSpansPooledBuffers() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        DefaultByteBufferPool pool = new DefaultByteBufferPool(true, 64);
+        String text = "héllo 👋 ".repeat(50);
+        RequestBody body = RequestBody.encode(mapper.getFactory(), pool, g -> {
+            g.writeStartObject();
+            g.writeArrayFieldStart("messages");
+            g.writeStartObject();
+            g.writeStringField("content", text);
+            g.writeEndObject();
+            g.writeEndArray();
+            g.writeEndObject();
+        });
+        assertTrue(body.getBuffers().length > 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : body.getBuffers()) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes);
+        }
+        assertEquals(0, body.remaining());
+        body.close();
+        body.close();
+        Map<String, Object> decoded = mapper.readValue(out.toByteArray(), Map.class);
+        assertEquals(List.of(Map.of("content", text)), decoded.get("messages"));
+    }
+}
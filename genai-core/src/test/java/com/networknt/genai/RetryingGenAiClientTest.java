@@ -0,0 +1,146 @@
+package com.networknt.genai;
+
+import io.undertow.util.HeaderMap;
+import io.undertow.util.HttpString;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryingGenAiClientTest {
+    private static final List<ChatMessage> MESSAGES = List.of(new ChatMessage("user", "hi"));
+
+    @Test
+    public void testRetriesThrottlingAfterRetryAfter() {
+        FlakyClient upstream = new FlakyClient(new GenAiException(429, "slow down", TimeUnit.MILLISECONDS.toNanos(30)));
+        RetryingGenAiClient client = new RetryingGenAiClient(upstream, new RetryPolicy(2, 1, 1000));
+
+        long start = System.nanoTime();
+        assertEquals("ok", client.chatAsync(MESSAGES, null).join().getContent());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(2, upstream.calls);
+
+        FlakyClient invalid = new FlakyClient(new GenAiException(400, "bad request"));
+        RetryingGenAiClient noRetry = new RetryingGenAiClient(invalid, new RetryPolicy(2, 1, 1000));
+        assertThrows(CompletionException.class, () -> noRetry.chatAsync(MESSAGES, null).join());
+        assertEquals(1, invalid.calls);
+    }
+
+    @Test
+    public void testStreamIsNotRetriedOnceStarted() throws InterruptedException {
+        FlakyClient upstream = new FlakyClient(new GenAiException(503, "unavailable"));
+        RetryingGenAiClient client = new RetryingGenAiClient(upstream, new RetryPolicy(2, 1, 1000));
+        List<String> chunks = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        StreamCallback callback = new StreamCallback() {
+            @Override
+            public void onEvent(String content) {
+                chunks.add(content);
+            }
+
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors.add(t);
+                done.countDown();
+            }
+        };
+        client.chatStream(MESSAGES, null, callback);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("ok"), chunks);
+        assertTrue(errors.isEmpty());
+
+        upstream.midStream = true;
+        upstream.failures = 1;
+        chunks.clear();
+        client.chatStream(MESSAGES, null, callback);
+        assertEquals(List.of("partial"), chunks);
+        assertEquals(1, errors.size());
+        assertEquals(3, upstream.calls);
+    }
+
+    @Test
+    public void testRateLimiterFollowsHeaders() {
+        RateLimiter limiter = new RateLimiter(60, 0);
+        long second = TimeUnit.SECONDS.toNanos(1);
+        assertEquals(0, limiter.reserve("model", 10, 0));
+        assertEquals(0, limiter.reserve("other", 10, 0));
+
+        HeaderMap headers = new HeaderMap();
+        headers.put(new HttpString("x-ratelimit-remaining-requests"), "0");
+        limiter.update("model", headers, 200);
+        long wait = limiter.reserve("model", 10, 0);
+        assertTrue(wait > 0 && wait <= second);
+
+        headers = new HeaderMap();
+        headers.put(new HttpString("Retry-After"), "20");
+        limiter.update("other", headers, 429);
+        assertTrue(limiter.reserve("other", 10, 0) > 19 * second);
+        assertEquals(20 * second, RateLimiter.retryAfterNanos(headers));
+    }
+
+    /**
+     * Fails the first call with the given error, before or after a first chunk for streams.
+     */
+    private static class FlakyClient implements GenAiClient {
+        private final GenAiException error;
+        volatile int failures = 1;
+        volatile boolean midStream;
+        volatile int calls;
+
+        FlakyClient(GenAiException error) {
+            this.error = error;
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages) {
+            return chat(messages, null);
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages, RequestOptions options) {
+            return chatAsync(messages, options).join().getContent();
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            calls++;
+            if (failures-- > 0) {
+                return CompletableFuture.failedFuture(error);
+            }
+            return CompletableFuture.completedFuture(new ChatResponse("ok"));
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+            chatStream(messages, null, callback);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            calls++;
+            if (failures-- > 0) {
+                if (midStream) {
+                    callback.onEvent("partial");
+                }
+                callback.onError(error);
+                return;
+            }
+            callback.onEvent("ok");
+            callback.onComplete();
+        }
+    }
+}
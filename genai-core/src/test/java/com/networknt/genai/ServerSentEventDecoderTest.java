@@ -0,0 +1,47 @@
+package com.networknt.genai;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ServerSentEventDecoderTest {
+
+    @Test
+    public void testEventsSplitAcrossReads() throws IOException {
+        String stream = ": keep-alive\n\ndata: {\"text\":\"héllo 👋\"}\n\nevent: ping\ndata: a\ndata: b\r\n\r\ndata: [DONE]\n\n";
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+        // feed one byte at a time to split every line and every multi-byte character
+        ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+        List<String> events = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1);
+        for (byte b : bytes) {
+            buffer.clear();
+            buffer.put(b).flip();
+            decoder.decode(buffer, (data, offset, length) -> events.add(new String(data, offset, length, StandardCharsets.UTF_8)));
+        }
+        assertEquals(List.of("{\"text\":\"héllo 👋\"}", "a\nb", "[DONE]"), events);
+    }
+
+    @Test
+    public void testIncompleteEventIsNotDispatched() throws IOException {
+        ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+        List<String> events = new ArrayList<>();
+        decoder.decode(ByteBuffer.wrap("data: one\n\ndata: tw".getBytes(StandardCharsets.UTF_8)),
+                (data, offset, length) -> events.add(new String(data, offset, length, StandardCharsets.UTF_8)));
+        assertEquals(List.of("one"), events);
+    }
+
+    @Test
+    public void testEventSizeIsBounded() {
+        ServerSentEventDecoder decoder = new ServerSentEventDecoder(16);
+        ByteBuffer buffer = ByteBuffer.wrap("data: 0123456789abcdefghij\n\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> decoder.decode(buffer, (data, offset, length) -> { }));
+    }
+}
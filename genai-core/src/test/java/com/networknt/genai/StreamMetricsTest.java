@@ -0,0 +1,108 @@
+package com.networknt.genai;
+
+import io.undertow.client.ClientResponse;
+import io.undertow.util.Protocols;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class StreamMetricsTest {
+    private static long count(String name, String agent) {
+        HdrMetricsProvider.HdrDistribution distribution = ((HdrMetricsProvider) StreamMetrics.getProvider())
+                .get(name, Map.of("provider", "test", "model", "m1", "agent", agent));
+        return distribution == null ? 0 : distribution.snapshot().getTotalCount();
+    }
+
+    @Test
+    public void testRecordsThePhasesOfAStream() throws IOException {
+        List<String> events = new ArrayList<>();
+        StreamMetrics metrics = StreamMetrics.start("test", "m1", "phases");
+        metrics.borrowed();
+        ResponseListener listener = metrics.wrap(new ResponseListener() {
+            @Override
+            public void onResponse(ClientResponse response) {
+                events.add("response");
+            }
+
+            @Override
+            public void onData(ByteBuffer data) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        });
+        StreamCallback callback = metrics.wrap(new StreamCallback() {
+            @Override
+            public void onEvent(String content) {
+                events.add(content);
+            }
+
+            @Override
+            public void onComplete() {
+                events.add("complete");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        });
+        listener.onRequestWritten();
+        listener.onResponse(new ClientResponse(200, "OK", Protocols.HTTP_1_1));
+        callback.onEvent("a");
+        callback.onEvent("b");
+        callback.onEvent("c");
+        ChatResponse response = new ChatResponse();
+        response.setCompletionTokens(3);
+        callback.onComplete(response);
+        assertEquals(List.of("response", "a", "b", "c", "complete"), events);
+
+        assertEquals(1, count(StreamMetrics.BORROW, "phases"));
+        assertEquals(1, count(StreamMetrics.REQUEST_WRITE, "phases"));
+        assertEquals(1, count(StreamMetrics.TIME_TO_FIRST_BYTE, "phases"));
+        assertEquals(1, count(StreamMetrics.TIME_TO_FIRST_TOKEN, "phases"));
+        assertEquals(2, count(StreamMetrics.CHUNK_GAP, "phases"));
+        assertEquals(1, count(StreamMetrics.OUTPUT_TOKENS_PER_SECOND, "phases"));
+        // a snapshot resets the histograms for the next reporting interval
+        assertEquals(0, count(StreamMetrics.CHUNK_GAP, "phases"));
+    }
+
+    @Test
+    public void testSingleChunkHasNoRate() {
+        StreamMetrics metrics = StreamMetrics.start("test", "m1", "single");
+        StreamCallback callback = metrics.wrap(new StreamCallback() {
+            @Override
+            public void onEvent(String content) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        });
+        callback.onEvent("cached answer");
+        ChatResponse response = new ChatResponse();
+        response.setCompletionTokens(12);
+        callback.onComplete(response);
+
+        assertEquals(1, count(StreamMetrics.TIME_TO_FIRST_TOKEN, "single"));
+        assertEquals(0, count(StreamMetrics.CHUNK_GAP, "single"));
+        assertEquals(0, count(StreamMetrics.OUTPUT_TOKENS_PER_SECOND, "single"));
+        assertNull(((HdrMetricsProvider) StreamMetrics.getProvider()).get(StreamMetrics.BORROW,
+                Map.of("provider", "test", "model", "m1", "agent", "other")));
+    }
+}
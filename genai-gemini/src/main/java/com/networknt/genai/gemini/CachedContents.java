@@ -0,0 +1,166 @@
+package com.networknt.genai.gemini;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * The cachedContents resources that hold the system prompts of the agents, keyed by model and system
+ * prompt, so that the prefill of a long system prompt is paid once per TTL instead of on every turn.
+ *
+ * A lookup never waits for a resource to be created: the first request of an agent, and the requests
+ * sent while its resource is being created, carry the system prompt inline. A resource is replaced by
+ * a new one shortly before it expires, and the old one is left to expire. A system prompt shorter than
+ * the minimum of the API is not cached, and a failed creation is not retried before the TTL has
+ * passed. Once MAX_ENTRIES system prompts are known, the expired ones are evicted to make room for new
+ * ones.
+ */
+final class CachedContents {
+    private static final Logger logger = LoggerFactory.getLogger(CachedContents.class);
+    static final int CHARS_PER_TOKEN = 4;
+    static final int MAX_ENTRIES = 256;
+
+    private final long ttlNanos;
+    private final long refreshNanos;
+    private final int minTokens;
+    private final BiFunction<String, String, CompletableFuture<String>> creator;
+    private final LongSupplier nanoTime;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Key> creating = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param ttlSeconds The TTL of the resources, 0 to disable caching.
+     * @param minTokens The estimated tokens under which a system prompt is not cached.
+     * @param creator Creates the resource of a model and a system prompt and returns its name.
+     */
+    CachedContents(int ttlSeconds, int minTokens, BiFunction<String, String, CompletableFuture<String>> creator) {
+        this(ttlSeconds, minTokens, creator, System::nanoTime);
+    }
+
+    /**
+     * @param nanoTime The clock of the TTLs, System.nanoTime outside of tests.
+     */
+    CachedContents(int ttlSeconds, int minTokens, BiFunction<String, String, CompletableFuture<String>> creator,
+            LongSupplier nanoTime) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        // renew when a tenth of the TTL is left, at least a minute before the resource expires
+        this.refreshNanos = Math.max(ttlNanos / 10, Math.min(TimeUnit.MINUTES.toNanos(1), ttlNanos / 2));
+        this.minTokens = minTokens;
+        this.creator = creator;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @param model The model.
+     * @param systemPrompt The system prompt, or null.
+     * @return The name of the resource holding the system prompt, e.g. cachedContents/abc, or null to
+     *         send it inline. The creation of the resource is started if there is none or it expires soon.
+     */
+    String lookup(String model, String systemPrompt) {
+        if (ttlNanos <= 0 || systemPrompt == null || systemPrompt.length() / CHARS_PER_TOKEN < minTokens) {
+            return null;
+        }
+        Key key = new Key(model, systemPrompt);
+        Entry entry = entries.get(key);
+        long now = nanoTime.getAsLong();
+        if ((entry == null ? hasRoom(now) : now - entry.refreshAt >= 0) && creating.add(key)) {
+            create(key, now);
+        }
+        return entry != null && now - entry.expireAt < 0 ? entry.name : null;
+    }
+
+    /**
+     * @return true if a new system prompt can be cached, after evicting the expired ones if there are
+     *         MAX_ENTRIES.
+     */
+    private boolean hasRoom(long now) {
+        if (entries.size() < MAX_ENTRIES) {
+            return true;
+        }
+        entries.values().removeIf(entry -> now - entry.expireAt >= 0);
+        return entries.size() < MAX_ENTRIES;
+    }
+
+    private void create(Key key, long start) {
+        CompletableFuture<String> future;
+        try {
+            future = creator.apply(key.model, key.systemPrompt);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((name, error) -> {
+            try {
+                if (error != null) {
+                    logger.warn("Cannot cache the system prompt of {}, it is sent inline", key.model, error);
+                    // do not retry before the TTL has passed
+                    entries.put(key, new Entry(null, start + ttlNanos, start + ttlNanos));
+                } else {
+                    // the TTL runs from the creation, which started before the request was sent
+                    entries.put(key, new Entry(name, start + ttlNanos - refreshNanos, start + ttlNanos));
+                    logger.debug("Cached the system prompt of {} as {}", key.model, name);
+                }
+            } finally {
+                creating.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Forgets a resource that the API no longer knows, e.g. deleted or expired earlier than expected.
+     */
+    void invalidate(String model, String systemPrompt, String name) {
+        Key key = new Key(model, systemPrompt);
+        Entry entry = entries.get(key);
+        if (entry != null && name.equals(entry.name)) {
+            entries.remove(key, entry);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final long refreshAt;
+        private final long expireAt;
+
+        Entry(String name, long refreshAt, long expireAt) {
+            this.name = name;
+            this.refreshAt = refreshAt;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private static final class Key {
+        private final String model;
+        private final String systemPrompt;
+
+        Key(String model, String systemPrompt) {
+            this.model = model;
+            this.systemPrompt = systemPrompt;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return model.equals(other.model) && systemPrompt.equals(other.systemPrompt);
+        }
+
+        @Override
+        public int hashCode() {
+            // the hash of the prompt is cached by the String of the agent definition
+            return 31 * model.hashCode() + systemPrompt.hashCode();
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.networknt.genai.gemini;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.networknt.client.Http2Client;
 import com.networknt.client.simplepool.SimpleConnectionState;
 import com.networknt.config.Config;
+import com.networknt.genai.AsyncExchange;
+import com.networknt.genai.ChatResponse;
 import com.networknt.genai.GenAiClient;
+import com.networknt.genai.GenAiException;
+import com.networknt.genai.JsonResponseListener;
+import com.networknt.genai.JsonArrayStreamDecoder;
+import com.networknt.genai.RequestBody;
+import com.networknt.genai.ResponseListener;
+import com.networknt.genai.StreamMetrics;
 import io.undertow.client.ClientConnection;
 import io.undertow.client.ClientRequest;
 import io.undertow.client.ClientResponse;
@@ -15,14 +23,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.OptionMap;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.networknt.genai.RequestOptions;
 
@@ -31,6 +38,8 @@ public class GeminiClient implements GenAiClient {
     private static final GeminiConfig config = GeminiConfig.load();
     private static final Http2Client client = Http2Client.getInstance();
     private static final ObjectMapper mapper = Config.getInstance().getMapper();
+    private static final CachedContents cachedContents = new CachedContents(config.getCacheTtlSeconds(),
+            config.getCacheMinTokens(), GeminiClient::createCachedContent);
 
     @Override
     public String chat(java.util.List<com.networknt.genai.ChatMessage> messages) {
@@ -39,84 +48,206 @@ public class GeminiClient implements GenAiClient {
 
     @Override
     public String chat(java.util.List<com.networknt.genai.ChatMessage> messages, RequestOptions options) {
-        return chat(options.getModel() != null ? options.getModel() : config.getModel(), messages);
+        return chat(options.getModel() != null ? options.getModel() : config.getModel(), options.getSystemPrompt(),
+                messages);
     }
 
     public String chat(String model, java.util.List<com.networknt.genai.ChatMessage> messages) {
-        String result = null;
+        return chat(model, null, messages);
+    }
+
+    private String chat(String model, String systemPrompt, java.util.List<com.networknt.genai.ChatMessage> messages) {
+        try {
+            return chatAsync(model, systemPrompt, messages).get(10, TimeUnit.SECONDS).getContent();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted invoking Gemini API", e);
+        } catch (Exception e) {
+            logger.error("Exception invoking Gemini API", e);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(java.util.List<com.networknt.genai.ChatMessage> messages,
+            RequestOptions options) {
+        return chatAsync(options.getModel() != null ? options.getModel() : config.getModel(), options.getSystemPrompt(),
+                messages);
+    }
+
+    public CompletableFuture<ChatResponse> chatAsync(String model, java.util.List<com.networknt.genai.ChatMessage> messages) {
+        return chatAsync(model, null, messages);
+    }
+
+    /**
+     * @param model The model.
+     * @param systemPrompt The system prompt, sent as the system instruction or as cached content, or null.
+     * @param messages The messages.
+     * @return The response.
+     */
+    public CompletableFuture<ChatResponse> chatAsync(String model, String systemPrompt,
+            java.util.List<com.networknt.genai.ChatMessage> messages) {
         SimpleConnectionState.ConnectionToken connectionToken = null;
+        String cachedContent = cachedContents.lookup(model, systemPrompt);
         try {
             String endpoint = String.format(config.getUrl(), model) + "?key=" + config.getApiKey();
 
-            // Map ChatMessage list to Gemini structure
-            Map<String, Object> requestBody = new HashMap<>();
-            List<Map<String, Object>> contents = new ArrayList<>();
+            URI uri = new URI(endpoint);
+            connectionToken = client.borrow(uri, Http2Client.WORKER, Http2Client.SSL, Http2Client.BUFFER_POOL,
+                    OptionMap.EMPTY);
+            ClientConnection connection = (ClientConnection) connectionToken.getRawConnection();
+            RequestBody body = GeminiRequestEncoder.encode(mapper.getFactory(), connection.getBufferPool(),
+                    systemPrompt, cachedContent, messages);
+
+            ClientRequest request = new ClientRequest().setMethod(Methods.POST)
+                    .setPath(uri.getPath() + "?" + uri.getQuery());
+            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
+            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
 
-            for (com.networknt.genai.ChatMessage msg : messages) {
-                Map<String, Object> contentMap = new HashMap<>();
-                // Map roles: assistant -> model
-                String role = msg.getRole();
-                if ("assistant".equals(role)) {
-                    role = "model";
+            final SimpleConnectionState.ConnectionToken finalToken = connectionToken;
+            ChatListener listener = new ChatListener();
+            new AsyncExchange(connection, request, body).start(listener);
+            return listener.getFuture().whenComplete((response, error) -> {
+                client.restore(finalToken);
+                if (error != null && cachedContent != null) {
+                    invalidate(model, systemPrompt, cachedContent, error);
                 }
-                contentMap.put("role", role);
+            });
+        } catch (Exception e) {
+            if (connectionToken != null)
+                client.restore(connectionToken);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Extracts the content, finish reason and token usage of a GenerateContentResponse while the body is read.
+     */
+    private static class ChatListener extends JsonResponseListener<ChatResponse> {
+        private static final int CONTENT = 0;
+        private static final int FINISH_REASON = 1;
+        private static final int PROMPT_TOKENS = 2;
+        private static final int COMPLETION_TOKENS = 3;
+        private static final int MODEL = 4;
+        private static final int CACHED_TOKENS = 5;
+        private static final String[] FIELDS = {
+                "/candidates/0/content/parts/0/text",
+                "/candidates/0/finishReason",
+                "/usageMetadata/promptTokenCount",
+                "/usageMetadata/candidatesTokenCount",
+                "/modelVersion",
+                "/usageMetadata/cachedContentTokenCount"
+        };
+
+        private final ChatResponse completion = new ChatResponse();
+
+        ChatListener() throws IOException {
+            super("Gemini", mapper.getFactory(), FIELDS);
+        }
 
-                List<Map<String, String>> parts = new ArrayList<>();
-                Map<String, String> part = new HashMap<>();
-                part.put("text", msg.getContent());
-                parts.add(part);
-                contentMap.put("parts", parts);
+        @Override
+        public void onResponse(ClientResponse response) {
+            super.onResponse(response);
+            completion.markFirstToken();
+        }
 
-                contents.add(contentMap);
+        @Override
+        public void onField(int field, JsonParser parser) throws IOException {
+            switch (field) {
+                case CONTENT:
+                    completion.setContent(parser.getText());
+                    break;
+                case FINISH_REASON:
+                    completion.setFinishReason(parser.getText());
+                    break;
+                case PROMPT_TOKENS:
+                    completion.setPromptTokens(parser.getIntValue());
+                    break;
+                case COMPLETION_TOKENS:
+                    completion.setCompletionTokens(parser.getIntValue());
+                    break;
+                case MODEL:
+                    completion.setModel(parser.getText());
+                    break;
+                case CACHED_TOKENS:
+                    completion.setCachedTokens(parser.getIntValue());
+                    break;
+                default:
+                    break;
             }
-            requestBody.put("contents", contents);
+        }
 
-            String jsonBody = mapper.writeValueAsString(requestBody);
-            URI uri = new URI(endpoint);
+        @Override
+        protected ChatResponse result() {
+            completion.markComplete();
+            return completion;
+        }
+    }
+
+    /**
+     * Creates a cachedContents resource holding a system prompt.
+     *
+     * @return A future completed with the name of the resource, e.g. cachedContents/abc.
+     */
+    private static CompletableFuture<String> createCachedContent(String model, String systemPrompt) {
+        SimpleConnectionState.ConnectionToken connectionToken = null;
+        try {
+            // https://generativelanguage.googleapis.com/v1beta/models/%s:generateContent
+            String url = config.getUrl();
+            int models = url.indexOf("/models/");
+            URI uri = new URI((models > 0 ? url.substring(0, models) : url) + "/cachedContents?key=" + config.getApiKey());
             connectionToken = client.borrow(uri, Http2Client.WORKER, Http2Client.SSL, Http2Client.BUFFER_POOL,
                     OptionMap.EMPTY);
             ClientConnection connection = (ClientConnection) connectionToken.getRawConnection();
-            try {
-                ClientRequest request = new ClientRequest().setMethod(Methods.POST)
-                        .setPath(uri.getPath() + "?" + uri.getQuery());
-                request.getRequestHeaders().put(Headers.HOST, uri.getHost());
-                request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
-                request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
-
-                final CountDownLatch latch = new CountDownLatch(1);
-                final AtomicReference<ClientResponse> reference = new AtomicReference<>();
-                connection.sendRequest(request, client.createClientCallback(reference, latch, jsonBody));
-                latch.await(10, TimeUnit.SECONDS);
-
-                ClientResponse response = reference.get();
-                int statusCode = response.getResponseCode();
-                String body = response.getAttachment(Http2Client.RESPONSE_BODY);
-
-                if (statusCode == 200) {
-                    Map<String, Object> responseMap = mapper.readValue(body, Map.class);
-                    List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseMap.get("candidates");
-                    if (candidates != null && !candidates.isEmpty()) {
-                        Map<String, Object> content = (Map<String, Object>) candidates.get(0).get("content");
-                        if (content != null) {
-                            List<Map<String, Object>> resParts = (List<Map<String, Object>>) content.get("parts");
-                            if (resParts != null && !resParts.isEmpty()) {
-                                result = (String) resParts.get(0).get("text");
-                            }
-                        }
+            RequestBody body = GeminiRequestEncoder.encodeCachedContent(mapper.getFactory(), connection.getBufferPool(),
+                    model, systemPrompt, config.getCacheTtlSeconds());
+
+            ClientRequest request = new ClientRequest().setMethod(Methods.POST)
+                    .setPath(uri.getPath() + "?" + uri.getQuery());
+            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
+            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
+
+            final SimpleConnectionState.ConnectionToken finalToken = connectionToken;
+            JsonResponseListener<String> listener = new JsonResponseListener<String>("Gemini", mapper.getFactory(), "/name") {
+                private String name;
+
+                @Override
+                public void onField(int field, JsonParser parser) throws IOException {
+                    name = parser.getText();
+                }
+
+                @Override
+                protected String result() {
+                    if (name == null) {
+                        throw new GenAiException("Gemini API returned no cachedContents name");
                     }
-                } else {
-                    logger.error("Gemini API error: {} {}", statusCode, body);
+                    return name;
                 }
-            } finally {
-                // Inner finally not needed, outer finally handles restore
-            }
+            };
+            new AsyncExchange(connection, request, body).start(listener);
+            return listener.getFuture().whenComplete((name, error) -> client.restore(finalToken));
         } catch (Exception e) {
-            logger.error("Exception invoking Gemini API", e);
-        } finally {
             if (connectionToken != null)
                 client.restore(connectionToken);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Forgets the cached content of a request rejected because it is unknown, so the next request
+     * sends the system prompt inline and creates it again.
+     */
+    private static void invalidate(String model, String systemPrompt, String cachedContent, Throwable error) {
+        Throwable t = error instanceof java.util.concurrent.CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        if (t instanceof GenAiException) {
+            int status = ((GenAiException) t).getStatusCode();
+            if (status == 400 || status == 403 || status == 404) {
+                cachedContents.invalidate(model, systemPrompt, cachedContent);
+            }
         }
-        return result;
     }
 
     @Override
@@ -128,55 +259,92 @@ public class GeminiClient implements GenAiClient {
     @Override
     public void chatStream(java.util.List<com.networknt.genai.ChatMessage> messages,
             RequestOptions options,
-            com.networknt.genai.StreamCallback callback) {
+            com.networknt.genai.StreamCallback streamCallback) {
+        String model = options.getModel() != null ? options.getModel() : config.getModel();
+        StreamMetrics metrics = StreamMetrics.start("gemini", model, options.getAgent());
+        com.networknt.genai.StreamCallback callback = metrics.wrap(streamCallback);
         SimpleConnectionState.ConnectionToken connectionToken = null;
         try {
             // URL format for streaming:
             // https://generativelanguage.googleapis.com/v1beta/models/{model}:streamGenerateContent
-            String model = options.getModel() != null ? options.getModel() : config.getModel();
+            String systemPrompt = options.getSystemPrompt();
+            String cachedContent = cachedContents.lookup(model, systemPrompt);
             String endpoint = String.format(config.getUrl(), model).replace(":generateContent",
                     ":streamGenerateContent") + "?key=" + config.getApiKey();
 
-            // Map ChatMessage list to Gemini structure
-            Map<String, Object> requestBody = new HashMap<>();
-            List<Map<String, Object>> contents = new ArrayList<>();
-
-            for (com.networknt.genai.ChatMessage msg : messages) {
-                Map<String, Object> contentMap = new HashMap<>();
-                // Map roles: assistant -> model
-                String role = msg.getRole();
-                if ("assistant".equals(role)) {
-                    role = "model";
-                }
-                contentMap.put("role", role);
-
-                List<Map<String, String>> parts = new ArrayList<>();
-                Map<String, String> part = new HashMap<>();
-                part.put("text", msg.getContent());
-                parts.add(part);
-                contentMap.put("parts", parts);
-
-                contents.add(contentMap);
-            }
-            requestBody.put("contents", contents);
-
-            String jsonBody = mapper.writeValueAsString(requestBody);
             URI uri = new URI(endpoint);
             connectionToken = client.borrow(uri, Http2Client.WORKER, Http2Client.SSL,
                     Http2Client.BUFFER_POOL, OptionMap.EMPTY);
+            metrics.borrowed();
             ClientConnection connection = (ClientConnection) connectionToken.getRawConnection();
+            RequestBody body = GeminiRequestEncoder.encode(mapper.getFactory(), connection.getBufferPool(),
+                    systemPrompt, cachedContent, messages);
+
+            ClientRequest request = new ClientRequest().setMethod(Methods.POST)
+                    .setPath(uri.getPath() + "?" + uri.getQuery());
+            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
+            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
 
             final SimpleConnectionState.ConnectionToken finalToken = connectionToken;
-            com.networknt.genai.StreamCallback wrappedCallback = new com.networknt.genai.StreamCallback() {
+            final ChatResponse completion = new ChatResponse();
+            completion.setModel(model);
+            AsyncExchange exchange = new AsyncExchange(connection, request, body);
+            callback.onOpen(exchange);
+            exchange.start(metrics.wrap(new ResponseListener() {
+                // Gemini streams a JSON array of GenerateContentResponse objects, each of which
+                // may span several reads.
+                private final JsonArrayStreamDecoder decoder = new JsonArrayStreamDecoder(mapper.getFactory());
+                private final JsonArrayStreamDecoder.Handler handler = this::onElement;
+                private final ByteArrayOutputStream errorBody = new ByteArrayOutputStream();
+                private int statusCode;
+
+                @Override
+                public void onResponse(ClientResponse response) {
+                    statusCode = response.getResponseCode();
+                }
+
                 @Override
-                public void onEvent(String content) {
-                    callback.onEvent(content);
+                public void onData(ByteBuffer data) throws IOException {
+                    if (statusCode != 200) {
+                        byte[] bytes = new byte[data.remaining()];
+                        data.get(bytes);
+                        errorBody.write(bytes);
+                        return;
+                    }
+                    decoder.decode(data, handler);
+                }
+
+                private void onElement(JsonParser element) throws IOException {
+                    GeminiResponse chunk = mapper.readValue(element, GeminiResponse.class);
+                    chunk.copyMetadata(completion);
+                    String text = chunk.firstText();
+                    if (text != null && !text.isEmpty()) {
+                        completion.markFirstToken();
+                        callback.onEvent(text);
+                    }
                 }
 
                 @Override
                 public void onComplete() {
                     try {
-                        callback.onComplete();
+                        if (statusCode != 200) {
+                            GenAiException error = new GenAiException(statusCode,
+                                    "Gemini API error: " + statusCode + " " + errorBody.toString(StandardCharsets.UTF_8));
+                            if (cachedContent != null) {
+                                invalidate(model, systemPrompt, cachedContent, error);
+                            }
+                            callback.onError(error);
+                            return;
+                        }
+                        try {
+                            decoder.finish(handler);
+                        } catch (IOException e) {
+                            callback.onError(e);
+                            return;
+                        }
+                        completion.markComplete();
+                        callback.onComplete(completion);
                     } finally {
                         client.restore(finalToken);
                     }
@@ -190,161 +358,7 @@ public class GeminiClient implements GenAiClient {
                         client.restore(finalToken);
                     }
                 }
-            };
-
-            ClientRequest request = new ClientRequest().setMethod(Methods.POST)
-                    .setPath(uri.getPath() + "?" + uri.getQuery());
-            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
-            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
-            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
-
-            connection.sendRequest(request,
-                    new io.undertow.client.ClientCallback<io.undertow.client.ClientExchange>() {
-                        @Override
-                        public void completed(io.undertow.client.ClientExchange exchange) {
-                            exchange.setResponseListener(
-                                    new io.undertow.client.ClientCallback<io.undertow.client.ClientExchange>() {
-                                        @Override
-                                        public void completed(
-                                                io.undertow.client.ClientExchange result) {
-                                            result.getResponseChannel().getReadSetter()
-                                                    .set(new org.xnio.ChannelListener<org.xnio.channels.StreamSourceChannel>() {
-                                                        @Override
-                                                        public void handleEvent(
-                                                                org.xnio.channels.StreamSourceChannel channel) {
-                                                            try {
-                                                                java.nio.ByteBuffer buffer = java.nio.ByteBuffer
-                                                                        .allocate(1024);
-                                                                int read = 0;
-                                                                while ((read = channel
-                                                                        .read(buffer)) > 0) {
-                                                                    buffer.flip();
-                                                                    String chunk = new String(
-                                                                            buffer.array(), 0, read,
-                                                                            java.nio.charset.StandardCharsets.UTF_8);
-                                                                    // Gemini returns a JSON array of
-                                                                    // objects, passed as chunks:
-                                                                    // [{...}, \r\n {...}]
-
-                                                                    // Simple heuristic: Clean up array
-                                                                    // brackets if present at
-                                                                    // start/end of stream
-                                                                    String cleaned = chunk
-                                                                            .replace("[", "")
-                                                                            .replace("]", "")
-                                                                            .replace(",", "").trim();
-                                                                    if (!cleaned.isEmpty()) {
-                                                                        try {
-                                                                            // It might be multiple JSON
-                                                                            // objects in one chunk or
-                                                                            // partials
-                                                                            // For robustness, ideally
-                                                                            // we need standard JSON
-                                                                            // parser but for now assume
-                                                                            // valid objects
-                                                                            // If multiple objects come
-                                                                            // without comma, this might
-                                                                            // fail or need split.
-                                                                            // Assuming Gemini sends
-                                                                            // clean chunks or we need
-                                                                            // splitting by '}\s*{'
-                                                                            // For now, let's just try
-                                                                            // to parse what we have.
-
-                                                                            Map<String, Object> responseMap = mapper
-                                                                                    .readValue(cleaned,
-                                                                                            Map.class);
-                                                                            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseMap
-                                                                                    .get("candidates");
-                                                                            if (candidates != null
-                                                                                    && !candidates
-                                                                                            .isEmpty()) {
-                                                                                Map<String, Object> content = (Map<String, Object>) candidates
-                                                                                        .get(0)
-                                                                                        .get("content");
-                                                                                if (content != null) {
-                                                                                    List<Map<String, Object>> resParts = (List<Map<String, Object>>) content
-                                                                                            .get("parts");
-                                                                                    if (resParts != null
-                                                                                            && !resParts
-                                                                                                    .isEmpty()) {
-                                                                                        String text = (String) resParts
-                                                                                                .get(0)
-                                                                                                .get("text");
-                                                                                        if (text != null
-                                                                                                && !text.isEmpty())
-                                                                                            wrappedCallback.onEvent(
-                                                                                                    text);
-                                                                                    }
-                                                                                }
-                                                                            }
-                                                                        } catch (Exception e) {
-                                                                            // Ignore partial JSONs
-                                                                        }
-                                                                    }
-
-                                                                    buffer.clear();
-                                                                }
-                                                                if (read == -1) {
-                                                                    wrappedCallback.onComplete();
-                                                                }
-                                                            } catch (java.io.IOException e) {
-                                                                wrappedCallback.onError(e);
-                                                            }
-                                                        }
-                                                    });
-                                            result.getResponseChannel().resumeReads();
-                                        }
-
-                                        @Override
-                                        public void failed(java.io.IOException e) {
-                                            wrappedCallback.onError(e);
-                                        }
-                                    });
-
-                            // Write body async
-                            try {
-                                org.xnio.channels.StreamSinkChannel requestChannel = exchange
-                                        .getRequestChannel();
-                                java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(
-                                        jsonBody.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-
-                                int written = 0;
-                                while (buffer.hasRemaining()) {
-                                    written = requestChannel.write(buffer);
-                                    if (written == 0) {
-                                        requestChannel.getWriteSetter().set(channel -> {
-                                            try {
-                                                while (buffer.hasRemaining()) {
-                                                    int w = channel.write(buffer);
-                                                    if (w == 0)
-                                                        return;
-                                                }
-                                                channel.shutdownWrites();
-                                                channel.flush();
-                                            } catch (java.io.IOException e) {
-                                                logger.error("Error writing body async", e);
-                                                wrappedCallback.onError(e);
-                                            }
-                                        });
-                                        requestChannel.resumeWrites();
-                                        return;
-                                    }
-                                }
-                                requestChannel.shutdownWrites();
-                                requestChannel.flush();
-                            } catch (Exception e) {
-                                logger.error("Error sending request body", e);
-                                wrappedCallback.onError(e);
-                            }
-                        }
-
-                        @Override
-                        public void failed(java.io.IOException e) {
-                            wrappedCallback.onError(e);
-                        }
-                    });
-
+            }));
         } catch (Exception e) {
             logger.error("Exception invoking Gemini API", e);
             callback.onError(e);
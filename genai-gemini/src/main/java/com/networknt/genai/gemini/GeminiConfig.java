@@ -2,6 +2,7 @@ package com.networknt.genai.gemini;
 
 import com.networknt.config.Config;
 import com.networknt.config.schema.ConfigSchema;
+import com.networknt.config.schema.IntegerField;
 import com.networknt.config.schema.OutputFormat;
 import com.networknt.config.schema.StringField;
 import com.networknt.server.ModuleRegistry;
@@ -15,6 +16,8 @@ public class GeminiConfig {
     private static final String URL = "url";
     private static final String MODEL = "model";
     private static final String API_KEY = "apiKey";
+    private static final String CACHE_TTL_SECONDS = "cacheTtlSeconds";
+    private static final String CACHE_MIN_TOKENS = "cacheMinTokens";
 
     @StringField(configFieldName = URL, externalizedKeyName = URL, description = "Gemini API URL")
     private String url;
@@ -25,6 +28,12 @@ public class GeminiConfig {
     @StringField(configFieldName = API_KEY, externalizedKeyName = API_KEY, description = "API Key")
     private String apiKey;
 
+    @IntegerField(configFieldName = CACHE_TTL_SECONDS, externalizedKeyName = CACHE_TTL_SECONDS, defaultValue = "3600", description = "TTL of the cachedContents resources that hold the system prompts of the agents, 0 to send the system prompts inline")
+    private int cacheTtlSeconds = 3600;
+
+    @IntegerField(configFieldName = CACHE_MIN_TOKENS, externalizedKeyName = CACHE_MIN_TOKENS, defaultValue = "1024", description = "Estimated tokens under which a system prompt is sent inline, the minimum size of cached content of the model")
+    private int cacheMinTokens = 1024;
+
     private static volatile GeminiConfig instance;
     private final Map<String, Object> mappedConfig;
 
@@ -78,6 +87,14 @@ public class GeminiConfig {
             if (object != null) {
                 apiKey = (String) object;
             }
+            object = mappedConfig.get(CACHE_TTL_SECONDS);
+            if (object != null) {
+                cacheTtlSeconds = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(CACHE_MIN_TOKENS);
+            if (object != null) {
+                cacheMinTokens = Integer.parseInt(object.toString());
+            }
         } else {
             // Default if config is missing completely? Unlikely. But if so:
             url = "https://generativelanguage.googleapis.com/v1beta/models/%s:generateContent";
@@ -107,4 +124,20 @@ public class GeminiConfig {
     public void setApiKey(String apiKey) {
         this.apiKey = apiKey;
     }
+
+    public int getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    public void setCacheTtlSeconds(int cacheTtlSeconds) {
+        this.cacheTtlSeconds = cacheTtlSeconds;
+    }
+
+    public int getCacheMinTokens() {
+        return cacheMinTokens;
+    }
+
+    public void setCacheMinTokens(int cacheMinTokens) {
+        this.cacheMinTokens = cacheMinTokens;
+    }
 }
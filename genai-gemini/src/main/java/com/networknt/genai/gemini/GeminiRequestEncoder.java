@@ -0,0 +1,105 @@
+package com.networknt.genai.gemini;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.RequestBody;
+import io.undertow.connector.ByteBufferPool;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes generateContent requests with a JsonGenerator straight into pooled buffers.
+ *
+ * The system prompt and the system messages of the history go to the system instruction. When the
+ * system prompt is held by a cachedContents resource the request refers to it instead, and as the API
+ * does not accept a system instruction next to cached content, the system messages of the history are
+ * then sent as user contents.
+ */
+final class GeminiRequestEncoder {
+
+    private GeminiRequestEncoder() {
+    }
+
+    static RequestBody encode(JsonFactory factory, ByteBufferPool pool, List<ChatMessage> messages) throws IOException {
+        return encode(factory, pool, null, null, messages);
+    }
+
+    static RequestBody encode(JsonFactory factory, ByteBufferPool pool, String systemPrompt, String cachedContent,
+            List<ChatMessage> messages) throws IOException {
+        return RequestBody.encode(factory, pool, g -> {
+            g.writeStartObject();
+            if (cachedContent != null) {
+                g.writeStringField("cachedContent", cachedContent);
+            } else {
+                boolean system = false;
+                if (systemPrompt != null) {
+                    system = true;
+                    g.writeObjectFieldStart("systemInstruction");
+                    g.writeArrayFieldStart("parts");
+                    writeText(g, systemPrompt);
+                }
+                for (ChatMessage msg : messages) {
+                    if ("system".equals(msg.getRole())) {
+                        if (!system) {
+                            system = true;
+                            g.writeObjectFieldStart("systemInstruction");
+                            g.writeArrayFieldStart("parts");
+                        }
+                        writeText(g, msg.getContent());
+                    }
+                }
+                if (system) {
+                    g.writeEndArray();
+                    g.writeEndObject();
+                }
+            }
+            g.writeArrayFieldStart("contents");
+            for (ChatMessage msg : messages) {
+                // Map roles: assistant -> model
+                String role = msg.getRole();
+                if ("assistant".equals(role)) {
+                    role = "model";
+                } else if ("system".equals(role)) {
+                    if (cachedContent == null) {
+                        continue;
+                    }
+                    role = "user";
+                }
+                g.writeStartObject();
+                g.writeStringField("role", role);
+                g.writeArrayFieldStart("parts");
+                writeText(g, msg.getContent());
+                g.writeEndArray();
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        });
+    }
+
+    /**
+     * Writes a cachedContents resource holding a system prompt.
+     */
+    static RequestBody encodeCachedContent(JsonFactory factory, ByteBufferPool pool, String model,
+            String systemPrompt, int ttlSeconds) throws IOException {
+        return RequestBody.encode(factory, pool, g -> {
+            g.writeStartObject();
+            g.writeStringField("model", "models/" + model);
+            g.writeObjectFieldStart("systemInstruction");
+            g.writeArrayFieldStart("parts");
+            writeText(g, systemPrompt);
+            g.writeEndArray();
+            g.writeEndObject();
+            g.writeStringField("ttl", ttlSeconds + "s");
+            g.writeEndObject();
+        });
+    }
+
+    private static void writeText(JsonGenerator g, String text) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("text", text);
+        g.writeEndObject();
+    }
+}
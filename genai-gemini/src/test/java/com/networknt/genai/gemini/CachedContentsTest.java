@@ -0,0 +1,96 @@
+package com.networknt.genai.gemini;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CachedContentsTest {
+    private static final String PROMPT = "You are a support agent. ".repeat(200);
+
+    private final List<CompletableFuture<String>> created = new ArrayList<>();
+
+    private CachedContents cache(int ttlSeconds) {
+        return new CachedContents(ttlSeconds, 1024, (model, prompt) -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            created.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    public void testCreatedOnceAndReused() {
+        CachedContents cache = cache(3600);
+        // too short for the API, or caching disabled
+        assertNull(cache.lookup("gemini-2.5-flash", "Be brief."));
+        assertNull(cache(0).lookup("gemini-2.5-flash", PROMPT));
+        assertEquals(0, created.size());
+
+        // the first requests do not wait for the resource
+        assertNull(cache.lookup("gemini-2.5-flash", PROMPT));
+        assertNull(cache.lookup("gemini-2.5-flash", PROMPT));
+        assertEquals(1, created.size());
+        created.get(0).complete("cachedContents/a");
+        assertEquals("cachedContents/a", cache.lookup("gemini-2.5-flash", new String(PROMPT)));
+        assertEquals(1, created.size());
+
+        // another model has its own resource
+        assertNull(cache.lookup("gemini-2.5-pro", PROMPT));
+        assertEquals(2, created.size());
+
+        cache.invalidate("gemini-2.5-flash", PROMPT, "cachedContents/a");
+        assertNull(cache.lookup("gemini-2.5-flash", PROMPT));
+        assertEquals(3, created.size());
+    }
+
+    @Test
+    public void testFailureIsNotRetriedBeforeTtl() {
+        CachedContents cache = cache(3600);
+        assertNull(cache.lookup("gemini-2.5-flash", PROMPT));
+        created.get(0).completeExceptionally(new IllegalStateException("too small"));
+        assertNull(cache.lookup("gemini-2.5-flash", PROMPT));
+        assertNull(cache.lookup("gemini-2.5-flash", PROMPT));
+        assertEquals(1, created.size());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testExpiredEntriesMakeRoomWhenFull() {
+        AtomicLong now = new AtomicLong();
+        CachedContents cache = new CachedContents(3600, 1024, (model, prompt) ->
+                CompletableFuture.completedFuture("cachedContents/" + model), now::get);
+        for (int i = 0; i < CachedContents.MAX_ENTRIES; i++) {
+            cache.lookup("model-" + i, PROMPT);
+        }
+        assertEquals(CachedContents.MAX_ENTRIES, cache.size());
+        // full of live entries, a new system prompt is sent inline
+        assertNull(cache.lookup("gemini-2.5-flash", PROMPT));
+        assertEquals(CachedContents.MAX_ENTRIES, cache.size());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(3600));
+        assertNull(cache.lookup("gemini-2.5-flash", PROMPT));
+        assertEquals(1, cache.size());
+        assertEquals("cachedContents/gemini-2.5-flash", cache.lookup("gemini-2.5-flash", PROMPT));
+    }
+
+    @Test
+    public void testRenewedBeforeExpiry() throws InterruptedException {
+        // with a TTL of 1 second the resource is renewed after half a second
+        CachedContents cache = cache(1);
+        cache.lookup("gemini-2.5-flash", PROMPT);
+        created.get(0).complete("cachedContents/a");
+        assertEquals("cachedContents/a", cache.lookup("gemini-2.5-flash", PROMPT));
+        Thread.sleep(600);
+        // the old resource is used while the new one is created
+        assertEquals("cachedContents/a", cache.lookup("gemini-2.5-flash", PROMPT));
+        assertEquals(2, created.size());
+        created.get(1).complete("cachedContents/b");
+        assertEquals("cachedContents/b", cache.lookup("gemini-2.5-flash", PROMPT));
+    }
+}
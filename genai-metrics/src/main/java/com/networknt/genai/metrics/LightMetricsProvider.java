@@ -0,0 +1,87 @@
+package com.networknt.genai.metrics;
+
+import com.networknt.genai.MetricsProvider;
+import io.dropwizard.metrics.HdrHistogramResetOnSnapshotReservoir;
+import io.dropwizard.metrics.Histogram;
+import io.dropwizard.metrics.Metric;
+import io.dropwizard.metrics.MetricName;
+import io.dropwizard.metrics.MetricRegistry;
+import io.dropwizard.metrics.SharedMetricRegistries;
+import io.dropwizard.metrics.Timer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers the metrics of {@link com.networknt.genai.StreamMetrics} in the registry of the light-4j
+ * metrics handler when it is on the class path, so that they are reported with the other metrics of the
+ * service, or otherwise in the shared registry {@link #REGISTRY_NAME}. It is found with the
+ * {@link java.util.ServiceLoader} once this module is a dependency of the service.
+ *
+ * The timers and histograms are backed by HDR histograms that are reset when a reporter takes a snapshot.
+ */
+public class LightMetricsProvider implements MetricsProvider {
+    /**
+     * The name of the shared registry used without the light-4j metrics handler.
+     */
+    public static final String REGISTRY_NAME = "genai";
+
+    private static final MetricRegistry.MetricBuilder<Timer> TIMERS = new MetricRegistry.MetricBuilder<Timer>() {
+        @Override
+        public Timer newMetric() {
+            return new Timer(new HdrHistogramResetOnSnapshotReservoir());
+        }
+
+        @Override
+        public boolean isInstance(Metric metric) {
+            return metric instanceof Timer;
+        }
+    };
+
+    private static final MetricRegistry.MetricBuilder<Histogram> HISTOGRAMS = new MetricRegistry.MetricBuilder<Histogram>() {
+        @Override
+        public Histogram newMetric() {
+            return new Histogram(new HdrHistogramResetOnSnapshotReservoir());
+        }
+
+        @Override
+        public boolean isInstance(Metric metric) {
+            return metric instanceof Histogram;
+        }
+    };
+
+    private final MetricRegistry registry = lookupRegistry();
+
+    /**
+     * @return The registry of the light-4j metrics handler, or the shared registry {@link #REGISTRY_NAME}.
+     */
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    @Override
+    public Distribution timer(String name, Map<String, String> tags) {
+        Timer timer = registry.getOrAdd(new MetricName(name, tags), TIMERS);
+        return nanos -> timer.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Distribution histogram(String name, Map<String, String> tags) {
+        Histogram histogram = registry.getOrAdd(new MetricName(name, tags), HISTOGRAMS);
+        return histogram::update;
+    }
+
+    private static MetricRegistry lookupRegistry() {
+        try {
+            // the metrics handler reports its static registry, but it is an optional dependency
+            Object handlerRegistry = Class.forName("com.networknt.metrics.AbstractMetricsHandler")
+                    .getField("registry").get(null);
+            if (handlerRegistry instanceof MetricRegistry) {
+                return (MetricRegistry) handlerRegistry;
+            }
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // not deployed with the metrics handler
+        }
+        return SharedMetricRegistries.getOrCreate(REGISTRY_NAME);
+    }
+}
@@ -0,0 +1,53 @@
+package com.networknt.genai.metrics;
+
+import com.networknt.genai.ChatResponse;
+import com.networknt.genai.StreamCallback;
+import com.networknt.genai.StreamMetrics;
+import io.dropwizard.metrics.MetricName;
+import io.dropwizard.metrics.Timer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LightMetricsProviderTest {
+
+    @Test
+    public void testStreamMetricsAreRegistered() {
+        // found with the ServiceLoader
+        assertTrue(StreamMetrics.getProvider() instanceof LightMetricsProvider);
+        LightMetricsProvider provider = (LightMetricsProvider) StreamMetrics.getProvider();
+
+        StreamMetrics metrics = StreamMetrics.start("test", "m1", "light");
+        StreamCallback callback = metrics.wrap(new StreamCallback() {
+            @Override
+            public void onEvent(String content) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        });
+        callback.onEvent("a");
+        callback.onEvent("b");
+        ChatResponse response = new ChatResponse();
+        response.setCompletionTokens(2);
+        callback.onComplete(response);
+
+        Map<String, String> tags = Map.of("provider", "test", "model", "m1", "agent", "light");
+        Timer ttft = provider.getRegistry().getTimers().get(new MetricName(StreamMetrics.TIME_TO_FIRST_TOKEN, tags));
+        assertNotNull(ttft);
+        assertEquals(1, ttft.getCount());
+        assertEquals(1, provider.getRegistry().getTimers().get(new MetricName(StreamMetrics.CHUNK_GAP, tags))
+                .getSnapshot().size());
+        assertNotNull(provider.getRegistry().getHistograms()
+                .get(new MetricName(StreamMetrics.OUTPUT_TOKENS_PER_SECOND, tags)));
+    }
+}
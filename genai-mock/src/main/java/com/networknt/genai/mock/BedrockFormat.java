@@ -0,0 +1,107 @@
+package com.networknt.genai.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.CRC32;
+
+import static com.networknt.genai.mock.WireFormat.quote;
+import static com.networknt.genai.mock.WireFormat.utf8;
+
+/**
+ * Anthropic Claude messages on Bedrock, streamed by invoke-with-response-stream in the AWS event stream
+ * encoding: binary messages with a CRC checked prelude and headers, each carrying a chunk event whose
+ * bytes are a base64 encoded Claude streaming event.
+ */
+final class BedrockFormat implements WireFormat {
+    private static final byte STRING_HEADER = 7;
+
+    @Override
+    public String contentType(boolean stream) {
+        return stream ? "application/vnd.amazon.eventstream" : "application/json";
+    }
+
+    @Override
+    public byte[] start(String model) {
+        return concat(event("{\"type\":\"message_start\",\"message\":{\"id\":\"msg_mock\",\"type\":\"message\","
+                        + "\"role\":\"assistant\",\"model\":" + quote(model) + ",\"content\":[],\"stop_reason\":null,"
+                        + "\"usage\":{\"input_tokens\":0,\"output_tokens\":1}}}"),
+                event("{\"type\":\"content_block_start\",\"index\":0,\"content_block\":{\"type\":\"text\",\"text\":\"\"}}"));
+    }
+
+    @Override
+    public byte[] chunk(String model, String text, int index) {
+        return event("{\"type\":\"content_block_delta\",\"index\":0,\"delta\":{\"type\":\"text_delta\",\"text\":"
+                + quote(text) + "}}");
+    }
+
+    @Override
+    public byte[] end(String model, int promptTokens, int tokens) {
+        return concat(event("{\"type\":\"content_block_stop\",\"index\":0}"),
+                event("{\"type\":\"message_delta\",\"delta\":{\"stop_reason\":\"end_turn\",\"stop_sequence\":null},"
+                        + "\"usage\":{\"output_tokens\":" + tokens + "}}"),
+                event("{\"type\":\"message_stop\",\"amazon-bedrock-invocationMetrics\":{\"inputTokenCount\":" + promptTokens
+                        + ",\"outputTokenCount\":" + tokens + ",\"invocationLatency\":1000,\"firstByteLatency\":300}}"));
+    }
+
+    @Override
+    public byte[] complete(String model, String text, int promptTokens, int tokens) {
+        return utf8("{\"id\":\"msg_mock\",\"type\":\"message\",\"role\":\"assistant\",\"model\":" + quote(model)
+                + ",\"content\":[{\"type\":\"text\",\"text\":" + quote(text) + "}],\"stop_reason\":\"end_turn\","
+                + "\"stop_sequence\":null,\"usage\":{\"input_tokens\":" + promptTokens + ",\"output_tokens\":" + tokens + "}}");
+    }
+
+    @Override
+    public byte[] error(int status, String message) {
+        return utf8("{\"message\":" + quote(message) + "}");
+    }
+
+    /**
+     * @return A chunk event message carrying the Claude event.
+     */
+    private static byte[] event(String claudeEvent) {
+        String payload = "{\"bytes\":\"" + Base64.getEncoder().encodeToString(utf8(claudeEvent)) + "\"}";
+        return message(new String[] {":event-type", "chunk", ":content-type", "application/json",
+                ":message-type", "event"}, utf8(payload));
+    }
+
+    /**
+     * Encodes an event stream message: total length, headers length and prelude CRC, then the headers,
+     * the payload and the CRC of the whole message.
+     */
+    static byte[] message(String[] headers, byte[] payload) {
+        ByteArrayOutputStream h = new ByteArrayOutputStream();
+        for (int i = 0; i < headers.length; i += 2) {
+            byte[] name = headers[i].getBytes(StandardCharsets.US_ASCII);
+            byte[] value = utf8(headers[i + 1]);
+            h.write(name.length);
+            h.write(name, 0, name.length);
+            h.write(STRING_HEADER);
+            h.write(value.length >> 8);
+            h.write(value.length);
+            h.write(value, 0, value.length);
+        }
+        int total = 12 + h.size() + payload.length + 4;
+        ByteBuffer message = ByteBuffer.allocate(total);
+        message.putInt(total).putInt(h.size());
+        message.putInt(crc(message.array(), 8));
+        message.put(h.toByteArray()).put(payload);
+        message.putInt(crc(message.array(), total - 4));
+        return message.array();
+    }
+
+    private static int crc(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,43 @@
+package com.networknt.genai.mock;
+
+import static com.networknt.genai.mock.WireFormat.quote;
+import static com.networknt.genai.mock.WireFormat.utf8;
+
+/**
+ * Gemini generateContent, streamed by streamGenerateContent as a JSON array of responses with the usage
+ * on the last one.
+ */
+final class GeminiFormat implements WireFormat {
+    @Override
+    public String contentType(boolean stream) {
+        return "application/json";
+    }
+
+    @Override
+    public byte[] start(String model) {
+        return utf8("[");
+    }
+
+    @Override
+    public byte[] chunk(String model, String text, int index) {
+        return utf8((index > 0 ? ",\r\n" : "") + "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": " + quote(text)
+                + "}],\"role\": \"model\"},\"index\": 0}],\"modelVersion\": " + quote(model) + "}");
+    }
+
+    @Override
+    public byte[] end(String model, int promptTokens, int tokens) {
+        return utf8((tokens > 0 ? ",\r\n" : "") + response(model, "", promptTokens, tokens) + "]");
+    }
+
+    @Override
+    public byte[] complete(String model, String text, int promptTokens, int tokens) {
+        return utf8(response(model, text, promptTokens, tokens));
+    }
+
+    private static String response(String model, String text, int promptTokens, int tokens) {
+        return "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": " + quote(text)
+                + "}],\"role\": \"model\"},\"finishReason\": \"STOP\",\"index\": 0}],\"usageMetadata\": {\"promptTokenCount\": "
+                + promptTokens + ",\"candidatesTokenCount\": " + tokens + ",\"totalTokenCount\": " + (promptTokens + tokens)
+                + "},\"modelVersion\": " + quote(model) + "}";
+    }
+}
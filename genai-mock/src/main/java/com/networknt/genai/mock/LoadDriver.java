@@ -0,0 +1,248 @@
+package com.networknt.genai.mock;
+
+import com.networknt.genai.GenAiClient;
+import com.networknt.genai.handler.AgentDefinition;
+import com.networknt.genai.handler.GenAiWebSocketHandler;
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives concurrent chat sessions through an embedded {@link GenAiWebSocketHandler} whose provider client
+ * talks to a {@link MockLlmServer}, and reports the throughput, the time to first token and turn latency
+ * percentiles and the peak heap and thread usage of the process.
+ *
+ * <pre>
+ * java com.networknt.genai.mock.LoadDriver provider=openai sessions=2000 turns=3 rampUpMillis=10000 \
+ *     ttftMillis=300 tokensPerSecond=50 tokens=200 throttleRate=0.01
+ * </pre>
+ *
+ * The provider is one of openai, ollama, gemini and bedrock, and the other arguments are the
+ * {@link MockOptions} of the mock server. The mock answers every turn with the same text, so a turn is
+ * complete once its length has been received; a frame starting with "Error:" fails the turn.
+ */
+public class LoadDriver {
+    private static final Logger logger = LoggerFactory.getLogger(LoadDriver.class);
+    private static final String AGENT = "load";
+
+    private final Recorder ttft = new Recorder(2);
+    private final Recorder latency = new Recorder(2);
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong peakHeap = new AtomicLong();
+    private final AtomicInteger peakThreads = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = MockLlmServer.arguments(args);
+        new LoadDriver().run(arguments);
+        System.exit(0);
+    }
+
+    void run(Map<String, String> arguments) throws Exception {
+        String provider = arguments.getOrDefault("provider", "openai");
+        int sessions = Integer.parseInt(arguments.getOrDefault("sessions", "1000"));
+        int turns = Integer.parseInt(arguments.getOrDefault("turns", "3"));
+        long rampUpMillis = Long.parseLong(arguments.getOrDefault("rampUpMillis", "10000"));
+        MockOptions options = MockOptions.parse(arguments);
+
+        MockLlmServer mock = new MockLlmServer(options);
+        mock.start("127.0.0.1", 0);
+        GenAiClient client = client(provider, "http://127.0.0.1:" + mock.getPort());
+        AgentDefinition agent = new AgentDefinition();
+        agent.setAgentId(AGENT);
+        agent.setModel(arguments.getOrDefault("model", "mock-model"));
+        agent.setSystemPrompt("You are a helpful assistant answering load test questions.");
+        GenAiWebSocketHandler handler = new GenAiWebSocketHandler(agentId -> agent, null, null, client);
+        Undertow server = Undertow.builder()
+                .addHttpListener(0, "127.0.0.1")
+                .setHandler(Handlers.websocket(handler::onConnect))
+                .build();
+        server.start();
+        int port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        sampler.scheduleAtFixedRate(() -> {
+            peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+            peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+        }, 0, 100, TimeUnit.MILLISECONDS);
+
+        logger.info("Starting {} sessions of {} turns against the {} client", sessions, turns, provider);
+        HttpClient http = HttpClient.newHttpClient();
+        URI uri = URI.create("ws://127.0.0.1:" + port + "/?agentId=" + AGENT);
+        int expected = MockLlmServer.text(options.getTokens()).length();
+        CountDownLatch done = new CountDownLatch(sessions);
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            long due = start + TimeUnit.MILLISECONDS.toNanos(rampUpMillis * i / sessions);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            Session session = new Session(i, turns, expected, done);
+            http.newWebSocketBuilder().buildAsync(URI.create(uri + "&userId=u" + i), session)
+                    .whenComplete((ws, e) -> {
+                        if (e != null) {
+                            logger.warn("Session failed to connect", e);
+                            failed.addAndGet(turns);
+                            done.countDown();
+                        }
+                    });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        sampler.shutdownNow();
+        report(sessions, elapsed);
+        server.stop();
+        mock.stop();
+    }
+
+    /**
+     * Points the configuration of the provider at the mock server and creates its client.
+     */
+    static GenAiClient client(String provider, String base) {
+        switch (provider) {
+            case "openai":
+                com.networknt.genai.openai.OpenAiConfig openAi = com.networknt.genai.openai.OpenAiConfig.load();
+                openAi.setUrl(base + "/v1/chat/completions");
+                openAi.setApiKey("mock");
+                return new com.networknt.genai.openai.OpenAiClient();
+            case "ollama":
+                com.networknt.genai.ollama.OllamaConfig ollama = com.networknt.genai.ollama.OllamaConfig.load();
+                ollama.setOllamaUrl(base);
+                return new com.networknt.genai.ollama.OllamaClient();
+            case "gemini":
+                com.networknt.genai.gemini.GeminiConfig gemini = com.networknt.genai.gemini.GeminiConfig.load();
+                gemini.setUrl(base + "/v1beta/models/%s:generateContent");
+                gemini.setApiKey("mock");
+                return new com.networknt.genai.gemini.GeminiClient();
+            case "bedrock":
+                // the SDK signs the requests, so any credentials do
+                if (System.getProperty("aws.accessKeyId") == null) {
+                    System.setProperty("aws.accessKeyId", "mock");
+                    System.setProperty("aws.secretAccessKey", "mock");
+                }
+                com.networknt.genai.bedrock.BedrockConfig bedrock = com.networknt.genai.bedrock.BedrockConfig.load();
+                bedrock.setEndpoint(base);
+                if (bedrock.getRegion() == null || bedrock.getRegion().isEmpty()) {
+                    bedrock.setRegion("us-east-1");
+                }
+                return new com.networknt.genai.bedrock.BedrockClient();
+            default:
+                throw new IllegalArgumentException("Unknown provider " + provider);
+        }
+    }
+
+    private void report(int sessions, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("sessions %d, turns completed %d, failed %d in %.1fs: %.1f turns/s%n", sessions,
+                completed.get(), failed.get(), seconds, completed.get() / seconds);
+        print("time to first token", ttft.getIntervalHistogram());
+        print("turn latency", latency.getIntervalHistogram());
+        System.out.printf("peak heap used %d MB, peak threads %d%n", peakHeap.get() >> 20, peakThreads.get());
+    }
+
+    private static void print(String name, Histogram histogram) {
+        System.out.printf("%s ms: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n", name,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * One WebSocket client sending its turns one after the other, each once the answer of the previous
+     * has been received.
+     */
+    private class Session implements WebSocket.Listener {
+        private final int id;
+        private final int turns;
+        private final int expected;
+        private final CountDownLatch done;
+        private int turn;
+        private int received;
+        private long sent;
+        private boolean first;
+
+        Session(int id, int turns, int expected, CountDownLatch done) {
+            this.id = id;
+            this.turns = turns;
+            this.expected = expected;
+            this.done = done;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            send(webSocket);
+            webSocket.request(1);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            long now = System.nanoTime();
+            if (data.length() >= 6 && "Error:".contentEquals(data.subSequence(0, 6))) {
+                failed.incrementAndGet();
+                next(webSocket);
+            } else {
+                if (first) {
+                    ttft.recordValue(TimeUnit.NANOSECONDS.toMicros(now - sent));
+                    first = false;
+                }
+                received += data.length();
+                if (received >= expected) {
+                    latency.recordValue(TimeUnit.NANOSECONDS.toMicros(now - sent));
+                    completed.incrementAndGet();
+                    next(webSocket);
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            logger.warn("Session {} failed", id, error);
+            failed.addAndGet(turns - turn);
+            done.countDown();
+        }
+
+        private void next(WebSocket webSocket) {
+            if (++turn < turns) {
+                send(webSocket);
+            } else {
+                webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").whenComplete((ws, e) -> done.countDown());
+            }
+        }
+
+        private void send(WebSocket webSocket) {
+            received = 0;
+            first = true;
+            sent = System.nanoTime();
+            CompletableFuture<WebSocket> future = webSocket.sendText("Question " + (turn + 1) + " of session " + id, true);
+            future.exceptionally(e -> {
+                onError(webSocket, e);
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.networknt.genai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.Undertow;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.SameThreadExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.IoUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stand-in for the LLM providers in load tests. It answers the chat requests of the OpenAI, Ollama,
+ * Gemini and Bedrock clients in their own wire formats with a deterministic text of {@link MockOptions#getTokens()}
+ * tokens, paced by the configured time to first token and tokens per second, and injects errors, 429s and
+ * aborted streams at the configured rates.
+ *
+ * <ul>
+ * <li>POST /v1/chat/completions: OpenAI, server-sent events if the body has "stream": true</li>
+ * <li>POST /api/chat: Ollama, newline delimited JSON unless the body has "stream": false</li>
+ * <li>POST .../models/{model}:streamGenerateContent and :generateContent: Gemini, a streamed JSON array</li>
+ * <li>POST .../cachedContents: Gemini, a new cachedContents name</li>
+ * <li>POST /model/{id}/invoke-with-response-stream and /model/{id}/invoke: Bedrock, the AWS event stream</li>
+ * </ul>
+ *
+ * Run it with {@code java com.networknt.genai.mock.MockLlmServer port=8090 ttftMillis=300 tokensPerSecond=50}.
+ */
+public class MockLlmServer {
+    private static final Logger logger = LoggerFactory.getLogger(MockLlmServer.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final HttpString RETRY_AFTER = new HttpString("Retry-After");
+    private static final HttpString AMZN_ERROR_TYPE = new HttpString("x-amzn-ErrorType");
+    private static final String[] WORDS = {"the", "quick", "brown", "fox", "jumps", "over", "a", "lazy", "dog",
+            "while", "streaming", "tokens", "to", "every", "waiting", "client"};
+
+    private static final WireFormat OPENAI = new OpenAiFormat();
+    private static final WireFormat OLLAMA = new OllamaFormat();
+    private static final WireFormat GEMINI = new GeminiFormat();
+    private static final WireFormat BEDROCK = new BedrockFormat();
+
+    private final MockOptions options;
+    private final AtomicInteger cachedContents = new AtomicInteger();
+    private Undertow server;
+
+    public MockLlmServer(MockOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> arguments = arguments(args);
+        MockLlmServer server = new MockLlmServer(MockOptions.parse(arguments));
+        server.start(arguments.getOrDefault("host", "0.0.0.0"), Integer.parseInt(arguments.getOrDefault("port", "8090")));
+        logger.info("Mock LLM server listening on port {}", server.getPort());
+    }
+
+    /**
+     * @param args Arguments as name=value pairs.
+     */
+    static Map<String, String> arguments(String[] args) {
+        Map<String, String> arguments = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                arguments.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * @param port The port to listen on, or 0 for any free port.
+     */
+    public void start(String host, int port) {
+        server = Undertow.builder()
+                .addHttpListener(port, host)
+                .setHandler(exchange -> exchange.getRequestReceiver().receiveFullBytes(this::handle))
+                .build();
+        server.start();
+    }
+
+    public int getPort() {
+        return ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * @return The text of an answer of the tokens, the same for every request.
+     */
+    public static String text(int tokens) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            text.append(token(i));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return The token at the index: a word, or a line break every 16 tokens.
+     */
+    static String token(int index) {
+        if (index % 16 == 15) {
+            return "\n";
+        }
+        return index % 16 == 0 ? WORDS[index / 16 % WORDS.length] : " " + WORDS[index % WORDS.length];
+    }
+
+    private void handle(HttpServerExchange exchange, byte[] body) {
+        if (!Methods.POST.equals(exchange.getRequestMethod())) {
+            exchange.setStatusCode(405);
+            exchange.endExchange();
+            return;
+        }
+        String path = exchange.getRequestPath();
+        if (path.endsWith("/cachedContents")) {
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            exchange.getResponseSender().send("{\"name\":\"cachedContents/mock-" + cachedContents.incrementAndGet() + "\"}");
+            return;
+        }
+        JsonNode request;
+        try {
+            request = mapper.readTree(body);
+        } catch (IOException e) {
+            exchange.setStatusCode(400);
+            exchange.getResponseSender().send(e.getMessage());
+            return;
+        }
+        WireFormat format;
+        String model;
+        boolean stream;
+        int colon = path.lastIndexOf(':');
+        if (path.equals("/v1/chat/completions")) {
+            format = OPENAI;
+            model = request.path("model").asText("gpt-mock");
+            stream = request.path("stream").asBoolean(false);
+        } else if (path.equals("/api/chat")) {
+            format = OLLAMA;
+            model = request.path("model").asText("llama-mock");
+            stream = request.path("stream").asBoolean(true);
+        } else if (colon > 0 && (path.endsWith(":streamGenerateContent") || path.endsWith(":generateContent"))) {
+            format = GEMINI;
+            model = path.substring(path.lastIndexOf('/', colon) + 1, colon);
+            stream = path.endsWith(":streamGenerateContent");
+        } else if (path.startsWith("/model/") && (path.endsWith("/invoke") || path.endsWith("/invoke-with-response-stream"))) {
+            format = BEDROCK;
+            model = path.substring("/model/".length(), path.lastIndexOf('/'));
+            stream = path.endsWith("/invoke-with-response-stream");
+        } else {
+            exchange.setStatusCode(404);
+            exchange.endExchange();
+            return;
+        }
+
+        int promptTokens = Math.max(1, body.length / 4);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < options.getThrottleRate()) {
+            exchange.getResponseHeaders().put(RETRY_AFTER, options.getRetryAfterSeconds());
+            error(exchange, format, 429, "ThrottlingException", "Rate limit exceeded, retry after "
+                    + options.getRetryAfterSeconds() + "s");
+            return;
+        }
+        if (random.nextDouble() < options.getErrorRate()) {
+            error(exchange, format, 500, "InternalServerException", "Injected server error");
+            return;
+        }
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, format.contentType(stream));
+        if (!stream) {
+            // the whole answer is sent after the time it would have taken to stream it
+            long delay = options.getTtftMillis() + (options.getTokens() - 1) * 1000L / Math.max(1, options.getTokensPerSecond());
+            byte[] answer = format.complete(model, text(options.getTokens()), promptTokens, options.getTokens());
+            exchange.dispatch(SameThreadExecutor.INSTANCE, () -> exchange.getIoThread().executeAfter(
+                    () -> exchange.getResponseSender().send(ByteBuffer.wrap(answer)), jitter(delay), TimeUnit.MILLISECONDS));
+            return;
+        }
+        int abortAt = random.nextDouble() < options.getAbortRate() ? options.getTokens() / 2 : -1;
+        Stream s = new Stream(exchange, format, model, promptTokens, abortAt);
+        exchange.dispatch(SameThreadExecutor.INSTANCE, () -> s.schedule(options.getTtftMillis()));
+    }
+
+    private void error(HttpServerExchange exchange, WireFormat format, int status, String type, String message) {
+        exchange.setStatusCode(status);
+        if (format == BEDROCK) {
+            // the AWS SDK maps the error type header to the exception, e.g. ThrottlingException to a retry
+            exchange.getResponseHeaders().put(AMZN_ERROR_TYPE, type);
+        }
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send(ByteBuffer.wrap(format.error(status, message)));
+    }
+
+    private long jitter(long delay) {
+        long jitter = options.getJitterMillis();
+        return jitter > 0 ? Math.max(0, delay + ThreadLocalRandom.current().nextLong(-jitter, jitter + 1)) : delay;
+    }
+
+    /**
+     * The chunks of one streamed answer, each written on the IO thread of the exchange once its delay has
+     * passed and the previous chunk has been written.
+     */
+    private class Stream implements IoCallback {
+        private final HttpServerExchange exchange;
+        private final Sender sender;
+        private final WireFormat format;
+        private final String model;
+        private final int promptTokens;
+        private final int abortAt;
+        private final long interval;
+        private int index;
+        private boolean started;
+        private boolean ended;
+        private byte[] pending;
+        private int offset;
+
+        Stream(HttpServerExchange exchange, WireFormat format, String model, int promptTokens, int abortAt) {
+            this.exchange = exchange;
+            this.sender = exchange.getResponseSender();
+            this.format = format;
+            this.model = model;
+            this.promptTokens = promptTokens;
+            this.abortAt = abortAt;
+            this.interval = 1000L / Math.max(1, options.getTokensPerSecond());
+        }
+
+        void schedule(long delay) {
+            long millis = jitter(delay);
+            if (millis > 0) {
+                exchange.getIoThread().executeAfter(this::next, millis, TimeUnit.MILLISECONDS);
+            } else {
+                exchange.getIoThread().execute(this::next);
+            }
+        }
+
+        /**
+         * Writes the next chunk, the start before the first and the end after the last.
+         */
+        private void next() {
+            if (index == abortAt) {
+                // the provider drops the connection in the middle of the answer
+                IoUtils.safeClose(exchange.getConnection());
+                return;
+            }
+            byte[] bytes;
+            if (index < options.getTokens()) {
+                byte[] chunk = format.chunk(model, token(index), index);
+                byte[] start = started ? null : format.start(model);
+                bytes = start == null ? chunk : concat(start, chunk);
+                started = true;
+                index++;
+            } else {
+                byte[] start = started ? null : format.start(model);
+                byte[] end = format.end(model, promptTokens, options.getTokens());
+                bytes = start == null ? end : concat(start, end);
+                ended = true;
+            }
+            pending = bytes;
+            offset = 0;
+            write();
+        }
+
+        private void write() {
+            int fragment = options.getFragmentBytes() > 0 ? options.getFragmentBytes() : pending.length;
+            int length = Math.min(fragment, pending.length - offset);
+            ByteBuffer buffer = ByteBuffer.wrap(pending, offset, length);
+            offset += length;
+            sender.send(buffer, this);
+        }
+
+        @Override
+        public void onComplete(HttpServerExchange exchange, Sender sender) {
+            if (offset < pending.length) {
+                write();
+            } else if (ended) {
+                sender.close();
+            } else {
+                schedule(interval);
+            }
+        }
+
+        @Override
+        public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+            logger.debug("Mock stream to {} failed", exchange.getSourceAddress(), exception);
+            IoUtils.safeClose(exchange.getConnection());
+        }
+
+        private byte[] concat(byte[] a, byte[] b) {
+            byte[] bytes = new byte[a.length + b.length];
+            System.arraycopy(a, 0, bytes, 0, a.length);
+            System.arraycopy(b, 0, bytes, a.length, b.length);
+            return bytes;
+        }
+    }
+}
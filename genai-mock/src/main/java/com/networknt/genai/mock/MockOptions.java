@@ -0,0 +1,161 @@
+package com.networknt.genai.mock;
+
+import java.util.Map;
+
+/**
+ * The behaviour of the {@link MockLlmServer}: how fast it answers, how long the answers are and which
+ * failures it injects. The rates are probabilities between 0 and 1 drawn for each request.
+ */
+public class MockOptions {
+    private long ttftMillis = 300;
+    private int tokensPerSecond = 50;
+    private long jitterMillis = 0;
+    private int tokens = 200;
+    private double errorRate = 0;
+    private double throttleRate = 0;
+    private double abortRate = 0;
+    private int retryAfterSeconds = 1;
+    private int fragmentBytes = 0;
+
+    /**
+     * @param args Options as name=value pairs, e.g. ttftMillis=500 tokensPerSecond=30. Unknown names are ignored.
+     * @return The options with the defaults for the names not given.
+     */
+    public static MockOptions parse(Map<String, String> args) {
+        MockOptions options = new MockOptions();
+        for (Map.Entry<String, String> arg : args.entrySet()) {
+            String value = arg.getValue();
+            switch (arg.getKey()) {
+                case "ttftMillis":
+                    options.ttftMillis = Long.parseLong(value);
+                    break;
+                case "tokensPerSecond":
+                    options.tokensPerSecond = Integer.parseInt(value);
+                    break;
+                case "jitterMillis":
+                    options.jitterMillis = Long.parseLong(value);
+                    break;
+                case "tokens":
+                    options.tokens = Integer.parseInt(value);
+                    break;
+                case "errorRate":
+                    options.errorRate = Double.parseDouble(value);
+                    break;
+                case "throttleRate":
+                    options.throttleRate = Double.parseDouble(value);
+                    break;
+                case "abortRate":
+                    options.abortRate = Double.parseDouble(value);
+                    break;
+                case "retryAfterSeconds":
+                    options.retryAfterSeconds = Integer.parseInt(value);
+                    break;
+                case "fragmentBytes":
+                    options.fragmentBytes = Integer.parseInt(value);
+                    break;
+                default:
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @return The delay before the first chunk, 300 by default.
+     */
+    public long getTtftMillis() {
+        return ttftMillis;
+    }
+
+    public void setTtftMillis(long ttftMillis) {
+        this.ttftMillis = ttftMillis;
+    }
+
+    /**
+     * @return The rate at which the chunks of one token are streamed after the first, 50 by default.
+     */
+    public int getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    public void setTokensPerSecond(int tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+    }
+
+    /**
+     * @return The largest random time added to or taken from every delay, 0 by default.
+     */
+    public long getJitterMillis() {
+        return jitterMillis;
+    }
+
+    public void setJitterMillis(long jitterMillis) {
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * @return The number of tokens of each answer, 200 by default.
+     */
+    public int getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(int tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * @return The share of the requests answered with a 500 error.
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @return The share of the requests answered with a 429 and a Retry-After header.
+     */
+    public double getThrottleRate() {
+        return throttleRate;
+    }
+
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    /**
+     * @return The share of the streams whose connection is closed half way through the answer.
+     */
+    public double getAbortRate() {
+        return abortRate;
+    }
+
+    public void setAbortRate(double abortRate) {
+        this.abortRate = abortRate;
+    }
+
+    /**
+     * @return The Retry-After of the 429 responses, 1 by default.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return The size of the pieces each chunk is written in, so that events span reads, or 0 to write
+     *         each chunk whole.
+     */
+    public int getFragmentBytes() {
+        return fragmentBytes;
+    }
+
+    public void setFragmentBytes(int fragmentBytes) {
+        this.fragmentBytes = fragmentBytes;
+    }
+}
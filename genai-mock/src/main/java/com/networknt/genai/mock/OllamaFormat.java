@@ -0,0 +1,44 @@
+package com.networknt.genai.mock;
+
+import static com.networknt.genai.mock.WireFormat.quote;
+import static com.networknt.genai.mock.WireFormat.utf8;
+
+/**
+ * Ollama /api/chat, streamed as newline delimited JSON ending with the done object and its counts.
+ */
+final class OllamaFormat implements WireFormat {
+    private static final String CREATED_AT = "\"created_at\":\"2024-07-23T15:02:11.123456Z\"";
+
+    @Override
+    public String contentType(boolean stream) {
+        return stream ? "application/x-ndjson" : "application/json";
+    }
+
+    @Override
+    public byte[] start(String model) {
+        return null;
+    }
+
+    @Override
+    public byte[] chunk(String model, String text, int index) {
+        return utf8("{\"model\":" + quote(model) + "," + CREATED_AT + ",\"message\":{\"role\":\"assistant\",\"content\":"
+                + quote(text) + "},\"done\":false}\n");
+    }
+
+    @Override
+    public byte[] end(String model, int promptTokens, int tokens) {
+        return utf8(response(model, "", promptTokens, tokens) + "\n");
+    }
+
+    @Override
+    public byte[] complete(String model, String text, int promptTokens, int tokens) {
+        return utf8(response(model, text, promptTokens, tokens));
+    }
+
+    private static String response(String model, String text, int promptTokens, int tokens) {
+        return "{\"model\":" + quote(model) + "," + CREATED_AT + ",\"message\":{\"role\":\"assistant\",\"content\":"
+                + quote(text) + "},\"done_reason\":\"stop\",\"done\":true,\"total_duration\":4883583458,"
+                + "\"load_duration\":1334875,\"prompt_eval_count\":" + promptTokens
+                + ",\"prompt_eval_duration\":342546000,\"eval_count\":" + tokens + ",\"eval_duration\":4535599000}";
+    }
+}
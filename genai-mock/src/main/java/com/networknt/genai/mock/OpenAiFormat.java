@@ -0,0 +1,49 @@
+package com.networknt.genai.mock;
+
+import static com.networknt.genai.mock.WireFormat.quote;
+import static com.networknt.genai.mock.WireFormat.utf8;
+
+/**
+ * OpenAI chat completions, streamed as server-sent events ending with a usage chunk and [DONE].
+ */
+final class OpenAiFormat implements WireFormat {
+    private static final String ID = "\"id\":\"chatcmpl-mock\",\"created\":1700000000,\"system_fingerprint\":\"fp_mock\"";
+
+    @Override
+    public String contentType(boolean stream) {
+        return stream ? "text/event-stream" : "application/json";
+    }
+
+    @Override
+    public byte[] start(String model) {
+        return null;
+    }
+
+    @Override
+    public byte[] chunk(String model, String text, int index) {
+        return utf8("data: {" + ID + ",\"object\":\"chat.completion.chunk\",\"model\":" + quote(model)
+                + ",\"choices\":[{\"index\":0,\"delta\":{\"content\":" + quote(text)
+                + "},\"logprobs\":null,\"finish_reason\":null}]}\n\n");
+    }
+
+    @Override
+    public byte[] end(String model, int promptTokens, int tokens) {
+        return utf8("data: {" + ID + ",\"object\":\"chat.completion.chunk\",\"model\":" + quote(model)
+                + ",\"choices\":[{\"index\":0,\"delta\":{},\"logprobs\":null,\"finish_reason\":\"stop\"}]}\n\n"
+                + "data: {" + ID + ",\"object\":\"chat.completion.chunk\",\"model\":" + quote(model)
+                + ",\"choices\":[]," + usage(promptTokens, tokens) + "}\n\n"
+                + "data: [DONE]\n\n");
+    }
+
+    @Override
+    public byte[] complete(String model, String text, int promptTokens, int tokens) {
+        return utf8("{" + ID + ",\"object\":\"chat.completion\",\"model\":" + quote(model)
+                + ",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":" + quote(text)
+                + "},\"logprobs\":null,\"finish_reason\":\"stop\"}]," + usage(promptTokens, tokens) + "}");
+    }
+
+    private static String usage(int promptTokens, int tokens) {
+        return "\"usage\":{\"prompt_tokens\":" + promptTokens + ",\"completion_tokens\":" + tokens
+                + ",\"total_tokens\":" + (promptTokens + tokens) + ",\"prompt_tokens_details\":{\"cached_tokens\":0}}";
+    }
+}
@@ -0,0 +1,55 @@
+package com.networknt.genai.mock;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The wire format of the answers of a provider. A stream is the optional start, one chunk per token and
+ * the end carrying the finish reason and the usage.
+ */
+interface WireFormat {
+    /**
+     * @param stream Whether the answer is streamed.
+     * @return The content type of the answer.
+     */
+    String contentType(boolean stream);
+
+    /**
+     * @return The bytes sent before the first chunk, or null.
+     */
+    byte[] start(String model);
+
+    /**
+     * @param index The index of the token, from 0.
+     */
+    byte[] chunk(String model, String text, int index);
+
+    /**
+     * @param tokens The number of chunks sent before.
+     */
+    byte[] end(String model, int promptTokens, int tokens);
+
+    /**
+     * @return The whole answer of a request that is not streamed.
+     */
+    byte[] complete(String model, String text, int promptTokens, int tokens);
+
+    /**
+     * @return The body of an error response with the status.
+     */
+    default byte[] error(int status, String message) {
+        return utf8("{\"error\":{\"code\":" + status + ",\"message\":" + quote(message) + "}}");
+    }
+
+    /**
+     * @return The string as a quoted JSON string.
+     */
+    static String quote(String s) {
+        return "\"" + new String(JsonStringEncoder.getInstance().quoteAsString(s)) + "\"";
+    }
+
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,135 @@
+package com.networknt.genai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.genai.JsonArrayStreamDecoder;
+import com.networknt.genai.ServerSentEventDecoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MockLlmServerTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final int TOKENS = 40;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private MockLlmServer server;
+
+    private void start(MockOptions options) {
+        options.setTtftMillis(0);
+        options.setTokensPerSecond(10000);
+        options.setTokens(TOKENS);
+        server = new MockLlmServer(options);
+        server.start("127.0.0.1", 0);
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop();
+    }
+
+    private HttpResponse<byte[]> post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    public void testOpenAiStreamInFragments() throws Exception {
+        MockOptions options = new MockOptions();
+        options.setFragmentBytes(7);
+        start(options);
+        HttpResponse<byte[]> response = post("/v1/chat/completions", "{\"model\":\"gpt-4o\",\"stream\":true}");
+        assertEquals(200, response.statusCode());
+        StringBuilder text = new StringBuilder();
+        int[] usage = new int[1];
+        new ServerSentEventDecoder().decode(ByteBuffer.wrap(response.body()), (data, offset, length) -> {
+            String event = new String(data, offset, length, StandardCharsets.UTF_8);
+            if (event.equals("[DONE]")) {
+                return;
+            }
+            JsonNode chunk = mapper.readTree(event);
+            text.append(chunk.path("choices").path(0).path("delta").path("content").asText(""));
+            usage[0] = Math.max(usage[0], chunk.path("usage").path("completion_tokens").asInt());
+        });
+        assertEquals(MockLlmServer.text(TOKENS), text.toString());
+        assertEquals(TOKENS, usage[0]);
+    }
+
+    @Test
+    public void testGeminiAndOllamaStreams() throws Exception {
+        start(new MockOptions());
+        StringBuilder gemini = new StringBuilder();
+        decodeJson(post("/v1beta/models/gemini-pro:streamGenerateContent", "{}").body(), element -> gemini.append(
+                element.path("candidates").path(0).path("content").path("parts").path(0).path("text").asText("")));
+        assertEquals(MockLlmServer.text(TOKENS), gemini.toString());
+
+        StringBuilder ollama = new StringBuilder();
+        decodeJson(post("/api/chat", "{\"model\":\"llama3\"}").body(),
+                element -> ollama.append(element.path("message").path("content").asText("")));
+        assertEquals(MockLlmServer.text(TOKENS), ollama.toString());
+    }
+
+    @Test
+    public void testBedrockEventStream() throws Exception {
+        start(new MockOptions());
+        HttpResponse<byte[]> response = post("/model/anthropic.claude-3-haiku/invoke-with-response-stream", "{}");
+        assertEquals("application/vnd.amazon.eventstream", response.headers().firstValue("Content-Type").orElse(null));
+        ByteBuffer body = ByteBuffer.wrap(response.body());
+        StringBuilder text = new StringBuilder();
+        while (body.hasRemaining()) {
+            int start = body.position();
+            int total = body.getInt();
+            int headers = body.getInt();
+            assertEquals(crc(body.array(), start, 8), body.getInt());
+            body.position(start + 12 + headers);
+            byte[] payload = new byte[total - 16 - headers];
+            body.get(payload);
+            assertEquals(crc(body.array(), start, total - 4), body.getInt());
+            JsonNode event = mapper.readTree(Base64.getDecoder().decode(mapper.readTree(payload).path("bytes").asText()));
+            text.append(event.path("delta").path("text").asText(""));
+        }
+        assertEquals(MockLlmServer.text(TOKENS), text.toString());
+    }
+
+    @Test
+    public void testThrottled() throws Exception {
+        MockOptions options = new MockOptions();
+        options.setThrottleRate(1);
+        options.setRetryAfterSeconds(3);
+        start(options);
+        HttpResponse<byte[]> response = post("/v1/chat/completions", "{\"model\":\"gpt-4o\"}");
+        assertEquals(429, response.statusCode());
+        assertEquals("3", response.headers().firstValue("Retry-After").orElse(null));
+        assertTrue(new String(response.body(), StandardCharsets.UTF_8).contains("\"code\":429"));
+    }
+
+    private interface ElementHandler {
+        void onElement(JsonNode element);
+    }
+
+    private static void decodeJson(byte[] body, ElementHandler handler) throws IOException {
+        JsonArrayStreamDecoder decoder = new JsonArrayStreamDecoder(mapper.getFactory());
+        JsonArrayStreamDecoder.Handler elements = parser -> handler.onElement(mapper.readTree(parser));
+        decoder.decode(ByteBuffer.wrap(body), elements);
+        decoder.finish(elements);
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -1,5 +1,6 @@
 package com.networknt.genai.ollama;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.networknt.client.Http2Client;
 import com.networknt.client.simplepool.SimpleConnectionState;
@@ -7,20 +8,28 @@ import com.networknt.config.Config;
 import io.undertow.client.ClientConnection;
 import io.undertow.client.ClientRequest;
 import io.undertow.client.ClientResponse;
-import io.undertow.client.ClientExchange;
 import io.undertow.util.Headers;
 import io.undertow.util.Methods;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.OptionMap;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import com.networknt.genai.AsyncExchange;
+import com.networknt.genai.ChatResponse;
 import com.networknt.genai.GenAiClient;
+import com.networknt.genai.GenAiException;
+import com.networknt.genai.JsonArrayStreamDecoder;
+import com.networknt.genai.JsonResponseListener;
+import com.networknt.genai.RequestBody;
+import com.networknt.genai.ResponseListener;
+import com.networknt.genai.StreamMetrics;
 import com.networknt.genai.ChatMessage;
 import com.networknt.genai.RequestOptions;
 
@@ -41,51 +50,110 @@ public class OllamaClient implements GenAiClient {
     }
 
     public String chat(String model, java.util.List<ChatMessage> messages) {
-        String result = null;
-        SimpleConnectionState.ConnectionToken connectionToken = null;
         try {
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("messages", messages);
-            requestBody.put("stream", false);
+            return chatAsync(model, messages).get(5, TimeUnit.SECONDS).getContent(); // Timeout for response
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted invoking Ollama API", e);
+        } catch (Exception e) {
+            logger.error("Exception invoking Ollama API", e);
+        }
+        return null;
+    }
 
-            String jsonBody = mapper.writeValueAsString(requestBody);
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(java.util.List<ChatMessage> messages, RequestOptions options) {
+        return chatAsync(options.getModel() != null ? options.getModel() : config.getModel(), messages);
+    }
+
+    public CompletableFuture<ChatResponse> chatAsync(String model, java.util.List<ChatMessage> messages) {
+        SimpleConnectionState.ConnectionToken connectionToken = null;
+        try {
             URI uri = new URI(config.getOllamaUrl());
             connectionToken = client.borrow(uri, Http2Client.WORKER, Http2Client.SSL, Http2Client.BUFFER_POOL,
                     OptionMap.EMPTY);
             ClientConnection connection = (ClientConnection) connectionToken.getRawConnection();
-            try {
-                ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath("/api/chat");
-                request.getRequestHeaders().put(Headers.HOST, uri.getHost());
-                request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
-                request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
+            RequestBody body = OllamaRequestEncoder.encode(mapper.getFactory(), connection.getBufferPool(), model,
+                    messages, false);
 
-                final CountDownLatch latch = new CountDownLatch(1);
-                final AtomicReference<ClientResponse> reference = new AtomicReference<>();
-                connection.sendRequest(request, client.createClientCallback(reference, latch, jsonBody));
-                latch.await(5, TimeUnit.SECONDS); // Timeout for response
+            ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath("/api/chat");
+            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
+            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
 
-                int statusCode = reference.get().getResponseCode();
-                String body = reference.get().getAttachment(Http2Client.RESPONSE_BODY);
-                if (statusCode == 200) {
-                    Map<String, Object> responseMap = mapper.readValue(body, Map.class);
-                    Map<String, Object> message = (Map<String, Object>) responseMap.get("message");
-                    if (message != null) {
-                        result = (String) message.get("content");
-                    }
-                } else {
-                    logger.error("Ollama API error: {} {}", statusCode, body);
-                }
-            } finally {
-                // Inner finally not needed, outer finally handles restore
-            }
+            final SimpleConnectionState.ConnectionToken finalToken = connectionToken;
+            ChatListener listener = new ChatListener();
+            new AsyncExchange(connection, request, body).start(listener);
+            return listener.getFuture().whenComplete((response, error) -> client.restore(finalToken));
         } catch (Exception e) {
-            logger.error("Exception invoking Ollama API", e);
-        } finally {
             if (connectionToken != null)
                 client.restore(connectionToken);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Extracts the content, finish reason and token usage of an /api/chat response while the body is read.
+     */
+    private static class ChatListener extends JsonResponseListener<ChatResponse> {
+        private static final int CONTENT = 0;
+        private static final int FINISH_REASON = 1;
+        private static final int PROMPT_TOKENS = 2;
+        private static final int COMPLETION_TOKENS = 3;
+        private static final int MODEL = 4;
+        private static final int TOTAL_DURATION = 5;
+        private static final String[] FIELDS = {
+                "/message/content",
+                "/done_reason",
+                "/prompt_eval_count",
+                "/eval_count",
+                "/model",
+                "/total_duration"
+        };
+
+        private final ChatResponse completion = new ChatResponse();
+
+        ChatListener() throws IOException {
+            super("Ollama", mapper.getFactory(), FIELDS);
+        }
+
+        @Override
+        public void onResponse(ClientResponse response) {
+            super.onResponse(response);
+            completion.markFirstToken();
+        }
+
+        @Override
+        public void onField(int field, JsonParser parser) throws IOException {
+            switch (field) {
+                case CONTENT:
+                    completion.setContent(parser.getText());
+                    break;
+                case FINISH_REASON:
+                    completion.setFinishReason(parser.getText());
+                    break;
+                case PROMPT_TOKENS:
+                    completion.setPromptTokens(parser.getIntValue());
+                    break;
+                case COMPLETION_TOKENS:
+                    completion.setCompletionTokens(parser.getIntValue());
+                    break;
+                case MODEL:
+                    completion.setModel(parser.getText());
+                    break;
+                case TOTAL_DURATION:
+                    completion.setServerLatencyNanos(parser.getLongValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        protected ChatResponse result() {
+            completion.markComplete();
+            return completion;
         }
-        return result;
     }
 
     @Override
@@ -95,179 +163,120 @@ public class OllamaClient implements GenAiClient {
 
     @Override
     public void chatStream(java.util.List<ChatMessage> messages, RequestOptions options,
-            com.networknt.genai.StreamCallback callback) {
+            com.networknt.genai.StreamCallback streamCallback) {
+        final String model = options.getModel() != null ? options.getModel() : config.getModel();
+        StreamMetrics metrics = StreamMetrics.start("ollama", model, options.getAgent());
+        com.networknt.genai.StreamCallback callback = metrics.wrap(streamCallback);
         SimpleConnectionState.ConnectionToken connectionToken = null;
         try {
             logger.debug("chatStream called with messages: {}", messages.size());
-            final String model = options.getModel() != null ? options.getModel() : config.getModel();
 
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("messages", messages);
-            requestBody.put("stream", true);
-
-            String jsonBody = mapper.writeValueAsString(requestBody);
             URI uri = new URI(config.getOllamaUrl());
             logger.debug("Connecting to Ollama at: {}", uri);
 
             connectionToken = client.borrow(uri, Http2Client.WORKER, Http2Client.SSL,
                     Http2Client.BUFFER_POOL, OptionMap.EMPTY);
+            metrics.borrowed();
             ClientConnection connection = (ClientConnection) connectionToken.getRawConnection();
+            RequestBody body = OllamaRequestEncoder.encode(mapper.getFactory(), connection.getBufferPool(), model,
+                    messages, true);
+
+            logger.debug("Connection established to Ollama");
+            ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath("/api/chat");
+            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
+            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
 
             final SimpleConnectionState.ConnectionToken finalToken = connectionToken;
-            com.networknt.genai.StreamCallback wrappedCallback = new com.networknt.genai.StreamCallback() {
+            final ChatResponse completion = new ChatResponse();
+            completion.setModel(model);
+            AsyncExchange exchange = new AsyncExchange(connection, request, body);
+            callback.onOpen(exchange);
+            exchange.start(metrics.wrap(new ResponseListener() {
+                // Ollama streams newline delimited JSON, a sequence of root level objects that the
+                // array decoder accepts as well.
+                private final JsonArrayStreamDecoder decoder = new JsonArrayStreamDecoder(mapper.getFactory());
+                private final JsonArrayStreamDecoder.Handler handler = this::onElement;
+                private final ByteArrayOutputStream errorBody = new ByteArrayOutputStream();
+                private int statusCode;
+                private boolean completed;
+
                 @Override
-                public void onEvent(String content) {
-                    callback.onEvent(content);
+                public void onResponse(ClientResponse response) {
+                    logger.debug("Response received from Ollama");
+                    statusCode = response.getResponseCode();
                 }
 
                 @Override
-                public void onComplete() {
-                    try {
-                        callback.onComplete();
-                    } finally {
-                        client.restore(finalToken);
+                public void onData(ByteBuffer data) throws IOException {
+                    logger.trace("Received {} bytes", data.remaining());
+                    if (statusCode != 200) {
+                        byte[] bytes = new byte[data.remaining()];
+                        data.get(bytes);
+                        errorBody.write(bytes);
+                        return;
                     }
+                    decoder.decode(data, handler);
                 }
 
-                @Override
-                public void onError(Throwable t) {
-                    try {
-                        callback.onError(t);
-                    } finally {
-                        client.restore(finalToken);
+                private void onElement(JsonParser element) throws IOException {
+                    OllamaResponse response = mapper.readValue(element, OllamaResponse.class);
+                    String content = response.content();
+                    if (content != null && !content.isEmpty()) {
+                        completion.markFirstToken();
+                        callback.onEvent(content);
+                    }
+                    if (response.isDone() && !completed) {
+                        logger.debug("Stream complete");
+                        response.copyMetadata(completion);
+                        complete();
                     }
                 }
-            };
 
-            logger.debug("Connection established to Ollama");
-            ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath("/api/chat");
-            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
-            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
-            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
+                private void complete() {
+                    completed = true;
+                    completion.markComplete();
+                    callback.onComplete(completion);
+                }
 
-            connection.sendRequest(request, new io.undertow.client.ClientCallback<ClientExchange>() {
                 @Override
-                public void completed(io.undertow.client.ClientExchange exchange) {
-                    logger.debug("Request sent to Ollama, waiting for response");
-                    exchange.setResponseListener(
-                            new io.undertow.client.ClientCallback<io.undertow.client.ClientExchange>() {
-                                @Override
-                                public void completed(io.undertow.client.ClientExchange result) {
-                                    logger.debug("Response received from Ollama");
-                                    result.getResponseChannel().getReadSetter().set(
-                                            new org.xnio.ChannelListener<org.xnio.channels.StreamSourceChannel>() {
-                                                @Override
-                                                public void handleEvent(
-                                                        org.xnio.channels.StreamSourceChannel channel) {
-                                                    try {
-                                                        java.nio.ByteBuffer buffer = java.nio.ByteBuffer
-                                                                .allocate(1024);
-                                                        int read = 0;
-                                                        while ((read = channel.read(buffer)) > 0) {
-                                                            buffer.flip();
-                                                            String chunk = new String(buffer.array(), 0,
-                                                                    read,
-                                                                    java.nio.charset.StandardCharsets.UTF_8);
-                                                            logger.trace("Received chunk: {}", chunk);
-                                                            // Process NDJSON chunk
-                                                            String[] lines = chunk.split("\n");
-                                                            for (String line : lines) {
-                                                                if (line.trim().isEmpty())
-                                                                    continue;
-                                                                try {
-                                                                    Map<String, Object> responseMap = mapper
-                                                                            .readValue(line, Map.class);
-                                                                    Map<String, Object> message = (Map<String, Object>) responseMap
-                                                                            .get("message");
-                                                                    if (message != null) {
-                                                                        String content = (String) message
-                                                                                .get("content");
-                                                                        if (content != null
-                                                                                && !content.isEmpty())
-                                                                            wrappedCallback.onEvent(content);
-                                                                    }
-                                                                    Boolean done = (Boolean) responseMap
-                                                                            .get("done");
-                                                                    if (Boolean.TRUE.equals(done)) {
-                                                                        logger.debug("Stream complete");
-                                                                        wrappedCallback.onComplete();
-                                                                    }
-                                                                } catch (Exception e) {
-                                                                    logger.error("Error parsing chunk",
-                                                                            e);
-                                                                }
-                                                            }
-                                                            buffer.clear();
-                                                        }
-                                                        if (read == -1) {
-                                                            logger.debug("Channel closed");
-                                                        }
-                                                    } catch (java.io.IOException e) {
-                                                        logger.error("IOException in read listener", e);
-                                                        wrappedCallback.onError(e);
-                                                    }
-                                                }
-                                            });
-                                    result.getResponseChannel().resumeReads();
-                                }
-
-                                @Override
-                                public void failed(java.io.IOException e) {
-                                    logger.error("Response listener failed", e);
-                                    wrappedCallback.onError(e);
-                                }
-                            });
-
-                    // Send body
+                public void onComplete() {
+                    logger.debug("Channel closed");
                     try {
-                        org.xnio.channels.StreamSinkChannel requestChannel = exchange
-                                .getRequestChannel();
-                        java.nio.ByteBuffer buffer = java.nio.ByteBuffer
-                                .wrap(jsonBody.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-
-                        // Simple async write attempt
-                        int written = 0;
-                        while (buffer.hasRemaining()) {
-                            written = requestChannel.write(buffer);
-                            if (written == 0) {
-                                // Should handle blocking write propertly via listener but for short
-                                // JSON likely OK to just break if logic simple
-                                // or strictly implement listener.
-                                // Implementing write listener for correctness:
-                                requestChannel.getWriteSetter().set(channel -> {
-                                    try {
-                                        while (buffer.hasRemaining()) {
-                                            int w = channel.write(buffer);
-                                            if (w == 0)
-                                                return;
-                                        }
-                                        channel.shutdownWrites();
-                                        channel.flush();
-                                    } catch (java.io.IOException e) {
-                                        logger.error("Error writing body async", e);
-                                        wrappedCallback.onError(e);
-                                    }
-                                });
-                                requestChannel.resumeWrites();
+                        if (statusCode != 200) {
+                            callback.onError(new GenAiException(statusCode,
+                                    "Ollama API error: " + statusCode + " " + errorBody.toString(StandardCharsets.UTF_8)));
+                        } else if (!completed) {
+                            try {
+                                // a trailing object without its newline is still decoded
+                                decoder.finish(handler);
+                            } catch (IOException e) {
+                                callback.onError(e);
                                 return;
                             }
+                            if (!completed) {
+                                // the connection was closed in the middle of the answer
+                                callback.onError(new GenAiException(
+                                        "Ollama stream of " + model + " ended before done"));
+                            }
                         }
-                        requestChannel.shutdownWrites();
-                        requestChannel.flush();
-                    } catch (Exception e) {
-                        logger.error("Error sending request body", e);
-                        wrappedCallback.onError(e);
+                    } finally {
+                        client.restore(finalToken);
                     }
                 }
 
                 @Override
-                public void failed(java.io.IOException e) {
-                    logger.error("Send request failed", e);
-                    wrappedCallback.onError(e);
+                public void onError(Throwable t) {
+                    logger.error("Ollama stream failed", t);
+                    try {
+                        if (!completed) {
+                            callback.onError(t);
+                        }
+                    } finally {
+                        client.restore(finalToken);
+                    }
                 }
-            });
-
+            }));
         } catch (Exception e) {
             logger.error("Exception in chatStream", e);
             callback.onError(e);
@@ -0,0 +1,36 @@
+package com.networknt.genai.ollama;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.RequestBody;
+import io.undertow.connector.ByteBufferPool;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes /api/chat requests with a JsonGenerator straight into pooled buffers.
+ */
+final class OllamaRequestEncoder {
+
+    private OllamaRequestEncoder() {
+    }
+
+    static RequestBody encode(JsonFactory factory, ByteBufferPool pool, String model, List<ChatMessage> messages,
+            boolean stream) throws IOException {
+        return RequestBody.encode(factory, pool, g -> {
+            g.writeStartObject();
+            g.writeStringField("model", model);
+            g.writeArrayFieldStart("messages");
+            for (ChatMessage msg : messages) {
+                g.writeStartObject();
+                g.writeStringField("role", msg.getRole());
+                g.writeStringField("content", msg.getContent());
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeBooleanField("stream", stream);
+            g.writeEndObject();
+        });
+    }
+}
@@ -0,0 +1,113 @@
+package com.networknt.genai.ollama;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.networknt.genai.ChatResponse;
+
+/**
+ * One line of a streamed /api/chat response. Only the message content, the done flag and the
+ * statistics of the final line are mapped; everything else is skipped by the parser.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+class OllamaResponse {
+    private String model;
+    private Message message;
+    private boolean done;
+    @JsonProperty("done_reason")
+    private String doneReason;
+    @JsonProperty("prompt_eval_count")
+    private int promptEvalCount;
+    @JsonProperty("eval_count")
+    private int evalCount;
+    @JsonProperty("total_duration")
+    private long totalDuration;
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public void setDone(boolean done) {
+        this.done = done;
+    }
+
+    public String getDoneReason() {
+        return doneReason;
+    }
+
+    public void setDoneReason(String doneReason) {
+        this.doneReason = doneReason;
+    }
+
+    public int getPromptEvalCount() {
+        return promptEvalCount;
+    }
+
+    public void setPromptEvalCount(int promptEvalCount) {
+        this.promptEvalCount = promptEvalCount;
+    }
+
+    public int getEvalCount() {
+        return evalCount;
+    }
+
+    public void setEvalCount(int evalCount) {
+        this.evalCount = evalCount;
+    }
+
+    /**
+     * @return The total time spent by the server on the request, in nanoseconds.
+     */
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    String content() {
+        return message != null ? message.getContent() : null;
+    }
+
+    /**
+     * Copies the statistics of the final line.
+     */
+    void copyMetadata(ChatResponse response) {
+        if (model != null) {
+            response.setModel(model);
+        }
+        response.setFinishReason(doneReason);
+        response.setPromptTokens(promptEvalCount);
+        response.setCompletionTokens(evalCount);
+        response.setServerLatencyNanos(totalDuration);
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Message {
+        private String content;
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+    }
+}
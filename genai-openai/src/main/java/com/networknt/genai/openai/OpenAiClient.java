@@ -1,28 +1,39 @@
 package com.networknt.genai.openai;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.networknt.client.Http2Client;
 import com.networknt.client.simplepool.SimpleConnectionState;
 import com.networknt.config.Config;
+import com.networknt.genai.AsyncExchange;
+import com.networknt.genai.ChatResponse;
 import com.networknt.genai.GenAiClient;
+import com.networknt.genai.GenAiException;
+import com.networknt.genai.JsonResponseListener;
+import com.networknt.genai.RateLimiter;
+import com.networknt.genai.RequestBody;
+import com.networknt.genai.ResponseListener;
+import com.networknt.genai.ServerSentEventDecoder;
+import com.networknt.genai.StreamMetrics;
 import io.undertow.client.ClientConnection;
 import io.undertow.client.ClientRequest;
 import io.undertow.client.ClientResponse;
 import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
 import io.undertow.util.Methods;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.OptionMap;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.networknt.genai.RequestOptions;
 
@@ -31,6 +42,13 @@ public class OpenAiClient implements GenAiClient {
     private static final OpenAiConfig config = OpenAiConfig.load();
     private static final Http2Client client = Http2Client.getInstance();
     private static final ObjectMapper mapper = Config.getInstance().getMapper();
+    private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+    private static final HttpString PROCESSING_MS = new HttpString("openai-processing-ms");
+    /**
+     * The quota of the configured API key, shared by all the instances of the client.
+     */
+    private static final RateLimiter limiter = new RateLimiter(config.getRequestsPerMinute(),
+            config.getTokensPerMinute());
 
     @Override
     public String chat(java.util.List<com.networknt.genai.ChatMessage> messages) {
@@ -39,58 +57,183 @@ public class OpenAiClient implements GenAiClient {
 
     @Override
     public String chat(java.util.List<com.networknt.genai.ChatMessage> messages, RequestOptions options) {
-        return chat(options.getModel() != null ? options.getModel() : config.getModel(), messages);
+        return chat(options.getModel() != null ? options.getModel() : config.getModel(), options.getSystemPrompt(),
+                messages);
     }
 
     public String chat(String model, java.util.List<com.networknt.genai.ChatMessage> messages) {
-        String result = null;
-        SimpleConnectionState.ConnectionToken connectionToken = null;
+        return chat(model, null, messages);
+    }
+
+    private String chat(String model, String systemPrompt, java.util.List<com.networknt.genai.ChatMessage> messages) {
         try {
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            requestBody.put("messages", messages);
+            return chatAsync(model, systemPrompt, messages).get(10, TimeUnit.SECONDS).getContent();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted invoking OpenAI API", e);
+        } catch (Exception e) {
+            logger.error("Exception invoking OpenAI API", e);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(java.util.List<com.networknt.genai.ChatMessage> messages,
+            RequestOptions options) {
+        return chatAsync(options.getModel() != null ? options.getModel() : config.getModel(), options.getSystemPrompt(),
+                messages);
+    }
+
+    public CompletableFuture<ChatResponse> chatAsync(String model, java.util.List<com.networknt.genai.ChatMessage> messages) {
+        return chatAsync(model, null, messages);
+    }
+
+    /**
+     * Sends the request once the rate limiter has a request and the estimated tokens for it, waiting
+     * up to rateLimitMaxWaitMs.
+     *
+     * @param model The model.
+     * @param systemPrompt The system prompt sent before the messages, or null.
+     * @param messages The messages.
+     * @return The response.
+     */
+    public CompletableFuture<ChatResponse> chatAsync(String model, String systemPrompt,
+            java.util.List<com.networknt.genai.ChatMessage> messages) {
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(config.getRateLimitMaxWaitMs());
+        long wait = limiter.reserve(model, estimateTokens(systemPrompt, messages), maxWait);
+        if (wait > maxWait) {
+            return CompletableFuture.failedFuture(throttled(model, wait));
+        }
+        if (wait > 0) {
+            return CompletableFuture.supplyAsync(() -> send(model, systemPrompt, messages),
+                    CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS)).thenCompose(f -> f);
+        }
+        return send(model, systemPrompt, messages);
+    }
 
-            String jsonBody = mapper.writeValueAsString(requestBody);
+    private static int estimateTokens(String systemPrompt, java.util.List<com.networknt.genai.ChatMessage> messages) {
+        return RateLimiter.estimateTokens(messages) + (systemPrompt != null ? systemPrompt.length() / 4 : 0);
+    }
+
+    private static GenAiException throttled(String model, long waitNanos) {
+        return new GenAiException(429, "OpenAI rate limit of " + model + " reached, retry in "
+                + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms", waitNanos);
+    }
+
+    private CompletableFuture<ChatResponse> send(String model, String systemPrompt,
+            java.util.List<com.networknt.genai.ChatMessage> messages) {
+        SimpleConnectionState.ConnectionToken connectionToken = null;
+        try {
             URI uri = new URI(config.getUrl());
             connectionToken = client.borrow(uri, Http2Client.WORKER, Http2Client.SSL, Http2Client.BUFFER_POOL,
                     OptionMap.EMPTY);
             ClientConnection connection = (ClientConnection) connectionToken.getRawConnection();
-            try {
-                ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath(uri.getPath());
-                request.getRequestHeaders().put(Headers.HOST, uri.getHost());
-                request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
-                request.getRequestHeaders().put(Headers.AUTHORIZATION, "Bearer " + config.getApiKey());
-                request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
-
-                final CountDownLatch latch = new CountDownLatch(1);
-                final AtomicReference<ClientResponse> reference = new AtomicReference<>();
-                connection.sendRequest(request, client.createClientCallback(reference, latch, jsonBody));
-                latch.await(10, TimeUnit.SECONDS);
-
-                ClientResponse response = reference.get();
-                int statusCode = response.getResponseCode();
-                String body = response.getAttachment(Http2Client.RESPONSE_BODY);
-
-                if (statusCode == 200) {
-                    Map<String, Object> responseMap = mapper.readValue(body, Map.class);
-                    List<Map<String, Object>> choices = (List<Map<String, Object>>) responseMap.get("choices");
-                    if (choices != null && !choices.isEmpty()) {
-                        Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-                        result = (String) message.get("content");
-                    }
-                } else {
-                    logger.error("OpenAI API error: {} {}", statusCode, body);
+            RequestBody body = OpenAiRequestEncoder.encode(mapper.getFactory(), connection.getBufferPool(), model,
+                    systemPrompt, messages, false);
+
+            ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath(uri.getPath());
+            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
+            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            request.getRequestHeaders().put(Headers.AUTHORIZATION, "Bearer " + config.getApiKey());
+            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
+
+            final SimpleConnectionState.ConnectionToken finalToken = connectionToken;
+            ChatListener listener = new ChatListener(model);
+            new AsyncExchange(connection, request, body).start(listener);
+            return listener.getFuture().whenComplete((response, error) -> {
+                client.restore(finalToken);
+                if (response != null) {
+                    limiter.charge(model, response.getCompletionTokens());
                 }
-            } finally {
-                // Inner finally not needed, outer finally handles restore
-            }
+            });
         } catch (Exception e) {
-            logger.error("Exception invoking OpenAI API", e);
-        } finally {
             if (connectionToken != null)
                 client.restore(connectionToken);
+            return CompletableFuture.failedFuture(e);
         }
-        return result;
+    }
+
+    /**
+     * Extracts the content, finish reason and token usage of a chat completion while the body is read.
+     */
+    private static class ChatListener extends JsonResponseListener<ChatResponse> {
+        private static final int CONTENT = 0;
+        private static final int FINISH_REASON = 1;
+        private static final int PROMPT_TOKENS = 2;
+        private static final int COMPLETION_TOKENS = 3;
+        private static final int MODEL = 4;
+        private static final int CACHED_TOKENS = 5;
+        private static final String[] FIELDS = {
+                "/choices/0/message/content",
+                "/choices/0/finish_reason",
+                "/usage/prompt_tokens",
+                "/usage/completion_tokens",
+                "/model",
+                "/usage/prompt_tokens_details/cached_tokens"
+        };
+
+        private final ChatResponse completion = new ChatResponse();
+        private final String model;
+
+        ChatListener(String model) throws IOException {
+            super("OpenAI", mapper.getFactory(), FIELDS);
+            this.model = model;
+        }
+
+        @Override
+        public void onResponse(ClientResponse response) {
+            super.onResponse(response);
+            limiter.update(model, response.getResponseHeaders(), response.getResponseCode());
+            completion.markFirstToken();
+            completion.setServerLatencyNanos(processingNanos(response));
+        }
+
+        @Override
+        public void onField(int field, JsonParser parser) throws IOException {
+            switch (field) {
+                case CONTENT:
+                    completion.setContent(parser.getText());
+                    break;
+                case FINISH_REASON:
+                    completion.setFinishReason(parser.getText());
+                    break;
+                case PROMPT_TOKENS:
+                    completion.setPromptTokens(parser.getIntValue());
+                    break;
+                case COMPLETION_TOKENS:
+                    completion.setCompletionTokens(parser.getIntValue());
+                    break;
+                case MODEL:
+                    completion.setModel(parser.getText());
+                    break;
+                case CACHED_TOKENS:
+                    completion.setCachedTokens(parser.getIntValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        protected ChatResponse result() {
+            completion.markComplete();
+            return completion;
+        }
+    }
+
+    /**
+     * Returns the time spent by the API on the request, reported in the openai-processing-ms header.
+     */
+    private static long processingNanos(ClientResponse response) {
+        String ms = response.getResponseHeaders().getFirst(PROCESSING_MS);
+        if (ms != null) {
+            try {
+                return TimeUnit.MILLISECONDS.toNanos(Long.parseLong(ms.trim()));
+            } catch (NumberFormatException e) {
+                logger.debug("Invalid openai-processing-ms header {}", ms);
+            }
+        }
+        return 0;
     }
 
     @Override
@@ -103,30 +246,111 @@ public class OpenAiClient implements GenAiClient {
     public void chatStream(java.util.List<com.networknt.genai.ChatMessage> messages,
             RequestOptions options,
             com.networknt.genai.StreamCallback callback) {
+        String model = options.getModel() != null ? options.getModel() : config.getModel();
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(config.getRateLimitMaxWaitMs());
+        String systemPrompt = options.getSystemPrompt();
+        long wait = limiter.reserve(model, estimateTokens(systemPrompt, messages), maxWait);
+        if (wait > maxWait) {
+            callback.onError(throttled(model, wait));
+        } else if (wait > 0) {
+            CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS)
+                    .execute(() -> stream(model, systemPrompt, messages, options.getAgent(), callback));
+        } else {
+            stream(model, systemPrompt, messages, options.getAgent(), callback);
+        }
+    }
+
+    private void stream(String model, String systemPrompt, java.util.List<com.networknt.genai.ChatMessage> messages,
+            String agent, com.networknt.genai.StreamCallback streamCallback) {
+        StreamMetrics metrics = StreamMetrics.start("openai", model, agent);
+        com.networknt.genai.StreamCallback callback = metrics.wrap(streamCallback);
         SimpleConnectionState.ConnectionToken connectionToken = null;
         try {
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", options.getModel() != null ? options.getModel() : config.getModel());
-            requestBody.put("messages", messages);
-            requestBody.put("stream", true);
-
-            String jsonBody = mapper.writeValueAsString(requestBody);
             URI uri = new URI(config.getUrl());
             connectionToken = client.borrow(uri, Http2Client.WORKER, Http2Client.SSL,
                     Http2Client.BUFFER_POOL, OptionMap.EMPTY);
+            metrics.borrowed();
             ClientConnection connection = (ClientConnection) connectionToken.getRawConnection();
+            RequestBody body = OpenAiRequestEncoder.encode(mapper.getFactory(), connection.getBufferPool(), model,
+                    systemPrompt, messages, true);
+
+            ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath(uri.getPath());
+            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
+            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            request.getRequestHeaders().put(Headers.AUTHORIZATION, "Bearer " + config.getApiKey());
+            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
 
             final SimpleConnectionState.ConnectionToken finalToken = connectionToken;
-            com.networknt.genai.StreamCallback wrappedCallback = new com.networknt.genai.StreamCallback() {
+            final ChatResponse completion = new ChatResponse();
+            completion.setModel(model);
+            AsyncExchange exchange = new AsyncExchange(connection, request, body);
+            callback.onOpen(exchange);
+            exchange.start(metrics.wrap(new ResponseListener() {
+                private final ServerSentEventDecoder decoder = new ServerSentEventDecoder();
+                private final ServerSentEventDecoder.Handler handler = this::onEvent;
+                private final ByteArrayOutputStream errorBody = new ByteArrayOutputStream();
+                private int statusCode;
+                private long retryAfterNanos;
+                private boolean completed;
+
                 @Override
-                public void onEvent(String content) {
-                    callback.onEvent(content);
+                public void onResponse(ClientResponse response) {
+                    statusCode = response.getResponseCode();
+                    limiter.update(model, response.getResponseHeaders(), statusCode);
+                    if (statusCode != 200) {
+                        retryAfterNanos = RateLimiter.retryAfterNanos(response.getResponseHeaders());
+                    }
+                    completion.setServerLatencyNanos(processingNanos(response));
+                }
+
+                @Override
+                public void onData(ByteBuffer data) throws IOException {
+                    if (statusCode != 200) {
+                        byte[] bytes = new byte[data.remaining()];
+                        data.get(bytes);
+                        errorBody.write(bytes);
+                        return;
+                    }
+                    decoder.decode(data, handler);
+                }
+
+                private void onEvent(byte[] data, int offset, int length) throws IOException {
+                    if (ServerSentEventDecoder.matches(data, offset, length, DONE)) {
+                        complete();
+                        return;
+                    }
+                    OpenAiResponse chunk = mapper.readValue(data, offset, length, OpenAiResponse.class);
+                    chunk.copyMetadata(completion);
+                    String content = chunk.firstContent();
+                    if (content != null && !content.isEmpty()) {
+                        completion.markFirstToken();
+                        callback.onEvent(content);
+                    }
+                }
+
+                private void complete() {
+                    if (!completed) {
+                        completed = true;
+                        completion.markComplete();
+                        limiter.charge(model, completion.getCompletionTokens());
+                        callback.onComplete(completion);
+                    }
                 }
 
                 @Override
                 public void onComplete() {
                     try {
-                        callback.onComplete();
+                        if (statusCode != 200) {
+                            callback.onError(new GenAiException(statusCode,
+                                    "OpenAI API error: " + statusCode + " " + errorBody.toString(StandardCharsets.UTF_8),
+                                    retryAfterNanos));
+                        } else if (completed || completion.getFinishReason() != null) {
+                            complete();
+                        } else {
+                            // the connection was closed in the middle of the answer
+                            callback.onError(new GenAiException(
+                                    "OpenAI stream of " + model + " ended before [DONE] or a finish reason"));
+                        }
                     } finally {
                         client.restore(finalToken);
                     }
@@ -135,149 +359,14 @@ public class OpenAiClient implements GenAiClient {
                 @Override
                 public void onError(Throwable t) {
                     try {
-                        callback.onError(t);
+                        if (!completed) {
+                            callback.onError(t);
+                        }
                     } finally {
                         client.restore(finalToken);
                     }
                 }
-            };
-
-            ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath(uri.getPath());
-            request.getRequestHeaders().put(Headers.HOST, uri.getHost());
-            request.getRequestHeaders().put(Headers.CONTENT_TYPE, "application/json");
-            request.getRequestHeaders().put(Headers.AUTHORIZATION, "Bearer " + config.getApiKey());
-            request.getRequestHeaders().put(Headers.TRANSFER_ENCODING, "chunked");
-
-            connection.sendRequest(request,
-                    new io.undertow.client.ClientCallback<io.undertow.client.ClientExchange>() {
-                        @Override
-                        public void completed(io.undertow.client.ClientExchange exchange) {
-                            exchange.setResponseListener(
-                                    new io.undertow.client.ClientCallback<io.undertow.client.ClientExchange>() {
-                                        @Override
-                                        public void completed(
-                                                io.undertow.client.ClientExchange result) {
-                                            result.getResponseChannel().getReadSetter()
-                                                    .set(new org.xnio.ChannelListener<org.xnio.channels.StreamSourceChannel>() {
-                                                        @Override
-                                                        public void handleEvent(
-                                                                org.xnio.channels.StreamSourceChannel channel) {
-                                                            try {
-                                                                java.nio.ByteBuffer buffer = java.nio.ByteBuffer
-                                                                        .allocate(1024);
-                                                                int read = 0;
-                                                                while ((read = channel
-                                                                        .read(buffer)) > 0) {
-                                                                    buffer.flip();
-                                                                    String chunk = new String(
-                                                                            buffer.array(), 0, read,
-                                                                            java.nio.charset.StandardCharsets.UTF_8);
-                                                                    String[] lines = chunk.split("\n");
-                                                                    for (String line : lines) {
-                                                                        line = line.trim();
-                                                                        if (line.startsWith("data: ")) {
-                                                                            String data = line
-                                                                                    .substring(6)
-                                                                                    .trim();
-                                                                            if ("[DONE]".equals(data)) {
-                                                                                wrappedCallback.onComplete();
-                                                                            } else {
-                                                                                try {
-                                                                                    Map<String, Object> responseMap = mapper
-                                                                                            .readValue(
-                                                                                                    data,
-                                                                                                    Map.class);
-                                                                                    List<Map<String, Object>> choices = (List<Map<String, Object>>) responseMap
-                                                                                            .get("choices");
-                                                                                    if (choices != null
-                                                                                            && !choices
-                                                                                                    .isEmpty()) {
-                                                                                        Map<String, Object> delta = (Map<String, Object>) choices
-                                                                                                .get(0)
-                                                                                                .get("delta");
-                                                                                        if (delta != null
-                                                                                                && delta.containsKey(
-                                                                                                        "content")) {
-                                                                                            String content = (String) delta
-                                                                                                    .get("content");
-                                                                                            if (content != null
-                                                                                                    && !content
-                                                                                                            .isEmpty()) {
-                                                                                                wrappedCallback.onEvent(
-                                                                                                        content);
-                                                                                            }
-                                                                                        }
-                                                                                    }
-                                                                                } catch (Exception e) {
-                                                                                    // Ignore parse
-                                                                                    // error for partial
-                                                                                    // lines
-                                                                                }
-                                                                            }
-                                                                        }
-                                                                    }
-                                                                    buffer.clear();
-                                                                }
-                                                                if (read == -1) {
-                                                                    // End of stream
-                                                                }
-                                                            } catch (java.io.IOException e) {
-                                                                wrappedCallback.onError(e);
-                                                            }
-                                                        }
-                                                    });
-                                            result.getResponseChannel().resumeReads();
-                                        }
-
-                                        @Override
-                                        public void failed(java.io.IOException e) {
-                                            wrappedCallback.onError(e);
-                                        }
-                                    });
-
-                            // Write body async
-                            try {
-                                org.xnio.channels.StreamSinkChannel requestChannel = exchange
-                                        .getRequestChannel();
-                                java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(
-                                        jsonBody.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-
-                                int written = 0;
-                                while (buffer.hasRemaining()) {
-                                    written = requestChannel.write(buffer);
-                                    if (written == 0) {
-                                        requestChannel.getWriteSetter().set(channel -> {
-                                            try {
-                                                while (buffer.hasRemaining()) {
-                                                    int w = channel.write(buffer);
-                                                    if (w == 0)
-                                                        return;
-                                                }
-                                                channel.shutdownWrites();
-                                                channel.flush();
-                                            } catch (java.io.IOException e) {
-                                                logger.error("Error writing body async", e);
-                                                wrappedCallback.onError(e);
-                                            }
-                                        });
-                                        requestChannel.resumeWrites();
-                                        return;
-                                    }
-                                }
-                                requestChannel.shutdownWrites();
-                                requestChannel.flush();
-                            } catch (Exception e) {
-                                logger.error("Error sending request body", e);
-                                wrappedCallback.onError(e);
-                            }
-                        }
-
-                        @Override
-                        public void failed(java.io.IOException e) {
-                            wrappedCallback.onError(e);
-                        }
-                    });
-
+            }));
         } catch (Exception e) {
             logger.error("Exception invoking OpenAI API", e);
             callback.onError(e);
@@ -2,6 +2,7 @@ package com.networknt.genai.openai;
 
 import com.networknt.config.Config;
 import com.networknt.config.schema.ConfigSchema;
+import com.networknt.config.schema.IntegerField;
 import com.networknt.config.schema.OutputFormat;
 import com.networknt.config.schema.StringField;
 import com.networknt.server.ModuleRegistry;
@@ -15,6 +16,9 @@ public class OpenAiConfig {
     private static final String URL = "url";
     private static final String MODEL = "model";
     private static final String API_KEY = "apiKey";
+    private static final String REQUESTS_PER_MINUTE = "requestsPerMinute";
+    private static final String TOKENS_PER_MINUTE = "tokensPerMinute";
+    private static final String RATE_LIMIT_MAX_WAIT_MS = "rateLimitMaxWaitMs";
 
     @StringField(configFieldName = URL, externalizedKeyName = URL, description = "OpenAI API URL")
     private String url;
@@ -25,6 +29,15 @@ public class OpenAiConfig {
     @StringField(configFieldName = API_KEY, externalizedKeyName = API_KEY, description = "API Key")
     private String apiKey;
 
+    @IntegerField(configFieldName = REQUESTS_PER_MINUTE, externalizedKeyName = REQUESTS_PER_MINUTE, defaultValue = "0", description = "Requests per minute of the API key for each model, 0 to take them from the x-ratelimit headers")
+    private int requestsPerMinute;
+
+    @IntegerField(configFieldName = TOKENS_PER_MINUTE, externalizedKeyName = TOKENS_PER_MINUTE, defaultValue = "0", description = "Tokens per minute of the API key for each model, 0 to take them from the x-ratelimit headers")
+    private int tokensPerMinute;
+
+    @IntegerField(configFieldName = RATE_LIMIT_MAX_WAIT_MS, externalizedKeyName = RATE_LIMIT_MAX_WAIT_MS, defaultValue = "5000", description = "Longest time in milliseconds a request waits for the rate limit before it is rejected with 429")
+    private int rateLimitMaxWaitMs = 5000;
+
     private static volatile OpenAiConfig instance;
     private final Map<String, Object> mappedConfig;
 
@@ -78,6 +91,18 @@ public class OpenAiConfig {
             if (object != null) {
                 apiKey = (String) object;
             }
+            object = mappedConfig.get(REQUESTS_PER_MINUTE);
+            if (object != null) {
+                requestsPerMinute = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(TOKENS_PER_MINUTE);
+            if (object != null) {
+                tokensPerMinute = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(RATE_LIMIT_MAX_WAIT_MS);
+            if (object != null) {
+                rateLimitMaxWaitMs = Integer.parseInt(object.toString());
+            }
         } else {
             // Default logic if config is missing logic
             url = "https://api.openai.com/v1/chat/completions";
@@ -107,4 +132,28 @@ public class OpenAiConfig {
     public void setApiKey(String apiKey) {
         this.apiKey = apiKey;
     }
+
+    public int getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    public void setRequestsPerMinute(int requestsPerMinute) {
+        this.requestsPerMinute = requestsPerMinute;
+    }
+
+    public int getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    public void setTokensPerMinute(int tokensPerMinute) {
+        this.tokensPerMinute = tokensPerMinute;
+    }
+
+    public int getRateLimitMaxWaitMs() {
+        return rateLimitMaxWaitMs;
+    }
+
+    public void setRateLimitMaxWaitMs(int rateLimitMaxWaitMs) {
+        this.rateLimitMaxWaitMs = rateLimitMaxWaitMs;
+    }
 }
@@ -0,0 +1,52 @@
+package com.networknt.genai.openai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.RequestBody;
+import io.undertow.connector.ByteBufferPool;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes chat completion requests with a JsonGenerator straight into pooled buffers.
+ *
+ * OpenAI caches the prefixes of the prompts of 1024 tokens or more automatically, so the system prompt,
+ * the part that is the same on every turn of an agent, is written first and the history after it,
+ * oldest message first. Anything that changes from one request to the next must not be put before it.
+ */
+final class OpenAiRequestEncoder {
+
+    private OpenAiRequestEncoder() {
+    }
+
+    static RequestBody encode(JsonFactory factory, ByteBufferPool pool, String model, String systemPrompt,
+            List<ChatMessage> messages, boolean stream) throws IOException {
+        return RequestBody.encode(factory, pool, g -> {
+            g.writeStartObject();
+            g.writeStringField("model", model);
+            g.writeArrayFieldStart("messages");
+            if (systemPrompt != null) {
+                g.writeStartObject();
+                g.writeStringField("role", "system");
+                g.writeStringField("content", systemPrompt);
+                g.writeEndObject();
+            }
+            for (ChatMessage msg : messages) {
+                g.writeStartObject();
+                g.writeStringField("role", msg.getRole());
+                g.writeStringField("content", msg.getContent());
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            if (stream) {
+                g.writeBooleanField("stream", true);
+                // the last chunk before [DONE] then carries the token usage of the whole stream
+                g.writeObjectFieldStart("stream_options");
+                g.writeBooleanField("include_usage", true);
+                g.writeEndObject();
+            }
+            g.writeEndObject();
+        });
+    }
+}
@@ -0,0 +1,156 @@
+package com.networknt.genai.openai;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.networknt.genai.ChatResponse;
+
+import java.util.List;
+
+/**
+ * A chat completion chunk of a stream. Only the fields used by the client are mapped; everything
+ * else is skipped by the parser without being materialized.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+class OpenAiResponse {
+    private String model;
+    private List<Choice> choices;
+    private Usage usage;
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public List<Choice> getChoices() {
+        return choices;
+    }
+
+    public void setChoices(List<Choice> choices) {
+        this.choices = choices;
+    }
+
+    public Usage getUsage() {
+        return usage;
+    }
+
+    public void setUsage(Usage usage) {
+        this.usage = usage;
+    }
+
+    /**
+     * @return The delta content of the first choice.
+     */
+    String firstContent() {
+        if (choices == null || choices.isEmpty()) {
+            return null;
+        }
+        Message delta = choices.get(0).getDelta();
+        return delta != null ? delta.getContent() : null;
+    }
+
+    /**
+     * Copies the model, the finish reason and the usage carried by this chunk, if any.
+     */
+    void copyMetadata(ChatResponse response) {
+        if (model != null) {
+            response.setModel(model);
+        }
+        if (choices != null && !choices.isEmpty() && choices.get(0).getFinishReason() != null) {
+            response.setFinishReason(choices.get(0).getFinishReason());
+        }
+        if (usage != null) {
+            response.setPromptTokens(usage.getPromptTokens());
+            response.setCompletionTokens(usage.getCompletionTokens());
+            if (usage.getPromptTokensDetails() != null) {
+                response.setCachedTokens(usage.getPromptTokensDetails().getCachedTokens());
+            }
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Choice {
+        private Message delta;
+        @JsonProperty("finish_reason")
+        private String finishReason;
+
+        public Message getDelta() {
+            return delta;
+        }
+
+        public void setDelta(Message delta) {
+            this.delta = delta;
+        }
+
+        public String getFinishReason() {
+            return finishReason;
+        }
+
+        public void setFinishReason(String finishReason) {
+            this.finishReason = finishReason;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Message {
+        private String content;
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Usage {
+        @JsonProperty("prompt_tokens")
+        private int promptTokens;
+        @JsonProperty("completion_tokens")
+        private int completionTokens;
+        @JsonProperty("prompt_tokens_details")
+        private PromptTokensDetails promptTokensDetails;
+
+        public int getPromptTokens() {
+            return promptTokens;
+        }
+
+        public void setPromptTokens(int promptTokens) {
+            this.promptTokens = promptTokens;
+        }
+
+        public int getCompletionTokens() {
+            return completionTokens;
+        }
+
+        public void setCompletionTokens(int completionTokens) {
+            this.completionTokens = completionTokens;
+        }
+
+        public PromptTokensDetails getPromptTokensDetails() {
+            return promptTokensDetails;
+        }
+
+        public void setPromptTokensDetails(PromptTokensDetails promptTokensDetails) {
+            this.promptTokensDetails = promptTokensDetails;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class PromptTokensDetails {
+        @JsonProperty("cached_tokens")
+        private int cachedTokens;
+
+        public int getCachedTokens() {
+            return cachedTokens;
+        }
+
+        public void setCachedTokens(int cachedTokens) {
+            this.cachedTokens = cachedTokens;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.networknt.genai.router;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The hedging settings and state of a {@link RoutingGenAiClient}. A stream that has not produced its
+ * first token after the configured percentile of the recent times to first token of its model gets a
+ * duplicate request, to another provider when there is one left or else to the same provider if its
+ * client multiplexes streams over HTTP/2. The first of the two to produce a token wins and the other
+ * is cancelled. Cancelling a stream on HTTP/1.1 closes its connection, as a response cannot be
+ * abandoned without draining it, so the next request of the provider pays a new TCP and TLS handshake;
+ * that is why a provider without multiplexing is not hedged on itself.
+ *
+ * The extra load is capped by a budget: every stream earns budgetPercent / 100 of a hedge, up to a
+ * burst of 10, and every hedge spends one. A model is not hedged until it has 20 samples.
+ */
+public class Hedging {
+    static final int MIN_SAMPLES = 20;
+    private static final int SAMPLES = 256;
+    private static final double MAX_CREDITS = 10;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final double budgetRatio;
+    private final ConcurrentHashMap<String, Samples> timesToFirstToken = new ConcurrentHashMap<>();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder won = new LongAdder();
+    private double credits;
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * @param percentile The percentile of the time to first token after which a stream is hedged, e.g. 95.
+     * @param minDelayMillis The minimum delay before a stream is hedged.
+     * @param budgetPercent The maximum number of hedges as a percentage of the streams.
+     */
+    public Hedging(double percentile, long minDelayMillis, double budgetPercent) {
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.budgetRatio = budgetPercent / 100;
+    }
+
+    /**
+     * @return The number of hedged requests sent.
+     */
+    public long getHedgedCount() {
+        return hedged.sum();
+    }
+
+    /**
+     * @return The number of streams won by their hedged request.
+     */
+    public long getWonCount() {
+        return won.sum();
+    }
+
+    void record(String model, long timeToFirstTokenNanos) {
+        timesToFirstToken.computeIfAbsent(model, k -> new Samples()).add(timeToFirstTokenNanos);
+    }
+
+    /**
+     * Earns the budget of a stream and computes its hedging delay.
+     *
+     * @param model The model of the stream.
+     * @return The delay in nanoseconds, or -1 if the model has too few samples to be hedged.
+     */
+    long delayNanos(String model) {
+        synchronized (this) {
+            credits = Math.min(credits + budgetRatio, MAX_CREDITS);
+        }
+        Samples samples = timesToFirstToken.get(model);
+        long delay = samples != null ? samples.percentile(percentile) : -1;
+        return delay < 0 ? -1 : Math.max(delay, minDelayNanos);
+    }
+
+    /**
+     * @return Whether the budget allows one more hedge, which is then spent.
+     */
+    synchronized boolean tryAcquire() {
+        if (credits < 1) {
+            return false;
+        }
+        credits -= 1;
+        hedged.increment();
+        return true;
+    }
+
+    void won() {
+        won.increment();
+    }
+
+    ScheduledExecutorService scheduler() {
+        ScheduledExecutorService s = scheduler;
+        if (s == null) {
+            synchronized (this) {
+                s = scheduler;
+                if (s == null) {
+                    s = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "genai-hedge");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * The most recent times to first token of a model in a ring buffer.
+     */
+    private static final class Samples {
+        private final long[] values = new long[SAMPLES];
+        private int count;
+        private int next;
+
+        synchronized void add(long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            if (count < values.length) {
+                count++;
+            }
+        }
+
+        synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(index, count - 1))];
+        }
+    }
+}
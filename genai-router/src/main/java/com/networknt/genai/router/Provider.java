@@ -0,0 +1,190 @@
+package com.networknt.genai.router;
+
+import com.networknt.genai.ChatResponse;
+import com.networknt.genai.GenAiClient;
+import com.networknt.genai.GuardedGenAiClient;
+import com.networknt.genai.RequestOptions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A provider client of the router with the statistics its selection is based on: exponentially
+ * weighted moving averages of the latency, the time to first token and the error rate, and the number
+ * of requests in flight. The error rate also decays with time, halving every 30 seconds without
+ * requests, so a provider that has been shunned after a burst of errors is eventually tried again.
+ *
+ * Every {@link #begin()} must be followed by exactly one of {@link #success}, {@link #failure} or
+ * {@link #abandon()}.
+ */
+public final class Provider {
+    private static final long ERROR_HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final ProviderConfig config;
+    private final GenAiClient client;
+    private final double alpha;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile double latencyNanos;
+    private volatile double timeToFirstTokenNanos;
+    private volatile double errorRate;
+    private volatile long errorRateNanos = System.nanoTime();
+
+    /**
+     * @param config The configuration of the provider.
+     * @param client The client of the provider.
+     * @param alpha The smoothing factor of the moving averages, the weight of the latest sample.
+     */
+    public Provider(ProviderConfig config, GenAiClient client, double alpha) {
+        this.config = config;
+        this.client = client;
+        this.alpha = alpha;
+    }
+
+    public String getName() {
+        return config.getName();
+    }
+
+    public ProviderConfig getConfig() {
+        return config;
+    }
+
+    public GenAiClient getClient() {
+        return client;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return The moving average of the latency in nanoseconds, 0 until the first success.
+     */
+    public double getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * @return The moving average of the time to first token in nanoseconds, 0 until the first success.
+     */
+    public double getTimeToFirstTokenNanos() {
+        return timeToFirstTokenNanos;
+    }
+
+    /**
+     * @return The moving average of the error rate between 0 and 1, decayed by the time since the
+     *         last request completed.
+     */
+    public double getErrorRate() {
+        double rate = errorRate;
+        if (rate == 0) {
+            return 0;
+        }
+        long elapsed = System.nanoTime() - errorRateNanos;
+        return rate * Math.pow(0.5, (double) elapsed / ERROR_HALF_LIFE_NANOS);
+    }
+
+    /**
+     * @return The price of a request of a million prompt and a million completion tokens.
+     */
+    public double getCost() {
+        return config.getInputCostPerMillion() + config.getOutputCostPerMillion();
+    }
+
+    /**
+     * Records the start of a request.
+     *
+     * @return The start time to pass to {@link #success} or {@link #failure}.
+     */
+    long begin() {
+        outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time to first token of a stream as soon as it is known.
+     */
+    synchronized void firstToken(long start) {
+        timeToFirstTokenNanos = average(timeToFirstTokenNanos, System.nanoTime() - start);
+    }
+
+    /**
+     * Records a successful request.
+     *
+     * @param start The value returned by {@link #begin()}.
+     * @param response The response, whose client side latency is used when it has one.
+     * @param stream Whether the time to first token has already been recorded by {@link #firstToken}.
+     */
+    synchronized void success(long start, ChatResponse response, boolean stream) {
+        outstanding.decrementAndGet();
+        long latency = response != null && response.getLatencyNanos() > 0 ? response.getLatencyNanos()
+                : System.nanoTime() - start;
+        latencyNanos = average(latencyNanos, latency);
+        if (!stream && response != null && response.getTimeToFirstTokenNanos() > 0) {
+            timeToFirstTokenNanos = average(timeToFirstTokenNanos, response.getTimeToFirstTokenNanos());
+        }
+        updateErrorRate(0);
+    }
+
+    /**
+     * Records a failed request.
+     */
+    synchronized void failure() {
+        outstanding.decrementAndGet();
+        updateErrorRate(1);
+    }
+
+    /**
+     * Records a request that says nothing about the provider, e.g. cancelled by the caller or rejected
+     * as a bad request.
+     */
+    void abandon() {
+        outstanding.decrementAndGet();
+    }
+
+    private void updateErrorRate(double sample) {
+        double rate = getErrorRate();
+        errorRate = rate + alpha * (sample - rate);
+        errorRateNanos = System.nanoTime();
+    }
+
+    private double average(double average, long sample) {
+        return average == 0 ? sample : average + alpha * (sample - average);
+    }
+
+    /**
+     * @return Whether the provider serves the given model: it is listed in its models, or the provider
+     *         has no list and accepts any model.
+     */
+    boolean serves(String model) {
+        return model != null && (config.getModels() == null || config.getModels().contains(model));
+    }
+
+    /**
+     * @return Whether a request with the given options would be accepted now, i.e. the client is not
+     *         guarded or neither the circuit breaker of the model nor the concurrency limit rejects it.
+     */
+    boolean isAvailable(RequestOptions options) {
+        return !(client instanceof GuardedGenAiClient) || ((GuardedGenAiClient) client).isAvailable(options(options));
+    }
+
+    /**
+     * Adapts the options of a request to the provider: a model the provider does not serve is replaced
+     * by the model of the provider, or removed so that the client uses its default.
+     */
+    RequestOptions options(RequestOptions options) {
+        if (options == null) {
+            return new RequestOptions(config.getModel());
+        }
+        if (serves(options.getModel()) || (options.getModel() == null && config.getModel() == null)) {
+            return options;
+        }
+        RequestOptions adapted = options.copy();
+        adapted.setModel(config.getModel());
+        return adapted;
+    }
+
+    @Override
+    public String toString() {
+        return config.getName();
+    }
+}
@@ -0,0 +1,136 @@
+package com.networknt.genai.router;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.networknt.config.schema.ArrayField;
+import com.networknt.config.schema.BooleanField;
+import com.networknt.config.schema.IntegerField;
+import com.networknt.config.schema.NumberField;
+import com.networknt.config.schema.StringField;
+
+import java.util.List;
+
+/**
+ * A provider the router can send requests to, as configured in the providers list of router.yml.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProviderConfig {
+    private static final String NAME = "name";
+    private static final String CLIENT_CLASS = "clientClass";
+    private static final String WEIGHT = "weight";
+    private static final String MODEL = "model";
+    private static final String MODELS = "models";
+    private static final String INPUT_COST = "inputCostPerMillion";
+    private static final String OUTPUT_COST = "outputCostPerMillion";
+    private static final String GUARD = "guard";
+    private static final String MULTIPLEXED = "multiplexed";
+
+    @StringField(configFieldName = NAME, description = "Name of the provider used in logs")
+    private String name;
+
+    @StringField(configFieldName = CLIENT_CLASS, description = "Class name of the GenAiClient of the provider")
+    private String clientClass;
+
+    @IntegerField(configFieldName = WEIGHT, defaultValue = "1", description = "Relative share of the traffic of the provider")
+    private int weight = 1;
+
+    @StringField(configFieldName = MODEL, description = "Model used when the requested model is not served by the provider. Empty for the default model of the client")
+    private String model;
+
+    @ArrayField(configFieldName = MODELS, description = "Models of requests that are passed to the provider as is", items = String.class)
+    private List<String> models;
+
+    @NumberField(configFieldName = INPUT_COST, defaultValue = "0", description = "Price of a million prompt tokens, used by the cost policy")
+    private double inputCostPerMillion;
+
+    @NumberField(configFieldName = OUTPUT_COST, defaultValue = "0", description = "Price of a million completion tokens, used by the cost policy")
+    private double outputCostPerMillion;
+
+    @BooleanField(configFieldName = GUARD, defaultValue = "false", description = "Wrap the client in a GuardedGenAiClient with a circuit breaker per model and an adaptive concurrency limit")
+    private boolean guard;
+
+    @BooleanField(configFieldName = MULTIPLEXED, defaultValue = "false", description = "The client of the provider multiplexes streams over HTTP/2, so that a stream can be hedged on the same provider")
+    private boolean multiplexed;
+
+    public ProviderConfig() {
+    }
+
+    public ProviderConfig(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getClientClass() {
+        return clientClass;
+    }
+
+    public void setClientClass(String clientClass) {
+        this.clientClass = clientClass;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public List<String> getModels() {
+        return models;
+    }
+
+    public void setModels(List<String> models) {
+        this.models = models;
+    }
+
+    public double getInputCostPerMillion() {
+        return inputCostPerMillion;
+    }
+
+    public void setInputCostPerMillion(double inputCostPerMillion) {
+        this.inputCostPerMillion = inputCostPerMillion;
+    }
+
+    public double getOutputCostPerMillion() {
+        return outputCostPerMillion;
+    }
+
+    public void setOutputCostPerMillion(double outputCostPerMillion) {
+        this.outputCostPerMillion = outputCostPerMillion;
+    }
+
+    public boolean isGuard() {
+        return guard;
+    }
+
+    public void setGuard(boolean guard) {
+        this.guard = guard;
+    }
+
+    /**
+     * @return Whether the client of the provider multiplexes streams over HTTP/2, in which case a
+     *         cancelled stream resets only its stream and not the connection.
+     */
+    public boolean isMultiplexed() {
+        return multiplexed;
+    }
+
+    public void setMultiplexed(boolean multiplexed) {
+        this.multiplexed = multiplexed;
+    }
+}
@@ -0,0 +1,43 @@
+package com.networknt.genai.router;
+
+/**
+ * How {@link RoutingGenAiClient} picks a provider for a request.
+ */
+public enum RoutePolicy {
+    /**
+     * Random choice in proportion to the configured weights, scaled down by the recent error rate.
+     */
+    WEIGHTED("weighted"),
+    /**
+     * The provider with the fewest requests in flight relative to its weight.
+     */
+    LEAST_OUTSTANDING("leastOutstanding"),
+    /**
+     * The provider with the lowest expected latency: the moving average of the time to first token for
+     * a stream or of the total latency otherwise, penalized by the error rate and the requests in flight.
+     */
+    LATENCY("latency"),
+    /**
+     * The cheapest healthy provider, the latency score breaking ties.
+     */
+    COST("cost");
+
+    private final String value;
+
+    RoutePolicy(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static RoutePolicy of(String value) {
+        for (RoutePolicy policy : values()) {
+            if (policy.value.equalsIgnoreCase(value) || policy.name().equalsIgnoreCase(value)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown route policy " + value);
+    }
+}
@@ -0,0 +1,221 @@
+package com.networknt.genai.router;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.networknt.config.Config;
+import com.networknt.config.ConfigException;
+import com.networknt.config.schema.ArrayField;
+import com.networknt.config.schema.BooleanField;
+import com.networknt.config.schema.ConfigSchema;
+import com.networknt.config.schema.IntegerField;
+import com.networknt.config.schema.NumberField;
+import com.networknt.config.schema.OutputFormat;
+import com.networknt.config.schema.StringField;
+import com.networknt.server.ModuleRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@ConfigSchema(configKey = "router", configName = "router", configDescription = "Multi-provider GenAI router configuration", outputFormats = {
+        OutputFormat.JSON_SCHEMA, OutputFormat.YAML, OutputFormat.CLOUD })
+public class RouterConfig {
+    public static final String CONFIG_NAME = "router";
+    public static final int DEFAULT_CHAT_TIMEOUT_MS = 30000;
+    private static final String POLICY = "policy";
+    private static final String EWMA_ALPHA = "ewmaAlpha";
+    private static final String MAX_ATTEMPTS = "maxAttempts";
+    private static final String CHAT_TIMEOUT_MS = "chatTimeoutMs";
+    private static final String PROVIDERS = "providers";
+    private static final String HEDGE = "hedge";
+    private static final String HEDGE_PERCENTILE = "hedgePercentile";
+    private static final String HEDGE_MIN_DELAY_MS = "hedgeMinDelayMs";
+    private static final String HEDGE_BUDGET_PERCENT = "hedgeBudgetPercent";
+
+    @StringField(configFieldName = POLICY, externalizedKeyName = POLICY, defaultValue = "latency", description = "Selection policy: weighted, leastOutstanding, latency or cost")
+    private String policy = "latency";
+
+    @NumberField(configFieldName = EWMA_ALPHA, externalizedKeyName = EWMA_ALPHA, defaultValue = "0.2", description = "Smoothing factor of the moving averages of latency, time to first token and error rate")
+    private double ewmaAlpha = 0.2;
+
+    @IntegerField(configFieldName = MAX_ATTEMPTS, externalizedKeyName = MAX_ATTEMPTS, defaultValue = "2", description = "Maximum number of providers tried for a request that fails before its first token")
+    private int maxAttempts = 2;
+
+    @IntegerField(configFieldName = CHAT_TIMEOUT_MS, externalizedKeyName = CHAT_TIMEOUT_MS, defaultValue = "30000", description = "Maximum time in milliseconds a blocking chat waits for the answer, all attempts included")
+    private int chatTimeoutMs = DEFAULT_CHAT_TIMEOUT_MS;
+
+    @ArrayField(configFieldName = PROVIDERS, externalizedKeyName = PROVIDERS, description = "Providers to route to", items = ProviderConfig.class)
+    private List<ProviderConfig> providers = new ArrayList<>();
+
+    @BooleanField(configFieldName = HEDGE, externalizedKeyName = HEDGE, defaultValue = "false", description = "Send a duplicate request for a stream whose first token is late")
+    private boolean hedge;
+
+    @NumberField(configFieldName = HEDGE_PERCENTILE, externalizedKeyName = HEDGE_PERCENTILE, defaultValue = "95", description = "Percentile of the recent times to first token of the model after which a stream is hedged")
+    private double hedgePercentile = 95;
+
+    @IntegerField(configFieldName = HEDGE_MIN_DELAY_MS, externalizedKeyName = HEDGE_MIN_DELAY_MS, defaultValue = "50", description = "Minimum delay in milliseconds before a stream is hedged")
+    private int hedgeMinDelayMs = 50;
+
+    @NumberField(configFieldName = HEDGE_BUDGET_PERCENT, externalizedKeyName = HEDGE_BUDGET_PERCENT, defaultValue = "5", description = "Maximum number of hedged requests as a percentage of the streams")
+    private double hedgeBudgetPercent = 5;
+
+    private static volatile RouterConfig instance;
+    private final Map<String, Object> mappedConfig;
+
+    private RouterConfig(String configName) {
+        mappedConfig = Config.getInstance().getJsonMapConfig(configName);
+        setConfigData();
+    }
+
+    private RouterConfig() {
+        this(CONFIG_NAME);
+    }
+
+    public static RouterConfig load() {
+        return load(CONFIG_NAME);
+    }
+
+    public static RouterConfig load(String configName) {
+        RouterConfig config = instance;
+        if (config == null || config.getMappedConfig() != Config.getInstance().getJsonMapConfig(configName)) {
+            synchronized (RouterConfig.class) {
+                config = instance;
+                if (config == null || config.getMappedConfig() != Config.getInstance().getJsonMapConfig(configName)) {
+                    config = new RouterConfig(configName);
+                    instance = config;
+                    ModuleRegistry.registerModule(configName, RouterConfig.class.getName(),
+                            Config.getNoneDecryptedInstance().getJsonMapConfigNoCache(configName), null);
+                }
+            }
+        }
+        return config;
+    }
+
+    public Map<String, Object> getMappedConfig() {
+        return mappedConfig;
+    }
+
+    private void setConfigData() {
+        if (mappedConfig != null) {
+            Object object = mappedConfig.get(POLICY);
+            if (object != null) {
+                policy = (String) object;
+            }
+            object = mappedConfig.get(EWMA_ALPHA);
+            if (object != null) {
+                ewmaAlpha = Double.parseDouble(object.toString());
+            }
+            object = mappedConfig.get(MAX_ATTEMPTS);
+            if (object != null) {
+                maxAttempts = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(CHAT_TIMEOUT_MS);
+            if (object != null) {
+                chatTimeoutMs = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(HEDGE);
+            if (object != null) {
+                hedge = Boolean.parseBoolean(object.toString());
+            }
+            object = mappedConfig.get(HEDGE_PERCENTILE);
+            if (object != null) {
+                hedgePercentile = Double.parseDouble(object.toString());
+            }
+            object = mappedConfig.get(HEDGE_MIN_DELAY_MS);
+            if (object != null) {
+                hedgeMinDelayMs = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(HEDGE_BUDGET_PERCENT);
+            if (object != null) {
+                hedgeBudgetPercent = Double.parseDouble(object.toString());
+            }
+            object = mappedConfig.get(PROVIDERS);
+            if (object instanceof String) {
+                String s = ((String) object).trim();
+                if (!s.isEmpty()) {
+                    try {
+                        object = Config.getInstance().getMapper().readValue(s, new TypeReference<List<Map<String, Object>>>() {});
+                    } catch (Exception e) {
+                        throw new ConfigException("Could not parse the providers json " + s);
+                    }
+                }
+            }
+            if (object instanceof List) {
+                for (Object item : (List<?>) object) {
+                    providers.add(Config.getInstance().getMapper().convertValue(item, ProviderConfig.class));
+                }
+            }
+        }
+    }
+
+    public String getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(String policy) {
+        this.policy = policy;
+    }
+
+    public double getEwmaAlpha() {
+        return ewmaAlpha;
+    }
+
+    public void setEwmaAlpha(double ewmaAlpha) {
+        this.ewmaAlpha = ewmaAlpha;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public int getChatTimeoutMs() {
+        return chatTimeoutMs;
+    }
+
+    public void setChatTimeoutMs(int chatTimeoutMs) {
+        this.chatTimeoutMs = chatTimeoutMs;
+    }
+
+    public List<ProviderConfig> getProviders() {
+        return providers;
+    }
+
+    public void setProviders(List<ProviderConfig> providers) {
+        this.providers = providers;
+    }
+
+    public boolean isHedge() {
+        return hedge;
+    }
+
+    public void setHedge(boolean hedge) {
+        this.hedge = hedge;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public int getHedgeMinDelayMs() {
+        return hedgeMinDelayMs;
+    }
+
+    public void setHedgeMinDelayMs(int hedgeMinDelayMs) {
+        this.hedgeMinDelayMs = hedgeMinDelayMs;
+    }
+
+    public double getHedgeBudgetPercent() {
+        return hedgeBudgetPercent;
+    }
+
+    public void setHedgeBudgetPercent(double hedgeBudgetPercent) {
+        this.hedgeBudgetPercent = hedgeBudgetPercent;
+    }
+}
@@ -0,0 +1,584 @@
+package com.networknt.genai.router;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.ChatResponse;
+import com.networknt.genai.GenAiClient;
+import com.networknt.genai.GenAiException;
+import com.networknt.genai.GuardedGenAiClient;
+import com.networknt.genai.RequestOptions;
+import com.networknt.genai.StreamCallback;
+import com.networknt.genai.StreamControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link GenAiClient} that holds the clients of several providers and picks one per request with a
+ * {@link RoutePolicy}, based on the latency, time to first token, error rate and requests in flight
+ * it observes for each of them. A request that fails before anything has been returned to the caller,
+ * i.e. a non-streaming request or a stream before its first token, is retried on another provider, up
+ * to maxAttempts providers in total. An error that is the fault of the request, see
+ * {@link GuardedGenAiClient#isFailure(Throwable)}, is returned at once and not held against the provider. Streams can also be hedged, see {@link Hedging}. A provider whose
+ * client is a {@link GuardedGenAiClient} is passed over while its circuit breaker for the model is
+ * open or its concurrency limit is reached.
+ *
+ * The providers are configured in router.yml and their clients created with their default
+ * constructor, so the router can be registered in service.yml as the GenAiClient of the handler.
+ */
+public class RoutingGenAiClient implements GenAiClient {
+    private static final Logger logger = LoggerFactory.getLogger(RoutingGenAiClient.class);
+    /**
+     * How much a provider that always fails is slower than its latency in the latency score.
+     */
+    private static final double ERROR_PENALTY = 4;
+    /**
+     * The error rate above which the cost policy no longer considers a provider.
+     */
+    private static final double MAX_COST_ERROR_RATE = 0.5;
+
+    private final RoutePolicy policy;
+    private final int maxAttempts;
+    private final List<Provider> providers;
+    private final Hedging hedging;
+    private final int chatTimeoutMs;
+
+    public RoutingGenAiClient() {
+        this(RouterConfig.load());
+    }
+
+    public RoutingGenAiClient(RouterConfig config) {
+        this(RoutePolicy.of(config.getPolicy()), config.getMaxAttempts(), createProviders(config),
+                config.isHedge() ? new Hedging(config.getHedgePercentile(), config.getHedgeMinDelayMs(),
+                        config.getHedgeBudgetPercent()) : null, config.getChatTimeoutMs());
+    }
+
+    public RoutingGenAiClient(RoutePolicy policy, int maxAttempts, List<Provider> providers) {
+        this(policy, maxAttempts, providers, null);
+    }
+
+    /**
+     * @param policy The selection policy.
+     * @param maxAttempts The maximum number of providers tried for a request that fails early.
+     * @param providers The providers.
+     * @param hedging The hedging of streams, or null to disable it.
+     */
+    public RoutingGenAiClient(RoutePolicy policy, int maxAttempts, List<Provider> providers, Hedging hedging) {
+        this(policy, maxAttempts, providers, hedging, RouterConfig.DEFAULT_CHAT_TIMEOUT_MS);
+    }
+
+    /**
+     * @param policy The selection policy.
+     * @param maxAttempts The maximum number of providers tried for a request that fails early.
+     * @param providers The providers.
+     * @param hedging The hedging of streams, or null to disable it.
+     * @param chatTimeoutMs How long a blocking chat waits for the answer, all attempts included.
+     */
+    public RoutingGenAiClient(RoutePolicy policy, int maxAttempts, List<Provider> providers, Hedging hedging,
+            int chatTimeoutMs) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("No provider configured for the router");
+        }
+        this.policy = policy;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+        this.hedging = hedging;
+        this.chatTimeoutMs = chatTimeoutMs;
+        logger.info("Routing with policy {} across {}", policy.getValue(), this.providers);
+    }
+
+    private static List<Provider> createProviders(RouterConfig config) {
+        List<Provider> providers = new ArrayList<>();
+        for (ProviderConfig provider : config.getProviders()) {
+            try {
+                GenAiClient client = (GenAiClient) Class.forName(provider.getClientClass()).getDeclaredConstructor()
+                        .newInstance();
+                if (provider.isGuard()) {
+                    client = new GuardedGenAiClient(client);
+                }
+                providers.add(new Provider(provider, client, config.getEwmaAlpha()));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot create GenAiClient " + provider.getClientClass(), e);
+            }
+        }
+        return providers;
+    }
+
+    public RoutePolicy getPolicy() {
+        return policy;
+    }
+
+    public List<Provider> getProviders() {
+        return providers;
+    }
+
+    /**
+     * @return The hedging of streams, or null if it is disabled.
+     */
+    public Hedging getHedging() {
+        return hedging;
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages) {
+        return chat(messages, null);
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, RequestOptions options) {
+        try {
+            return chatAsync(messages, options).get(chatTimeoutMs, TimeUnit.MILLISECONDS).getContent();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted routing chat request", e);
+        } catch (Exception e) {
+            logger.error("Exception routing chat request", e);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        attempt(messages, options, new ArrayList<>(), null, future);
+        return future;
+    }
+
+    private void attempt(List<ChatMessage> messages, RequestOptions options, List<Provider> tried, Throwable last,
+            CompletableFuture<ChatResponse> future) {
+        Provider provider = tried.size() < maxAttempts ? select(false, tried, options) : null;
+        if (provider == null) {
+            future.completeExceptionally(last != null ? last : new GenAiException("No provider available"));
+            return;
+        }
+        tried.add(provider);
+        long start = provider.begin();
+        CompletableFuture<ChatResponse> response;
+        try {
+            response = provider.getClient().chatAsync(messages, provider.options(options));
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((r, error) -> {
+            if (error == null) {
+                provider.success(start, r, false);
+                future.complete(r);
+            } else if (!GuardedGenAiClient.isFailure(error)) {
+                // another provider would reject the request too
+                provider.abandon();
+                future.completeExceptionally(error);
+            } else {
+                provider.failure();
+                logger.warn("Provider {} failed, {} of {} attempts", provider, tried.size(), maxAttempts, error);
+                attempt(messages, options, tried, error, future);
+            }
+        });
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+        chatStream(messages, null, callback);
+    }
+
+    @Override
+    public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+        new RoutedStream(messages, options, callback).start();
+    }
+
+    Provider select(boolean stream, List<Provider> tried) {
+        return select(stream, tried, null);
+    }
+
+    /**
+     * Picks the provider of the next attempt among those not tried yet that accept the request now.
+     *
+     * @param stream Whether the request is a stream, for which the time to first token matters.
+     * @param tried The providers already tried for this request.
+     * @param options The options of the request.
+     * @return The provider, or null if all have been tried or reject the request.
+     */
+    Provider select(boolean stream, List<Provider> tried, RequestOptions options) {
+        List<Provider> candidates = new ArrayList<>(providers.size());
+        for (Provider provider : providers) {
+            if (!tried.contains(provider) && provider.isAvailable(options)) {
+                candidates.add(provider);
+            }
+        }
+        if (policy == RoutePolicy.WEIGHTED) {
+            return weighted(candidates);
+        }
+        return min(candidates, stream, policy == RoutePolicy.COST);
+    }
+
+    private Provider weighted(List<Provider> candidates) {
+        double total = 0;
+        for (Provider provider : candidates) {
+            total += weight(provider);
+        }
+        if (total == 0) {
+            return null;
+        }
+        double r = ThreadLocalRandom.current().nextDouble(total);
+        Provider last = null;
+        for (Provider provider : candidates) {
+            last = provider;
+            r -= weight(provider);
+            if (r < 0) {
+                return provider;
+            }
+        }
+        return last;
+    }
+
+    private static double weight(Provider provider) {
+        // a small floor keeps a failing provider reachable so that its error rate can recover
+        return Math.max(provider.getConfig().getWeight(), 0) * Math.max(1 - provider.getErrorRate(), 0.01);
+    }
+
+    private Provider min(List<Provider> candidates, boolean stream, boolean cost) {
+        Provider best = null;
+        double bestCost = 0;
+        double bestScore = 0;
+        for (Provider provider : candidates) {
+            double score = policy == RoutePolicy.LEAST_OUTSTANDING ? outstandingScore(provider)
+                    : latencyScore(provider, stream);
+            double providerCost = cost && provider.getErrorRate() < MAX_COST_ERROR_RATE ? provider.getCost()
+                    : Double.MAX_VALUE;
+            if (best == null || providerCost < bestCost || (providerCost == bestCost && score < bestScore)) {
+                best = provider;
+                bestCost = providerCost;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static double outstandingScore(Provider provider) {
+        return (provider.getOutstanding() + 1.0) / Math.max(provider.getConfig().getWeight(), 1);
+    }
+
+    /**
+     * The expected latency of one more request. A provider without measurements scores 0 so that it is
+     * tried first.
+     */
+    private static double latencyScore(Provider provider, boolean stream) {
+        double latency = stream && provider.getTimeToFirstTokenNanos() > 0 ? provider.getTimeToFirstTokenNanos()
+                : provider.getLatencyNanos();
+        return latency * (1 + ERROR_PENALTY * provider.getErrorRate()) * (provider.getOutstanding() + 1)
+                / Math.max(provider.getConfig().getWeight(), 1);
+    }
+
+    /**
+     * A stream routed to one provider after the other until one of them produces its first token, with
+     * a hedged request racing the first one when hedging is enabled. The caller gets this stream as its
+     * {@link StreamControl}, which forwards to the running attempts. The first attempt to deliver a
+     * token or to complete becomes the winner and the others are cancelled.
+     */
+    private final class RoutedStream implements StreamControl {
+        private final List<ChatMessage> messages;
+        private final RequestOptions options;
+        private final StreamCallback callback;
+        private final List<Provider> tried = new ArrayList<>();
+        private final List<Attempt> active = new ArrayList<>();
+        private Attempt winner;
+        private boolean hedged;
+        private ScheduledFuture<?> hedgeTimer;
+        private volatile boolean paused;
+        private volatile boolean cancelled;
+
+        RoutedStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            this.messages = messages;
+            this.options = options;
+            this.callback = callback;
+        }
+
+        void start() {
+            callback.onOpen(this);
+            Attempt attempt = next(null);
+            if (attempt != null && hedging != null) {
+                long delay = hedging.delayNanos(attempt.model);
+                if (delay > 0) {
+                    synchronized (this) {
+                        if (winner == null && !cancelled) {
+                            hedgeTimer = hedging.scheduler().schedule(() -> hedge(attempt), delay,
+                                    TimeUnit.NANOSECONDS);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Starts an attempt on the next provider, or reports the failure if there is none left.
+         */
+        private Attempt next(Throwable last) {
+            Provider provider;
+            synchronized (this) {
+                if (cancelled) {
+                    return null;
+                }
+                provider = tried.size() < maxAttempts ? select(true, tried, options) : null;
+                if (provider != null) {
+                    tried.add(provider);
+                }
+            }
+            if (provider == null) {
+                callback.onError(last != null ? last : new GenAiException("No provider available"));
+                return null;
+            }
+            return launch(provider, false);
+        }
+
+        private Attempt launch(Provider provider, boolean hedge) {
+            RequestOptions adapted = provider.options(options);
+            Attempt attempt = new Attempt(this, provider, adapted, hedge);
+            synchronized (this) {
+                active.add(attempt);
+            }
+            try {
+                provider.getClient().chatStream(messages, adapted, attempt);
+            } catch (RuntimeException e) {
+                attempt.onError(e);
+            }
+            return attempt;
+        }
+
+        /**
+         * Sends the hedged request if the first attempt is still waiting for its first token.
+         */
+        private void hedge(Attempt first) {
+            Provider provider;
+            synchronized (this) {
+                if (winner != null || cancelled || hedged || !active.contains(first)) {
+                    return;
+                }
+                provider = select(true, tried, options);
+                if (provider == null && !first.provider.getConfig().isMultiplexed()) {
+                    // cancelling the loser would close a connection of the provider
+                    return;
+                }
+                if (!hedging.tryAcquire()) {
+                    return;
+                }
+                hedged = true;
+                if (provider != null) {
+                    tried.add(provider);
+                } else {
+                    provider = first.provider;
+                }
+            }
+            logger.debug("Hedging stream of {} on {}", first.provider, provider);
+            launch(provider, true);
+        }
+
+        /**
+         * Makes the attempt the winner if there is none yet.
+         *
+         * @return Whether the attempt is the winner and may deliver to the caller.
+         */
+        private boolean claim(Attempt attempt) {
+            List<Attempt> losers;
+            synchronized (this) {
+                if (winner != null) {
+                    return winner == attempt;
+                }
+                winner = attempt;
+                losers = new ArrayList<>(active);
+                losers.remove(attempt);
+                active.clear();
+                active.add(attempt);
+                if (hedgeTimer != null) {
+                    hedgeTimer.cancel(false);
+                }
+            }
+            if (attempt.hedge) {
+                hedging.won();
+            }
+            for (Attempt loser : losers) {
+                loser.cancel();
+            }
+            return true;
+        }
+
+        /**
+         * Handles an attempt that failed before winning.
+         */
+        private void failed(Attempt attempt, Throwable t) {
+            boolean others;
+            synchronized (this) {
+                active.remove(attempt);
+                others = !active.isEmpty();
+            }
+            if (others) {
+                logger.debug("Provider {} failed while another attempt is running", attempt.provider, t);
+                return;
+            }
+            logger.warn("Provider {} failed before the first token, {} of {} attempts", attempt.provider,
+                    tried.size(), maxAttempts, t);
+            next(t);
+        }
+
+        private List<Attempt> running() {
+            synchronized (this) {
+                return new ArrayList<>(active);
+            }
+        }
+
+        @Override
+        public void pause() {
+            paused = true;
+            for (Attempt attempt : running()) {
+                attempt.pause();
+            }
+        }
+
+        @Override
+        public void resume() {
+            paused = false;
+            for (Attempt attempt : running()) {
+                attempt.resume();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                if (hedgeTimer != null) {
+                    hedgeTimer.cancel(false);
+                }
+            }
+            for (Attempt attempt : running()) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    /**
+     * The stream of one provider. Once it has failed, lost or been cancelled, anything it still
+     * delivers is dropped.
+     */
+    private final class Attempt implements StreamCallback {
+        private final RoutedStream stream;
+        private final Provider provider;
+        private final String model;
+        private final boolean hedge;
+        private final long start;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile StreamControl control;
+        private volatile boolean cancelled;
+        private boolean started;
+        private boolean won;
+
+        Attempt(RoutedStream stream, Provider provider, RequestOptions options, boolean hedge) {
+            this.stream = stream;
+            this.provider = provider;
+            this.model = options.getModel() != null ? options.getModel() : provider.getName();
+            this.hedge = hedge;
+            this.start = provider.begin();
+        }
+
+        @Override
+        public void onOpen(StreamControl control) {
+            this.control = control;
+            if (cancelled || stream.cancelled) {
+                control.cancel();
+            } else if (stream.paused) {
+                control.pause();
+            }
+        }
+
+        @Override
+        public void onEvent(String content) {
+            if (finished.get()) {
+                return;
+            }
+            if (!started) {
+                started = true;
+                long timeToFirstToken = System.nanoTime() - start;
+                provider.firstToken(start);
+                if (hedging != null) {
+                    hedging.record(model, timeToFirstToken);
+                }
+                won = stream.claim(this);
+            }
+            if (won) {
+                stream.callback.onEvent(content);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            onComplete(null);
+        }
+
+        @Override
+        public void onComplete(ChatResponse response) {
+            if (!stream.claim(this) || !finished.compareAndSet(false, true)) {
+                return;
+            }
+            provider.success(start, response, true);
+            if (response != null) {
+                stream.callback.onComplete(response);
+            } else {
+                stream.callback.onComplete();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            boolean failure = GuardedGenAiClient.isFailure(t);
+            if (failure) {
+                provider.failure();
+            } else {
+                provider.abandon();
+            }
+            if (started || stream.cancelled || !failure) {
+                if (stream.claim(this)) {
+                    stream.callback.onError(t);
+                }
+            } else {
+                stream.failed(this, t);
+            }
+        }
+
+        void pause() {
+            StreamControl c = control;
+            if (c != null) {
+                c.pause();
+            }
+        }
+
+        void resume() {
+            StreamControl c = control;
+            if (c != null) {
+                c.resume();
+            }
+        }
+
+        /**
+         * Cancels the attempt. On a multiplexed connection only its stream is reset; on HTTP/1.1 the
+         * connection is closed, and the next request of the provider opens a new one.
+         */
+        void cancel() {
+            cancelled = true;
+            if (finished.compareAndSet(false, true)) {
+                provider.abandon();
+            }
+            StreamControl c = control;
+            if (c != null) {
+                c.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.networknt.genai.router;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.ChatResponse;
+import com.networknt.genai.GenAiClient;
+import com.networknt.genai.GenAiException;
+import com.networknt.genai.GuardedGenAiClient;
+import com.networknt.genai.RequestOptions;
+import com.networknt.genai.StreamCallback;
+import com.networknt.genai.StreamControl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RoutingGenAiClientTest {
+    private static final List<ChatMessage> MESSAGES = List.of(new ChatMessage("user", "hi"));
+
+    @Test
+    public void testStreamIsReroutedBeforeFirstToken() {
+        Provider failing = provider("failing", new FakeClient(null), 1);
+        Provider healthy = provider("healthy", new FakeClient("hello"), 1);
+        RoutingGenAiClient client = new RoutingGenAiClient(RoutePolicy.LATENCY, 2, List.of(failing, healthy));
+
+        List<String> chunks = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        client.chatStream(MESSAGES, new RequestOptions("model"), new StreamCallback() {
+            @Override
+            public void onEvent(String content) {
+                chunks.add(content);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors.add(t);
+            }
+        });
+
+        assertEquals(List.of("hello"), chunks);
+        assertTrue(errors.isEmpty());
+        assertTrue(failing.getErrorRate() > 0);
+        assertEquals(0, failing.getOutstanding());
+        assertEquals(0, healthy.getOutstanding());
+    }
+
+    @Test
+    public void testPoliciesUseLatencyAndCost() {
+        Provider slow = provider("slow", new FakeClient("a"), 1);
+        Provider fast = provider("fast", new FakeClient("b"), 1);
+        slow.getConfig().setInputCostPerMillion(0.1);
+        fast.getConfig().setInputCostPerMillion(3);
+        slow.success(slow.begin(), latency(200), false);
+        fast.success(fast.begin(), latency(20), false);
+
+        RoutingGenAiClient latency = new RoutingGenAiClient(RoutePolicy.LATENCY, 2, List.of(slow, fast));
+        assertSame(fast, latency.select(false, List.of()));
+        assertSame(slow, latency.select(false, List.of(fast)));
+        assertNull(latency.select(false, List.of(fast, slow)));
+
+        RoutingGenAiClient cost = new RoutingGenAiClient(RoutePolicy.COST, 2, List.of(slow, fast));
+        assertSame(slow, cost.select(false, List.of()));
+        assertEquals("a", cost.chatAsync(MESSAGES, null).join().getContent());
+    }
+
+    @Test
+    public void testModelIsAdaptedToProvider() {
+        Provider provider = provider("gemini", new FakeClient("a"), 1);
+        provider.getConfig().setModel("gemini-2.0-flash");
+        provider.getConfig().setModels(List.of("gemini-2.0-flash", "gemini-1.5-pro"));
+        assertEquals("gemini-1.5-pro", provider.options(new RequestOptions("gemini-1.5-pro")).getModel());
+        assertEquals("gemini-2.0-flash", provider.options(new RequestOptions("gpt-4o")).getModel());
+        assertEquals("gemini-2.0-flash", provider.options(null).getModel());
+    }
+
+    @Test
+    public void testLateStreamIsHedged() throws InterruptedException {
+        HoldingClient held = new HoldingClient();
+        Provider slow = provider("slow", held, 1);
+        slow.getConfig().setMultiplexed(true);
+        Hedging hedging = new Hedging(95, 1, 100);
+        for (int i = 0; i < Hedging.MIN_SAMPLES; i++) {
+            hedging.record("model", 1_000_000L);
+        }
+        RoutingGenAiClient client = new RoutingGenAiClient(RoutePolicy.WEIGHTED, 2, List.of(slow), hedging);
+
+        List<String> chunks = new CopyOnWriteArrayList<>();
+        client.chatStream(MESSAGES, new RequestOptions("model"), new StreamCallback() {
+            @Override
+            public void onEvent(String content) {
+                chunks.add(content);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        });
+        for (int i = 0; i < 200 && held.calls < 2; i++) {
+            Thread.sleep(10);
+        }
+        // with a single provider the hedge goes to the same provider, as another stream of its connection
+        assertEquals(2, held.calls);
+        held.callbacks.get(1).onEvent("second");
+        held.callbacks.get(0).onEvent("first");
+        assertEquals(List.of("second"), chunks);
+        assertTrue(held.cancelled.get(0));
+        assertEquals(1, hedging.getWonCount());
+        // the loser is no longer counted, the winner is still streaming
+        assertEquals(1, slow.getOutstanding());
+    }
+
+    @Test
+    public void testOpenBreakerIsPassedOver() {
+        GuardedGenAiClient guarded = new GuardedGenAiClient(new FakeClient(null));
+        guarded.setFailureThreshold(1);
+        Provider failing = provider("failing", guarded, 1);
+        Provider healthy = provider("healthy", new FakeClient("hello"), 1);
+        RoutingGenAiClient client = new RoutingGenAiClient(RoutePolicy.WEIGHTED, 1, List.of(failing, healthy));
+
+        RequestOptions options = new RequestOptions("model");
+        guarded.chatAsync(MESSAGES, options).exceptionally(t -> null).join();
+        for (int i = 0; i < 20; i++) {
+            assertEquals("hello", client.chatAsync(MESSAGES, options).join().getContent());
+        }
+        assertEquals(0, failing.getErrorRate());
+    }
+
+    @Test
+    public void testBadRequestIsNotFailedOver() {
+        FakeClient rejecting = new FakeClient(400);
+        FakeClient healthy = new FakeClient("hello");
+        Provider first = provider("rejecting", rejecting, 1);
+        Provider second = provider("healthy", healthy, 1);
+        RoutingGenAiClient client = new RoutingGenAiClient(RoutePolicy.LATENCY, 2, List.of(first, second));
+
+        Throwable error = client.chatAsync(MESSAGES, null).handle((r, t) -> t).join();
+        assertEquals(400, ((GenAiException) error).getStatusCode());
+        List<Throwable> errors = new ArrayList<>();
+        client.chatStream(MESSAGES, new RequestOptions("model"), new StreamCallback() {
+            @Override
+            public void onEvent(String content) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                errors.add(t);
+            }
+        });
+        assertEquals(400, ((GenAiException) errors.get(0)).getStatusCode());
+
+        assertEquals(2, rejecting.requests.get());
+        assertEquals(0, healthy.requests.get());
+        assertEquals(0, first.getErrorRate());
+        assertEquals(0, first.getOutstanding());
+    }
+
+    private static Provider provider(String name, GenAiClient client, int weight) {
+        ProviderConfig config = new ProviderConfig(name);
+        config.setWeight(weight);
+        return new Provider(config, client, 0.2);
+    }
+
+    private static ChatResponse latency(long millis) {
+        ChatResponse response = new ChatResponse("x");
+        response.setLatencyNanos(millis * 1_000_000L);
+        return response;
+    }
+
+    /**
+     * Keeps the callbacks of its streams for the test to drive and records their cancellation.
+     */
+    private static class HoldingClient extends FakeClient {
+        final List<StreamCallback> callbacks = new CopyOnWriteArrayList<>();
+        final List<Boolean> cancelled = new CopyOnWriteArrayList<>();
+        volatile int calls;
+
+        HoldingClient() {
+            super(null);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            int index = callbacks.size();
+            callbacks.add(callback);
+            cancelled.add(false);
+            calls++;
+            callback.onOpen(new StreamControl() {
+                @Override
+                public void pause() {
+                }
+
+                @Override
+                public void resume() {
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled.set(index, true);
+                }
+            });
+        }
+    }
+
+    /**
+     * Streams its content as a single chunk, or fails before the first chunk with its status when it
+     * has none.
+     */
+    private static class FakeClient implements GenAiClient {
+        final AtomicInteger requests = new AtomicInteger();
+        private final String content;
+        private final int status;
+
+        FakeClient(String content) {
+            this.content = content;
+            this.status = 503;
+        }
+
+        FakeClient(int status) {
+            this.content = null;
+            this.status = status;
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages) {
+            return content;
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages, RequestOptions options) {
+            return content;
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            requests.incrementAndGet();
+            if (content == null) {
+                return CompletableFuture.failedFuture(new GenAiException(status, "failed with " + status));
+            }
+            return CompletableFuture.completedFuture(new ChatResponse(content));
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+            chatStream(messages, null, callback);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            requests.incrementAndGet();
+            if (content == null) {
+                callback.onError(new GenAiException(status, "failed with " + status));
+                return;
+            }
+            callback.onEvent(content);
+            callback.onComplete(new ChatResponse());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.networknt.genai.tokenizer;
+
+import java.util.regex.Matcher;
+
+/**
+ * A byte-level BPE tokenizer compatible with tiktoken. The text is split into pieces with the pattern
+ * of the encoding, each piece is encoded to UTF-8 and, unless the whole piece is a token, its bytes are
+ * merged pairwise, lowest rank first, until no adjacent pair is a token.
+ *
+ * Special tokens such as &lt;|endoftext|&gt; are encoded as ordinary text. The matcher and the
+ * scratch arrays are kept per thread, so encoding allocates nothing once they have grown to the
+ * longest piece.
+ */
+public final class BpeTokenizer implements Tokenizer {
+    private final Encoding encoding;
+    private final Vocabulary vocabulary;
+    private final ThreadLocal<Scratch> scratch;
+
+    public BpeTokenizer(Encoding encoding, Vocabulary vocabulary) {
+        this.encoding = encoding;
+        this.vocabulary = vocabulary;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(encoding.getPattern().matcher("")));
+    }
+
+    @Override
+    public String getName() {
+        return encoding.getValue();
+    }
+
+    public Vocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    @Override
+    public int count(CharSequence text) {
+        return encode(text, null);
+    }
+
+    @Override
+    public int encode(CharSequence text, TokenBuffer tokens) {
+        Scratch s = scratch.get();
+        Matcher matcher = s.matcher.reset(text);
+        int count = 0;
+        try {
+            while (matcher.find()) {
+                int length = s.utf8(text, matcher.start(), matcher.end());
+                int rank = vocabulary.rank(s.bytes, 0, length);
+                if (rank >= 0) {
+                    if (tokens != null) {
+                        tokens.add(rank);
+                    }
+                    count++;
+                } else {
+                    count += merge(s, length, tokens);
+                }
+            }
+        } finally {
+            // do not keep a reference to the text
+            matcher.reset("");
+        }
+        return count;
+    }
+
+    /**
+     * Merges the bytes of a piece that is not a token by itself.
+     */
+    private int merge(Scratch s, int length, TokenBuffer tokens) {
+        s.ensureParts(length + 1);
+        byte[] bytes = s.bytes;
+        int[] starts = s.starts;
+        int[] ranks = s.ranks;
+        int parts = length;
+        for (int i = 0; i <= length; i++) {
+            starts[i] = i;
+        }
+        for (int i = 0; i < parts - 1; i++) {
+            ranks[i] = pairRank(bytes, starts, i, parts);
+        }
+        while (parts > 1) {
+            int min = Integer.MAX_VALUE;
+            int index = -1;
+            for (int i = 0; i < parts - 1; i++) {
+                if (ranks[i] >= 0 && ranks[i] < min) {
+                    min = ranks[i];
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                break;
+            }
+            // part index absorbs part index + 1
+            System.arraycopy(starts, index + 2, starts, index + 1, parts - index - 1);
+            System.arraycopy(ranks, index + 1, ranks, index, parts - index - 2);
+            parts--;
+            if (index > 0) {
+                ranks[index - 1] = pairRank(bytes, starts, index - 1, parts);
+            }
+            if (index < parts - 1) {
+                ranks[index] = pairRank(bytes, starts, index, parts);
+            }
+        }
+        if (tokens != null) {
+            for (int i = 0; i < parts; i++) {
+                tokens.add(vocabulary.rank(bytes, starts[i], starts[i + 1] - starts[i]));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * @return The rank of the token made of parts i and i + 1, or -1 if there is none.
+     */
+    private int pairRank(byte[] bytes, int[] starts, int i, int parts) {
+        if (i + 2 > parts) {
+            return -1;
+        }
+        return vocabulary.rank(bytes, starts[i], starts[i + 2] - starts[i]);
+    }
+
+    private static final class Scratch {
+        private final Matcher matcher;
+        private byte[] bytes = new byte[256];
+        private int[] starts = new int[257];
+        private int[] ranks = new int[256];
+
+        Scratch(Matcher matcher) {
+            this.matcher = matcher;
+        }
+
+        void ensureParts(int count) {
+            if (starts.length < count) {
+                starts = new int[count * 2];
+                ranks = new int[count * 2];
+            }
+        }
+
+        /**
+         * Encodes a range of the text to UTF-8 in the scratch bytes.
+         *
+         * @return The number of bytes.
+         */
+        int utf8(CharSequence text, int start, int end) {
+            if (bytes.length < (end - start) * 3) {
+                bytes = new byte[(end - start) * 6];
+            }
+            byte[] b = bytes;
+            int n = 0;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    b[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    b[n++] = (byte) (0xc0 | (c >> 6));
+                    b[n++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, text.charAt(++i));
+                    b[n++] = (byte) (0xf0 | (cp >> 18));
+                    b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    b[n++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // a lone surrogate is encoded as U+FFFD like String.getBytes
+                    b[n++] = (byte) 0xef;
+                    b[n++] = (byte) 0xbf;
+                    b[n++] = (byte) 0xbd;
+                } else {
+                    b[n++] = (byte) (0xe0 | (c >> 12));
+                    b[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    b[n++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            return n;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " (" + vocabulary.size() + " tokens)";
+    }
+}
@@ -0,0 +1,58 @@
+package com.networknt.genai.tokenizer;
+
+import java.util.regex.Pattern;
+
+/**
+ * The BPE encodings with the pattern that splits a text into the pieces that are merged separately.
+ */
+public enum Encoding {
+    /**
+     * GPT-4 and GPT-3.5.
+     */
+    CL100K_BASE("cl100k_base",
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*"
+                    + "|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+"),
+    /**
+     * GPT-4o, GPT-4.1, GPT-5 and the o series.
+     */
+    O200K_BASE("o200k_base",
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+                    + "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+                    + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+"),
+    /**
+     * Llama 3, whose tokenizer.model is in the tiktoken format.
+     */
+    LLAMA3("llama3",
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*"
+                    + "|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+
+    private final String value;
+    private final Pattern pattern;
+
+    Encoding(String value, String regex) {
+        this.value = value;
+        // \s must match the Unicode white space like the regex engine of tiktoken
+        this.pattern = Pattern.compile(regex, Pattern.UNICODE_CHARACTER_CLASS);
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @param value The name of the encoding, e.g. cl100k_base.
+     * @return The encoding, or null if there is none with that name.
+     */
+    public static Encoding of(String value) {
+        for (Encoding encoding : values()) {
+            if (encoding.value.equalsIgnoreCase(value)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+}
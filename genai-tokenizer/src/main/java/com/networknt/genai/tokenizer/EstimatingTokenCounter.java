@@ -0,0 +1,38 @@
+package com.networknt.genai.tokenizer;
+
+import com.networknt.genai.TokenCounter;
+
+/**
+ * Estimates the tokens of the models whose tokenizer is not public or not supported, e.g. Claude and
+ * Gemini: an ASCII character counts for 1 / charsPerToken of a token and any other character for a
+ * whole token, which errs on the high side for accented text and is close for CJK.
+ */
+public final class EstimatingTokenCounter implements TokenCounter {
+    private final double charsPerToken;
+    private final String name;
+
+    public EstimatingTokenCounter(double charsPerToken) {
+        this.charsPerToken = charsPerToken;
+        this.name = "estimate-" + charsPerToken;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int count(CharSequence text) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ascii++;
+            } else if (!Character.isLowSurrogate(c)) {
+                other++;
+            }
+        }
+        return (int) Math.ceil(ascii / charsPerToken) + other;
+    }
+}
@@ -0,0 +1,57 @@
+package com.networknt.genai.tokenizer;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of token ids, meant to be reused across calls to
+ * {@link Tokenizer#encode(CharSequence, TokenBuffer)} so that encoding does not allocate once the
+ * buffer has grown to the size of the largest text.
+ */
+public final class TokenBuffer {
+    private int[] tokens;
+    private int size;
+
+    public TokenBuffer() {
+        this(256);
+    }
+
+    public TokenBuffer(int capacity) {
+        this.tokens = new int[Math.max(capacity, 16)];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return tokens[index];
+    }
+
+    /**
+     * @return The backing array, whose first {@link #size()} elements are the tokens.
+     */
+    public int[] array() {
+        return tokens;
+    }
+
+    /**
+     * @return A copy of the tokens.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(tokens, size);
+    }
+
+    void add(int token) {
+        if (size == tokens.length) {
+            tokens = Arrays.copyOf(tokens, size * 2);
+        }
+        tokens[size++] = token;
+    }
+}
@@ -0,0 +1,17 @@
+package com.networknt.genai.tokenizer;
+
+import com.networknt.genai.TokenCounter;
+
+/**
+ * A {@link TokenCounter} that can also produce the token ids of a text.
+ */
+public interface Tokenizer extends TokenCounter {
+    /**
+     * Appends the tokens of a text to a buffer.
+     *
+     * @param text The text.
+     * @param tokens The buffer the token ids are appended to.
+     * @return The number of tokens appended.
+     */
+    int encode(CharSequence text, TokenBuffer tokens);
+}
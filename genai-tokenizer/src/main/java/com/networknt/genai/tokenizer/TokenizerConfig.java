@@ -0,0 +1,106 @@
+package com.networknt.genai.tokenizer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.networknt.config.Config;
+import com.networknt.config.ConfigException;
+import com.networknt.config.schema.ConfigSchema;
+import com.networknt.config.schema.MapField;
+import com.networknt.config.schema.NumberField;
+import com.networknt.config.schema.OutputFormat;
+import com.networknt.server.ModuleRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigSchema(configKey = "tokenizer", configName = "tokenizer", configDescription = "GenAI token counting configuration", outputFormats = {
+        OutputFormat.JSON_SCHEMA, OutputFormat.YAML, OutputFormat.CLOUD })
+public class TokenizerConfig {
+    public static final String CONFIG_NAME = "tokenizer";
+    private static final String VOCABULARIES = "vocabularies";
+    private static final String CHARS_PER_TOKEN = "charsPerToken";
+
+    @MapField(configFieldName = VOCABULARIES, externalizedKeyName = VOCABULARIES, description = "Vocabulary file in the tiktoken format of each encoding, cl100k_base, o200k_base or llama3, as a file path or a classpath: resource", valueType = String.class)
+    private Map<String, String> vocabularies = new HashMap<>();
+
+    @NumberField(configFieldName = CHARS_PER_TOKEN, externalizedKeyName = CHARS_PER_TOKEN, defaultValue = "4", description = "Characters per token of the estimate used for the models without a vocabulary")
+    private double charsPerToken = 4;
+
+    private static volatile TokenizerConfig instance;
+    private final Map<String, Object> mappedConfig;
+
+    private TokenizerConfig(String configName) {
+        mappedConfig = Config.getInstance().getJsonMapConfig(configName);
+        setConfigData();
+    }
+
+    private TokenizerConfig() {
+        this(CONFIG_NAME);
+    }
+
+    public static TokenizerConfig load() {
+        return load(CONFIG_NAME);
+    }
+
+    public static TokenizerConfig load(String configName) {
+        TokenizerConfig config = instance;
+        if (config == null || config.getMappedConfig() != Config.getInstance().getJsonMapConfig(configName)) {
+            synchronized (TokenizerConfig.class) {
+                config = instance;
+                if (config == null || config.getMappedConfig() != Config.getInstance().getJsonMapConfig(configName)) {
+                    config = new TokenizerConfig(configName);
+                    instance = config;
+                    ModuleRegistry.registerModule(configName, TokenizerConfig.class.getName(),
+                            Config.getNoneDecryptedInstance().getJsonMapConfigNoCache(configName), null);
+                }
+            }
+        }
+        return config;
+    }
+
+    public Map<String, Object> getMappedConfig() {
+        return mappedConfig;
+    }
+
+    private void setConfigData() {
+        if (mappedConfig != null) {
+            Object object = mappedConfig.get(VOCABULARIES);
+            if (object instanceof String) {
+                String s = ((String) object).trim();
+                if (!s.isEmpty()) {
+                    try {
+                        object = Config.getInstance().getMapper().readValue(s, new TypeReference<Map<String, Object>>() {});
+                    } catch (Exception e) {
+                        throw new ConfigException("Could not parse the vocabularies json " + s);
+                    }
+                }
+            }
+            if (object instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                    if (entry.getValue() != null) {
+                        vocabularies.put(entry.getKey().toString(), entry.getValue().toString());
+                    }
+                }
+            }
+            object = mappedConfig.get(CHARS_PER_TOKEN);
+            if (object != null) {
+                charsPerToken = Double.parseDouble(object.toString());
+            }
+        }
+    }
+
+    public Map<String, String> getVocabularies() {
+        return vocabularies;
+    }
+
+    public void setVocabularies(Map<String, String> vocabularies) {
+        this.vocabularies = vocabularies;
+    }
+
+    public double getCharsPerToken() {
+        return charsPerToken;
+    }
+
+    public void setCharsPerToken(double charsPerToken) {
+        this.charsPerToken = charsPerToken;
+    }
+}
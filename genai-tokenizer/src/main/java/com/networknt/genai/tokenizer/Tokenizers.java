@@ -0,0 +1,120 @@
+package com.networknt.genai.tokenizer;
+
+import com.networknt.genai.TokenCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The token counters of the models. The vocabularies configured in tokenizer.yml are loaded once when
+ * the instance is created, and a model is mapped to its encoding by the prefix of its name as tiktoken
+ * does. The models of the other providers, and those whose vocabulary is not configured, get an
+ * {@link EstimatingTokenCounter}: Claude at 3.5 characters per token and the others at charsPerToken.
+ */
+public final class Tokenizers {
+    private static final Logger logger = LoggerFactory.getLogger(Tokenizers.class);
+    private static final String CLASSPATH = "classpath:";
+    private static volatile Tokenizers instance;
+
+    private final Map<Encoding, BpeTokenizer> tokenizers = new EnumMap<>(Encoding.class);
+    private final TokenCounter claude = new EstimatingTokenCounter(3.5);
+    private final TokenCounter estimate;
+
+    public Tokenizers(TokenizerConfig config) {
+        this.estimate = new EstimatingTokenCounter(config.getCharsPerToken());
+        for (Map.Entry<String, String> entry : config.getVocabularies().entrySet()) {
+            Encoding encoding = Encoding.of(entry.getKey());
+            if (encoding == null) {
+                logger.warn("Unknown encoding {} in tokenizer.yml", entry.getKey());
+                continue;
+            }
+            try {
+                Vocabulary vocabulary = load(entry.getValue());
+                tokenizers.put(encoding, new BpeTokenizer(encoding, vocabulary));
+                logger.info("Loaded {} tokens of {} from {}", vocabulary.size(), encoding.getValue(), entry.getValue());
+            } catch (IOException e) {
+                logger.error("Cannot load the vocabulary of {} from {}", encoding.getValue(), entry.getValue(), e);
+            }
+        }
+    }
+
+    public static Tokenizers getInstance() {
+        Tokenizers t = instance;
+        if (t == null) {
+            synchronized (Tokenizers.class) {
+                t = instance;
+                if (t == null) {
+                    t = new Tokenizers(TokenizerConfig.load());
+                    instance = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    private static Vocabulary load(String location) throws IOException {
+        if (location.startsWith(CLASSPATH)) {
+            String resource = location.substring(CLASSPATH.length());
+            try (InputStream in = Tokenizers.class.getClassLoader().getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IOException("Resource not found " + resource);
+                }
+                return Vocabulary.load(in);
+            }
+        }
+        return Vocabulary.load(Paths.get(location));
+    }
+
+    /**
+     * @param encoding The encoding.
+     * @return The tokenizer of the encoding, or null if its vocabulary is not configured.
+     */
+    public Tokenizer get(Encoding encoding) {
+        return tokenizers.get(encoding);
+    }
+
+    /**
+     * @param model The model, e.g. gpt-4o-mini, meta.llama3-70b-instruct-v1:0 or claude-3-5-sonnet.
+     * @return The exact tokenizer of the model if its vocabulary is loaded, or else an estimate.
+     */
+    public TokenCounter forModel(String model) {
+        Encoding encoding = encodingOf(model);
+        if (encoding != null) {
+            Tokenizer tokenizer = tokenizers.get(encoding);
+            if (tokenizer != null) {
+                return tokenizer;
+            }
+        }
+        if (model != null && model.toLowerCase(Locale.ROOT).contains("claude")) {
+            return claude;
+        }
+        return estimate;
+    }
+
+    /**
+     * @return The encoding of a model, or null if it is not a model with a tiktoken vocabulary.
+     */
+    public static Encoding encodingOf(String model) {
+        if (model == null) {
+            return null;
+        }
+        String m = model.toLowerCase(Locale.ROOT);
+        if (m.startsWith("gpt-4o") || m.startsWith("chatgpt-4o") || m.startsWith("gpt-4.1") || m.startsWith("gpt-4.5")
+                || m.startsWith("gpt-5") || m.startsWith("o1") || m.startsWith("o3") || m.startsWith("o4")) {
+            return Encoding.O200K_BASE;
+        }
+        if (m.startsWith("gpt-4") || m.startsWith("gpt-3.5") || m.startsWith("text-embedding-")) {
+            return Encoding.CL100K_BASE;
+        }
+        if (m.contains("llama3") || m.contains("llama-3")) {
+            return Encoding.LLAMA3;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,180 @@
+package com.networknt.genai.tokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The byte sequences of a BPE encoding and their ranks, loaded from a file in the tiktoken format, i.e.
+ * one token per line as its base64 bytes followed by its rank, like cl100k_base.tiktoken or the
+ * tokenizer.model of Llama 3.
+ *
+ * The tokens are kept in a single byte arena indexed by an open addressing hash table, so that a rank
+ * is looked up from a slice of a byte array without allocating.
+ */
+public final class Vocabulary {
+    private static final int[] BASE64 = new int[128];
+
+    static {
+        Arrays.fill(BASE64, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private final byte[] arena;
+    private final int[] offsets;
+    private final int[] ranks;
+    private final int[] table;
+    private final int mask;
+    private final int size;
+
+    private Vocabulary(byte[] arena, int[] offsets, int[] ranks, int size) {
+        this.arena = arena;
+        this.offsets = offsets;
+        this.ranks = ranks;
+        this.size = size;
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2) << 1;
+        this.table = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(arena, offsets[i], offsets[i + 1] - offsets[i]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Loads a vocabulary file, which is memory-mapped while it is read.
+     *
+     * @param path The path of the file.
+     * @return The vocabulary.
+     * @throws IOException if the file cannot be read or is not in the tiktoken format.
+     */
+    public static Vocabulary load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(buffer);
+        }
+    }
+
+    /**
+     * Loads a vocabulary from a stream, e.g. a classpath resource.
+     */
+    public static Vocabulary load(InputStream in) throws IOException {
+        return parse(ByteBuffer.wrap(in.readAllBytes()));
+    }
+
+    /**
+     * Creates a vocabulary from its tokens, the rank of a token being its index.
+     */
+    public static Vocabulary of(byte[]... tokens) {
+        int length = 0;
+        for (byte[] token : tokens) {
+            length += token.length;
+        }
+        byte[] arena = new byte[length];
+        int[] offsets = new int[tokens.length + 1];
+        int[] ranks = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            System.arraycopy(tokens[i], 0, arena, offsets[i], tokens[i].length);
+            offsets[i + 1] = offsets[i] + tokens[i].length;
+            ranks[i] = i;
+        }
+        return new Vocabulary(arena, offsets, ranks, tokens.length);
+    }
+
+    private static Vocabulary parse(ByteBuffer buffer) throws IOException {
+        // the decoded tokens take 3/4 of their base64 text, which is most of the file
+        byte[] arena = new byte[buffer.remaining() * 3 / 4 + 4];
+        int[] offsets = new int[1024];
+        int[] ranks = new int[1024];
+        int size = 0;
+        int length = 0;
+        while (buffer.hasRemaining()) {
+            int bits = 0;
+            int count = 0;
+            int start = length;
+            byte b = buffer.get();
+            while (b != ' ') {
+                if (b == '\n' || !buffer.hasRemaining()) {
+                    throw new IOException("Invalid vocabulary line " + (size + 1));
+                }
+                if (b != '=') {
+                    int value = b >= 0 ? BASE64[b] : -1;
+                    if (value < 0) {
+                        throw new IOException("Invalid base64 in vocabulary line " + (size + 1));
+                    }
+                    bits = (bits << 6) | value;
+                    count += 6;
+                    if (count >= 8) {
+                        count -= 8;
+                        arena[length++] = (byte) (bits >> count);
+                    }
+                }
+                b = buffer.get();
+            }
+            int rank = 0;
+            while (buffer.hasRemaining() && (b = buffer.get()) != '\n') {
+                if (b >= '0' && b <= '9') {
+                    rank = rank * 10 + (b - '0');
+                } else if (b != '\r') {
+                    throw new IOException("Invalid rank in vocabulary line " + (size + 1));
+                }
+            }
+            if (size + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                ranks = Arrays.copyOf(ranks, ranks.length * 2);
+            }
+            offsets[size] = start;
+            ranks[size] = rank;
+            size++;
+            offsets[size] = length;
+        }
+        return new Vocabulary(Arrays.copyOf(arena, length), offsets, ranks, size);
+    }
+
+    /**
+     * @return The number of tokens.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param bytes The array holding the byte sequence.
+     * @param offset The start of the sequence.
+     * @param length The length of the sequence.
+     * @return The rank of the token with these bytes, or -1 if there is none.
+     */
+    public int rank(byte[] bytes, int offset, int length) {
+        int slot = hash(bytes, offset, length) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int index = entry - 1;
+            int start = offsets[index];
+            if (offsets[index + 1] - start == length
+                    && Arrays.equals(arena, start, start + length, bytes, offset, offset + length)) {
+                return ranks[index];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,102 @@
+package com.networknt.genai.tokenizer;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.TokenCounter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class BpeTokenizerTest {
+    private static final String[] MERGES = {"he", "ll", "llo", "hello", " w", "or", " wor", "ld", " world"};
+
+    /**
+     * A vocabulary of the 256 bytes followed by a few merges, written in the tiktoken format.
+     */
+    private static Vocabulary vocabulary() throws IOException {
+        StringBuilder file = new StringBuilder();
+        int rank = 0;
+        for (int b = 0; b < 256; b++) {
+            file.append(Base64.getEncoder().encodeToString(new byte[] {(byte) b})).append(' ').append(rank++).append('\n');
+        }
+        for (String merge : MERGES) {
+            file.append(Base64.getEncoder().encodeToString(merge.getBytes(StandardCharsets.UTF_8))).append(' ')
+                    .append(rank++).append('\n');
+        }
+        return Vocabulary.load(new ByteArrayInputStream(file.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMergesLowestRankFirst() throws IOException {
+        Vocabulary vocabulary = vocabulary();
+        assertEquals(256 + MERGES.length, vocabulary.size());
+        BpeTokenizer tokenizer = new BpeTokenizer(Encoding.CL100K_BASE, vocabulary);
+
+        TokenBuffer tokens = new TokenBuffer(16);
+        // "hello" is a token, " hello" is merged to ' ' + "hello", " world" is a token
+        assertEquals(4, tokenizer.encode("hello hello world", tokens));
+        assertArrayEquals(new int[] {259, ' ', 259, 264}, tokens.toArray());
+        assertEquals(4, tokenizer.count("hello hello world"));
+
+        // bytes without merges stay single bytes, a surrogate pair is one 4-byte piece
+        byte[] emoji = "é👋".getBytes(StandardCharsets.UTF_8);
+        int[] expected = new int[emoji.length];
+        for (int i = 0; i < emoji.length; i++) {
+            expected[i] = emoji[i] & 0xff;
+        }
+        assertArrayEquals(expected, appendAll(tokenizer, "é👋"));
+        assertEquals(expected.length, tokenizer.count("é👋"));
+    }
+
+    @Test
+    public void testMessageCountsAreCached() throws IOException {
+        BpeTokenizer tokenizer = new BpeTokenizer(Encoding.CL100K_BASE, vocabulary());
+        List<String> counted = new ArrayList<>();
+        TokenCounter counting = new TokenCounter() {
+            @Override
+            public String getName() {
+                return tokenizer.getName();
+            }
+
+            @Override
+            public int count(CharSequence text) {
+                counted.add(text.toString());
+                return tokenizer.count(text);
+            }
+        };
+        ChatMessage message = new ChatMessage("user", "hello world");
+        List<ChatMessage> messages = List.of(message);
+        assertEquals(3 + 4 + 2, counting.count(messages));
+        assertEquals(3 + 4 + 2, counting.count(messages));
+        assertEquals(1, counted.size());
+
+        message.setContent("hello");
+        assertEquals(1, message.countTokens(counting));
+        assertEquals(2, counted.size());
+        // another encoding is counted again
+        assertEquals(2, message.countTokens(new EstimatingTokenCounter(4)));
+    }
+
+    @Test
+    public void testModelsMapToEncodings() {
+        assertEquals(Encoding.O200K_BASE, Tokenizers.encodingOf("gpt-4o-mini"));
+        assertEquals(Encoding.CL100K_BASE, Tokenizers.encodingOf("gpt-4-turbo"));
+        assertEquals(Encoding.LLAMA3, Tokenizers.encodingOf("meta.llama3-70b-instruct-v1:0"));
+        assertEquals(null, Tokenizers.encodingOf("claude-3-5-sonnet"));
+        assertSame(Encoding.O200K_BASE, Encoding.of("o200k_base"));
+    }
+
+    private static int[] appendAll(Tokenizer tokenizer, String text) {
+        TokenBuffer tokens = new TokenBuffer();
+        tokenizer.encode(text, tokens);
+        return tokens.toArray();
+    }
+}
@@ -8,6 +8,12 @@ public class AgentDefinition {
     private String systemPrompt;
     private List<String> tools;
     private String description;
+    private Integer cacheTtlSeconds;
+    private String contextStrategy;
+    private Integer contextMaxTokens;
+    private Integer contextLastMessages;
+    private Integer compactionThresholdTokens;
+    private String compactionModel;
 
     public AgentDefinition() {
     }
@@ -51,4 +57,76 @@ public class AgentDefinition {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    /**
+     * @return How long the answers of this agent may be cached, or null for the cache default. 0
+     *         disables caching for the agent.
+     */
+    public Integer getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    public void setCacheTtlSeconds(Integer cacheTtlSeconds) {
+        this.cacheTtlSeconds = cacheTtlSeconds;
+    }
+
+    /**
+     * @return The {@link ContextStrategy} that selects the history sent on each turn, sliding-window,
+     *         last-messages or importance, or null to send the whole history.
+     */
+    public String getContextStrategy() {
+        return contextStrategy;
+    }
+
+    public void setContextStrategy(String contextStrategy) {
+        this.contextStrategy = contextStrategy;
+    }
+
+    /**
+     * @return The token budget of the prompt for the sliding-window and importance strategies, or null
+     *         for the default.
+     */
+    public Integer getContextMaxTokens() {
+        return contextMaxTokens;
+    }
+
+    public void setContextMaxTokens(Integer contextMaxTokens) {
+        this.contextMaxTokens = contextMaxTokens;
+    }
+
+    /**
+     * @return The number of messages sent by the last-messages strategy, or never dropped by the
+     *         importance strategy, or null for the default.
+     */
+    public Integer getContextLastMessages() {
+        return contextLastMessages;
+    }
+
+    public void setContextLastMessages(Integer contextLastMessages) {
+        this.contextLastMessages = contextLastMessages;
+    }
+
+    /**
+     * @return The history size in tokens above which the older turns of a session are summarized in the
+     *         background by the {@link HistoryCompactor}, or null to never summarize.
+     */
+    public Integer getCompactionThresholdTokens() {
+        return compactionThresholdTokens;
+    }
+
+    public void setCompactionThresholdTokens(Integer compactionThresholdTokens) {
+        this.compactionThresholdTokens = compactionThresholdTokens;
+    }
+
+    /**
+     * @return The model that writes the summaries, usually a cheaper one, or null for the model of the
+     *         agent.
+     */
+    public String getCompactionModel() {
+        return compactionModel;
+    }
+
+    public void setCompactionModel(String compactionModel) {
+        this.compactionModel = compactionModel;
+    }
 }
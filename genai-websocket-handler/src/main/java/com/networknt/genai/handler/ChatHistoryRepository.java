@@ -2,6 +2,7 @@ package com.networknt.genai.handler;
 
 import com.networknt.genai.ChatMessage;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Interface for storing and retrieving chat message history.
@@ -26,4 +27,39 @@ public interface ChatHistoryRepository {
      * @param sessionId The session ID
      */
     void clearHistory(String sessionId);
+
+    /**
+     * Replace the oldest messages of a session with a summary of them. The messages must only be replaced
+     * if the history still starts with them, checked and replaced atomically, so that a concurrent change
+     * is not lost. The default implementation does not compact and returns false; a repository opts in by
+     * overriding it, e.g. with {@link #startsWith(List, List)} under the lock of the session history.
+     * @param sessionId The session ID
+     * @param messages The oldest messages, as returned by {@link #getHistory(String)}
+     * @param summary The message that replaces them
+     * @return true if the messages were replaced
+     */
+    default boolean compact(String sessionId, List<ChatMessage> messages, ChatMessage summary) {
+        return false;
+    }
+
+    /**
+     * Compares the messages by role and content, so that it also holds for the copies a persistent
+     * repository reads back.
+     * @param history The history of a session
+     * @param messages The oldest messages expected
+     * @return true if the history starts with the same messages.
+     */
+    static boolean startsWith(List<ChatMessage> history, List<ChatMessage> messages) {
+        if (history.size() < messages.size()) {
+            return false;
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage a = history.get(i);
+            ChatMessage b = messages.get(i);
+            if (!Objects.equals(a.getRole(), b.getRole()) || !Objects.equals(a.getContent(), b.getContent())) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
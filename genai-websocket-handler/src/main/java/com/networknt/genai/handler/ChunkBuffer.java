@@ -0,0 +1,89 @@
+package com.networknt.genai.handler;
+
+/**
+ * Accumulates the chunks of a streamed completion into the text frames sent to the WebSocket client. A
+ * frame is sent once the buffered text reaches a size, or a chunk ends a sentence or a line, and the
+ * handler sends what is left when the max latency timer of the first buffered chunk fires or the stream
+ * completes. The builder is reused for every frame. A buffer belongs to a single stream and is not thread
+ * safe.
+ */
+final class ChunkBuffer {
+    private final StringBuilder buffer = new StringBuilder();
+    private final int flushBytes;
+    private final boolean flushOnSentence;
+    private int bytes;
+
+    /**
+     * @param flushBytes The UTF-8 size of the buffered text at which a frame is sent, 1 to send every chunk.
+     * @param flushOnSentence Whether a chunk ending a sentence or a line sends a frame.
+     */
+    ChunkBuffer(int flushBytes, boolean flushOnSentence) {
+        this.flushBytes = flushBytes;
+        this.flushOnSentence = flushOnSentence;
+    }
+
+    /**
+     * @param content The chunk just received.
+     * @return The text of the frame to send, or null to wait for more chunks.
+     */
+    String append(String content) {
+        buffer.append(content);
+        bytes += utf8Length(content);
+        // only the new chunk is scanned, as the buffer is drained at every boundary
+        return bytes >= flushBytes || flushOnSentence && endsSentence(content) ? drain() : null;
+    }
+
+    boolean isEmpty() {
+        return buffer.length() == 0;
+    }
+
+    /**
+     * @return The buffered text, or null if there is none.
+     */
+    String drain() {
+        if (buffer.length() == 0) {
+            return null;
+        }
+        String text = buffer.toString();
+        buffer.setLength(0);
+        bytes = 0;
+        return text;
+    }
+
+    /**
+     * @return Whether the chunk holds a line break or ends with the punctuation closing a sentence, possibly
+     *         followed by white space.
+     */
+    static boolean endsSentence(String content) {
+        boolean trailing = true;
+        for (int i = content.length() - 1; i >= 0; i--) {
+            char c = content.charAt(i);
+            if (c == '\n') {
+                return true;
+            }
+            if (trailing && !Character.isWhitespace(c)) {
+                if (c == '.' || c == '!' || c == '?' || c == '。' || c == '！' || c == '？') {
+                    return true;
+                }
+                trailing = false;
+            }
+        }
+        return false;
+    }
+
+    private static int utf8Length(String s) {
+        int length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isSurrogate(c)) {
+                // a pair is four bytes
+                length++;
+            } else if (c >= 0x800) {
+                length += 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+}
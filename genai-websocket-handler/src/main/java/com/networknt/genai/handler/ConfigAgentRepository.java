@@ -26,6 +26,24 @@ public class ConfigAgentRepository implements AgentRepository {
                     agent.setSystemPrompt((String) agentMap.get("systemPrompt"));
                     agent.setDescription((String) agentMap.get("description"));
                     agent.setTools((List<String>) agentMap.get("tools"));
+                    Object cacheTtl = agentMap.get("cacheTtlSeconds");
+                    if (cacheTtl != null) {
+                        agent.setCacheTtlSeconds(Integer.valueOf(cacheTtl.toString()));
+                    }
+                    agent.setContextStrategy((String) agentMap.get("contextStrategy"));
+                    Object contextMaxTokens = agentMap.get("contextMaxTokens");
+                    if (contextMaxTokens != null) {
+                        agent.setContextMaxTokens(Integer.valueOf(contextMaxTokens.toString()));
+                    }
+                    Object contextLastMessages = agentMap.get("contextLastMessages");
+                    if (contextLastMessages != null) {
+                        agent.setContextLastMessages(Integer.valueOf(contextLastMessages.toString()));
+                    }
+                    Object compactionThreshold = agentMap.get("compactionThresholdTokens");
+                    if (compactionThreshold != null) {
+                        agent.setCompactionThresholdTokens(Integer.valueOf(compactionThreshold.toString()));
+                    }
+                    agent.setCompactionModel((String) agentMap.get("compactionModel"));
                     
                     agents.put(agent.getAgentId(), agent);
                     logger.info("Loaded agent: {}", agent.getAgentId());
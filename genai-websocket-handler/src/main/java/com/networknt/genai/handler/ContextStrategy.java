@@ -0,0 +1,92 @@
+package com.networknt.genai.handler;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.TokenCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses the part of a session history that is sent to the model on each turn, so that long sessions
+ * stay within the context window and the prompt does not grow without bound. Messages with the system
+ * role are always kept. The cost of a message is the token count cached on it, so each turn only the
+ * new messages are tokenized.
+ */
+public interface ContextStrategy {
+    String SLIDING_WINDOW = "sliding-window";
+    String LAST_MESSAGES = "last-messages";
+    String IMPORTANCE = "importance";
+
+    /**
+     * The default token budget of the strategies that have one.
+     */
+    int DEFAULT_MAX_TOKENS = 8192;
+
+    /**
+     * The default number of messages kept by the last-messages strategy, not counting the system ones.
+     */
+    int DEFAULT_LAST_MESSAGES = 20;
+
+    /**
+     * @param history The history of the session, oldest first, ending with the new user message.
+     * @param reservedTokens The tokens taken by the prompt outside of the history, e.g. the system prompt.
+     * @param counter The token counter of the model.
+     * @return The messages to send, in their original order.
+     */
+    List<ChatMessage> apply(List<ChatMessage> history, int reservedTokens, TokenCounter counter);
+
+    /**
+     * @param agent The agent.
+     * @return The strategy configured for the agent, or null if the whole history is sent.
+     */
+    static ContextStrategy of(AgentDefinition agent) {
+        String name = agent.getContextStrategy();
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        int maxTokens = agent.getContextMaxTokens() != null ? agent.getContextMaxTokens() : DEFAULT_MAX_TOKENS;
+        Integer lastMessages = agent.getContextLastMessages();
+        switch (name) {
+            case SLIDING_WINDOW:
+                return new SlidingWindowContextStrategy(maxTokens);
+            case LAST_MESSAGES:
+                return new LastMessagesContextStrategy(lastMessages != null ? lastMessages : DEFAULT_LAST_MESSAGES);
+            case IMPORTANCE:
+                return new ImportanceContextStrategy(maxTokens,
+                        lastMessages != null ? lastMessages : ImportanceContextStrategy.DEFAULT_KEEP_LAST);
+            default:
+                throw new IllegalArgumentException("Unknown context strategy " + name + " of agent " + agent.getAgentId());
+        }
+    }
+
+    /**
+     * @return The tokens a message takes in the prompt, its content and about 4 tokens of framing.
+     */
+    static int cost(ChatMessage message, TokenCounter counter) {
+        return 4 + message.countTokens(counter);
+    }
+
+    static boolean isSystem(ChatMessage message) {
+        return "system".equals(message.getRole());
+    }
+
+    /**
+     * Keeps the system messages and the messages from start on. Leading assistant messages of the
+     * window are dropped as well, since some providers require the conversation to start with a user
+     * message.
+     */
+    static List<ChatMessage> window(List<ChatMessage> history, int start) {
+        List<ChatMessage> window = new ArrayList<>(history.size() - start + 1);
+        boolean started = false;
+        for (int i = 0; i < history.size(); i++) {
+            ChatMessage message = history.get(i);
+            if (isSystem(message)) {
+                window.add(message);
+            } else if (i >= start && (started || "user".equals(message.getRole()))) {
+                started = true;
+                window.add(message);
+            }
+        }
+        return window;
+    }
+}
@@ -0,0 +1,184 @@
+package com.networknt.genai.handler;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.genai.ChatResponse;
+import com.networknt.genai.GenAiException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The JSON frames of the structured protocol of the handler, selected with protocol=json on the query
+ * string. Each prompt of the client carries an id chosen by the client and, optionally, the session of
+ * the conversation, so several conversations can share a connection:
+ *
+ * <pre>
+ * {"type":"prompt","id":"r1","sessionId":"s1","content":"Hello"}
+ * {"type":"cancel","id":"r1"}
+ * </pre>
+ *
+ * The server acknowledges a prompt with the session it belongs to once it is queued, as the prompts of a
+ * session are answered one at a time in the order they arrived. It then streams the answer in chunks
+ * numbered from 0 and ends it with exactly one done or error frame:
+ *
+ * <pre>
+ * {"type":"ack","id":"r1","sessionId":"s1"}
+ * {"type":"chunk","id":"r1","seq":0,"content":"Hi"}
+ * {"type":"done","id":"r1","seq":1,"finishReason":"stop","usage":{"promptTokens":9,"completionTokens":1,"cachedTokens":0}}
+ * {"type":"error","id":"r1","code":"cancelled","message":"Cancelled by the client"}
+ * </pre>
+ *
+ * The seq of the done frame is the number of chunks sent. A client whose connection dropped reconnects
+ * with the sessionId and the seq of the last chunk it received as lastSeq on the query string, and gets
+ * the ack, the chunks it missed and the rest of the answer, or an error with the expired code if the answer
+ * is no longer kept.
+ */
+final class Envelope {
+    static final String PROMPT = "prompt";
+    static final String CANCEL = "cancel";
+    static final String ACK = "ack";
+    static final String CHUNK = "chunk";
+    static final String DONE = "done";
+    static final String ERROR = "error";
+
+    /** The frame is not valid JSON or misses its type or id. */
+    static final String BAD_REQUEST = "bad_request";
+    /** The session has too many prompts waiting for their turn. */
+    static final String BUSY = "busy";
+    /** The client cancelled the prompt. */
+    static final String CANCELLED = "cancelled";
+    /** The provider throttled the request. */
+    static final String RATE_LIMITED = "rate_limited";
+    /** The provider failed or rejected the request. */
+    static final String PROVIDER_ERROR = "provider_error";
+    /** The answer to resume is no longer kept. */
+    static final String EXPIRED = "expired";
+    /** The answer to resume belongs to another user. */
+    static final String FORBIDDEN = "forbidden";
+    /** No provider is configured. */
+    static final String UNAVAILABLE = "unavailable";
+    /** Any other failure. */
+    static final String INTERNAL = "internal";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonFactory factory = mapper.getFactory();
+
+    final String type;
+    final String id;
+    final String sessionId;
+    final String content;
+
+    private Envelope(String type, String id, String sessionId, String content) {
+        this.type = type;
+        this.id = id;
+        this.sessionId = sessionId;
+        this.content = content;
+    }
+
+    /**
+     * @param frame A text frame of the client.
+     * @return The prompt or cancel, or null if the frame is not valid JSON or misses its type or id.
+     */
+    static Envelope parse(String frame) {
+        JsonNode node;
+        try {
+            node = mapper.readTree(frame);
+        } catch (IOException e) {
+            return null;
+        }
+        if (node == null || !node.path("type").isTextual() || !node.path("id").isTextual()) {
+            return null;
+        }
+        return new Envelope(node.get("type").asText(), node.get("id").asText(), node.path("sessionId").textValue(),
+                node.path("content").textValue());
+    }
+
+    static String ack(String id, String sessionId) {
+        return write(g -> {
+            g.writeStringField("type", ACK);
+            g.writeStringField("id", id);
+            g.writeStringField("sessionId", sessionId);
+        });
+    }
+
+    static String chunk(String id, int seq, String content) {
+        return write(g -> {
+            g.writeStringField("type", CHUNK);
+            g.writeStringField("id", id);
+            g.writeNumberField("seq", seq);
+            g.writeStringField("content", content);
+        });
+    }
+
+    /**
+     * @param response The usage of the answer, or null if the provider did not report it.
+     */
+    static String done(String id, int seq, ChatResponse response) {
+        return write(g -> {
+            g.writeStringField("type", DONE);
+            g.writeStringField("id", id);
+            g.writeNumberField("seq", seq);
+            if (response != null) {
+                if (response.getFinishReason() != null) {
+                    g.writeStringField("finishReason", response.getFinishReason());
+                }
+                g.writeObjectFieldStart("usage");
+                g.writeNumberField("promptTokens", response.getPromptTokens());
+                g.writeNumberField("completionTokens", response.getCompletionTokens());
+                g.writeNumberField("cachedTokens", response.getCachedTokens());
+                g.writeEndObject();
+            }
+        });
+    }
+
+    /**
+     * @param id The id of the prompt, or null if the frame could not be read.
+     */
+    static String error(String id, String code, String message) {
+        return write(g -> {
+            g.writeStringField("type", ERROR);
+            if (id != null) {
+                g.writeStringField("id", id);
+            }
+            g.writeStringField("code", code);
+            if (message != null) {
+                g.writeStringField("message", message);
+            }
+        });
+    }
+
+    /**
+     * @return The error code of a failed answer.
+     */
+    static String code(Throwable t) {
+        if (t instanceof CancellationException) {
+            return CANCELLED;
+        }
+        if (t instanceof GenAiException) {
+            int status = ((GenAiException) t).getStatusCode();
+            return status == 429 ? RATE_LIMITED : PROVIDER_ERROR;
+        }
+        return INTERNAL;
+    }
+
+    private interface Fields {
+        void write(JsonGenerator g) throws IOException;
+    }
+
+    private static String write(Fields fields) {
+        StringWriter writer = new StringWriter(128);
+        try (JsonGenerator g = factory.createGenerator(writer)) {
+            g.writeStartObject();
+            fields.write(g);
+            g.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+}
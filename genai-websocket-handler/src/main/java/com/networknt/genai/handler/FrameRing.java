@@ -0,0 +1,49 @@
+package com.networknt.genai.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last chunk frames of a streamed answer, numbered from 0 in the order they were added, so a
+ * client reconnecting after a dropped connection can get the frames it missed replayed. The oldest frame
+ * is overwritten once the ring is full. A ring belongs to a single answer and is not thread safe.
+ */
+final class FrameRing {
+    private final String[] frames;
+    private int next;
+
+    /**
+     * @param capacity The number of frames kept.
+     */
+    FrameRing(int capacity) {
+        this.frames = new String[Math.max(1, capacity)];
+    }
+
+    void add(String frame) {
+        frames[next % frames.length] = frame;
+        next++;
+    }
+
+    /**
+     * @return The sequence number of the next frame added.
+     */
+    int next() {
+        return next;
+    }
+
+    /**
+     * @param lastSeq The sequence number of the last frame the client received, -1 if none.
+     * @return The frames after it, or null if some of them have been overwritten.
+     */
+    List<String> after(int lastSeq) {
+        int from = Math.max(lastSeq + 1, 0);
+        if (from < next - frames.length) {
+            return null;
+        }
+        List<String> missed = new ArrayList<>(Math.max(next - from, 0));
+        for (int seq = from; seq < next; seq++) {
+            missed.add(frames[seq % frames.length]);
+        }
+        return missed;
+    }
+}
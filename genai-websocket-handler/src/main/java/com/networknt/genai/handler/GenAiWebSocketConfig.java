@@ -0,0 +1,153 @@
+package com.networknt.genai.handler;
+
+import com.networknt.config.Config;
+import com.networknt.config.schema.BooleanField;
+import com.networknt.config.schema.ConfigSchema;
+import com.networknt.config.schema.IntegerField;
+import com.networknt.config.schema.OutputFormat;
+import com.networknt.server.ModuleRegistry;
+
+import java.util.Map;
+
+@ConfigSchema(configKey = "genai-websocket", configName = "genai-websocket", configDescription = "GenAI WebSocket handler configuration", outputFormats = {
+        OutputFormat.JSON_SCHEMA, OutputFormat.YAML, OutputFormat.CLOUD })
+public class GenAiWebSocketConfig {
+    public static final String CONFIG_NAME = "genai-websocket";
+    private static final String FLUSH_BYTES = "flushBytes";
+    private static final String FLUSH_MILLIS = "flushMillis";
+    private static final String FLUSH_ON_SENTENCE = "flushOnSentence";
+    private static final String RESUME_MILLIS = "resumeMillis";
+    private static final String RESUME_FRAMES = "resumeFrames";
+    private static final String MAX_QUEUED_PROMPTS = "maxQueuedPrompts";
+
+    @IntegerField(configFieldName = FLUSH_BYTES, externalizedKeyName = FLUSH_BYTES, defaultValue = "256", description = "Send the streamed text buffered for a frame once it reaches this many UTF-8 bytes. 1 sends every chunk as it arrives")
+    private int flushBytes = 256;
+
+    @IntegerField(configFieldName = FLUSH_MILLIS, externalizedKeyName = FLUSH_MILLIS, defaultValue = "30", description = "Send the streamed text buffered for a frame at most this many milliseconds after its first chunk arrived. 0 waits for the size or a sentence end")
+    private int flushMillis = 30;
+
+    @BooleanField(configFieldName = FLUSH_ON_SENTENCE, externalizedKeyName = FLUSH_ON_SENTENCE, defaultValue = "true", description = "Send the streamed text buffered for a frame as soon as a chunk ends a sentence or a line")
+    private boolean flushOnSentence = true;
+
+    @IntegerField(configFieldName = RESUME_MILLIS, externalizedKeyName = RESUME_MILLIS, defaultValue = "30000", description = "Keep a streamed answer running this many milliseconds after its JSON protocol connection closed, so a client reconnecting with lastSeq gets the missed chunks replayed. 0 cancels the answer when the connection closes")
+    private int resumeMillis = 30000;
+
+    @IntegerField(configFieldName = RESUME_FRAMES, externalizedKeyName = RESUME_FRAMES, defaultValue = "512", description = "The number of frames of a streamed answer kept for a reconnecting client to replay")
+    private int resumeFrames = 512;
+
+    @IntegerField(configFieldName = MAX_QUEUED_PROMPTS, externalizedKeyName = MAX_QUEUED_PROMPTS, defaultValue = "8", description = "The number of prompts of a session waiting for the answers to its previous prompts. A prompt beyond it is rejected with the busy error code")
+    private int maxQueuedPrompts = 8;
+
+    private static volatile GenAiWebSocketConfig instance;
+    private final Map<String, Object> mappedConfig;
+
+    private GenAiWebSocketConfig(String configName) {
+        mappedConfig = Config.getInstance().getJsonMapConfig(configName);
+        setConfigData();
+    }
+
+    private GenAiWebSocketConfig() {
+        this(CONFIG_NAME);
+    }
+
+    public static GenAiWebSocketConfig load() {
+        return load(CONFIG_NAME);
+    }
+
+    public static GenAiWebSocketConfig load(String configName) {
+        GenAiWebSocketConfig config = instance;
+        if (config == null || config.getMappedConfig() != Config.getInstance().getJsonMapConfig(configName)) {
+            synchronized (GenAiWebSocketConfig.class) {
+                config = instance;
+                if (config == null || config.getMappedConfig() != Config.getInstance().getJsonMapConfig(configName)) {
+                    config = new GenAiWebSocketConfig(configName);
+                    instance = config;
+                    ModuleRegistry.registerModule(configName, GenAiWebSocketConfig.class.getName(),
+                            Config.getNoneDecryptedInstance().getJsonMapConfigNoCache(configName), null);
+                }
+            }
+        }
+        return config;
+    }
+
+    public Map<String, Object> getMappedConfig() {
+        return mappedConfig;
+    }
+
+    private void setConfigData() {
+        if (mappedConfig != null) {
+            Object object = mappedConfig.get(FLUSH_BYTES);
+            if (object != null) {
+                flushBytes = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(FLUSH_MILLIS);
+            if (object != null) {
+                flushMillis = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(FLUSH_ON_SENTENCE);
+            if (object != null) {
+                flushOnSentence = Boolean.parseBoolean(object.toString());
+            }
+            object = mappedConfig.get(RESUME_MILLIS);
+            if (object != null) {
+                resumeMillis = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(RESUME_FRAMES);
+            if (object != null) {
+                resumeFrames = Integer.parseInt(object.toString());
+            }
+            object = mappedConfig.get(MAX_QUEUED_PROMPTS);
+            if (object != null) {
+                maxQueuedPrompts = Integer.parseInt(object.toString());
+            }
+        }
+    }
+
+    public int getFlushBytes() {
+        return flushBytes;
+    }
+
+    public void setFlushBytes(int flushBytes) {
+        this.flushBytes = flushBytes;
+    }
+
+    public int getFlushMillis() {
+        return flushMillis;
+    }
+
+    public void setFlushMillis(int flushMillis) {
+        this.flushMillis = flushMillis;
+    }
+
+    public boolean isFlushOnSentence() {
+        return flushOnSentence;
+    }
+
+    public void setFlushOnSentence(boolean flushOnSentence) {
+        this.flushOnSentence = flushOnSentence;
+    }
+
+    public int getResumeMillis() {
+        return resumeMillis;
+    }
+
+    public void setResumeMillis(int resumeMillis) {
+        this.resumeMillis = resumeMillis;
+    }
+
+    public int getResumeFrames() {
+        return resumeFrames;
+    }
+
+    public void setResumeFrames(int resumeFrames) {
+        this.resumeFrames = resumeFrames;
+    }
+
+    public int getMaxQueuedPrompts() {
+        return maxQueuedPrompts;
+    }
+
+    public void setMaxQueuedPrompts(int maxQueuedPrompts) {
+        this.maxQueuedPrompts = maxQueuedPrompts;
+    }
+}
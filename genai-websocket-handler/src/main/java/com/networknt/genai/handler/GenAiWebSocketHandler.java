@@ -1,12 +1,18 @@
 package com.networknt.genai.handler;
 
 import com.networknt.genai.ChatMessage;
+import com.networknt.genai.ChatStreamPublisher;
 import com.networknt.genai.GenAiClient;
-import com.networknt.genai.StreamCallback;
+import com.networknt.genai.MetricsProvider;
+import com.networknt.genai.StreamMetrics;
+import com.networknt.genai.TokenCounter;
+import com.networknt.genai.tokenizer.Tokenizers;
 import com.networknt.service.SingletonServiceFactory;
 import com.networknt.websocket.handler.WebSocketApplicationHandler;
 import io.undertow.websockets.core.*;
 import io.undertow.websockets.spi.WebSocketHttpExchange;
+import org.xnio.XnioExecutor;
+import org.xnio.XnioIoThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,6 +20,13 @@ import java.io.IOException;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class GenAiWebSocketHandler implements WebSocketApplicationHandler {
     private static final Logger logger = LoggerFactory.getLogger(GenAiWebSocketHandler.class);
@@ -22,23 +35,37 @@ public class GenAiWebSocketHandler implements WebSocketApplicationHandler {
     private final ChatSessionRepository sessionRepository;
     private final ChatHistoryRepository historyRepository;
     private final GenAiClient genAiClient;
+    private final HistoryCompactor historyCompactor;
+    private final GenAiWebSocketConfig config = GenAiWebSocketConfig.load();
+    // The answers of the structured protocol a reconnecting client can resume, by session
+    private final Map<String, Answer> resumable = new ConcurrentHashMap<>();
+    // Runs the turns of a session one at a time, so each reads the history written by the previous one
+    private final SessionExecutor turns = new SessionExecutor(config.getMaxQueuedPrompts());
 
     public GenAiWebSocketHandler() {
         // Load dependencies via SingletonServiceFactory (which uses ServiceLoader or service.yml)
+        this(SingletonServiceFactory.getBean(AgentRepository.class),
+                SingletonServiceFactory.getBean(ChatSessionRepository.class),
+                SingletonServiceFactory.getBean(ChatHistoryRepository.class),
+                SingletonServiceFactory.getBean(GenAiClient.class));
+    }
+
+    /**
+     * Creates a handler with the given dependencies, e.g. to embed it in a load test. A null repository
+     * falls back to the default in-memory or config implementation.
+     */
+    public GenAiWebSocketHandler(AgentRepository agentRepo, ChatSessionRepository sessionRepo,
+            ChatHistoryRepository historyRepo, GenAiClient genAiClient) {
         // If not found, fallback to default in-memory implementations for repos
-        ChatSessionRepository sessionRepo = SingletonServiceFactory.getBean(ChatSessionRepository.class);
         this.sessionRepository = sessionRepo != null ? sessionRepo : new InMemoryChatSessionRepository();
-
-        ChatHistoryRepository historyRepo = SingletonServiceFactory.getBean(ChatHistoryRepository.class);
         this.historyRepository = historyRepo != null ? historyRepo : new InMemoryChatHistoryRepository();
-        
-        AgentRepository agentRepo = SingletonServiceFactory.getBean(AgentRepository.class);
         this.agentRepository = agentRepo != null ? agentRepo : new ConfigAgentRepository();
 
-        this.genAiClient = SingletonServiceFactory.getBean(GenAiClient.class);
+        this.genAiClient = genAiClient;
         if (this.genAiClient == null) {
             logger.warn("No GenAiClient implementation found. Chat functionality will not work.");
         }
+        this.historyCompactor = new HistoryCompactor(historyRepository, genAiClient);
     }
 
     @Override
@@ -48,6 +75,8 @@ public class GenAiWebSocketHandler implements WebSocketApplicationHandler {
         String tempUserId = "anonymous";
         String tempAgentId = "default";
         String tempSessionId = null;
+        boolean tempJson = false;
+        String tempLastSeq = null;
         
         if (queryString != null && !queryString.isEmpty()) {
             String[] pairs = queryString.split("&");
@@ -57,6 +86,8 @@ public class GenAiWebSocketHandler implements WebSocketApplicationHandler {
                     if ("userId".equals(kv[0])) tempUserId = kv[1];
                     if ("agentId".equals(kv[0])) tempAgentId = kv[1];
                     if ("sessionId".equals(kv[0])) tempSessionId = kv[1];
+                    if ("protocol".equals(kv[0])) tempJson = "json".equals(kv[1]);
+                    if ("lastSeq".equals(kv[0])) tempLastSeq = kv[1];
                 }
             }
         }
@@ -70,7 +101,7 @@ public class GenAiWebSocketHandler implements WebSocketApplicationHandler {
             logger.error("Agent not found: {}", agentId);
             // Consider sending error and closing, but for now just log
         }
-        
+
         // Ensure Session ID
         final String sessionId = tempSessionId != null ? tempSessionId : java.util.UUID.randomUUID().toString();
         
@@ -78,80 +109,529 @@ public class GenAiWebSocketHandler implements WebSocketApplicationHandler {
         
         // Create or get session (persisted)
         ChatSession session = sessionRepository.createSession(userId, agentId); // Assuming createSession can handle this or mapping logic
+
+        final Connection connection = new Connection(channel, userId, agentId, agentDef, sessionId, tempJson);
         
         // Setup Receive Listener
         channel.getReceiveSetter().set(new AbstractReceiveListener() {
             @Override
             protected void onFullTextMessage(WebSocketChannel channel, BufferedTextMessage message) {
-                final String payload = message.getData();
-                logger.debug("Received message from {}: {}", userId, payload);
-
-                channel.getWorker().execute(() -> {
-                    // Add user message to history
-                    ChatMessage userMsg = new ChatMessage("user", payload);
-                    historyRepository.addMessage(sessionId, userMsg);
-
-                    // Invoke LLM
-                    List<ChatMessage> history = historyRepository.getHistory(sessionId);
-                    
-                    // Inject System Prompt if it's the start of history or handled by Client/Repo logic
-                    // For simplicity, we assume the Client or Repo handles ensuring system prompt is present
-                    // OR we prepend it here if history is empty. 
-                    // Better approach: Let GenAiClient or Model logic handle system prompt placement via RequestOptions
-                    
-                    if (genAiClient != null) {
-                        StringBuilder responseBuilder = new StringBuilder();
-                        
-                        // Create Request Options
-                        com.networknt.genai.RequestOptions options = new com.networknt.genai.RequestOptions();
-                        if (agentDef != null) {
-                             if (agentDef.getModel() != null) options.setModel(agentDef.getModel());
-                             if (agentDef.getSystemPrompt() != null) options.setSystemPrompt(agentDef.getSystemPrompt());
-                        }
-
-                        genAiClient.chatStream(history, options, new StreamCallback() {
-                            private final StringBuilder buffer = new StringBuilder();
-
-                            @Override
-                            public void onEvent(String content) {
-                                try {
-                                    buffer.append(content);
-                                    responseBuilder.append(content);
-                                    if (buffer.toString().contains("\n")) {
-                                        WebSockets.sendText(buffer.toString(), channel, null);
-                                        buffer.setLength(0);
-                                    }
-                                } catch (Exception e) {
-                                    logger.error("Error sending message chunk", e);
-                                }
-                            }
-
-                            @Override
-                            public void onComplete() {
-                                if (buffer.length() > 0) {
-                                    try {
-                                        WebSockets.sendText(buffer.toString(), channel, null);
-                                    } catch (Exception e) {
-                                        logger.error("Error sending last message chunk", e);
-                                    }
-                                }
-                                ChatMessage modelMsg = new ChatMessage("assistant", responseBuilder.toString());
-                                historyRepository.addMessage(sessionId, modelMsg);
-                            }
-
-                            @Override
-                            public void onError(Throwable throwable) {
-                                logger.error("GenAI Client Error", throwable);
-                                WebSockets.sendText("Error: " + throwable.getMessage(), channel, null);
-                            }
-                        });
-                    } else {
-                        WebSockets.sendText("System Error: No GenAiClient configured.", channel, null);
-                    }
-                });
+                connection.receive(message.getData());
             }
         });
+        // A client that goes away mid-answer, by closing the socket or failing, stops the provider
+        // streams instead of letting them run, and bill output tokens, until the model finishes, unless
+        // it may still come back for the answer.
+        channel.addCloseTask(ch -> connection.close());
+        if (tempJson && tempLastSeq != null) {
+            connection.resume(sessionId, tempLastSeq);
+        }
         channel.resumeReceives();
     }
-}
 
+    /**
+     * The state of a WebSocket connection: its agent, its default session and the answers being streamed,
+     * keyed by the id of their prompt. With the structured protocol the prompts carry their ids and
+     * sessions, so answers of several conversations are multiplexed over the connection; with plain
+     * text frames each frame is a prompt of the default session and the answer is sent as plain text.
+     * A connection reopened with the lastSeq query parameter resumes the answer of its default session.
+     */
+    private final class Connection {
+        private final WebSocketChannel channel;
+        private final String userId;
+        private final String agentId;
+        private final AgentDefinition agentDef;
+        private final String sessionId;
+        private final boolean json;
+        private final ContextStrategy contextStrategy;
+        private final TokenCounter tokenCounter;
+        private final ChatMessage systemPrompt;
+        private final MetricsProvider.Distribution sendTimer;
+        private final Map<String, Answer> answers = new ConcurrentHashMap<>();
+        // the ids of the prompts waiting for their turn
+        private final Set<String> queued = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger textPrompts = new AtomicInteger();
+
+        Connection(WebSocketChannel channel, String userId, String agentId, AgentDefinition agentDef,
+                String sessionId, boolean json) {
+            this.channel = channel;
+            this.userId = userId;
+            this.agentId = agentId;
+            this.agentDef = agentDef;
+            this.sessionId = sessionId;
+            this.json = json;
+            // The context strategy trims the history sent on each turn with the token counts cached on the messages
+            this.contextStrategy = agentDef != null ? ContextStrategy.of(agentDef) : null;
+            this.tokenCounter = agentDef != null ? Tokenizers.getInstance().forModel(agentDef.getModel()) : null;
+            this.systemPrompt = agentDef != null && agentDef.getSystemPrompt() != null
+                    ? new ChatMessage("system", agentDef.getSystemPrompt()) : null;
+            this.sendTimer = StreamMetrics.timer(StreamMetrics.WEBSOCKET_SEND, null,
+                    agentDef != null ? agentDef.getModel() : null, agentId);
+        }
+
+        void receive(String payload) {
+            logger.debug("Received message from {}: {}", userId, payload);
+            if (!json) {
+                submit("t" + textPrompts.incrementAndGet(), sessionId, payload);
+                return;
+            }
+            Envelope envelope = Envelope.parse(payload);
+            if (envelope == null) {
+                WebSockets.sendText(Envelope.error(null, Envelope.BAD_REQUEST,
+                        "Expected a JSON object with a type and an id"), channel, null);
+            } else if (Envelope.CANCEL.equals(envelope.type)) {
+                Answer answer = answers.get(envelope.id);
+                if (answer != null) {
+                    answer.cancel();
+                } else if (queued.remove(envelope.id)) {
+                    send(Envelope.error(envelope.id, Envelope.CANCELLED, "Cancelled by the client"));
+                }
+            } else if (Envelope.PROMPT.equals(envelope.type) && envelope.content != null) {
+                if (answers.containsKey(envelope.id) || queued.contains(envelope.id)) {
+                    WebSockets.sendText(Envelope.error(envelope.id, Envelope.BAD_REQUEST,
+                            "A prompt with this id is being answered"), channel, null);
+                    return;
+                }
+                submit(envelope.id, envelope.sessionId != null ? envelope.sessionId : sessionId, envelope.content);
+            } else {
+                WebSockets.sendText(Envelope.error(envelope.id, Envelope.BAD_REQUEST,
+                        "Unknown type " + envelope.type + " or missing content"), channel, null);
+            }
+        }
+
+        /**
+         * Queues the prompt behind the prompts of the session still waiting or being answered.
+         */
+        private void submit(String id, String session, String payload) {
+            if (genAiClient == null) {
+                send(json ? Envelope.error(id, Envelope.UNAVAILABLE, "No GenAiClient configured")
+                        : "System Error: No GenAiClient configured.");
+                return;
+            }
+            queued.add(id);
+            if (!turns.submit(session, channel.getWorker(), done -> prompt(id, session, payload, done))) {
+                queued.remove(id);
+                send(json ? Envelope.error(id, Envelope.BUSY, "The session has too many prompts waiting")
+                        : "Error: The session has too many messages waiting");
+                return;
+            }
+            if (json) {
+                send(Envelope.ack(id, session));
+            }
+        }
+
+        /**
+         * Answers a prompt of the session once its turn has come, on a worker thread as reading the history
+         * may block.
+         *
+         * @param done Ends the turn, called once the answer has been streamed and written to the history.
+         */
+        private void prompt(String id, String session, String payload, Runnable done) {
+            if (!queued.contains(id) || !channel.isOpen()) {
+                // cancelled, or the client went away, while waiting for its turn
+                queued.remove(id);
+                done.run();
+                return;
+            }
+            try {
+                answer(id, session, payload, done);
+            } catch (RuntimeException e) {
+                queued.remove(id);
+                logger.error("Failed to start the answer of session " + session, e);
+                send(json ? Envelope.error(id, Envelope.INTERNAL, e.getMessage()) : "Error: " + e.getMessage());
+                done.run();
+            }
+        }
+
+        private void answer(String id, String session, String payload, Runnable done) {
+            // Add user message to history
+            ChatMessage userMsg = new ChatMessage("user", payload);
+            historyRepository.addMessage(session, userMsg);
+
+            // Invoke LLM
+            List<ChatMessage> history = historyRepository.getHistory(session);
+            if (contextStrategy != null) {
+                int reserved = systemPrompt != null ? 4 + systemPrompt.countTokens(tokenCounter) : 0;
+                history = contextStrategy.apply(history, reserved, tokenCounter);
+            }
+
+            // Create Request Options
+            com.networknt.genai.RequestOptions options = new com.networknt.genai.RequestOptions();
+            options.setAgent(agentId);
+            if (agentDef != null) {
+                 if (agentDef.getModel() != null) options.setModel(agentDef.getModel());
+                 if (agentDef.getSystemPrompt() != null) options.setSystemPrompt(agentDef.getSystemPrompt());
+                 options.setCacheTtlSeconds(agentDef.getCacheTtlSeconds());
+            }
+
+            ChatStreamPublisher publisher = genAiClient.chatStream(history, options);
+            Answer answer = new Answer(this, id, session, publisher, done);
+            answers.put(id, answer);
+            if (!queued.remove(id)) {
+                // cancelled while the turn was being prepared, the client has been told
+                answer.discard();
+            } else if (answer.ring != null) {
+                resumable.put(session, answer);
+            }
+            if (!channel.isOpen()) {
+                // closed while the turn was being prepared, after the close task has run
+                answer.ioThread.execute(() -> answer.detach(this));
+            }
+            publisher.getResponse().thenAccept(response -> logger.debug(
+                    "Session {} used {} prompt tokens, {} from the prompt cache, and {} completion tokens",
+                    session, response.getPromptTokens(), response.getCachedTokens(),
+                    response.getCompletionTokens()));
+            publisher.subscribe(answer);
+        }
+
+        private void send(String frame) {
+            WebSockets.sendText(frame, channel, null);
+        }
+
+        /**
+         * Attaches the answer of the session still streaming, or finished while the client was away, and
+         * replays the frames after the last one the client received. Only the user the answer was streamed
+         * to may resume it.
+         */
+        void resume(String session, String lastSeq) {
+            Answer answer = resumable.get(session);
+            int seq;
+            try {
+                seq = Integer.parseInt(lastSeq);
+            } catch (NumberFormatException e) {
+                send(Envelope.error(null, Envelope.BAD_REQUEST, "lastSeq is not a number"));
+                return;
+            }
+            if (answer == null) {
+                send(Envelope.error(null, Envelope.EXPIRED, "No answer of the session to resume"));
+                return;
+            }
+            if (!Objects.equals(answer.owner, userId)) {
+                logger.warn("User {} tried to resume the answer of session {} of another user", userId, session);
+                send(Envelope.error(null, Envelope.FORBIDDEN, "The answer belongs to another user"));
+                return;
+            }
+            answer.ioThread.execute(() -> answer.attach(this, seq));
+        }
+
+        void close() {
+            for (Answer answer : answers.values()) {
+                answer.ioThread.execute(() -> answer.detach(this));
+            }
+            answers.clear();
+        }
+    }
+
+    /**
+     * Streams the answer to a prompt. The chunks are buffered into frames on the IO thread of the channel
+     * the prompt came from, which also runs the max latency timer, so the buffer, the sequence and the
+     * attached connection are only ever used by that thread. The next chunk is requested once the previous
+     * frame has been written, so a slow WebSocket client slows down reading from the provider.
+     * <p>
+     * The frames of a structured protocol answer are also kept in a ring. When its connection closes, the
+     * answer keeps streaming into the ring and the history for resumeMillis, waiting for the client to
+     * reconnect, and is cancelled if it does not. A finished answer is kept for as long.
+     */
+    private final class Answer implements Flow.Subscriber<String> {
+        private final String id;
+        private final String session;
+        // the user the answer is streamed to, the only one allowed to resume it
+        private final String owner;
+        private final ChatStreamPublisher publisher;
+        private final boolean json;
+        private final AgentDefinition agentDef;
+        private final TokenCounter tokenCounter;
+        private final MetricsProvider.Distribution sendTimer;
+        private final XnioIoThread ioThread;
+        private final FrameRing ring;
+        private final ChunkBuffer buffer = new ChunkBuffer(config.getFlushBytes(), config.isFlushOnSentence());
+        private final StringBuilder responseBuilder = new StringBuilder();
+        private Connection connection;
+        private Flow.Subscription subscription;
+        private XnioExecutor.Key timer;
+        private XnioExecutor.Key expiry;
+        private boolean sending;
+        private boolean requestOnSent;
+        private boolean finished;
+        private String last;
+        private int seq;
+        private Runnable done;
+
+        Answer(Connection connection, String id, String session, ChatStreamPublisher publisher, Runnable done) {
+            this.connection = connection;
+            this.done = done;
+            this.id = id;
+            this.session = session;
+            this.owner = connection.userId;
+            this.publisher = publisher;
+            this.json = connection.json;
+            this.agentDef = connection.agentDef;
+            this.tokenCounter = connection.tokenCounter;
+            this.sendTimer = connection.sendTimer;
+            this.ioThread = connection.channel.getIoThread();
+            this.ring = json && config.getResumeMillis() > 0 ? new FrameRing(config.getResumeFrames()) : null;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(String content) {
+            responseBuilder.append(content);
+            ioThread.execute(() -> {
+                if (finished) {
+                    return;
+                }
+                String text = buffer.append(content);
+                if (text != null) {
+                    cancelTimer();
+                    requestOnSent = true;
+                    sendChunk(text);
+                    return;
+                }
+                if (timer == null && config.getFlushMillis() > 0) {
+                    timer = ioThread.executeAfter(this::flushLate, config.getFlushMillis(), TimeUnit.MILLISECONDS);
+                }
+                if (sending) {
+                    requestOnSent = true;
+                } else {
+                    subscription.request(1);
+                }
+            });
+        }
+
+        /**
+         * Sends the text of the first chunk buffered for the max latency.
+         */
+        private void flushLate() {
+            timer = null;
+            String text = buffer.drain();
+            if (text != null && !finished) {
+                sendChunk(text);
+            }
+        }
+
+        private void cancelTimer() {
+            if (timer != null) {
+                timer.remove();
+                timer = null;
+            }
+        }
+
+        /**
+         * Sends a frame, requesting the chunk held back while it was written. A detached answer only keeps
+         * the frame in its ring.
+         */
+        private void sendChunk(String text) {
+            String frame = json ? Envelope.chunk(id, seq, text) : text;
+            seq++;
+            if (ring != null) {
+                ring.add(frame);
+            }
+            if (connection == null || !connection.channel.isOpen()) {
+                sent();
+                return;
+            }
+            sending = true;
+            long start = System.nanoTime();
+            WebSockets.sendText(frame, connection.channel, new WebSocketCallback<Void>() {
+                @Override
+                public void complete(WebSocketChannel channel, Void context) {
+                    sendTimer.record(System.nanoTime() - start);
+                    onIoThread(channel, Answer.this::sent);
+                }
+
+                @Override
+                public void onError(WebSocketChannel channel, Void context, Throwable throwable) {
+                    if (ring != null) {
+                        // the close task detaches the answer, which a reconnecting client resumes
+                        logger.debug("Error sending message chunk of session {}", session, throwable);
+                        onIoThread(channel, Answer.this::sent);
+                        return;
+                    }
+                    logger.error("Error sending message chunk", throwable);
+                    finish();
+                    subscription.cancel();
+                }
+            });
+        }
+
+        private void sent() {
+            sending = false;
+            if (requestOnSent) {
+                requestOnSent = false;
+                subscription.request(1);
+            }
+        }
+
+        /**
+         * Runs a send callback on the IO thread of the answer, which a resumed answer does not share with
+         * its channel.
+         */
+        private void onIoThread(WebSocketChannel channel, Runnable task) {
+            if (channel.getIoThread() == ioThread) {
+                task.run();
+            } else {
+                ioThread.execute(task);
+            }
+        }
+
+        /**
+         * Ends the answer on the IO thread: sends the buffered text unless the answer is cancelled, then the
+         * final frame if any, built once the sequence is final. Chunks still queued for the IO thread are
+         * dropped.
+         */
+        private void end(boolean flush, Supplier<String> frame) {
+            ioThread.execute(() -> {
+                if (finished) {
+                    return;
+                }
+                cancelTimer();
+                String text = buffer.drain();
+                if (text != null && flush) {
+                    sendChunk(text);
+                }
+                if (frame != null) {
+                    last = frame.get();
+                    if (connection != null) {
+                        connection.send(last);
+                    }
+                }
+                finish();
+            });
+        }
+
+        /**
+         * Marks the answer finished. It stays resumable until it expires, as the client may not have
+         * received the final frame.
+         */
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (connection != null) {
+                connection.answers.remove(id, this);
+            }
+            if (ring != null && expiry == null) {
+                expiry = ioThread.executeAfter(this::expire, config.getResumeMillis(), TimeUnit.MILLISECONDS);
+            }
+            release();
+        }
+
+        /**
+         * Ends the turn of the session, letting its next prompt be answered.
+         */
+        private void release() {
+            Runnable turn = done;
+            done = null;
+            if (turn != null) {
+                turn.run();
+            }
+        }
+
+        /**
+         * Cancels the answer at the request of the client.
+         */
+        void cancel() {
+            end(false, () -> Envelope.error(id, Envelope.CANCELLED, "Cancelled by the client"));
+            publisher.cancel();
+        }
+
+        /**
+         * Stops the answer to a prompt the client cancelled while its turn was being prepared.
+         */
+        void discard() {
+            end(false, null);
+            publisher.cancel();
+        }
+
+        /**
+         * Detaches the answer from its closed connection, cancelling it unless it can be resumed.
+         */
+        private void detach(Connection closed) {
+            if (connection != closed) {
+                // resumed on another connection
+                return;
+            }
+            connection = null;
+            if (ring == null) {
+                logger.debug("Cancelling a stream of session {} as the connection closed", session);
+                publisher.cancel();
+                cancelTimer();
+                finish();
+            } else if (expiry == null) {
+                expiry = ioThread.executeAfter(this::expire, config.getResumeMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void expire() {
+            expiry = null;
+            resumable.remove(session, this);
+            if (!finished) {
+                logger.debug("Cancelling a stream of session {} as no client resumed it", session);
+                finished = true;
+                cancelTimer();
+                publisher.cancel();
+                release();
+            }
+        }
+
+        /**
+         * Attaches the answer to a reconnected client and replays the frames after the last one it received,
+         * then the final frame if the answer finished while the client was away.
+         */
+        private void attach(Connection resumed, int lastSeq) {
+            List<String> missed = ring.after(lastSeq);
+            if (missed == null || expiry == null && connection == null) {
+                // overwritten, or expired while the resume was queued
+                resumed.send(Envelope.error(id, Envelope.EXPIRED, "The frames after " + lastSeq
+                        + " are no longer kept"));
+                return;
+            }
+            resumed.send(Envelope.ack(id, session));
+            for (String frame : missed) {
+                resumed.send(frame);
+            }
+            if (finished) {
+                resumed.send(last);
+                return;
+            }
+            if (expiry != null) {
+                expiry.remove();
+                expiry = null;
+            }
+            if (connection != null && connection != resumed) {
+                // the previous connection is not closed yet, but the client has moved on
+                connection.answers.remove(id, this);
+            }
+            connection = resumed;
+            resumed.answers.put(id, this);
+            if (!resumed.channel.isOpen()) {
+                // closed while the answer was attached, after its close task has run
+                detach(resumed);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            ChatMessage modelMsg = new ChatMessage("assistant", responseBuilder.toString());
+            historyRepository.addMessage(session, modelMsg);
+            end(true, json ? () -> Envelope.done(id, seq, publisher.getResponse().getNow(null)) : null);
+            if (agentDef != null) {
+                // summarizes the older turns in the background once the history is too long
+                historyCompactor.submit(session, agentDef, tokenCounter);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            logger.error("GenAI Client Error", throwable);
+            end(true, json ? () -> Envelope.error(id, Envelope.code(throwable), throwable.getMessage())
+                    : () -> "Error: " + throwable.getMessage());
+        }
+    }
+}
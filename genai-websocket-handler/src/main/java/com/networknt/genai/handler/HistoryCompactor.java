@@ -0,0 +1,179 @@
+package com.networknt.genai.handler;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.GenAiClient;
+import com.networknt.genai.RequestOptions;
+import com.networknt.genai.TokenCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compacts the history of the sessions that grow past the compaction threshold of their agent: the
+ * older turns are summarized with the compaction model and replaced by a single system message holding
+ * the summary, which the context strategies always keep. A previous summary is summarized again with
+ * the turns that follow it.
+ *
+ * Compaction runs on a bounded pool after a turn has been answered, so no turn waits for it. A session
+ * is compacted by one task at a time, and sessions that cross the threshold while the queue is full
+ * are compacted after one of their next turns.
+ */
+public class HistoryCompactor {
+    private static final Logger logger = LoggerFactory.getLogger(HistoryCompactor.class);
+
+    public static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
+    static final String INSTRUCTIONS = "Summarize the conversation below for the assistant that continues it. "
+            + "Keep the facts, names, numbers, decisions, open questions and the preferences of the user, "
+            + "and leave out small talk. Answer with the summary only.";
+
+    private final ChatHistoryRepository historyRepository;
+    private final GenAiClient genAiClient;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private volatile ThreadPoolExecutor executor;
+
+    private int threads = 2;
+    private int queueSize = 100;
+    private int keepLastMessages = 6;
+    private long timeoutMillis = 60000;
+
+    public HistoryCompactor(ChatHistoryRepository historyRepository, GenAiClient genAiClient) {
+        this.historyRepository = historyRepository;
+        this.genAiClient = genAiClient;
+    }
+
+    /**
+     * @param threads The number of sessions summarized at the same time, 2 by default.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param queueSize The number of sessions waiting for a thread, 100 by default.
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param keepLastMessages The number of latest messages that are not summarized, 6 by default.
+     */
+    public void setKeepLastMessages(int keepLastMessages) {
+        this.keepLastMessages = Math.max(1, keepLastMessages);
+    }
+
+    /**
+     * @param timeoutMillis How long to wait for a summary, 60 seconds by default.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Schedules the compaction of a session if its history is above the threshold of the agent and it
+     * is not already being compacted. The history is counted with the counts cached on its messages.
+     *
+     * @param sessionId The session ID.
+     * @param agent The agent of the session.
+     * @param counter The token counter of the model of the agent.
+     * @return true if a compaction was scheduled.
+     */
+    public boolean submit(String sessionId, AgentDefinition agent, TokenCounter counter) {
+        Integer threshold = agent.getCompactionThresholdTokens();
+        if (threshold == null || threshold <= 0 || genAiClient == null) {
+            return false;
+        }
+        if (counter.count(historyRepository.getHistory(sessionId)) <= threshold || !pending.add(sessionId)) {
+            return false;
+        }
+        try {
+            executor().execute(() -> {
+                try {
+                    compact(sessionId, agent);
+                } catch (Exception e) {
+                    logger.warn("Cannot compact the history of session {}", sessionId, e);
+                } finally {
+                    pending.remove(sessionId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(sessionId);
+            logger.debug("Compaction queue full, session {} is compacted later", sessionId);
+            return false;
+        }
+    }
+
+    /**
+     * Summarizes the older turns of a session and replaces them with the summary, unless the history
+     * has been changed in the meantime.
+     *
+     * @return true if the history was compacted.
+     */
+    boolean compact(String sessionId, AgentDefinition agent) throws Exception {
+        List<ChatMessage> history = historyRepository.getHistory(sessionId);
+        // keep the latest messages from a user message on, so that the history still starts a turn
+        int end = Math.max(0, history.size() - keepLastMessages);
+        while (end > 0 && !"user".equals(history.get(end).getRole())) {
+            end--;
+        }
+        if (end < 2) {
+            return false;
+        }
+        List<ChatMessage> old = history.subList(0, end);
+        StringBuilder prompt = new StringBuilder(INSTRUCTIONS).append("\n\n");
+        for (ChatMessage message : old) {
+            String content = message.getContent() != null ? message.getContent() : "";
+            if ("system".equals(message.getRole()) && content.startsWith(SUMMARY_PREFIX)) {
+                prompt.append("Earlier summary: ").append(content, SUMMARY_PREFIX.length(), content.length());
+            } else {
+                prompt.append(message.getRole()).append(": ").append(content);
+            }
+            prompt.append("\n\n");
+        }
+        String model = agent.getCompactionModel() != null ? agent.getCompactionModel() : agent.getModel();
+        RequestOptions options = new RequestOptions(model);
+        options.setTemperature(0.0);
+        options.setCacheTtlSeconds(0);
+        String summary = genAiClient.chatAsync(List.of(new ChatMessage("user", prompt.toString())), options)
+                .get(timeoutMillis, TimeUnit.MILLISECONDS).getContent();
+        if (summary == null || summary.isBlank()) {
+            return false;
+        }
+        boolean compacted = historyRepository.compact(sessionId, List.copyOf(old),
+                new ChatMessage("system", SUMMARY_PREFIX + summary.trim()));
+        if (compacted) {
+            logger.debug("Compacted {} messages of session {} with {}", end, sessionId, model);
+        }
+        return compacted;
+    }
+
+    private ThreadPoolExecutor executor() {
+        ThreadPoolExecutor e = executor;
+        if (e == null) {
+            synchronized (this) {
+                e = executor;
+                if (e == null) {
+                    AtomicInteger count = new AtomicInteger();
+                    e = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(queueSize), r -> {
+                                Thread thread = new Thread(r, "genai-compactor-" + count.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    e.allowCoreThreadTimeOut(true);
+                    executor = e;
+                }
+            }
+        }
+        return e;
+    }
+}
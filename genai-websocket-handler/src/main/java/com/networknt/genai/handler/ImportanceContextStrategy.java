@@ -0,0 +1,139 @@
+package com.networknt.genai.handler;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.TokenCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prunes the least important turns until the history fits in a token budget. The system messages and
+ * the last keepLast messages are always sent. The older turns, a user message and the answers to it,
+ * are scored by the best {@link #score} of their messages and dropped lowest score first, so that a
+ * question or a code block from early in the session can outlive the small talk around it. Whole turns
+ * are dropped to keep the user and assistant roles alternating. Nothing is dropped while the history
+ * fits.
+ */
+public class ImportanceContextStrategy implements ContextStrategy {
+    public static final int DEFAULT_KEEP_LAST = 4;
+
+    private final int maxTokens;
+    private final int keepLast;
+
+    /**
+     * @param maxTokens The token budget of the prompt, including the system prompt.
+     * @param keepLast The number of latest messages that are never dropped.
+     */
+    public ImportanceContextStrategy(int maxTokens, int keepLast) {
+        this.maxTokens = maxTokens;
+        this.keepLast = Math.max(1, keepLast);
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public int getKeepLast() {
+        return keepLast;
+    }
+
+    @Override
+    public List<ChatMessage> apply(List<ChatMessage> history, int reservedTokens, TokenCounter counter) {
+        int size = history.size();
+        int total = reservedTokens + 3;
+        for (ChatMessage message : history) {
+            total += ContextStrategy.cost(message, counter);
+        }
+        if (total <= maxTokens) {
+            return history;
+        }
+        // the candidates are the turns older than the protected tail, which starts at a user message
+        int tail = size;
+        for (int kept = 0; tail > 0 && kept < keepLast; ) {
+            if (!ContextStrategy.isSystem(history.get(--tail))) {
+                kept++;
+            }
+        }
+        while (tail > 0 && !"user".equals(history.get(tail).getRole())) {
+            tail--;
+        }
+        int turns = 0;
+        int[] starts = new int[tail + 1];
+        long[] order = new long[tail];
+        for (int i = 0; i < tail; ) {
+            if (ContextStrategy.isSystem(history.get(i))) {
+                i++;
+                continue;
+            }
+            double score = score(history.get(i), i, size);
+            starts[turns] = i++;
+            while (i < tail && !"user".equals(history.get(i).getRole())) {
+                if (!ContextStrategy.isSystem(history.get(i))) {
+                    score = Math.max(score, score(history.get(i), i, size));
+                }
+                i++;
+            }
+            // sort by score then by age, keeping the turn in the low bits; positive floats sort like their bits
+            order[turns] = ((long) Float.floatToIntBits((float) score) << 32) | turns;
+            turns++;
+            starts[turns] = i;
+        }
+        Arrays.sort(order, 0, turns);
+        boolean[] dropped = new boolean[size];
+        for (int t = 0; t < turns && total > maxTokens; t++) {
+            int turn = (int) order[t];
+            for (int i = starts[turn]; i < starts[turn + 1]; i++) {
+                ChatMessage message = history.get(i);
+                if (!ContextStrategy.isSystem(message)) {
+                    dropped[i] = true;
+                    total -= ContextStrategy.cost(message, counter);
+                }
+            }
+        }
+        List<ChatMessage> pruned = new ArrayList<>(size);
+        boolean started = false;
+        for (int i = 0; i < size; i++) {
+            ChatMessage message = history.get(i);
+            if (ContextStrategy.isSystem(message)) {
+                pruned.add(message);
+            } else if (!dropped[i] && (started || "user".equals(message.getRole()))) {
+                started = true;
+                pruned.add(message);
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Scores a message that may be dropped. User messages weigh more than the answers, which can be
+     * inferred from what follows; questions, code and numbers weigh more, short acknowledgements less,
+     * and the weight decays with the age of the message.
+     *
+     * @param message The message.
+     * @param index The index of the message in the history.
+     * @param size The size of the history.
+     * @return A positive score, higher for the messages to keep.
+     */
+    protected double score(ChatMessage message, int index, int size) {
+        String content = message.getContent() != null ? message.getContent() : "";
+        double score = "user".equals(message.getRole()) ? 1.0 : 0.8;
+        if (content.indexOf('?') >= 0) {
+            score += 0.3;
+        }
+        if (content.contains("```")) {
+            score += 0.5;
+        }
+        for (int i = 0; i < content.length(); i++) {
+            if (Character.isDigit(content.charAt(i))) {
+                score += 0.2;
+                break;
+            }
+        }
+        if (content.length() < 32) {
+            score *= 0.3;
+        }
+        // from 0.5 for the oldest message to 1 for the newest
+        return score * (0.5 + 0.5 * (index + 1) / size);
+    }
+}
@@ -31,6 +31,22 @@ public class InMemoryChatHistoryRepository implements ChatHistoryRepository {
         }
     }
 
+    @Override
+    public boolean compact(String sessionId, List<ChatMessage> messages, ChatMessage summary) {
+        List<ChatMessage> history = historyMap.get(sessionId);
+        if (history == null) {
+            return false;
+        }
+        synchronized (history) {
+            if (!ChatHistoryRepository.startsWith(history, messages)) {
+                return false;
+            }
+            history.subList(0, messages.size()).clear();
+            history.add(0, summary);
+            return true;
+        }
+    }
+
     @Override
     public void clearHistory(String sessionId) {
         historyMap.remove(sessionId);
@@ -0,0 +1,39 @@
+package com.networknt.genai.handler;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.TokenCounter;
+
+import java.util.List;
+
+/**
+ * Sends the system messages and the last N other messages, whatever their size.
+ */
+public class LastMessagesContextStrategy implements ContextStrategy {
+    private final int lastMessages;
+
+    /**
+     * @param lastMessages The number of messages to send besides the system ones.
+     */
+    public LastMessagesContextStrategy(int lastMessages) {
+        if (lastMessages < 1) {
+            throw new IllegalArgumentException("lastMessages must be at least 1");
+        }
+        this.lastMessages = lastMessages;
+    }
+
+    public int getLastMessages() {
+        return lastMessages;
+    }
+
+    @Override
+    public List<ChatMessage> apply(List<ChatMessage> history, int reservedTokens, TokenCounter counter) {
+        int start = history.size();
+        int kept = 0;
+        while (start > 0 && kept < lastMessages) {
+            if (!ContextStrategy.isSystem(history.get(--start))) {
+                kept++;
+            }
+        }
+        return start == 0 ? history : ContextStrategy.window(history, start);
+    }
+}
@@ -0,0 +1,111 @@
+package com.networknt.genai.handler;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the turns of each session one at a time, in the order they were submitted, while the turns of
+ * different sessions run in parallel. A turn is over when it calls the callback it is given, e.g. once
+ * its answer has been streamed and written to the history, so the next turn reads the complete history.
+ * <p>
+ * Each session with turns has a mailbox: a lock-free queue and a count of its turns, which the submitter
+ * taking it from 0 to 1 starts draining on the executor. The mailbox of a session is retired once its
+ * last turn is over, so idle sessions hold no state.
+ */
+final class SessionExecutor {
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final int maxQueued;
+
+    /**
+     * @param maxQueued The number of turns of a session that may wait for the running one.
+     */
+    SessionExecutor(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @param session The session of the turn.
+     * @param executor The executor running the turn if the session has none running.
+     * @param turn The turn, given the callback to call once it is over.
+     * @return Whether the turn was queued, false if the session already has maxQueued turns waiting.
+     */
+    boolean submit(String session, Executor executor, Consumer<Runnable> turn) {
+        while (true) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(session, s -> new Mailbox(s, executor));
+            int queued = mailbox.offer(turn);
+            if (queued >= 0) {
+                return queued > 0;
+            }
+            // retired after its last turn, before this one was counted
+            mailboxes.remove(session, mailbox);
+        }
+    }
+
+    private final class Mailbox {
+        private final String session;
+        private final Executor executor;
+        private final Queue<Consumer<Runnable>> turns = new ConcurrentLinkedQueue<>();
+        // the turns queued or running, -1 once retired
+        private final AtomicInteger count = new AtomicInteger();
+
+        Mailbox(String session, Executor executor) {
+            this.session = session;
+            this.executor = executor;
+        }
+
+        /**
+         * @return 1 if the turn was queued, 0 if the mailbox is full, -1 if it is retired.
+         */
+        int offer(Consumer<Runnable> turn) {
+            int n;
+            do {
+                n = count.get();
+                if (n < 0) {
+                    return -1;
+                }
+                if (n > maxQueued) {
+                    return 0;
+                }
+            } while (!count.compareAndSet(n, n + 1));
+            turns.add(turn);
+            if (n == 0) {
+                executor.execute(this::runNext);
+            }
+            return 1;
+        }
+
+        private void runNext() {
+            Consumer<Runnable> turn;
+            while ((turn = turns.poll()) == null) {
+                // counted by a submitter still adding it
+                Thread.onSpinWait();
+            }
+            AtomicInteger over = new AtomicInteger();
+            try {
+                turn.accept(() -> {
+                    if (over.getAndIncrement() == 0) {
+                        next();
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (over.getAndIncrement() == 0) {
+                    next();
+                }
+                throw e;
+            }
+        }
+
+        private void next() {
+            if (count.decrementAndGet() > 0) {
+                executor.execute(this::runNext);
+            } else if (count.compareAndSet(0, -1)) {
+                mailboxes.remove(session, this);
+            }
+        }
+    }
+}
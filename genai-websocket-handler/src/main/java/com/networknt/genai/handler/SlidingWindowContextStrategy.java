@@ -0,0 +1,49 @@
+package com.networknt.genai.handler;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.TokenCounter;
+
+import java.util.List;
+
+/**
+ * Sends the system messages and as many of the latest messages as fit in a token budget. The newest
+ * message is always sent, even if it alone exceeds the budget, so that the provider reports the error.
+ */
+public class SlidingWindowContextStrategy implements ContextStrategy {
+    private final int maxTokens;
+
+    /**
+     * @param maxTokens The token budget of the prompt, including the system prompt.
+     */
+    public SlidingWindowContextStrategy(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    @Override
+    public List<ChatMessage> apply(List<ChatMessage> history, int reservedTokens, TokenCounter counter) {
+        // 3 tokens prime the reply
+        int budget = maxTokens - reservedTokens - 3;
+        for (ChatMessage message : history) {
+            if (ContextStrategy.isSystem(message)) {
+                budget -= ContextStrategy.cost(message, counter);
+            }
+        }
+        int start = history.size();
+        while (start > 0) {
+            ChatMessage message = history.get(start - 1);
+            if (!ContextStrategy.isSystem(message)) {
+                int cost = ContextStrategy.cost(message, counter);
+                if (cost > budget && start < history.size()) {
+                    break;
+                }
+                budget -= cost;
+            }
+            start--;
+        }
+        return start == 0 ? history : ContextStrategy.window(history, start);
+    }
+}
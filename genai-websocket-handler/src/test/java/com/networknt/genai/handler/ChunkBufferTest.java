@@ -0,0 +1,36 @@
+package com.networknt.genai.handler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChunkBufferTest {
+
+    @Test
+    public void testFlushesAtSentenceEnds() {
+        ChunkBuffer buffer = new ChunkBuffer(256, true);
+        assertNull(buffer.append("The quick"));
+        assertNull(buffer.append(" fox"));
+        assertEquals("The quick fox jumps. ", buffer.append(" jumps. "));
+        assertTrue(buffer.isEmpty());
+        assertEquals("Why?", buffer.append("Why?"));
+        assertEquals("line\nand", buffer.append("line\nand"));
+        assertNull(buffer.append("3.5"));
+        assertEquals("3.5", buffer.drain());
+        assertNull(buffer.drain());
+    }
+
+    @Test
+    public void testFlushesAtUtf8Size() {
+        ChunkBuffer buffer = new ChunkBuffer(8, false);
+        assertNull(buffer.append("a. "));
+        // two bytes for é and four for the emoji
+        assertNull(buffer.append("é"));
+        assertFalse(buffer.isEmpty());
+        assertEquals("a. é👋", buffer.append("👋"));
+        assertEquals("x", new ChunkBuffer(1, false).append("x"));
+    }
+}
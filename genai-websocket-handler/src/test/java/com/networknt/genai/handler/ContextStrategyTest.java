@@ -0,0 +1,97 @@
+package com.networknt.genai.handler;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.TokenCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContextStrategyTest {
+    /**
+     * One token per character, counting the calls.
+     */
+    private static class CharCounter implements TokenCounter {
+        int calls;
+
+        @Override
+        public String getName() {
+            return "chars";
+        }
+
+        @Override
+        public int count(CharSequence text) {
+            calls++;
+            return text.length();
+        }
+    }
+
+    private static List<ChatMessage> history(String... contents) {
+        List<ChatMessage> history = new ArrayList<>();
+        history.add(new ChatMessage("system", "sys"));
+        for (int i = 0; i < contents.length; i++) {
+            history.add(new ChatMessage(i % 2 == 0 ? "user" : "assistant", contents[i]));
+        }
+        return history;
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        List<String> contents = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            contents.add(message.getContent());
+        }
+        return contents;
+    }
+
+    @Test
+    public void testSlidingWindowCountsEachMessageOnce() {
+        CharCounter counter = new CharCounter();
+        // each message costs 4 + 6 tokens, the system message 4 + 3, the reply is primed with 3
+        SlidingWindowContextStrategy strategy = new SlidingWindowContextStrategy(3 + 7 + 2 * 10);
+        List<ChatMessage> history = history("user-1", "asst-1", "user-2", "asst-2", "user-3");
+        // the window of 2 messages starts with an assistant message, which is dropped
+        assertEquals(List.of("sys", "user-3"), contents(strategy.apply(history, 0, counter)));
+        assertEquals(List.of("sys", "user-2", "asst-2", "user-3"), contents(strategy.apply(history, -10, counter)));
+        // only the messages up to the first one that does not fit are counted
+        assertEquals(5, counter.calls);
+
+        history.add(new ChatMessage("assistant", "asst-3"));
+        history.add(new ChatMessage("user", "user-4"));
+        strategy.apply(history, 0, counter);
+        assertEquals(7, counter.calls);
+
+        // the newest message is sent even if it does not fit
+        assertEquals(List.of("sys", "user-4"), contents(new SlidingWindowContextStrategy(1).apply(history, 0, counter)));
+        List<ChatMessage> small = history("hi");
+        assertSame(small, strategy.apply(small, 0, counter));
+    }
+
+    @Test
+    public void testLastMessagesKeepsSystem() {
+        AgentDefinition agent = new AgentDefinition();
+        agent.setContextStrategy(ContextStrategy.LAST_MESSAGES);
+        agent.setContextLastMessages(3);
+        ContextStrategy strategy = ContextStrategy.of(agent);
+        List<ChatMessage> history = history("u1", "a1", "u2", "a2", "u3", "a3", "u4");
+        assertEquals(List.of("sys", "u3", "a3", "u4"), contents(strategy.apply(history, 0, new CharCounter())));
+    }
+
+    @Test
+    public void testImportanceDropsSmallTalkFirst() {
+        CharCounter counter = new CharCounter();
+        String question = "How do I configure the router for 2 providers?";
+        String answer = "Add them to router.yml with their weights and models, then restart the server.";
+        List<ChatMessage> history = history(question, answer, "thanks", "you're welcome", "ok", "anything else?",
+                "and the breaker?", "Set guard to true.", "next question");
+        int total = 3 + new CharCounter().count(history);
+        ImportanceContextStrategy strategy = new ImportanceContextStrategy(total - 40, 2);
+        List<String> pruned = contents(strategy.apply(history, 0, counter));
+        // the small talk turns go, the early question and the last messages stay
+        assertEquals(List.of("sys", question, answer, "and the breaker?", "Set guard to true.", "next question"), pruned);
+        assertTrue(strategy.apply(history, -1000, counter) == history);
+    }
+}
@@ -0,0 +1,274 @@
+package com.networknt.genai.handler;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.ChatResponse;
+import com.networknt.genai.GenAiClient;
+import com.networknt.genai.RequestOptions;
+import com.networknt.genai.StreamCallback;
+import com.networknt.genai.StreamControl;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GenAiWebSocketHandlerTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static Undertow start(GenAiClient client) {
+        AgentDefinition agent = new AgentDefinition();
+        agent.setModel("gpt-4o");
+        GenAiWebSocketHandler handler = new GenAiWebSocketHandler(agentId -> agent, null, null, client);
+        Undertow server = Undertow.builder()
+                .addHttpListener(0, "127.0.0.1")
+                .setHandler(Handlers.websocket(handler::onConnect))
+                .build();
+        server.start();
+        return server;
+    }
+
+    private static WebSocket connect(Undertow server, CompletableFuture<String> firstFrame) throws Exception {
+        return connect(server, "userId=u1", frame -> firstFrame.complete(frame));
+    }
+
+    private static WebSocket connect(Undertow server, String query, Consumer<String> frames) throws Exception {
+        int port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+        return HttpClient.newHttpClient().newWebSocketBuilder()
+                .buildAsync(URI.create("ws://127.0.0.1:" + port + "/?" + query), new WebSocket.Listener() {
+                    @Override
+                    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                        frames.accept(data.toString());
+                        webSocket.request(1);
+                        return null;
+                    }
+                }).get(5, TimeUnit.SECONDS);
+    }
+
+    private static JsonNode next(BlockingQueue<String> frames) throws Exception {
+        String frame = frames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        return mapper.readTree(frame);
+    }
+
+    @Test
+    public void testCloseCancelsProviderStream() throws Exception {
+        StreamingClient client = new StreamingClient("first line\n");
+        Undertow server = start(client);
+        try {
+            CompletableFuture<String> firstFrame = new CompletableFuture<>();
+            WebSocket webSocket = connect(server, firstFrame);
+            webSocket.sendText("hello", true);
+
+            // the provider is still streaming when the client goes away
+            assertEquals("first line\n", firstFrame.get(5, TimeUnit.SECONDS));
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+            assertTrue(client.cancelled.await(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testLatencyTimerSendsPartialText() throws Exception {
+        Undertow server = start(new StreamingClient("no sentence end"));
+        try {
+            CompletableFuture<String> firstFrame = new CompletableFuture<>();
+            WebSocket webSocket = connect(server, firstFrame);
+            webSocket.sendText("hello", true);
+            // neither the size nor a sentence end flushes the chunk, the max latency timer does
+            assertEquals("no sentence end", firstFrame.get(5, TimeUnit.SECONDS));
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testJsonProtocolMultiplexesSessions() throws Exception {
+        StreamingClient client = new StreamingClient("first line\n");
+        Undertow server = start(client);
+        try {
+            BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+            WebSocket webSocket = connect(server, "userId=u1&protocol=json", frames::add);
+            webSocket.sendText("{\"type\":\"prompt\",\"id\":\"r1\",\"sessionId\":\"s1\",\"content\":\"wait\"}", true);
+            assertEquals("ack", next(frames).get("type").asText());
+            JsonNode chunk = next(frames);
+            assertEquals("chunk", chunk.get("type").asText());
+            assertEquals("r1", chunk.get("id").asText());
+            assertEquals(0, chunk.get("seq").asInt());
+            assertEquals("first line\n", chunk.get("content").asText());
+
+            // the session of r1 is still answering, so r2 waits for its turn while another session goes on
+            webSocket.sendText("{\"type\":\"prompt\",\"id\":\"r2\",\"sessionId\":\"s1\",\"content\":\"hi\"}", true);
+            JsonNode queued = next(frames);
+            assertEquals("ack", queued.get("type").asText());
+            assertEquals("r2", queued.get("id").asText());
+            webSocket.sendText("{\"type\":\"prompt\",\"id\":\"r3\",\"sessionId\":\"s2\",\"content\":\"hi\"}", true);
+            JsonNode ack = next(frames);
+            assertEquals("r3", ack.get("id").asText());
+            assertEquals("s2", ack.get("sessionId").asText());
+            assertEquals("hi.", next(frames).get("content").asText());
+            JsonNode done = next(frames);
+            assertEquals("done", done.get("type").asText());
+            assertEquals(1, done.get("seq").asInt());
+            assertEquals(2, done.get("usage").get("completionTokens").asInt());
+
+            webSocket.sendText("{\"type\":\"cancel\",\"id\":\"r1\"}", true);
+            JsonNode cancelled = next(frames);
+            assertEquals("r1", cancelled.get("id").asText());
+            assertEquals("cancelled", cancelled.get("code").asText());
+            assertTrue(client.cancelled.await(5, TimeUnit.SECONDS));
+            JsonNode turn = next(frames);
+            assertEquals("r2", turn.get("id").asText());
+            assertEquals("hi.", turn.get("content").asText());
+            assertEquals("done", next(frames).get("type").asText());
+
+            webSocket.sendText("not json", true);
+            assertEquals("bad_request", next(frames).get("code").asText());
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testReconnectReplaysMissedChunks() throws Exception {
+        StreamingClient client = new StreamingClient("first line\n");
+        Undertow server = start(client);
+        try {
+            BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+            WebSocket webSocket = connect(server, "userId=u1&protocol=json&sessionId=s1", frames::add);
+            webSocket.sendText("{\"type\":\"prompt\",\"id\":\"r1\",\"content\":\"wait\"}", true);
+            assertEquals("ack", next(frames).get("type").asText());
+            assertEquals(0, next(frames).get("seq").asInt());
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+
+            // the model goes on while the client is away
+            client.callback.onEvent("second line\n");
+            ChatResponse response = new ChatResponse("first line\nsecond line\n");
+            response.setCompletionTokens(4);
+            client.callback.onComplete(response);
+
+            BlockingQueue<String> resumed = new LinkedBlockingQueue<>();
+            WebSocket reconnected = connect(server, "userId=u1&protocol=json&sessionId=s1&lastSeq=0", resumed::add);
+            JsonNode ack = next(resumed);
+            assertEquals("ack", ack.get("type").asText());
+            assertEquals("r1", ack.get("id").asText());
+            JsonNode chunk = next(resumed);
+            assertEquals(1, chunk.get("seq").asInt());
+            assertEquals("second line\n", chunk.get("content").asText());
+            JsonNode done = next(resumed);
+            assertEquals("done", done.get("type").asText());
+            assertEquals(2, done.get("seq").asInt());
+            assertEquals(1, client.cancelled.getCount());
+            reconnected.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testResumeByAnotherUserIsRejected() throws Exception {
+        StreamingClient client = new StreamingClient("first line\n");
+        Undertow server = start(client);
+        try {
+            BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+            WebSocket webSocket = connect(server, "userId=u1&protocol=json&sessionId=s1", frames::add);
+            webSocket.sendText("{\"type\":\"prompt\",\"id\":\"r1\",\"content\":\"wait\"}", true);
+            assertEquals("ack", next(frames).get("type").asText());
+            assertEquals(0, next(frames).get("seq").asInt());
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+
+            BlockingQueue<String> resumed = new LinkedBlockingQueue<>();
+            WebSocket other = connect(server, "userId=u2&protocol=json&sessionId=s1&lastSeq=0", resumed::add);
+            JsonNode error = next(resumed);
+            assertEquals("error", error.get("type").asText());
+            assertEquals("forbidden", error.get("code").asText());
+            // the answer is still kept for its owner
+            assertEquals(1, client.cancelled.getCount());
+            other.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Streams a first chunk and then waits, as a model still generating its answer, or answers "hi" at
+     * once.
+     */
+    private static class StreamingClient implements GenAiClient, StreamControl {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        volatile StreamCallback callback;
+        private final String chunk;
+
+        StreamingClient(String chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages, RequestOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+            chatStream(messages, null, callback);
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            this.callback = callback;
+            callback.onOpen(this);
+            String prompt = messages.get(messages.size() - 1).getContent();
+            if (!"hi".equals(prompt)) {
+                callback.onEvent(chunk);
+                return;
+            }
+            callback.onEvent(prompt + ".");
+            ChatResponse response = new ChatResponse(prompt + ".");
+            response.setFinishReason("stop");
+            response.setCompletionTokens(2);
+            callback.onComplete(response);
+        }
+
+        @Override
+        public void pause() {
+        }
+
+        @Override
+        public void resume() {
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.countDown();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.networknt.genai.handler;
+
+import com.networknt.genai.ChatMessage;
+import com.networknt.genai.ChatResponse;
+import com.networknt.genai.GenAiClient;
+import com.networknt.genai.RequestOptions;
+import com.networknt.genai.StreamCallback;
+import com.networknt.genai.TokenCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HistoryCompactorTest {
+    private static final TokenCounter CHARS = new TokenCounter() {
+        @Override
+        public String getName() {
+            return "chars";
+        }
+
+        @Override
+        public int count(CharSequence text) {
+            return text.length();
+        }
+    };
+
+    private static AgentDefinition agent() {
+        AgentDefinition agent = new AgentDefinition();
+        agent.setModel("gpt-4o");
+        agent.setCompactionModel("gpt-4o-mini");
+        agent.setCompactionThresholdTokens(100);
+        return agent;
+    }
+
+    private static void turns(ChatHistoryRepository repository, String sessionId, int from, int to) {
+        for (int i = from; i < to; i++) {
+            repository.addMessage(sessionId, new ChatMessage("user", "question " + i));
+            repository.addMessage(sessionId, new ChatMessage("assistant", "answer " + i));
+        }
+    }
+
+    @Test
+    public void testOlderTurnsAreReplacedBySummary() throws Exception {
+        ChatHistoryRepository repository = new InMemoryChatHistoryRepository();
+        FakeClient client = new FakeClient();
+        HistoryCompactor compactor = new HistoryCompactor(repository, client);
+        compactor.setKeepLastMessages(4);
+        turns(repository, "s1", 0, 2);
+        // below the threshold
+        assertFalse(compactor.submit("s1", agent(), CHARS));
+
+        turns(repository, "s1", 2, 6);
+        assertTrue(compactor.submit("s1", agent(), CHARS));
+        // the session is already being compacted
+        assertFalse(compactor.submit("s1", agent(), CHARS));
+        // a turn added while the summary is generated is kept
+        CompletableFuture<ChatResponse> completion = client.completion();
+        turns(repository, "s1", 6, 7);
+        completion.complete(new ChatResponse(" the user asked 4 questions "));
+        waitForCompaction(repository, "s1");
+
+        List<ChatMessage> history = repository.getHistory("s1");
+        assertEquals("gpt-4o-mini", client.options.get(0).getModel());
+        assertTrue(client.prompts.get(0).contains("user: question 0\n\nassistant: answer 0"));
+        assertEquals(1 + 4 + 2, history.size());
+        assertEquals("system", history.get(0).getRole());
+        assertEquals(HistoryCompactor.SUMMARY_PREFIX + "the user asked 4 questions", history.get(0).getContent());
+        assertEquals("question 4", history.get(1).getContent());
+        assertEquals("answer 6", history.get(6).getContent());
+    }
+
+    @Test
+    public void testChangedHistoryIsNotCompacted() throws Exception {
+        ChatHistoryRepository repository = new InMemoryChatHistoryRepository();
+        FakeClient client = new FakeClient();
+        HistoryCompactor compactor = new HistoryCompactor(repository, client);
+        turns(repository, "s1", 0, 6);
+        CompletableFuture<Boolean> compacted = CompletableFuture.supplyAsync(() -> {
+            try {
+                return compactor.compact("s1", agent());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        CompletableFuture<ChatResponse> completion = client.completion();
+        repository.clearHistory("s1");
+        repository.addMessage("s1", new ChatMessage("user", "new"));
+        completion.complete(new ChatResponse("summary"));
+        assertFalse(compacted.get(5, TimeUnit.SECONDS));
+        assertEquals(1, repository.getHistory("s1").size());
+    }
+
+    @Test
+    public void testCopiedHistoryIsComparedByValue() throws Exception {
+        // a repository reading the history back as new instances, as a persistent one does
+        ChatHistoryRepository repository = new InMemoryChatHistoryRepository() {
+            @Override
+            public List<ChatMessage> getHistory(String sessionId) {
+                return super.getHistory(sessionId).stream()
+                        .map(m -> new ChatMessage(m.getRole(), m.getContent())).toList();
+            }
+        };
+        FakeClient client = new FakeClient();
+        HistoryCompactor compactor = new HistoryCompactor(repository, client);
+        turns(repository, "s1", 0, 6);
+        CompletableFuture<Boolean> compacted = CompletableFuture.supplyAsync(() -> {
+            try {
+                return compactor.compact("s1", agent());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        client.completion().complete(new ChatResponse("summary"));
+        assertTrue(compacted.get(5, TimeUnit.SECONDS));
+        assertEquals("system", repository.getHistory("s1").get(0).getRole());
+
+        // a repository that does not override compact is never compacted
+        ChatHistoryRepository plain = new ChatHistoryRepository() {
+            @Override
+            public void addMessage(String sessionId, ChatMessage message) {
+            }
+
+            @Override
+            public List<ChatMessage> getHistory(String sessionId) {
+                return List.of();
+            }
+
+            @Override
+            public void clearHistory(String sessionId) {
+            }
+        };
+        assertFalse(plain.compact("s1", List.of(), new ChatMessage("system", "summary")));
+    }
+
+    private static void waitForCompaction(ChatHistoryRepository repository, String sessionId) throws InterruptedException {
+        for (int i = 0; i < 500 && !"system".equals(repository.getHistory(sessionId).get(0).getRole()); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static class FakeClient implements GenAiClient {
+        final List<String> prompts = new CopyOnWriteArrayList<>();
+        final List<RequestOptions> options = new CopyOnWriteArrayList<>();
+        // completed with the future of the summary once the compactor has requested it
+        private final CompletableFuture<CompletableFuture<ChatResponse>> requested = new CompletableFuture<>();
+
+        CompletableFuture<ChatResponse> completion() throws Exception {
+            return requested.get(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages) {
+            return chat(messages, null);
+        }
+
+        @Override
+        public String chat(List<ChatMessage> messages, RequestOptions options) {
+            return chatAsync(messages, options).join().getContent();
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(List<ChatMessage> messages, RequestOptions options) {
+            prompts.add(messages.get(0).getContent());
+            this.options.add(options);
+            CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+            requested.complete(future);
+            return future;
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, StreamCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void chatStream(List<ChatMessage> messages, RequestOptions options, StreamCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
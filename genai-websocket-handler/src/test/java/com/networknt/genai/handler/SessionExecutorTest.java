@@ -0,0 +1,71 @@
+package com.networknt.genai.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionExecutorTest {
+
+    @Test
+    public void testTurnsOfASessionRunInOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SessionExecutor turns = new SessionExecutor(2);
+            List<String> ran = new CopyOnWriteArrayList<>();
+            AtomicReference<Runnable> first = new AtomicReference<>();
+            // the first turn is over only once its answer has streamed, which the test decides
+            assertTrue(turns.submit("s1", executor, done -> {
+                ran.add("a");
+                first.set(done);
+            }));
+            assertTrue(turns.submit("s1", executor, done -> {
+                ran.add("b");
+                done.run();
+            }));
+            assertTrue(turns.submit("s1", executor, done -> {
+                ran.add("c");
+                done.run();
+            }));
+            // a running turn and two waiting ones are the most the session holds
+            assertFalse(turns.submit("s1", executor, done -> ran.add("d")));
+            // another session does not wait
+            assertTrue(turns.submit("s2", executor, done -> {
+                ran.add("x");
+                done.run();
+            }));
+
+            waitFor(() -> ran.contains("x") && first.get() != null);
+            assertEquals(List.of("a"), ran.stream().filter(t -> !t.equals("x")).toList());
+            first.get().run();
+            waitFor(() -> ran.size() == 4);
+            assertEquals(List.of("a", "b", "c"), ran.stream().filter(t -> !t.equals("x")).toList());
+
+            // the retired mailbox of an idle session is replaced by a new one
+            assertTrue(turns.submit("s1", executor, done -> {
+                ran.add("e");
+                done.run();
+            }));
+            waitFor(() -> ran.size() == 5);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}